@@ -54,6 +54,11 @@ public class BParkClientScenes {
 	 */
 	private static ManagerController managerController;
 
+	/**
+	 * Controller instance of the most recently opened parking history window.
+	 */
+	private static ParkingHistoryController parkingHistoryController;
+
 	/**
 	 * Displays the login screen on the given stage.
 	 *
@@ -356,6 +361,15 @@ public class BParkClientScenes {
 				.map(window -> (Stage) window).findFirst().orElse(new Stage());
 	}
 
+	/**
+	 * Returns the controller of the most recently opened parking history window.
+	 *
+	 * @return the controller, or null if no history window was opened
+	 */
+	public static ParkingHistoryController getParkingHistoryController() {
+		return parkingHistoryController;
+	}
+
 	/**
 	 * Opens a new window displaying the parking history for the current user.
 	 *
@@ -369,6 +383,7 @@ public class BParkClientScenes {
 
 			// Get the controller and set up the data
 			ParkingHistoryController controller = loader.getController();
+			parkingHistoryController = controller;
 			if (currentUser != null) {
 				controller.setUserName(currentUser);
 			}
@@ -39,6 +39,9 @@ public class BParkKioskScenes {
 		stage.setScene(scene);
 		stage.setResizable(false);
 		stage.show();
+
+		// Keep the offline snapshot current and replay operations recorded offline
+		KioskOfflineStore.start();
 	}
 
 	/**
@@ -1,9 +1,10 @@
 package client;
 
+import java.io.IOException;
+
 import common.Message;
 import controllers.LauncherController;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -27,7 +28,7 @@ public class BParkLauncherApp extends Application {
 	/**
 	 * The client instance responsible for server communication.
 	 */
-	private static BParkClient client;
+	private static volatile BParkClient client;
 	/**
 	 * The IP address of the server to connect to. Default is "localhost".
 	 */
@@ -50,6 +51,7 @@ public class BParkLauncherApp extends Application {
 	@Override
 	public void start(Stage stage) throws Exception {
 		primaryStage = stage;
+		FrameTimeMonitor.start();
 		showLauncherScreen(stage);
 	}
 
@@ -85,6 +87,7 @@ public class BParkLauncherApp extends Application {
 	public static boolean testConnection(String ip, int port) {
 		try {
 			// Close existing connection if any
+			ConnectionManager.stop();
 			if (client != null && client.isConnected()) {
 				client.closeConnection();
 			}
@@ -95,6 +98,7 @@ public class BParkLauncherApp extends Application {
 			// Update stored connection settings if successful
 			serverIP = ip;
 			serverPort = port;
+			ConnectionManager.connected();
 
 			return client.isConnected();
 		} catch (Exception e) {
@@ -104,19 +108,33 @@ public class BParkLauncherApp extends Application {
 	}
 
 	/**
-	 * Connects to the server using the current stored IP and port.
+	 * Connects to the server using the current stored IP and port. Does nothing
+	 * while the {@link ConnectionManager} is reconnecting.
 	 */
 	public static void connectToServer() {
 		try {
-			if (client == null || !client.isConnected()) {
+			if ((client == null || !client.isConnected()) && !ConnectionManager.isReconnecting()) {
 				client = new BParkClient(serverIP, serverPort);
 				client.openConnection();
+				ConnectionManager.connected();
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Opens a new connection to the stored server address in place of a lost
+	 * one. Used by the {@link ConnectionManager}.
+	 *
+	 * @throws IOException if the server cannot be reached.
+	 */
+	static void reopenConnection() throws IOException {
+		BParkClient reopened = new BParkClient(serverIP, serverPort);
+		reopened.openConnection();
+		client = reopened;
+	}
+
 	/**
 	 * Checks if the client is currently connected to the server.
 	 *
@@ -163,62 +181,48 @@ public class BParkLauncherApp extends Application {
 		}
 
 		/**
-		 * Handles messages received from the server.
+		 * Handles messages received from the server. Decoding happens off the FX
+		 * thread; see {@link ClientReceivePipeline}.
 		 *
 		 * @param msg The incoming message object.
 		 */
 		@Override
 		protected void handleMessageFromServer(Object msg) {
-			Platform.runLater(() -> {
-				try {
-					Object message = msg;
-					if (message instanceof byte[]) {
-						message = ClientMessageHandler.deserialize(msg);
-					}
-
-					if (message instanceof Message) {
-						ClientMessageHandler.handleMessage((Message) message);
-					} else if (message instanceof String) {
-						ClientMessageHandler.handleStringMessage((String) message);
-					}
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			});
+			ConnectionManager.dataReceived();
+			ClientReceivePipeline.receive(msg);
 		}
 
 		/**
-		 * Called when the connection to the server is closed.
+		 * Called when the connection to the server is closed. Unless it was
+		 * closed on purpose, the {@link ConnectionManager} reconnects.
 		 */
 		@Override
 		protected void connectionClosed() {
 			System.out.println("Connection closed");
+			ConnectionManager.connectionLost(this);
 		}
 
 		/**
-		 * Called when there is a connection exception.
+		 * Called when there is a connection exception. The
+		 * {@link ConnectionManager} reconnects.
 		 *
 		 * @param exception The thrown exception.
 		 */
 		@Override
 		protected void connectionException(Exception exception) {
 			System.out.println("Connection error: " + exception.getMessage());
+			ConnectionManager.connectionLost(this);
 		}
 	}
 
 	/**
-	 * Sends a serialized message object to the server.
+	 * Sends a serialized message object to the server. While the connection is
+	 * being reopened, the message is queued; see {@link ConnectionManager}.
 	 *
 	 * @param msg The message to send.
 	 */
 	public static void sendMessage(Message msg) {
-		try {
-			if (client != null && client.isConnected()) {
-				client.sendToServer(ClientMessageHandler.serialize(msg));
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		ConnectionManager.send(msg);
 	}
 
 	/**
@@ -227,13 +231,7 @@ public class BParkLauncherApp extends Application {
 	 * @param msg The string to send.
 	 */
 	public static void sendStringMessage(String msg) {
-		try {
-			if (client != null && client.isConnected()) {
-				client.sendToServer(msg);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		ConnectionManager.sendString(msg);
 	}
 
 	/**
@@ -277,8 +275,9 @@ public class BParkLauncherApp extends Application {
 	 */
 	public static void disconnect() {
 		try {
+			ConnectionManager.stop();
 			if (client != null && client.isConnected()) {
-				client.sendToServer("ClientDisconnect");
+				ConnectionManager.sendString("ClientDisconnect");
 				client.closeConnection();
 			}
 		} catch (Exception e) {
@@ -296,6 +295,8 @@ public class BParkLauncherApp extends Application {
 	public void stop() throws Exception {
 		// Clean up when application closes
 		disconnect();
+		FrameTimeMonitor.stop();
+		System.out.print(FrameTimeMonitor.getSummary());
 		super.stop();
 	}
 
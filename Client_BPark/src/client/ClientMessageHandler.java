@@ -8,15 +8,21 @@ import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import common.HistoryChanges;
+import common.KioskOperation;
+import common.KioskSnapshot;
 import common.Message;
+import common.OccupancyBucket;
 import common.ParkingOrder;
 import common.ParkingReport;
 import common.ParkingSubscriber;
+import common.SubscriberPage;
 import controllers.AttendantController;
 import controllers.ExtendParkingController;
 import controllers.KioskController;
 import controllers.LoginController;
 import controllers.ManagerController;
+import controllers.ParkingHistoryController;
 import controllers.UpdateProfileController;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -49,11 +55,15 @@ public class ClientMessageHandler {
 			break;
 
 		case KIOSK_LOGIN_RESPONSE:
-			handleKioskLoginResponse(message);
+			if (KioskOfflineStore.responseArrived(message)) {
+				handleKioskLoginResponse(message);
+			}
 			break;
 
 		case ENTER_PARKING_KIOSK_RESPONSE:
-			handleEnterParkingKioskResponse(message);
+			if (KioskOfflineStore.responseArrived(message)) {
+				handleEnterParkingKioskResponse(message);
+			}
 			break;
 
 		case RETRIEVE_CAR_KIOSK_RESPONSE:
@@ -61,11 +71,23 @@ public class ClientMessageHandler {
 			break;
 
 		case FORGOT_CODE_KIOSK_RESPONSE:
-			handleForgotCodeKioskResponse(message);
+			if (KioskOfflineStore.responseArrived(message)) {
+				handleForgotCodeKioskResponse(message);
+			}
+			break;
+
+		case KIOSK_SNAPSHOT_RESPONSE:
+			KioskOfflineStore.acceptSnapshot((KioskSnapshot) message.getContent());
+			break;
+
+		case KIOSK_JOURNAL_REPLAY_RESPONSE:
+			handleKioskJournalReplay(message);
 			break;
 
 		case ACTIVATE_RESERVATION_KIOSK_RESPONSE:
-			handleActivateReservationKioskResponse(message);
+			if (KioskOfflineStore.responseArrived(message)) {
+				handleActivateReservationKioskResponse(message);
+			}
 			break;
 
 		case PARKING_AVAILABILITY_RESPONSE:
@@ -88,6 +110,10 @@ public class ClientMessageHandler {
 			handleParkingHistory(message);
 			break;
 
+		case PARKING_HISTORY_CHANGES_RESPONSE:
+			handleParkingHistoryChanges(message);
+			break;
+
 		case MANAGER_SEND_REPORTS:
 			handleReports(message);
 			break;
@@ -96,6 +122,10 @@ public class ClientMessageHandler {
 			handleActiveParkings(message);
 			break;
 
+		case OCCUPANCY_HISTORY_RESPONSE:
+			handleOccupancyHistory(message);
+			break;
+
 		case UPDATE_SUBSCRIBER_RESPONSE:
 			handleUpdateResponse(message);
 			break;
@@ -117,7 +147,13 @@ public class ClientMessageHandler {
 			break;
 
 		case EXIT_PARKING_RESPONSE:
-			handleExitParkingResponse(message);
+			if (KioskOfflineStore.responseArrived(message)) {
+				handleExitParkingResponse(message);
+			}
+			break;
+
+		case SERVER_BUSY:
+			showAlert("Server Busy", "The server is busy right now. Please try again in a moment.");
 			break;
 
 		case SHOW_SUBSCRIBER_DETAILS:
@@ -138,6 +174,22 @@ public class ClientMessageHandler {
 				BParkClientScenes.getManagerController().updateSubscriberTable(subs);
 			break;
 
+		case SUBSCRIBER_PAGE_RESPONSE:
+			SubscriberPage page = (SubscriberPage) message.getContent();
+			if (BParkClientScenes.getAttendantController() != null)
+				BParkClientScenes.getAttendantController().showSubscriberPage(page);
+			if (BParkClientScenes.getManagerController() != null)
+				BParkClientScenes.getManagerController().showSubscriberPage(page);
+			break;
+
+		case SEARCH_SUBSCRIBERS_RESPONSE:
+			SubscriberPage results = (SubscriberPage) message.getContent();
+			if (BParkClientScenes.getAttendantController() != null)
+				BParkClientScenes.getAttendantController().showSubscriberSearchResults(results);
+			if (BParkClientScenes.getManagerController() != null)
+				BParkClientScenes.getManagerController().showSubscriberSearchResults(results);
+			break;
+
 		default:
 			System.out.println("Unknown message type: " + message.getType());
 		}
@@ -218,7 +270,7 @@ public class ClientMessageHandler {
 	 * @param message the message containing kiosk login data
 	 */
 	private static void handleKioskLoginResponse(Message message) {
-		KioskController.handleKioskLoginResult(message.getContent());
+		KioskController.handleKioskLoginResult(message.getContent(), message.getSessionToken());
 	}
 
 	/**
@@ -261,6 +313,16 @@ public class ClientMessageHandler {
 		showAlert("Activate Reservation", response);
 	}
 
+	/**
+	 * Handles the outcome of operations the kiosk recorded offline.
+	 *
+	 * @param message the message containing the replayed operations
+	 */
+	@SuppressWarnings("unchecked")
+	private static void handleKioskJournalReplay(Message message) {
+		KioskOfflineStore.acceptReplayResults((ArrayList<KioskOperation>) message.getContent());
+	}
+
 	/**
 	 * Handles the server's response regarding current parking availability.
 	 *
@@ -329,6 +391,27 @@ public class ClientMessageHandler {
 		});
 	}
 
+	/**
+	 * Handles the history records changed since the cached version. They are
+	 * merged into the cache and into the open history window, or a window is
+	 * opened with the merged history if none is showing.
+	 *
+	 * @param message the message containing a HistoryChanges
+	 */
+	private static void handleParkingHistoryChanges(Message message) {
+		HistoryChanges changes = (HistoryChanges) message.getContent();
+		ArrayList<ParkingOrder> history = HistoryCache.apply(BParkClientScenes.getCurrentUser(), changes);
+
+		ParkingHistoryController controller = BParkClientScenes.getParkingHistoryController();
+		if (controller != null && controller.isWindowShowing()) {
+			controller.mergeHistory(changes.getOrders());
+		} else {
+			Platform.runLater(() -> {
+				BParkClientScenes.showParkingHistoryWindow(history);
+			});
+		}
+	}
+
 	/**
 	 * Handles a report broadcast from the server to the manager screen.
 	 *
@@ -344,6 +427,21 @@ public class ClientMessageHandler {
 		}
 	}
 
+	/**
+	 * Handles the occupancy history sent to the manager screen.
+	 *
+	 * @param message the message containing a list of {@link OccupancyBucket}
+	 */
+	@SuppressWarnings("unchecked")
+	private static void handleOccupancyHistory(Message message) {
+		ArrayList<OccupancyBucket> buckets = (ArrayList<OccupancyBucket>) message.getContent();
+
+		ManagerController managerController = BParkClientScenes.getManagerController();
+		if (managerController != null) {
+			managerController.updateOccupancyChart(buckets);
+		}
+	}
+
 	/**
 	 * Handles a request for the list of currently active parkings.
 	 *
@@ -381,6 +479,10 @@ public class ClientMessageHandler {
 	 */
 	private static void handleSubscriberDataResponse(Message message) {
 		ParkingSubscriber subscriber = (ParkingSubscriber) message.getContent();
+		if (subscriber == null) {
+			showAlert("Update Profile", "Could not load your current details");
+			return;
+		}
 		Platform.runLater(() -> {
 			UpdateProfileController controller = BParkClientScenes.getUpdateProfileController();
 			controller.setFieldPrompts(subscriber.getEmail(), subscriber.getPhoneNumber(), subscriber.getCarNumber());
@@ -0,0 +1,206 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import common.Message;
+import common.Message.MessageType;
+import common.OccupancyBucket;
+import common.ParkingOrder;
+import common.ParkingSubscriber;
+import javafx.application.Platform;
+
+/**
+ * Receive path for messages from the server. Decoding and preparing a message
+ * happens on a background thread, so a large history or subscriber list does
+ * not block the JavaFX thread. Only the dispatch to the screens runs on the FX
+ * thread, and all messages that arrive before the next frame are dispatched by
+ * a single {@link Platform#runLater(Runnable)}.
+ *
+ * Responses that replace a whole table or chart (active parkings, subscriber
+ * list and search results, occupancy history, reports) are coalesced: if several of the same type
+ * are waiting, only the newest one is shown. All other messages are dispatched
+ * once each, in arrival order.
+ */
+public class ClientReceivePipeline {
+
+	/** Decodes and prepares messages, one at a time to keep arrival order */
+	private static final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "ClientDecoder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/** Prepared messages waiting for the FX thread, by coalescing key */
+	private static final Map<Object, Object> pending = new LinkedHashMap<>();
+
+	/** Set while a dispatch is scheduled on the FX thread */
+	private static final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+
+	/** Number of messages dropped because a newer one of the same type replaced them */
+	private static long coalesced = 0;
+
+	/**
+	 * Not instantiable.
+	 */
+	private ClientReceivePipeline() {
+	}
+
+	/**
+	 * Accepts a message as received from the connection. Called on the
+	 * connection's reader thread; returns immediately.
+	 *
+	 * @param raw the received object (serialized {@link Message} or String)
+	 */
+	public static void receive(Object raw) {
+		decoder.execute(() -> {
+			long started = System.nanoTime();
+			Object message = raw;
+			try {
+				if (message instanceof byte[]) {
+					message = ClientMessageHandler.deserialize(message);
+				}
+				if (message instanceof Message) {
+					if (!ConnectionManager.received((Message) message)) {
+						return;
+					}
+					prepare((Message) message);
+				}
+			} catch (Exception e) {
+				System.out.println("Error decoding message from server: " + e);
+				return;
+			}
+			FrameTimeMonitor.recordDecode(System.nanoTime() - started);
+			if (message != null) {
+				enqueue(message);
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of messages skipped because a newer one replaced them.
+	 *
+	 * @return coalesced message count
+	 */
+	public static synchronized long getCoalescedCount() {
+		return coalesced;
+	}
+
+	/**
+	 * Does the list work that does not need the FX thread: the lists are sorted
+	 * in the order the screens show them.
+	 *
+	 * @param message the decoded message; its content is changed in place
+	 */
+	@SuppressWarnings("unchecked")
+	private static void prepare(Message message) {
+		if (message.getType() == null || !(message.getContent() instanceof List)) {
+			return;
+		}
+		switch (message.getType()) {
+		case ACTIVE_PARKINGS_RESPONSE:
+			((List<ParkingOrder>) message.getContent()).sort(Comparator.comparing(ParkingOrder::getEntryTime,
+					Comparator.nullsLast(Comparator.naturalOrder())));
+			break;
+		case SHOW_ALL_SUBSCRIBERS:
+			((List<ParkingSubscriber>) message.getContent())
+					.sort(Comparator.comparingInt(ParkingSubscriber::getSubscriberID));
+			break;
+		case OCCUPANCY_HISTORY_RESPONSE:
+			((List<OccupancyBucket>) message.getContent()).sort(Comparator.comparing(OccupancyBucket::getStartTime,
+					Comparator.nullsLast(Comparator.naturalOrder())));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Returns whether a newer message of this type makes older waiting ones
+	 * obsolete.
+	 *
+	 * @param type the message type
+	 * @return true for responses that replace a whole table or chart
+	 */
+	private static boolean isReplaceable(MessageType type) {
+		if (type == null) {
+			return false;
+		}
+		switch (type) {
+		case ACTIVE_PARKINGS_RESPONSE:
+		case SHOW_ALL_SUBSCRIBERS:
+		case OCCUPANCY_HISTORY_RESPONSE:
+		case MANAGER_SEND_REPORTS:
+		case SEARCH_SUBSCRIBERS_RESPONSE:
+		case KIOSK_SNAPSHOT_RESPONSE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Adds a prepared message to the waiting set and schedules a dispatch if none
+	 * is scheduled yet.
+	 *
+	 * @param message the prepared message
+	 */
+	private static void enqueue(Object message) {
+		synchronized (ClientReceivePipeline.class) {
+			if (message instanceof Message && isReplaceable(((Message) message).getType())) {
+				MessageType type = ((Message) message).getType();
+				if (pending.remove(type) != null) {
+					coalesced++;
+				}
+				pending.put(type, message);
+			} else {
+				pending.put(new Object(), message);
+			}
+		}
+		if (dispatchScheduled.compareAndSet(false, true)) {
+			Platform.runLater(ClientReceivePipeline::dispatch);
+		}
+	}
+
+	/**
+	 * Dispatches all waiting messages to their handlers. Runs on the FX thread.
+	 */
+	private static void dispatch() {
+		dispatchScheduled.set(false);
+		List<Object> batch;
+		synchronized (ClientReceivePipeline.class) {
+			batch = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+
+		long started = System.nanoTime();
+		for (Object message : batch) {
+			try {
+				if (message instanceof Message) {
+					ClientMessageHandler.handleMessage((Message) message);
+				} else if (message instanceof String) {
+					ClientMessageHandler.handleStringMessage((String) message);
+				}
+			} catch (Exception e) {
+				System.out.println("Error handling " + describe(message) + ": " + e);
+			}
+		}
+		FrameTimeMonitor.recordDispatch(System.nanoTime() - started, batch.size());
+	}
+
+	/**
+	 * Names a received message for error output.
+	 *
+	 * @param message the message
+	 * @return the message type, or "server command" for strings
+	 */
+	private static String describe(Object message) {
+		return message instanceof Message ? String.valueOf(((Message) message).getType()) : "server command";
+	}
+}
@@ -0,0 +1,369 @@
+package client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import common.Message;
+import common.Message.MessageType;
+
+/**
+ * Keeps the connection to the server alive. When the connection drops, it is
+ * opened again after a random delay of up to {@link #BASE_DELAY_MILLIS},
+ * doubling with every failed attempt up to {@link #MAX_DELAY_MILLIS}. The
+ * randomness spreads the reconnects of all kiosks and desktops after a server
+ * restart, so the server is not hit by all of them at once.
+ *
+ * An idle connection is checked with a HEARTBEAT every
+ * {@link #HEARTBEAT_INTERVAL_MILLIS}. If nothing at all arrives from the server
+ * for {@link #HEARTBEAT_TIMEOUT_MILLIS}, the connection is considered dead and
+ * opened again, which also catches a server that vanished without closing the
+ * socket.
+ *
+ * Requests sent while reconnecting are queued and sent once the connection is
+ * back. Read requests that were sent but not answered when the connection
+ * dropped are sent again; other requests are not, since the server may
+ * already have applied them. Kiosk gate requests are not affected: the kiosk
+ * decides them offline while the server is away (see
+ * {@link KioskOfflineStore}). Kiosk sessions are bound to the connection, so a
+ * kiosk user is asked to log in again after a reconnect.
+ *
+ * All writes to the connection go through this class, so the heartbeat and
+ * the screens never write at the same time.
+ */
+public class ConnectionManager {
+
+	/** Upper bound of the first reconnect delay */
+	private static final long BASE_DELAY_MILLIS = 1_000;
+
+	/** Upper bound of the reconnect delay */
+	private static final long MAX_DELAY_MILLIS = 15_000;
+
+	/** Idle time after which a heartbeat is sent */
+	private static final long HEARTBEAT_INTERVAL_MILLIS = 5_000;
+
+	/** Silence from the server after which the connection is considered dead */
+	private static final long HEARTBEAT_TIMEOUT_MILLIS = 15_000;
+
+	/** Requests kept while reconnecting; the oldest are dropped beyond that */
+	private static final int MAX_QUEUED = 200;
+
+	/** Unanswered read requests kept for replay */
+	private static final int MAX_IN_FLIGHT = 50;
+
+	/** Response type of each read request, which is safe to send again */
+	private static final Map<MessageType, MessageType> REPLAYABLE = new EnumMap<>(MessageType.class);
+
+	static {
+		REPLAYABLE.put(MessageType.CHECK_PARKING_AVAILABILITY, MessageType.PARKING_AVAILABILITY_RESPONSE);
+		REPLAYABLE.put(MessageType.GET_PARKING_HISTORY, MessageType.PARKING_HISTORY_RESPONSE);
+		REPLAYABLE.put(MessageType.GET_PARKING_HISTORY_CHANGES, MessageType.PARKING_HISTORY_CHANGES_RESPONSE);
+		REPLAYABLE.put(MessageType.GET_ACTIVE_PARKINGS, MessageType.ACTIVE_PARKINGS_RESPONSE);
+		REPLAYABLE.put(MessageType.MANAGER_GET_REPORTS, MessageType.MANAGER_SEND_REPORTS);
+		REPLAYABLE.put(MessageType.GET_OCCUPANCY_HISTORY, MessageType.OCCUPANCY_HISTORY_RESPONSE);
+		REPLAYABLE.put(MessageType.GET_ALL_SUBSCRIBERS, MessageType.SHOW_ALL_SUBSCRIBERS);
+		REPLAYABLE.put(MessageType.GET_SUBSCRIBER_BY_NAME, MessageType.SHOW_SUBSCRIBER_DETAILS);
+		REPLAYABLE.put(MessageType.GET_SUBSCRIBER_PAGE, MessageType.SUBSCRIBER_PAGE_RESPONSE);
+		REPLAYABLE.put(MessageType.SEARCH_SUBSCRIBERS, MessageType.SEARCH_SUBSCRIBERS_RESPONSE);
+		REPLAYABLE.put(MessageType.REQUEST_SUBSCRIBER_DATA, MessageType.SUBSCRIBER_DATA_RESPONSE);
+		REPLAYABLE.put(MessageType.GET_KIOSK_SNAPSHOT, MessageType.KIOSK_SNAPSHOT_RESPONSE);
+	}
+
+	/** Runs reconnect attempts and the heartbeat check */
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "ClientConnection");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/** Guards the connection's output stream and the state below */
+	private static final Object lock = new Object();
+
+	/** Whether the heartbeat check is scheduled */
+	private static boolean started = false;
+
+	/** Set while the connection is closed on purpose; no reconnect then */
+	private static boolean stopped = true;
+
+	/** Set while a lost connection is being opened again */
+	private static boolean reconnecting = false;
+
+	/** Failed reconnect attempts since the connection was lost */
+	private static int attempt = 0;
+
+	/** Requests sent while reconnecting, oldest first */
+	private static final ArrayDeque<Message> queued = new ArrayDeque<>();
+
+	/** Read requests sent and not answered yet, oldest first */
+	private static final ArrayDeque<Message> inFlight = new ArrayDeque<>();
+
+	/** Time anything was last received from the server */
+	private static volatile long lastReceived = 0;
+
+	/** Time the last heartbeat was sent */
+	private static long lastHeartbeat = 0;
+
+	/**
+	 * Not instantiable.
+	 */
+	private ConnectionManager() {
+	}
+
+	/**
+	 * Starts watching a connection that was just opened by the user.
+	 */
+	public static void connected() {
+		synchronized (lock) {
+			stopped = false;
+			reconnecting = false;
+			lastReceived = System.currentTimeMillis();
+			if (!started) {
+				started = true;
+				timer.scheduleWithFixedDelay(ConnectionManager::checkHeartbeat, 1, 1, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Stops reconnecting before the user closes the connection. Queued and
+	 * unanswered requests are dropped.
+	 */
+	public static void stop() {
+		synchronized (lock) {
+			stopped = true;
+			reconnecting = false;
+			queued.clear();
+			inFlight.clear();
+		}
+	}
+
+	/**
+	 * Returns whether a lost connection is being opened again.
+	 *
+	 * @return true while reconnecting
+	 */
+	public static boolean isReconnecting() {
+		synchronized (lock) {
+			return reconnecting;
+		}
+	}
+
+	/**
+	 * Sends a request, or queues it while reconnecting. Without a connection the
+	 * request is dropped.
+	 *
+	 * @param msg the request
+	 */
+	public static void send(Message msg) {
+		byte[] data = ClientMessageHandler.serialize(msg);
+		synchronized (lock) {
+			if (reconnecting) {
+				if (msg.getType() != MessageType.HEARTBEAT) {
+					if (queued.size() >= MAX_QUEUED) {
+						System.out.println("Reconnect queue full, dropping " + queued.pollFirst().getType());
+					}
+					queued.addLast(msg);
+				}
+				return;
+			}
+			write(msg, data);
+		}
+	}
+
+	/**
+	 * Sends a plain string, if connected.
+	 *
+	 * @param text the string
+	 */
+	public static void sendString(String text) {
+		synchronized (lock) {
+			write(null, text);
+		}
+	}
+
+	/**
+	 * Notes that data arrived from the server. Called on the connection's reader
+	 * thread.
+	 */
+	public static void dataReceived() {
+		lastReceived = System.currentTimeMillis();
+	}
+
+	/**
+	 * Notes a decoded message from the server: the read request it answers is
+	 * no longer in flight.
+	 *
+	 * @param message the message
+	 * @return false for messages that only concern the connection and must not
+	 *         be dispatched
+	 */
+	public static boolean received(Message message) {
+		MessageType type = message.getType();
+		if (type == MessageType.HEARTBEAT_RESPONSE) {
+			return false;
+		}
+		synchronized (lock) {
+			if (type == MessageType.SERVER_BUSY && message.getContent() instanceof MessageType rejected) {
+				if (rejected == MessageType.HEARTBEAT) {
+					return false;
+				}
+				removeInFlight(request -> request == rejected);
+			} else {
+				removeInFlight(request -> REPLAYABLE.get(request) == type);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reports a connection that closed or failed. Starts reconnecting unless the
+	 * connection was closed on purpose or has already been replaced.
+	 *
+	 * @param lost the client whose connection ended
+	 */
+	static void connectionLost(Object lost) {
+		synchronized (lock) {
+			if (stopped || reconnecting || lost != BParkLauncherApp.getClient()) {
+				return;
+			}
+			reconnecting = true;
+			attempt = 0;
+		}
+		System.out.println("Connection to server lost, reconnecting");
+		scheduleReconnect();
+	}
+
+	/**
+	 * Writes a message to the connection, if there is one. Must hold the lock.
+	 *
+	 * @param msg  the request, or null for a plain string
+	 * @param data what to write
+	 */
+	private static void write(Message msg, Object data) {
+		BParkLauncherApp.BParkClient client = BParkLauncherApp.getClient();
+		if (client == null || !client.isConnected()) {
+			return;
+		}
+		if (msg != null && REPLAYABLE.containsKey(msg.getType())) {
+			if (inFlight.size() >= MAX_IN_FLIGHT) {
+				inFlight.pollFirst();
+			}
+			inFlight.addLast(msg);
+		}
+		try {
+			client.sendToServer(data);
+		} catch (IOException e) {
+			System.out.println("Error sending to server: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Removes the oldest in-flight request whose type matches.
+	 *
+	 * @param matches test on the request type
+	 */
+	private static void removeInFlight(Predicate<MessageType> matches) {
+		Iterator<Message> it = inFlight.iterator();
+		while (it.hasNext()) {
+			if (matches.test(it.next().getType())) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Schedules the next reconnect attempt after a random delay below the
+	 * current backoff bound.
+	 */
+	private static void scheduleReconnect() {
+		long bound;
+		synchronized (lock) {
+			bound = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 10));
+			attempt++;
+		}
+		long delay = ThreadLocalRandom.current().nextLong(bound + 1);
+		timer.schedule(ConnectionManager::reconnect, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Tries to open the connection again. On success, the requests that were in
+	 * flight and the queued ones are sent, in that order.
+	 */
+	private static void reconnect() {
+		synchronized (lock) {
+			if (stopped || !reconnecting) {
+				return;
+			}
+		}
+		try {
+			BParkLauncherApp.reopenConnection();
+		} catch (IOException e) {
+			System.out.println("Reconnect attempt " + attempt + " failed: " + e.getMessage());
+			scheduleReconnect();
+			return;
+		}
+
+		synchronized (lock) {
+			if (stopped) {
+				return;
+			}
+			reconnecting = false;
+			lastReceived = System.currentTimeMillis();
+			List<Message> replay = new ArrayList<>(inFlight);
+			replay.addAll(queued);
+			inFlight.clear();
+			queued.clear();
+			System.out.println("Reconnected to server after " + attempt + " attempt(s), sending " + replay.size()
+					+ " pending request(s)");
+			for (Message msg : replay) {
+				write(msg, ClientMessageHandler.serialize(msg));
+			}
+		}
+	}
+
+	/**
+	 * Sends a heartbeat on an idle connection, and reconnects a connection that
+	 * is gone or silent for too long.
+	 */
+	private static void checkHeartbeat() {
+		BParkLauncherApp.BParkClient client;
+		synchronized (lock) {
+			if (stopped || reconnecting) {
+				return;
+			}
+			client = BParkLauncherApp.getClient();
+		}
+		if (client == null) {
+			return;
+		}
+		if (!client.isConnected()) {
+			// Closed without notice, e.g. while it was being replaced
+			connectionLost(client);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - lastReceived > HEARTBEAT_TIMEOUT_MILLIS) {
+			System.out.println("No data from server for " + (now - lastReceived) / 1000 + " s, closing connection");
+			try {
+				client.closeConnection();
+			} catch (IOException e) {
+				System.out.println("Error closing connection: " + e.getMessage());
+			}
+			connectionLost(client);
+		} else if (now - lastReceived > HEARTBEAT_INTERVAL_MILLIS && now - lastHeartbeat > HEARTBEAT_INTERVAL_MILLIS) {
+			lastHeartbeat = now;
+			send(new Message(MessageType.HEARTBEAT, null));
+		}
+	}
+}
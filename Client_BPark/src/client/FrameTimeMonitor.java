@@ -0,0 +1,186 @@
+package client;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Measures how responsive the JavaFX thread is. It always records how long
+ * decoding took on the background thread and how long dispatching took on the
+ * FX thread. When started with {@code -Dbpark.client.frameStats=true}, it also
+ * measures the time between frames; a gap longer than {@link #STALL_MILLIS} is
+ * a visible freeze and is logged when it happens.
+ *
+ * {@link #getSummary()} is printed when the application exits.
+ */
+public class FrameTimeMonitor {
+
+	/** Frame gap that counts as a visible freeze */
+	private static final long STALL_MILLIS = 100;
+
+	/** Upper bounds in milliseconds of the histogram buckets; the last is open */
+	private static final long[] BUCKET_BOUNDS = { 17, 33, 50, 100, 250, 500, 1000 };
+
+	/** Frame gap histogram (frame stats only) */
+	private static final long[] frameBuckets = new long[BUCKET_BOUNDS.length + 1];
+
+	/** Dispatch time histogram */
+	private static final long[] dispatchBuckets = new long[BUCKET_BOUNDS.length + 1];
+
+	/** Number of measured frames */
+	private static long frames = 0;
+
+	/** Longest frame gap in milliseconds */
+	private static long maxFrameMillis = 0;
+
+	/** Number of frame gaps longer than {@link #STALL_MILLIS} */
+	private static long stalls = 0;
+
+	/** Number of dispatches to the FX thread */
+	private static long dispatches = 0;
+
+	/** Number of messages dispatched */
+	private static long dispatchedMessages = 0;
+
+	/** Longest dispatch in milliseconds */
+	private static long maxDispatchMillis = 0;
+
+	/** Number of decoded messages */
+	private static long decoded = 0;
+
+	/** Total decoding time in nanoseconds */
+	private static long decodeNanos = 0;
+
+	/** Longest decoding in milliseconds */
+	private static long maxDecodeMillis = 0;
+
+	/** Frame timer, null while frame stats are off */
+	private static AnimationTimer timer;
+
+	/**
+	 * Not instantiable.
+	 */
+	private FrameTimeMonitor() {
+	}
+
+	/**
+	 * Starts measuring frame gaps if {@code bpark.client.frameStats} is set. Must
+	 * be called on the FX thread.
+	 */
+	public static void start() {
+		if (timer != null || !Boolean.getBoolean("bpark.client.frameStats")) {
+			return;
+		}
+		timer = new AnimationTimer() {
+			/** Time of the previous frame, 0 before the first */
+			private long last = 0;
+
+			@Override
+			public void handle(long now) {
+				if (last != 0) {
+					recordFrame((now - last) / 1_000_000);
+				}
+				last = now;
+			}
+		};
+		timer.start();
+	}
+
+	/**
+	 * Stops measuring frame gaps. Must be called on the FX thread.
+	 */
+	public static void stop() {
+		if (timer != null) {
+			timer.stop();
+			timer = null;
+		}
+	}
+
+	/**
+	 * Records the decoding of one message on the background thread.
+	 *
+	 * @param nanos decoding time in nanoseconds
+	 */
+	static synchronized void recordDecode(long nanos) {
+		decoded++;
+		decodeNanos += nanos;
+		maxDecodeMillis = Math.max(maxDecodeMillis, nanos / 1_000_000);
+	}
+
+	/**
+	 * Records one dispatch on the FX thread.
+	 *
+	 * @param nanos    dispatch time in nanoseconds
+	 * @param messages number of messages dispatched
+	 */
+	static synchronized void recordDispatch(long nanos, int messages) {
+		long millis = nanos / 1_000_000;
+		dispatches++;
+		dispatchedMessages += messages;
+		maxDispatchMillis = Math.max(maxDispatchMillis, millis);
+		dispatchBuckets[bucketOf(millis)]++;
+	}
+
+	/**
+	 * Records the gap between two frames.
+	 *
+	 * @param millis gap in milliseconds
+	 */
+	private static synchronized void recordFrame(long millis) {
+		frames++;
+		maxFrameMillis = Math.max(maxFrameMillis, millis);
+		frameBuckets[bucketOf(millis)]++;
+		if (millis > STALL_MILLIS) {
+			stalls++;
+			System.out.println("UI frame took " + millis + " ms");
+		}
+	}
+
+	/**
+	 * Returns a summary of the recorded times.
+	 *
+	 * @return multi-line summary text
+	 */
+	public static synchronized String getSummary() {
+		StringBuilder sb = new StringBuilder("Client receive path:\n");
+		sb.append(String.format("  decode:   %d messages, avg %.2f ms, max %d ms (background thread)%n", decoded,
+				decoded == 0 ? 0.0 : decodeNanos / 1_000_000.0 / decoded, maxDecodeMillis));
+		sb.append(String.format("  dispatch: %d runLater for %d messages (%d coalesced), max %d ms, %s%n",
+				dispatches, dispatchedMessages, ClientReceivePipeline.getCoalescedCount(), maxDispatchMillis,
+				histogram(dispatchBuckets)));
+		if (frames > 0) {
+			sb.append(String.format("  frames:   %d, max gap %d ms, %d over %d ms, %s%n", frames, maxFrameMillis,
+					stalls, STALL_MILLIS, histogram(frameBuckets)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the histogram bucket of a duration.
+	 *
+	 * @param millis the duration
+	 * @return bucket index
+	 */
+	private static int bucketOf(long millis) {
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			if (millis <= BUCKET_BOUNDS[i]) {
+				return i;
+			}
+		}
+		return BUCKET_BOUNDS.length;
+	}
+
+	/**
+	 * Formats a histogram as "&lt;=17ms:n &lt;=33ms:n ... &gt;1000ms:n".
+	 *
+	 * @param buckets the bucket counts
+	 * @return formatted histogram
+	 */
+	private static String histogram(long[] buckets) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			sb.append("<=").append(BUCKET_BOUNDS[i]).append("ms:").append(buckets[i]).append(' ');
+		}
+		sb.append('>').append(BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1]).append("ms:")
+				.append(buckets[BUCKET_BOUNDS.length]);
+		return sb.toString();
+	}
+}
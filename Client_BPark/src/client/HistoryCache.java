@@ -0,0 +1,309 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import common.HistoryChanges;
+import common.ParkingOrder;
+
+/**
+ * Local copy of each subscriber's parking history, kept in memory and in a
+ * compact file under {@code ~/.bpark/history}. The history window opens from
+ * the cache right away; only records created or changed since the cached
+ * version are then requested from the server (GET_PARKING_HISTORY_CHANGES)
+ * and merged in.
+ *
+ * There is one file per server and username. The file stores the version and
+ * one fixed-layout record per session, gzip-compressed, and is replaced
+ * atomically on every save. A file that cannot be read is ignored and the full
+ * history is fetched again.
+ */
+public class HistoryCache {
+
+	/** File format marker ("BPH" + format version 1) */
+	private static final int FILE_MAGIC = 0x42504801;
+
+	/** Directory of the cache files */
+	private static final Path CACHE_DIR = Paths.get(System.getProperty("user.home"), ".bpark", "history");
+
+	/** Cached histories by file name, loaded on first use */
+	private static final Map<String, HistoryChanges> cache = new HashMap<>();
+
+	/** Reads and writes the cache files off the FX thread, one at a time */
+	private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "HistoryCacheIO");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Not instantiable.
+	 */
+	private HistoryCache() {
+	}
+
+	/**
+	 * Opens the history window for a subscriber: shows the cached history, if
+	 * any, and asks the server for the changes since the cached version. The
+	 * cache file is read in the background.
+	 *
+	 * @param userName the subscriber's username
+	 */
+	public static void open(String userName) {
+		io.execute(() -> {
+			HistoryChanges cached = get(userName);
+			if (cached != null) {
+				javafx.application.Platform
+						.runLater(() -> BParkClientScenes.showParkingHistoryWindow(cached.getOrders()));
+			}
+			requestChanges(userName, cached != null ? cached.getVersion() : 0);
+		});
+	}
+
+	/**
+	 * Asks the server for the changes since the cached version, e.g. on refresh.
+	 *
+	 * @param userName the subscriber's username
+	 */
+	public static void refresh(String userName) {
+		io.execute(() -> {
+			HistoryChanges cached = get(userName);
+			requestChanges(userName, cached != null ? cached.getVersion() : 0);
+		});
+	}
+
+	/**
+	 * Merges changes received from the server into the cache and saves it in the
+	 * background.
+	 *
+	 * @param userName the subscriber's username
+	 * @param changes  the records changed since the cached version
+	 * @return the full merged history, newest first
+	 */
+	public static ArrayList<ParkingOrder> apply(String userName, HistoryChanges changes) {
+		HistoryChanges merged;
+		synchronized (cache) {
+			HistoryChanges cached = cache.get(fileName(userName));
+			merged = new HistoryChanges(
+					merge(cached != null ? cached.getOrders() : new ArrayList<>(), changes.getOrders()),
+					changes.getVersion());
+			cache.put(fileName(userName), merged);
+		}
+		io.execute(() -> save(userName, merged));
+		return merged.getOrders();
+	}
+
+	/**
+	 * Merges changed records into a history: records with a known order ID are
+	 * replaced in place, new records are added at the top.
+	 *
+	 * @param history the current history, newest first
+	 * @param changes the changed records, newest first
+	 * @return a new merged list
+	 */
+	public static ArrayList<ParkingOrder> merge(List<ParkingOrder> history, List<ParkingOrder> changes) {
+		Map<Integer, ParkingOrder> changed = new HashMap<>();
+		for (ParkingOrder order : changes) {
+			changed.put(order.getOrderID(), order);
+		}
+
+		ArrayList<ParkingOrder> added = new ArrayList<>();
+		ArrayList<ParkingOrder> rest = new ArrayList<>(history.size());
+		for (ParkingOrder order : history) {
+			ParkingOrder replacement = changed.remove(order.getOrderID());
+			rest.add(replacement != null ? replacement : order);
+		}
+		for (ParkingOrder order : changes) {
+			if (changed.containsKey(order.getOrderID())) {
+				added.add(order);
+			}
+		}
+		added.addAll(rest);
+		return added;
+	}
+
+	/**
+	 * Returns the cached history of a subscriber, reading the file on first use.
+	 *
+	 * @param userName the subscriber's username
+	 * @return the cached history, or null if there is none
+	 */
+	private static HistoryChanges get(String userName) {
+		String fileName = fileName(userName);
+		synchronized (cache) {
+			if (cache.containsKey(fileName)) {
+				return cache.get(fileName);
+			}
+		}
+		HistoryChanges loaded = load(CACHE_DIR.resolve(fileName));
+		synchronized (cache) {
+			cache.putIfAbsent(fileName, loaded);
+			return cache.get(fileName);
+		}
+	}
+
+	/**
+	 * Sends the change request to the server.
+	 *
+	 * @param userName the subscriber's username
+	 * @param version  the cached version, 0 for the full history
+	 */
+	private static void requestChanges(String userName, long version) {
+		BParkClientScenes.sendMessage(new common.Message(common.Message.MessageType.GET_PARKING_HISTORY_CHANGES,
+				userName + "," + version));
+	}
+
+	/**
+	 * Returns the cache file name for a username on the current server.
+	 *
+	 * @param userName the subscriber's username
+	 * @return file name containing only safe characters
+	 */
+	private static String fileName(String userName) {
+		String key = BParkLauncherApp.getServerIP() + "_" + BParkLauncherApp.getServerPort() + "_" + userName;
+		return key.replaceAll("[^A-Za-z0-9._-]", "_") + ".hist";
+	}
+
+	/**
+	 * Reads a cache file.
+	 *
+	 * @param file the file
+	 * @return the cached history, or null if the file is missing or unreadable
+	 */
+	private static HistoryChanges load(Path file) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			if (in.readInt() != FILE_MAGIC) {
+				return null;
+			}
+			long version = in.readLong();
+			int count = in.readInt();
+			ArrayList<ParkingOrder> orders = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				ParkingOrder order = new ParkingOrder();
+				order.setOrderID(in.readInt());
+				order.setParkingCode(readString(in));
+				order.setSubscriberName(readString(in));
+				order.setOrderType(readString(in));
+				order.setSpotNumber(readString(in));
+				order.setStatus(readString(in));
+				order.setEntryTime(readTime(in));
+				order.setExitTime(readTime(in));
+				order.setExpectedExitTime(readTime(in));
+				order.setEstimatedStartTime(readTime(in));
+				order.setLate(in.readBoolean());
+				order.setExtended(in.readBoolean());
+				orders.add(order);
+			}
+			return new HistoryChanges(orders, version);
+		} catch (IOException e) {
+			System.out.println("Ignoring unreadable history cache " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a cache file, replacing the old one atomically.
+	 *
+	 * @param userName the subscriber's username
+	 * @param history  the history to store
+	 */
+	private static void save(String userName, HistoryChanges history) {
+		Path file = CACHE_DIR.resolve(fileName(userName));
+		Path tmp = CACHE_DIR.resolve(fileName(userName) + ".tmp");
+		try {
+			Files.createDirectories(CACHE_DIR);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+				out.writeInt(FILE_MAGIC);
+				out.writeLong(history.getVersion());
+				out.writeInt(history.getOrders().size());
+				for (ParkingOrder order : history.getOrders()) {
+					out.writeInt(order.getOrderID());
+					writeString(out, order.getParkingCode());
+					writeString(out, order.getSubscriberName());
+					writeString(out, order.getOrderType());
+					writeString(out, order.getSpotNumber());
+					writeString(out, order.getStatus());
+					writeTime(out, order.getEntryTime());
+					writeTime(out, order.getExitTime());
+					writeTime(out, order.getExpectedExitTime());
+					writeTime(out, order.getEstimatedStartTime());
+					out.writeBoolean(order.isLate());
+					out.writeBoolean(order.isExtended());
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Error saving history cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a nullable string.
+	 *
+	 * @param out   the stream
+	 * @param value the string, may be null
+	 * @throws IOException if writing fails
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Reads a nullable string.
+	 *
+	 * @param in the stream
+	 * @return the string, or null
+	 * @throws IOException if reading fails
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Writes a nullable time as epoch seconds, {@link Long#MIN_VALUE} for null.
+	 *
+	 * @param out  the stream
+	 * @param time the time, may be null
+	 * @throws IOException if writing fails
+	 */
+	private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+		out.writeLong(time != null ? time.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+	}
+
+	/**
+	 * Reads a nullable time written by {@link #writeTime}.
+	 *
+	 * @param in the stream
+	 * @return the time, or null
+	 * @throws IOException if reading fails
+	 */
+	private static LocalDateTime readTime(DataInputStream in) throws IOException {
+		long seconds = in.readLong();
+		return seconds != Long.MIN_VALUE ? LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) : null;
+	}
+}
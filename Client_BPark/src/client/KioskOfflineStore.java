@@ -0,0 +1,909 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import common.KioskOperation;
+import common.KioskSnapshot;
+import common.Message;
+import common.Message.MessageType;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+/**
+ * Lets the kiosk admit and release cars while the server is slow or cannot be
+ * reached. The kiosk keeps a snapshot of the free spots, the preorder and
+ * active sessions and the subscribers (GET_KIOSK_SNAPSHOT), refreshed every
+ * minute and saved under {@code ~/.bpark/kiosk}. A gate request with an
+ * operation ID is sent again every {@link #RETRY_INTERVAL} until it is
+ * answered; the server answers all copies with the result of the first. A
+ * request that cannot be sent, or that gets no answer within
+ * {@link #GATE_TIMEOUT}, is decided from the snapshot instead, and the operation is appended to a journal file that
+ * is flushed to disk before the driver gets a receipt.
+ *
+ * Once the server answers again, the journaled operations are replayed in
+ * order (REPLAY_KIOSK_JOURNAL). The server detects operations that were
+ * already applied, so a batch whose answer was lost is simply sent again.
+ * Each journal record carries a length and a CRC32, so a record torn by a
+ * power loss is dropped when the journal is read. The journal is emptied when
+ * all operations are replayed.
+ *
+ * Gate methods must be called on the FX thread; they write the journal
+ * synchronously.
+ */
+public class KioskOfflineStore {
+
+	/** Time to wait for a gate response before deciding offline */
+	private static final Duration GATE_TIMEOUT = Duration.seconds(3);
+
+	/** Time after which a gate request with an operation ID is sent again */
+	private static final Duration RETRY_INTERVAL = Duration.millis(750);
+
+	/** Seconds between checks for operations to replay and snapshot age */
+	private static final int SYNC_PERIOD_SECONDS = 15;
+
+	/** Age at which the snapshot is refreshed */
+	private static final java.time.Duration SNAPSHOT_REFRESH = java.time.Duration.ofMinutes(1);
+
+	/** Age after which the snapshot is too old to decide offline */
+	private static final java.time.Duration MAX_SNAPSHOT_AGE = java.time.Duration.ofHours(12);
+
+	/** Time after which an unanswered replay is sent again */
+	private static final java.time.Duration REPLAY_TIMEOUT = java.time.Duration.ofMinutes(2);
+
+	/** Operations per replay request */
+	private static final int REPLAY_BATCH = 200;
+
+	/** Journal size above which replayed records are dropped from the file */
+	private static final long COMPACT_SIZE = 1 << 20;
+
+	/** Longest valid journal record */
+	private static final int MAX_RECORD = 1 << 16;
+
+	/** Journal record of a new operation */
+	private static final byte RECORD_OPERATION = 1;
+
+	/** Journal record of a replayed operation */
+	private static final byte RECORD_DONE = 2;
+
+	/** Minutes a reservation may be activated after its start */
+	private static final int ARRIVAL_GRACE_MINUTES = 15;
+
+	/** Hours of a spontaneous parking session */
+	private static final int DEFAULT_PARKING_HOURS = 4;
+
+	/** Lock for the snapshot, the pending operations and the journal */
+	private static final Object lock = new Object();
+
+	/** The last snapshot from the server, or null */
+	private static KioskSnapshot snapshot;
+
+	/** Operations not replayed yet by operation ID, in journal order */
+	private static final LinkedHashMap<String, KioskOperation> pending = new LinkedHashMap<>();
+
+	/** Directory of the snapshot and journal of the current server */
+	private static Path dir;
+
+	/** The journal file, open for appending */
+	private static FileChannel journal;
+
+	/** When the snapshot was last requested, null if never */
+	private static LocalDateTime snapshotRequestedAt;
+
+	/** When the replay waiting for an answer was sent, null if none */
+	private static LocalDateTime replaySentAt;
+
+	/** The gate response being waited for, or null (FX thread) */
+	private static MessageType awaited;
+
+	/** Operation ID of the gate request being waited for, or null (FX thread) */
+	private static String awaitedOperation;
+
+	/** Ends the wait for the gate response (FX thread) */
+	private static PauseTransition gateTimer;
+
+	/** Sends the gate request again while it is waited for (FX thread) */
+	private static Timeline retryTimer;
+
+	/** Gate responses still to come after their wait ended (FX thread) */
+	private static final Map<MessageType, Integer> late = new EnumMap<>(MessageType.class);
+
+	/** Reads and writes the files and replays the journal */
+	private static ScheduledExecutorService io;
+
+	/**
+	 * Not instantiable.
+	 */
+	private KioskOfflineStore() {
+	}
+
+	/**
+	 * Loads the snapshot and journal of the current server in the background and
+	 * starts the periodic replay and snapshot refresh. Does nothing if already
+	 * started.
+	 */
+	public static synchronized void start() {
+		if (io != null) {
+			return;
+		}
+		String key = BParkLauncherApp.getServerIP() + "_" + BParkLauncherApp.getServerPort();
+		dir = Paths.get(System.getProperty("user.home"), ".bpark", "kiosk", key.replaceAll("[^A-Za-z0-9._-]", "_"));
+		io = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "KioskOfflineStore");
+			t.setDaemon(true);
+			return t;
+		});
+		io.execute(KioskOfflineStore::load);
+		io.scheduleWithFixedDelay(KioskOfflineStore::sync, SYNC_PERIOD_SECONDS, SYNC_PERIOD_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Sends a gate request, or decides it offline. The offline decision runs
+	 * right away if the server is not connected, or when the response has not
+	 * arrived within {@link #GATE_TIMEOUT}. A response arriving after that is
+	 * dropped by {@link #responseArrived}. A request with an operation ID is
+	 * sent again until it is answered.
+	 *
+	 * @param msg          the request
+	 * @param responseType the type of its response
+	 * @param offline      decides the request from the snapshot
+	 */
+	public static void sendOrDecideOffline(Message msg, MessageType responseType, Runnable offline) {
+		if (!BParkKioskScenes.isConnected()) {
+			// Responses of the old connection will not arrive any more
+			late.clear();
+			offline.run();
+			return;
+		}
+		BParkKioskScenes.sendMessage(msg);
+		stopWaiting();
+		awaited = responseType;
+		awaitedOperation = msg.getOperationID();
+		if (awaitedOperation != null) {
+			retryTimer = new Timeline(new KeyFrame(RETRY_INTERVAL, e -> {
+				if (BParkKioskScenes.isConnected()) {
+					BParkKioskScenes.sendMessage(msg);
+				}
+			}));
+			retryTimer.setCycleCount(Animation.INDEFINITE);
+			retryTimer.play();
+		}
+		gateTimer = new PauseTransition(GATE_TIMEOUT);
+		gateTimer.setOnFinished(e -> {
+			if (awaited == responseType) {
+				if (awaitedOperation == null) {
+					late.merge(responseType, 1, Integer::sum);
+				}
+				stopWaiting();
+				System.out.println("No response to " + msg.getType() + " in time, deciding offline");
+				offline.run();
+			}
+		});
+		gateTimer.play();
+	}
+
+	/**
+	 * Stops waiting for the current gate response.
+	 */
+	private static void stopWaiting() {
+		if (gateTimer != null) {
+			gateTimer.stop();
+		}
+		if (retryTimer != null) {
+			retryTimer.stop();
+			retryTimer = null;
+		}
+		awaited = null;
+		awaitedOperation = null;
+	}
+
+	/**
+	 * Notes the arrival of a response. Must be called before a gate response is
+	 * shown. Responses carrying an operation ID are matched by the ID, others by
+	 * type.
+	 *
+	 * @param response the response
+	 * @return false if the response answers a request that was already answered
+	 *         or decided offline, and must be dropped
+	 */
+	public static boolean responseArrived(Message response) {
+		MessageType type = response.getType();
+		if (response.getOperationID() != null) {
+			if (response.getOperationID().equals(awaitedOperation)) {
+				stopWaiting();
+				return true;
+			}
+			System.out.println("Dropping " + type + " of operation " + response.getOperationID()
+					+ ", already answered or decided offline");
+			return false;
+		}
+		if (type == awaited && awaitedOperation == null) {
+			stopWaiting();
+			return true;
+		}
+		Integer count = late.get(type);
+		if (count != null) {
+			if (count > 1) {
+				late.put(type, count - 1);
+			} else {
+				late.remove(type);
+			}
+			System.out.println("Dropping late " + type + ", the request was decided offline");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether offline decisions are possible.
+	 *
+	 * @return true if there is a snapshot that is not too old
+	 */
+	public static boolean isAvailable() {
+		synchronized (lock) {
+			return usableSnapshot() != null;
+		}
+	}
+
+	/**
+	 * Checks a kiosk login against the snapshot.
+	 *
+	 * @param userID   the user ID
+	 * @param username the username entered, or null for an RF login
+	 * @return the username to greet the user with, or null if the login fails
+	 */
+	public static String login(int userID, String username) {
+		synchronized (lock) {
+			KioskSnapshot current = usableSnapshot();
+			String known = current != null ? current.getUsername(userID) : null;
+			if (known == null || (username != null && !known.equalsIgnoreCase(username.trim()))) {
+				return null;
+			}
+			return known;
+		}
+	}
+
+	/**
+	 * Admits a car without a reservation: gives out a free spot and journals the
+	 * entry. The parking code is issued by the server when the entry is
+	 * replayed.
+	 *
+	 * @param userID the logged-in user
+	 * @return the message for the driver
+	 */
+	public static String enter(int userID) {
+		synchronized (lock) {
+			KioskSnapshot current = usableSnapshot();
+			if (current == null) {
+				return offlineUnavailable();
+			}
+			LocalDateTime now = LocalDateTime.now().withNano(0);
+			if (findActiveSession(current, userID) != null || findOfflineEntry(userID) != null) {
+				return "You already have an active parking session.";
+			}
+			int spotID = findFreeSpot(current, now);
+			if (spotID == -1) {
+				return "Parking is full. Try later.";
+			}
+			if (!record(new KioskOperation(UUID.randomUUID().toString(), KioskOperation.Type.ENTRY, userID, 0,
+					spotID, now, null))) {
+				return "The entry could not be recorded. Please contact the parking attendant.";
+			}
+			return "Entry recorded offline. Spot: " + spotID
+					+ ". Your parking code will be issued when the system is back online; use 'Forgot code' then to receive it.";
+		}
+	}
+
+	/**
+	 * Releases a car and journals the exit. A code of an active session must
+	 * belong to the user. A user whose entry was recorded offline has no code
+	 * yet; their car is released by the login alone.
+	 *
+	 * @param parkingCode the code entered
+	 * @param userID      the logged-in user
+	 * @return the message for the driver
+	 */
+	public static String exit(int parkingCode, int userID) {
+		synchronized (lock) {
+			KioskSnapshot current = usableSnapshot();
+			if (current == null) {
+				return offlineUnavailable();
+			}
+			LocalDateTime now = LocalDateTime.now().withNano(0);
+			KioskSnapshot.Session session = findSession(current, parkingCode);
+			KioskOperation exit;
+			LocalDateTime expectedEnd;
+			if (session != null && isParked(session)) {
+				if (session.getUserID() != userID) {
+					return "Access denied: This parking session does not belong to your account.";
+				}
+				exit = new KioskOperation(UUID.randomUUID().toString(), KioskOperation.Type.EXIT, userID,
+						parkingCode, 0, now, null);
+				expectedEnd = session.getEstimatedEnd();
+			} else {
+				KioskOperation entry = findOfflineEntry(userID);
+				if (entry == null) {
+					return "Invalid parking code or already exited";
+				}
+				exit = new KioskOperation(UUID.randomUUID().toString(), KioskOperation.Type.EXIT, userID, 0, 0, now,
+						entry.getTime());
+				expectedEnd = entry.getTime().plusHours(DEFAULT_PARKING_HOURS);
+			}
+			if (!record(exit)) {
+				return "The exit could not be recorded. Please contact the parking attendant.";
+			}
+			if (expectedEnd != null && now.isAfter(expectedEnd)) {
+				return "Exit successful. You were late - please arrive on time for future reservations";
+			}
+			return "Exit successful. Thank you for using ParkB!";
+		}
+	}
+
+	/**
+	 * Activates a reservation of the user and journals the activation, with the
+	 * same time rules as the server.
+	 *
+	 * @param reservationCode the reservation code entered
+	 * @param userID          the logged-in user
+	 * @return the message for the driver
+	 */
+	public static String activate(int reservationCode, int userID) {
+		synchronized (lock) {
+			KioskSnapshot current = usableSnapshot();
+			if (current == null) {
+				return offlineUnavailable();
+			}
+			LocalDateTime now = LocalDateTime.now().withNano(0);
+			KioskSnapshot.Session session = findSession(current, reservationCode);
+			if (session == null || session.isActive() || session.getUserID() != userID
+					|| findPending(KioskOperation.Type.ACTIVATE, reservationCode) != null) {
+				return "Invalid reservation code or reservation not in preorder status.";
+			}
+			LocalDateTime start = session.getEstimatedStart();
+			if (!start.toLocalDate().equals(now.toLocalDate())) {
+				return start.isBefore(now) ? "Reservation expired (wrong date)." : "Reservation is for a future date.";
+			}
+			if (!start.isAfter(now.minusMinutes(ARRIVAL_GRACE_MINUTES + 1))) {
+				return "Reservation expired: arrived more than 15 min late.";
+			}
+			if (!record(new KioskOperation(UUID.randomUUID().toString(), KioskOperation.Type.ACTIVATE, userID,
+					reservationCode, session.getSpotID(), now, null))) {
+				return "The activation could not be recorded. Please contact the parking attendant.";
+			}
+			return "Entry successful! Reservation activated. Parking code: " + reservationCode + ". Spot: "
+					+ session.getSpotID();
+		}
+	}
+
+	/**
+	 * Shows the user's parking code from the snapshot, since it cannot be
+	 * emailed offline.
+	 *
+	 * @param userID the logged-in user
+	 * @return the message for the driver
+	 */
+	public static String forgotCode(int userID) {
+		synchronized (lock) {
+			KioskSnapshot current = usableSnapshot();
+			if (current == null) {
+				return offlineUnavailable();
+			}
+			KioskSnapshot.Session session = findActiveSession(current, userID);
+			if (session != null) {
+				return "The system is offline, so the code cannot be emailed. Your parking code is: "
+						+ session.getCode();
+			}
+			if (findOfflineEntry(userID) != null) {
+				return "Your parking code will be issued when the system is back online.";
+			}
+			return "No active parking session found.";
+		}
+	}
+
+	/**
+	 * Stores a new snapshot from the server and saves it in the background.
+	 *
+	 * @param received the snapshot
+	 */
+	public static void acceptSnapshot(KioskSnapshot received) {
+		synchronized (lock) {
+			snapshot = received;
+		}
+		if (io != null) {
+			io.execute(() -> saveSnapshot(received));
+		}
+	}
+
+	/**
+	 * Records the outcome of replayed operations in the journal in the
+	 * background. Operations without an outcome, or that failed on the server,
+	 * stay in the journal. A fresh snapshot is requested afterwards, since the
+	 * current one does not include the replayed operations.
+	 *
+	 * @param replayed the operations with their outcome
+	 */
+	public static void acceptReplayResults(ArrayList<KioskOperation> replayed) {
+		if (io == null) {
+			return;
+		}
+		io.execute(() -> {
+			synchronized (lock) {
+				for (KioskOperation operation : replayed) {
+					KioskOperation.Outcome outcome = operation.getOutcome();
+					if (outcome == null || outcome == KioskOperation.Outcome.FAILED
+							|| !pending.containsKey(operation.getOperationID())) {
+						continue;
+					}
+					if (outcome == KioskOperation.Outcome.REJECTED) {
+						System.out.println("Offline " + operation.getType() + " of user " + operation.getUserID()
+								+ " at " + operation.getTime() + " rejected by the server: " + operation.getResult());
+					}
+					try {
+						appendRecord(doneRecord(operation));
+						pending.remove(operation.getOperationID());
+					} catch (IOException e) {
+						System.out.println("Error writing kiosk journal: " + e.getMessage());
+						break;
+					}
+				}
+				replaySentAt = null;
+				snapshotRequestedAt = null;
+				compact();
+			}
+			sync();
+		});
+	}
+
+	/**
+	 * Replays pending operations, or refreshes the snapshot when it is old.
+	 * Runs on the I/O thread.
+	 */
+	private static void sync() {
+		if (!BParkKioskScenes.isConnected()) {
+			return;
+		}
+		Message request = null;
+		synchronized (lock) {
+			LocalDateTime now = LocalDateTime.now();
+			if (!pending.isEmpty()) {
+				if (replaySentAt == null || replaySentAt.plus(REPLAY_TIMEOUT).isBefore(now)) {
+					ArrayList<KioskOperation> batch = new ArrayList<>();
+					for (KioskOperation operation : pending.values()) {
+						if (batch.size() == REPLAY_BATCH) {
+							break;
+						}
+						batch.add(operation);
+					}
+					replaySentAt = now;
+					request = new Message(MessageType.REPLAY_KIOSK_JOURNAL, batch);
+				}
+			} else if (snapshotRequestedAt == null || snapshotRequestedAt.plus(SNAPSHOT_REFRESH).isBefore(now)) {
+				snapshotRequestedAt = now;
+				request = new Message(MessageType.GET_KIOSK_SNAPSHOT, null);
+			}
+		}
+		if (request != null) {
+			BParkKioskScenes.sendMessage(request);
+		}
+	}
+
+	/**
+	 * Returns the snapshot if it is recent enough to decide offline.
+	 *
+	 * @return the snapshot, or null
+	 */
+	private static KioskSnapshot usableSnapshot() {
+		if (snapshot == null || snapshot.getTakenAt().plus(MAX_SNAPSHOT_AGE).isBefore(LocalDateTime.now())) {
+			return null;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the message shown when offline decisions are not possible.
+	 *
+	 * @return the message
+	 */
+	private static String offlineUnavailable() {
+		return "The parking system cannot be reached. Please try again later or contact the parking attendant.";
+	}
+
+	/**
+	 * Returns the snapshot session with a code.
+	 *
+	 * @param current the snapshot
+	 * @param code    the parking or reservation code
+	 * @return the session, or null
+	 */
+	private static KioskSnapshot.Session findSession(KioskSnapshot current, int code) {
+		for (KioskSnapshot.Session session : current.getSessions()) {
+			if (session.getCode() == code) {
+				return session;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the snapshot session in which a user's car is parked, counting
+	 * journaled activations and exits.
+	 *
+	 * @param current the snapshot
+	 * @param userID  the user
+	 * @return the session, or null
+	 */
+	private static KioskSnapshot.Session findActiveSession(KioskSnapshot current, int userID) {
+		for (KioskSnapshot.Session session : current.getSessions()) {
+			if (session.getUserID() == userID && isParked(session)) {
+				return session;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether the car of a snapshot session is parked: the session is
+	 * active or was activated offline, and was not exited offline.
+	 *
+	 * @param session the session
+	 * @return true if the car is parked
+	 */
+	private static boolean isParked(KioskSnapshot.Session session) {
+		boolean started = session.isActive()
+				|| findPending(KioskOperation.Type.ACTIVATE, session.getCode()) != null;
+		return started && findPending(KioskOperation.Type.EXIT, session.getCode()) == null;
+	}
+
+	/**
+	 * Returns the journaled entry of a user that was not exited yet.
+	 *
+	 * @param userID the user
+	 * @return the entry, or null
+	 */
+	private static KioskOperation findOfflineEntry(int userID) {
+		KioskOperation entry = null;
+		for (KioskOperation operation : pending.values()) {
+			if (operation.getUserID() != userID) {
+				continue;
+			}
+			if (operation.getType() == KioskOperation.Type.ENTRY) {
+				entry = operation;
+			} else if (entry != null && operation.getType() == KioskOperation.Type.EXIT
+					&& entry.getTime().equals(operation.getEntryTime())) {
+				entry = null;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the journaled operation of a type for a code.
+	 *
+	 * @param type the operation type
+	 * @param code the parking or reservation code
+	 * @return the operation, or null
+	 */
+	private static KioskOperation findPending(KioskOperation.Type type, int code) {
+		for (KioskOperation operation : pending.values()) {
+			if (operation.getType() == type && operation.getCode() == code) {
+				return operation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Picks the lowest free spot, as the server does. Spots of parked cars and
+	 * spots reserved for a reservation that may arrive during a default stay are
+	 * taken; spots freed by journaled exits are free again.
+	 *
+	 * @param current the snapshot
+	 * @param now     the current time
+	 * @return the spot ID, or -1 if the parking is full
+	 */
+	private static int findFreeSpot(KioskSnapshot current, LocalDateTime now) {
+		TreeSet<Integer> candidates = new TreeSet<>(current.getFreeSpots());
+		TreeSet<Integer> taken = new TreeSet<>();
+		LocalDateTime stayEnd = now.plusHours(DEFAULT_PARKING_HOURS);
+		for (KioskSnapshot.Session session : current.getSessions()) {
+			if (session.isActive()) {
+				candidates.add(session.getSpotID());
+			}
+			if (isParked(session) || (!session.isActive() && session.getEstimatedStart().isBefore(stayEnd)
+					&& session.getEstimatedStart().isAfter(now.minusMinutes(ARRIVAL_GRACE_MINUTES + 1)))) {
+				taken.add(session.getSpotID());
+			}
+		}
+		for (KioskOperation operation : pending.values()) {
+			if (operation.getType() == KioskOperation.Type.ENTRY) {
+				candidates.add(operation.getSpotID());
+				if (findOfflineEntry(operation.getUserID()) == operation) {
+					taken.add(operation.getSpotID());
+				}
+			}
+		}
+		candidates.removeAll(taken);
+		return candidates.isEmpty() ? -1 : candidates.first();
+	}
+
+	/**
+	 * Appends an operation to the journal and flushes it to disk.
+	 *
+	 * @param operation the operation
+	 * @return true if the operation is stored durably
+	 */
+	private static boolean record(KioskOperation operation) {
+		try {
+			appendRecord(operationRecord(operation));
+			pending.put(operation.getOperationID(), operation);
+			return true;
+		} catch (IOException e) {
+			System.out.println("Error writing kiosk journal: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Appends a framed record to the journal and forces it to disk.
+	 *
+	 * @param payload the record
+	 * @throws IOException if the journal cannot be written
+	 */
+	private static void appendRecord(byte[] payload) throws IOException {
+		if (journal == null) {
+			Files.createDirectories(dir);
+			journal = FileChannel.open(dir.resolve("journal.log"), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer buffer = ByteBuffer.allocate(payload.length + 8);
+		buffer.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+		while (buffer.hasRemaining()) {
+			journal.write(buffer);
+		}
+		journal.force(false);
+	}
+
+	/**
+	 * Encodes a new operation.
+	 *
+	 * @param operation the operation
+	 * @return the record
+	 * @throws IOException never, writes to memory
+	 */
+	private static byte[] operationRecord(KioskOperation operation) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(RECORD_OPERATION);
+			out.writeUTF(operation.getOperationID());
+			out.writeByte(operation.getType().ordinal());
+			out.writeInt(operation.getUserID());
+			out.writeInt(operation.getCode());
+			out.writeInt(operation.getSpotID());
+			writeTime(out, operation.getTime());
+			writeTime(out, operation.getEntryTime());
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Encodes the outcome of a replayed operation.
+	 *
+	 * @param operation the replayed operation
+	 * @return the record
+	 * @throws IOException never, writes to memory
+	 */
+	private static byte[] doneRecord(KioskOperation operation) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(RECORD_DONE);
+			out.writeUTF(operation.getOperationID());
+			out.writeByte(operation.getOutcome().ordinal());
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the snapshot and the journal. A torn record at the end of the
+	 * journal is cut off.
+	 */
+	private static void load() {
+		KioskSnapshot saved = loadSnapshot();
+		synchronized (lock) {
+			if (snapshot == null) {
+				snapshot = saved;
+			}
+			Path file = dir.resolve("journal.log");
+			if (!Files.exists(file)) {
+				return;
+			}
+			long valid = 0;
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				while (true) {
+					int length = in.readInt();
+					if (length <= 0 || length > MAX_RECORD) {
+						break;
+					}
+					byte[] payload = new byte[length];
+					in.readFully(payload);
+					CRC32 crc = new CRC32();
+					crc.update(payload);
+					if (in.readInt() != (int) crc.getValue()) {
+						break;
+					}
+					applyRecord(payload);
+					valid += length + 8;
+				}
+			} catch (EOFException e) {
+				// End of the journal, possibly inside a torn record
+			} catch (IOException e) {
+				System.out.println("Error reading kiosk journal: " + e.getMessage());
+			}
+			try {
+				journal = FileChannel.open(file, StandardOpenOption.WRITE);
+				if (journal.size() > valid) {
+					System.out.println("Cutting torn record off the kiosk journal at " + valid);
+					journal.truncate(valid);
+					journal.force(false);
+				}
+				journal.position(valid);
+			} catch (IOException e) {
+				System.out.println("Error opening kiosk journal: " + e.getMessage());
+			}
+			System.out.println("Kiosk journal loaded, " + pending.size() + " operations to replay");
+		}
+	}
+
+	/**
+	 * Applies one journal record to the pending operations.
+	 *
+	 * @param payload the record
+	 * @throws IOException if the record is malformed
+	 */
+	private static void applyRecord(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		byte kind = in.readByte();
+		String operationID = in.readUTF();
+		if (kind == RECORD_OPERATION) {
+			KioskOperation.Type type = KioskOperation.Type.values()[in.readByte()];
+			int userID = in.readInt();
+			int code = in.readInt();
+			int spotID = in.readInt();
+			LocalDateTime time = readTime(in);
+			LocalDateTime entryTime = readTime(in);
+			pending.put(operationID, new KioskOperation(operationID, type, userID, code, spotID, time, entryTime));
+		} else if (kind == RECORD_DONE) {
+			pending.remove(operationID);
+		}
+	}
+
+	/**
+	 * Empties the journal when nothing is left to replay, or rewrites it with
+	 * only the pending operations when it has grown large. The new journal is
+	 * written next to the old one and moved over it atomically.
+	 */
+	private static void compact() {
+		try {
+			if (journal == null) {
+				return;
+			}
+			if (pending.isEmpty()) {
+				journal.truncate(0);
+				journal.force(false);
+				return;
+			}
+			if (journal.size() < COMPACT_SIZE) {
+				return;
+			}
+			Path file = dir.resolve("journal.log");
+			Path tmp = dir.resolve("journal.log.tmp");
+			journal.close();
+			journal = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			for (KioskOperation operation : pending.values()) {
+				appendRecord(operationRecord(operation));
+			}
+			journal.close();
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			journal = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			System.out.println("Error compacting kiosk journal: " + e.getMessage());
+			journal = null;
+		}
+	}
+
+	/**
+	 * Reads the saved snapshot.
+	 *
+	 * @return the snapshot, or null if there is none or it cannot be read
+	 */
+	private static KioskSnapshot loadSnapshot() {
+		Path file = dir.resolve("snapshot.bin");
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			return (KioskSnapshot) in.readObject();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			System.out.println("Ignoring unreadable kiosk snapshot: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Saves a snapshot, replacing the old one atomically.
+	 *
+	 * @param saved the snapshot
+	 */
+	private static void saveSnapshot(KioskSnapshot saved) {
+		Path file = dir.resolve("snapshot.bin");
+		Path tmp = dir.resolve("snapshot.bin.tmp");
+		try {
+			Files.createDirectories(dir);
+			try (ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+				out.writeObject(saved);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Error saving kiosk snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a nullable time as epoch seconds, {@link Long#MIN_VALUE} for null.
+	 *
+	 * @param out  the stream
+	 * @param time the time, may be null
+	 * @throws IOException if writing fails
+	 */
+	private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+		out.writeLong(time != null ? time.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+	}
+
+	/**
+	 * Reads a nullable time written by {@link #writeTime}.
+	 *
+	 * @param in the stream
+	 * @return the time, or null
+	 * @throws IOException if reading fails
+	 */
+	private static LocalDateTime readTime(DataInputStream in) throws IOException {
+		long seconds = in.readLong();
+		return seconds != Long.MIN_VALUE ? LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) : null;
+	}
+}
@@ -0,0 +1,241 @@
+package client;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import common.Message;
+import common.Message.MessageType;
+import common.ParkingSubscriber;
+import common.SubscriberPage;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+
+/**
+ * Server-backed row list for a subscriber table. The list reports the size of
+ * the full subscriber list, but only holds the pages of rows the table has
+ * asked for: a row that is not loaded yet is shown as a placeholder, and its
+ * page is requested with GET_SUBSCRIBER_PAGE. Since a TableView only asks for
+ * the rows it displays, scrolling through 500k subscribers loads a few pages
+ * at a time. At most {@link #MAX_PAGES} pages are kept.
+ *
+ * A search field can be attached: while it contains text, the table shows the
+ * best matches from SEARCH_SUBSCRIBERS instead, requested shortly after the
+ * user stops typing.
+ *
+ * All methods must be called on the FX thread.
+ */
+public class SubscriberTableModel extends ObservableListBase<ParkingSubscriber> {
+
+	/** Rows per page */
+	private static final int PAGE_SIZE = 100;
+
+	/** Pages kept in memory */
+	private static final int MAX_PAGES = 30;
+
+	/** Number of search results requested */
+	private static final int SEARCH_LIMIT = 50;
+
+	/** Typing pause before a search is sent */
+	private static final Duration SEARCH_DELAY = Duration.millis(150);
+
+	/** Row shown while its page is loading */
+	private static final ParkingSubscriber LOADING = new ParkingSubscriber(0, "", "Loading...", "", "", "", "");
+
+	/** Loaded pages by page number, least recently used first */
+	private final LinkedHashMap<Integer, List<ParkingSubscriber>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<ParkingSubscriber>> eldest) {
+			return size() > MAX_PAGES;
+		}
+	};
+
+	/** Pages requested but not received yet */
+	private final Set<Integer> requested = new HashSet<>();
+
+	/** Pages to request at the end of the current layout pass */
+	private final Set<Integer> toRequest = new HashSet<>();
+
+	/** Size of the full subscriber list, as last reported by the server */
+	private int total = 0;
+
+	/** The table showing this model */
+	private TableView<ParkingSubscriber> table;
+
+	/** The search field, or null */
+	private TextField searchField;
+
+	/** Delays search requests until typing pauses */
+	private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+
+	/**
+	 * Returns whether a row is the placeholder of a row still loading.
+	 *
+	 * @param subscriber the row
+	 * @return true for the placeholder
+	 */
+	public static boolean isPlaceholder(ParkingSubscriber subscriber) {
+		return subscriber == LOADING;
+	}
+
+	/**
+	 * Shows this model in a table; call {@link #refresh()} to load it. Sorting by
+	 * column is turned off, since the rows are ordered by User_ID on the server.
+	 *
+	 * @param table       the table
+	 * @param searchField search field to attach, or null
+	 */
+	public void bind(TableView<ParkingSubscriber> table, TextField searchField) {
+		this.table = table;
+		this.searchField = searchField;
+		for (TableColumn<ParkingSubscriber, ?> column : table.getColumns()) {
+			column.setSortable(false);
+		}
+		table.setItems(this);
+		if (searchField != null) {
+			searchDelay.setOnFinished(e -> search(searchField.getText()));
+			searchField.textProperty().addListener((obs, oldText, newText) -> {
+				if (newText == null || newText.trim().isEmpty()) {
+					searchDelay.stop();
+					table.setItems(this);
+				} else {
+					searchDelay.playFromStart();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Drops all loaded pages and requests the first one again.
+	 */
+	public void refresh() {
+		pages.clear();
+		requested.clear();
+		request(0);
+	}
+
+	/**
+	 * Accepts a page from the server. Rows of the page that are on screen are
+	 * redrawn; if the size of the list changed, the whole table is.
+	 *
+	 * @param page the page
+	 */
+	public void acceptPage(SubscriberPage page) {
+		int pageNumber = page.getOffset() / PAGE_SIZE;
+		requested.remove(pageNumber);
+		pages.put(pageNumber, page.getRows());
+
+		if (page.getTotal() != total) {
+			int oldTotal = total;
+			total = page.getTotal();
+			beginChange();
+			if (total > oldTotal) {
+				nextAdd(oldTotal, total);
+			} else {
+				nextRemove(total, Collections.nCopies(oldTotal - total, LOADING));
+			}
+			endChange();
+		}
+
+		int from = page.getOffset();
+		int to = Math.min(total, from + page.getRows().size());
+		if (to > from) {
+			beginChange();
+			for (int i = from; i < to; i++) {
+				nextSet(i, LOADING);
+			}
+			endChange();
+		}
+	}
+
+	/**
+	 * Shows the results of a search, unless the search text has changed since.
+	 *
+	 * @param results the best matches, with the query they answer
+	 */
+	public void acceptSearchResults(SubscriberPage results) {
+		if (table == null || searchField == null || !results.getQuery().equals(searchField.getText())) {
+			return;
+		}
+		table.setItems(FXCollections.observableArrayList(results.getRows()));
+	}
+
+	/**
+	 * Returns the row at an index, or the placeholder while its page loads.
+	 *
+	 * @param index the row index
+	 * @return the row
+	 */
+	@Override
+	public ParkingSubscriber get(int index) {
+		if (index < 0 || index >= total) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + total);
+		}
+		int pageNumber = index / PAGE_SIZE;
+		List<ParkingSubscriber> page = pages.get(pageNumber);
+		if (page != null && index % PAGE_SIZE < page.size()) {
+			return page.get(index % PAGE_SIZE);
+		}
+		request(pageNumber);
+		return LOADING;
+	}
+
+	/**
+	 * Returns the size of the full subscriber list.
+	 *
+	 * @return the number of rows
+	 */
+	@Override
+	public int size() {
+		return total;
+	}
+
+	/**
+	 * Requests a page unless it is already on its way. Requests made while the
+	 * table is laid out are sent together afterwards.
+	 *
+	 * @param pageNumber the page number
+	 */
+	private void request(int pageNumber) {
+		if (!requested.add(pageNumber)) {
+			return;
+		}
+		if (toRequest.isEmpty()) {
+			Platform.runLater(this::sendRequests);
+		}
+		toRequest.add(pageNumber);
+	}
+
+	/**
+	 * Sends the collected page requests.
+	 */
+	private void sendRequests() {
+		for (int pageNumber : toRequest) {
+			BParkClientScenes.sendMessage(
+					new Message(MessageType.GET_SUBSCRIBER_PAGE, pageNumber * PAGE_SIZE + "," + PAGE_SIZE));
+		}
+		toRequest.clear();
+	}
+
+	/**
+	 * Sends a search request.
+	 *
+	 * @param query the search text
+	 */
+	private void search(String query) {
+		if (query != null && !query.trim().isEmpty()) {
+			BParkClientScenes.sendMessage(new Message(MessageType.SEARCH_SUBSCRIBERS, SEARCH_LIMIT + "," + query));
+		}
+	}
+}
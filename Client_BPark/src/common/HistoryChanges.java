@@ -0,0 +1,53 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Parking history records of one subscriber that were created or changed since
+ * a given version, together with the version to ask from next time. A version
+ * is the last-modified time (epoch milliseconds) of the newest record the
+ * client has seen; version 0 asks for the full history.
+ */
+public class HistoryChanges implements Serializable {
+
+	/**
+	 * Unique identifier for serialization compatibility.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/** New or changed records, newest first */
+	private ArrayList<ParkingOrder> orders;
+
+	/** Version of the newest record included */
+	private long version;
+
+	/**
+	 * Constructs a history change set.
+	 *
+	 * @param orders  new or changed records, newest first
+	 * @param version version of the newest record included
+	 */
+	public HistoryChanges(ArrayList<ParkingOrder> orders, long version) {
+		this.orders = orders;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the new or changed records.
+	 *
+	 * @return records, newest first
+	 */
+	public ArrayList<ParkingOrder> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * Returns the version to send with the next change request.
+	 *
+	 * @return version in epoch milliseconds
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,187 @@
+package common;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A gate operation a kiosk performed while the server could not be reached,
+ * sent later with REPLAY_KIOSK_JOURNAL. The server applies it as of the time
+ * it happened at the gate and fills in the outcome. Replaying an operation
+ * that was already applied is detected from the parking state and reported as
+ * {@link Outcome#DUPLICATE}, so a kiosk can safely send it again.
+ */
+public class KioskOperation implements Serializable {
+
+	/**
+	 * Unique identifier for serialization compatibility.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Kind of gate operation.
+	 */
+	public enum Type {
+		/** Spontaneous entry; the spot given out at the gate is in spotID */
+		ENTRY,
+		/** Exit of an active session by code, or of an offline entry by entryTime */
+		EXIT,
+		/** Arrival with a reservation; the reservation code is in code */
+		ACTIVATE
+	}
+
+	/**
+	 * Result of replaying an operation.
+	 */
+	public enum Outcome {
+		/** The operation was applied now */
+		APPLIED,
+		/** The operation had already been applied */
+		DUPLICATE,
+		/** The operation conflicts with the parking state and was not applied */
+		REJECTED,
+		/** The operation could not be processed now and must be sent again */
+		FAILED
+	}
+
+	/** Unique ID of the operation, assigned by the kiosk */
+	private final String operationID;
+
+	/** Kind of operation */
+	private final Type type;
+
+	/** The subscriber logged in at the kiosk */
+	private final int userID;
+
+	/** Parking or reservation code, 0 if none */
+	private final int code;
+
+	/** Spot given out at the gate, 0 if none */
+	private final int spotID;
+
+	/** When the operation happened at the gate */
+	private final LocalDateTime time;
+
+	/** For the exit of an offline entry: the time of that entry */
+	private final LocalDateTime entryTime;
+
+	/** Result of the replay, null until replayed */
+	private Outcome outcome;
+
+	/** Description of the result, null until replayed */
+	private String result;
+
+	/**
+	 * Constructs an operation.
+	 *
+	 * @param operationID unique ID of the operation
+	 * @param type        kind of operation
+	 * @param userID      the subscriber logged in at the kiosk
+	 * @param code        parking or reservation code, 0 if none
+	 * @param spotID      spot given out at the gate, 0 if none
+	 * @param time        when the operation happened at the gate
+	 * @param entryTime   for the exit of an offline entry, the time of that
+	 *                    entry; otherwise null
+	 */
+	public KioskOperation(String operationID, Type type, int userID, int code, int spotID, LocalDateTime time,
+			LocalDateTime entryTime) {
+		this.operationID = operationID;
+		this.type = type;
+		this.userID = userID;
+		this.code = code;
+		this.spotID = spotID;
+		this.time = time;
+		this.entryTime = entryTime;
+	}
+
+	/**
+	 * Returns the unique ID of the operation.
+	 *
+	 * @return the operation ID
+	 */
+	public String getOperationID() {
+		return operationID;
+	}
+
+	/**
+	 * Returns the kind of operation.
+	 *
+	 * @return the type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the subscriber logged in at the kiosk.
+	 *
+	 * @return the User_ID
+	 */
+	public int getUserID() {
+		return userID;
+	}
+
+	/**
+	 * Returns the parking or reservation code.
+	 *
+	 * @return the code, 0 if none
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the spot given out at the gate.
+	 *
+	 * @return the spot ID, 0 if none
+	 */
+	public int getSpotID() {
+		return spotID;
+	}
+
+	/**
+	 * Returns when the operation happened at the gate.
+	 *
+	 * @return the gate time
+	 */
+	public LocalDateTime getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the time of the offline entry this exit ends.
+	 *
+	 * @return the entry time, or null if the exit is by code
+	 */
+	public LocalDateTime getEntryTime() {
+		return entryTime;
+	}
+
+	/**
+	 * Returns the result of the replay.
+	 *
+	 * @return the outcome, null until replayed
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Returns the description of the result.
+	 *
+	 * @return the result text, null until replayed
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * Records the result of the replay.
+	 *
+	 * @param outcome the outcome
+	 * @param result  description of the result
+	 */
+	public void setResult(Outcome outcome, String result) {
+		this.outcome = outcome;
+		this.result = result;
+	}
+}
@@ -108,6 +108,21 @@ public class ParkingReport implements Serializable {
 	/** Number of total parking spots */
 	private int totalSpots;
 
+	/** Parking duration percentiles: "p50"/"p90"/"p99" -> minutes */
+	private Map<String, Integer> parkingTimePercentiles;
+
+	/** Late exit percentiles: "p50"/"p90"/"p99" -> minutes past the end time */
+	private Map<String, Integer> lateExitPercentiles;
+
+	/** Parking duration histogram: duration range -> number of sessions */
+	private Map<String, Integer> parkingTimeHistogram;
+
+	/**
+	 * Relative standard error of the distinct subscriber counts (0 when they were
+	 * counted exactly)
+	 */
+	private double subscriberCountError;
+
 	/** Default constructor */
 	public ParkingReport() {
 	}
@@ -613,6 +628,83 @@ public class ParkingReport implements Serializable {
 	public void setTotalSpots(int totalSpots) {
 		this.totalSpots = totalSpots;
 	}
+
+	/**
+	 * Returns the parking duration percentiles. Map format: percentile label
+	 * ("p50", "p90", "p99") -> minutes
+	 *
+	 * @return map of percentile label to minutes
+	 */
+	public Map<String, Integer> getParkingTimePercentiles() {
+		return parkingTimePercentiles;
+	}
+
+	/**
+	 * Sets the parking duration percentiles.
+	 *
+	 * @param m map of percentile label to minutes
+	 */
+	public void setParkingTimePercentiles(Map<String, Integer> m) {
+		this.parkingTimePercentiles = m;
+	}
+
+	/**
+	 * Returns the late exit percentiles, measured in minutes past the estimated
+	 * end time of late sessions. Map format: percentile label -> minutes
+	 *
+	 * @return map of percentile label to minutes
+	 */
+	public Map<String, Integer> getLateExitPercentiles() {
+		return lateExitPercentiles;
+	}
+
+	/**
+	 * Sets the late exit percentiles.
+	 *
+	 * @param m map of percentile label to minutes
+	 */
+	public void setLateExitPercentiles(Map<String, Integer> m) {
+		this.lateExitPercentiles = m;
+	}
+
+	/**
+	 * Returns the parking duration histogram. Map format: duration range (e.g.
+	 * "1-2h") -> number of sessions
+	 *
+	 * @return map of duration range to session count
+	 */
+	public Map<String, Integer> getParkingTimeHistogram() {
+		return parkingTimeHistogram;
+	}
+
+	/**
+	 * Sets the parking duration histogram.
+	 *
+	 * @param m map of duration range to session count
+	 */
+	public void setParkingTimeHistogram(Map<String, Integer> m) {
+		this.parkingTimeHistogram = m;
+	}
+
+	/**
+	 * Returns the relative standard error of the active subscriber and
+	 * subscribers-per-day counts, e.g. 0.016 for +-1.6%. Zero means the counts are
+	 * exact.
+	 *
+	 * @return relative standard error of the subscriber counts
+	 */
+	public double getSubscriberCountError() {
+		return subscriberCountError;
+	}
+
+	/**
+	 * Sets the relative standard error of the subscriber counts.
+	 *
+	 * @param subscriberCountError relative standard error (0 for exact counts)
+	 */
+	public void setSubscriberCountError(double subscriberCountError) {
+		this.subscriberCountError = subscriberCountError;
+	}
 	// Utility methods
 
 	/**
@@ -685,6 +777,8 @@ public class ParkingReport implements Serializable {
 		return "ParkingReport{" + "reportType='" + reportType + '\'' + ", reportDate=" + reportDate + ", totalParkings="
 				+ totalParkings + ", averageParkingTime=" + averageParkingTime + ", lateExits=" + lateExits
 				+ ", extensions=" + extensions + ", activeSubscribers=" + activeSubscribers + ", totalOrders="
-				+ totalOrders + ", reservations=" + reservations + ", immediateEntries=" + immediateEntries + '}';
+				+ totalOrders + ", reservations=" + reservations + ", immediateEntries=" + immediateEntries
+				+ ", parkingTimePercentiles=" + parkingTimePercentiles + ", lateExitPercentiles=" + lateExitPercentiles
+				+ '}';
 	}
 }
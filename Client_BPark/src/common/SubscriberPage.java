@@ -0,0 +1,82 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * A window of rows of the subscriber list, or the top results of a subscriber
+ * search. For a window, {@link #getOffset()} is the position of the first row
+ * in the full list ordered by User_ID and {@link #getTotal()} is the size of
+ * that list. For a search, the query is set, the offset is 0 and the total is
+ * the number of matching subscribers, of which only the best are included.
+ */
+public class SubscriberPage implements Serializable {
+
+	/**
+	 * Unique identifier for serialization compatibility.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/** The rows of this page */
+	private ArrayList<ParkingSubscriber> rows;
+
+	/** Position of the first row in the full list */
+	private int offset;
+
+	/** Number of rows in the full list, or of search matches */
+	private int total;
+
+	/** The search text, or null for a window of the full list */
+	private String query;
+
+	/**
+	 * Constructs a page.
+	 *
+	 * @param rows   the rows of this page
+	 * @param offset position of the first row in the full list
+	 * @param total  number of rows in the full list, or of search matches
+	 * @param query  the search text, or null for a window of the full list
+	 */
+	public SubscriberPage(ArrayList<ParkingSubscriber> rows, int offset, int total, String query) {
+		this.rows = rows;
+		this.offset = offset;
+		this.total = total;
+		this.query = query;
+	}
+
+	/**
+	 * Returns the rows of this page.
+	 *
+	 * @return the rows
+	 */
+	public ArrayList<ParkingSubscriber> getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the position of the first row in the full list.
+	 *
+	 * @return the offset
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the number of rows in the full list, or of search matches.
+	 *
+	 * @return the total
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the search text.
+	 *
+	 * @return the query, or null for a window of the full list
+	 */
+	public String getQuery() {
+		return query;
+	}
+}
@@ -4,10 +4,12 @@ import java.net.URL;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import client.SubscriberTableModel;
 import common.Message;
 import common.Message.MessageType;
 import common.ParkingOrder;
 import common.ParkingSubscriber;
+import common.SubscriberPage;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -143,6 +145,13 @@ public class AttendantController implements Initializable {
 	@FXML
 	private TableColumn<ParkingSubscriber, String> colSubUsername;
 
+	/** Search field filtering the subscribers table */
+	@FXML
+	private TextField txtSubscriberSearch;
+
+	/** Rows of the subscribers table, loaded from the server page by page */
+	private final SubscriberTableModel subscriberModel = new SubscriberTableModel();
+
 // ====== System Status ======
 
 	/** Label displaying the current parking system status */
@@ -208,14 +217,16 @@ public class AttendantController implements Initializable {
 		}
 
 		if (tableSubscribers != null) {
-			colUserID.setCellValueFactory(
-					cellData -> new SimpleStringProperty(cellData.getValue().getSubscriberID() + ""));
+			colUserID.setCellValueFactory(cellData -> new SimpleStringProperty(
+					SubscriberTableModel.isPlaceholder(cellData.getValue()) ? ""
+							: cellData.getValue().getSubscriberID() + ""));
 			colSubName.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getFirstName()));
 			colSubPhone.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getPhoneNumber()));
 			colSubEmail.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getEmail()));
 			colSubCar.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getCarNumber()));
 			colSubUsername
 					.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getSubscriberCode()));
+			subscriberModel.bind(tableSubscribers, txtSubscriberSearch);
 		}
 
 		startAutoRefresh();
@@ -277,6 +288,29 @@ public class AttendantController implements Initializable {
 		});
 	}
 
+	/**
+	 * Adds a page of the subscriber list received from the server to the
+	 * subscribers table.
+	 *
+	 * @param page the page
+	 */
+	public void showSubscriberPage(SubscriberPage page) {
+		Platform.runLater(() -> {
+			subscriberModel.acceptPage(page);
+		});
+	}
+
+	/**
+	 * Shows subscriber search results in the subscribers table.
+	 *
+	 * @param results the best matches for the search text
+	 */
+	public void showSubscriberSearchResults(SubscriberPage results) {
+		Platform.runLater(() -> {
+			subscriberModel.acceptSearchResults(results);
+		});
+	}
+
 	/**
 	 * Validates the registration form fields.
 	 *
@@ -435,8 +469,7 @@ public class AttendantController implements Initializable {
 	 */
 	@FXML
 	private void loadSubscribers() {
-		Message msg = new Message(MessageType.GET_ALL_SUBSCRIBERS, null);
-		BParkClientScenes.sendMessage(msg);
+		subscriberModel.refresh();
 	}
 
 	/**
@@ -0,0 +1,292 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+
+/**
+ * Updates the manager dashboard charts in place instead of rebuilding them on
+ * every refresh. The new values are compared with the rendered series: when
+ * the categories are unchanged only the changed values are set, when the range
+ * moved forward, grew or shrank the points are removed or added at the ends,
+ * and only a different set of categories replaces the data.
+ *
+ * Series with more points than the chart has room for are reduced with
+ * Largest-Triangle-Three-Buckets (LTTB), which keeps the first and last point
+ * and, per bucket, the point that best preserves the shape of the line. The
+ * budget is one point per {@link #PIXELS_PER_POINT} pixels of chart width.
+ *
+ * All methods must be called on the FX thread.
+ */
+public class ChartDataUpdater {
+
+	/** Horizontal pixels per plotted point */
+	private static final double PIXELS_PER_POINT = 6;
+
+	/** Chart width assumed before the chart has been laid out */
+	private static final double DEFAULT_WIDTH = 720;
+
+	/** Fewest points a series is reduced to */
+	private static final int MIN_POINTS = 12;
+
+	/**
+	 * Not instantiable.
+	 */
+	private ChartDataUpdater() {
+	}
+
+	/**
+	 * Shows a map of category to value as a series of a chart, downsampled to
+	 * the chart's width.
+	 *
+	 * @param chart the chart
+	 * @param index index of the series in the chart; missing series are added
+	 * @param name  name of the series
+	 * @param data  category to value, in display order
+	 */
+	public static void updateSeries(XYChart<String, Number> chart, int index, String name,
+			Map<String, ? extends Number> data) {
+		List<String> labels = new ArrayList<>(data.keySet());
+		List<Number> values = new ArrayList<>(data.values());
+		int[] kept = downsample(values, pointBudget(chart));
+		updateSeries(chart, index, name, select(labels, kept), select(values, kept));
+	}
+
+	/**
+	 * Shows a list of points as a series of a chart, without downsampling.
+	 *
+	 * @param chart  the chart
+	 * @param index  index of the series in the chart; missing series are added
+	 * @param name   name of the series
+	 * @param labels categories, in display order
+	 * @param values values, one per category
+	 */
+	public static void updateSeries(XYChart<String, Number> chart, int index, String name, List<String> labels,
+			List<? extends Number> values) {
+		ObservableList<XYChart.Series<String, Number>> seriesList = chart.getData();
+		while (seriesList.size() <= index) {
+			seriesList.add(new XYChart.Series<>());
+		}
+		XYChart.Series<String, Number> series = seriesList.get(index);
+		if (!name.equals(series.getName())) {
+			series.setName(name);
+		}
+		updatePoints(series.getData(), labels, values);
+	}
+
+	/**
+	 * Removes the series after the given count, e.g. when an optional series is
+	 * no longer shown.
+	 *
+	 * @param chart the chart
+	 * @param count number of series to keep
+	 */
+	public static void trimSeries(XYChart<String, Number> chart, int count) {
+		if (chart.getData().size() > count) {
+			chart.getData().remove(count, chart.getData().size());
+		}
+	}
+
+	/**
+	 * Shows slices in a pie chart. When the slice names are unchanged, only the
+	 * changed values are set.
+	 *
+	 * @param chart  the chart
+	 * @param names  slice names, in display order
+	 * @param values slice values, one per name
+	 */
+	public static void updatePie(PieChart chart, String[] names, double[] values) {
+		ObservableList<PieChart.Data> data = chart.getData();
+		boolean sameSlices = data != null && data.size() == names.length;
+		for (int i = 0; sameSlices && i < names.length; i++) {
+			sameSlices = names[i].equals(data.get(i).getName());
+		}
+		if (sameSlices) {
+			for (int i = 0; i < names.length; i++) {
+				if (data.get(i).getPieValue() != values[i]) {
+					data.get(i).setPieValue(values[i]);
+				}
+			}
+			return;
+		}
+		ObservableList<PieChart.Data> slices = FXCollections.observableArrayList();
+		for (int i = 0; i < names.length; i++) {
+			slices.add(new PieChart.Data(names[i], values[i]));
+		}
+		chart.setData(slices);
+	}
+
+	/**
+	 * Returns the number of points that fit the width of a chart.
+	 *
+	 * @param chart the chart
+	 * @return point budget
+	 */
+	public static int pointBudget(XYChart<?, ?> chart) {
+		double width = chart.getWidth() > 0 ? chart.getWidth() : DEFAULT_WIDTH;
+		return Math.max(MIN_POINTS, (int) (width / PIXELS_PER_POINT));
+	}
+
+	/**
+	 * Selects the points of a series to plot with Largest-Triangle-Three-Buckets.
+	 * The x coordinate of a point is its position in the list.
+	 *
+	 * @param values    the series values
+	 * @param threshold the number of points to keep
+	 * @return indexes of the kept points, ascending; all indexes if the series
+	 *         already fits
+	 */
+	public static int[] downsample(List<? extends Number> values, int threshold) {
+		int size = values.size();
+		if (threshold >= size || threshold < 3) {
+			int[] all = new int[size];
+			for (int i = 0; i < size; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+
+		int[] kept = new int[threshold];
+		double bucketSize = (double) (size - 2) / (threshold - 2);
+		int selected = 0;
+		kept[0] = 0;
+
+		for (int bucket = 0; bucket < threshold - 2; bucket++) {
+			// Average of the next bucket, the third corner of the triangle
+			int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+			int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+			double avgX = 0;
+			double avgY = 0;
+			for (int i = nextStart; i < nextEnd; i++) {
+				avgX += i;
+				avgY += valueAt(values, i);
+			}
+			int nextCount = nextEnd - nextStart;
+			avgX /= nextCount;
+			avgY /= nextCount;
+
+			// Point of the current bucket forming the largest triangle
+			int start = (int) (bucket * bucketSize) + 1;
+			int end = (int) ((bucket + 1) * bucketSize) + 1;
+			double selectedY = valueAt(values, selected);
+			double maxArea = -1;
+			int best = start;
+			for (int i = start; i < end; i++) {
+				double area = Math.abs((selected - avgX) * (valueAt(values, i) - selectedY)
+						- (selected - i) * (avgY - selectedY));
+				if (area > maxArea) {
+					maxArea = area;
+					best = i;
+				}
+			}
+			kept[bucket + 1] = best;
+			selected = best;
+		}
+
+		kept[threshold - 1] = size - 1;
+		return kept;
+	}
+
+	/**
+	 * Returns the elements of a list at the given indexes.
+	 *
+	 * @param <T>     element type
+	 * @param list    the list
+	 * @param indexes the indexes, ascending
+	 * @return the selected elements, or the list itself if all are selected
+	 */
+	public static <T> List<T> select(List<T> list, int[] indexes) {
+		if (indexes.length == list.size()) {
+			return list;
+		}
+		List<T> selected = new ArrayList<>(indexes.length);
+		for (int index : indexes) {
+			selected.add(list.get(index));
+		}
+		return selected;
+	}
+
+	/**
+	 * Brings the rendered points of a series to the new categories and values
+	 * with as few changes as possible.
+	 *
+	 * @param points the rendered points
+	 * @param labels the new categories
+	 * @param values the new values
+	 */
+	private static void updatePoints(ObservableList<XYChart.Data<String, Number>> points, List<String> labels,
+			List<? extends Number> values) {
+		// Find where the new categories continue the rendered ones: same list, or
+		// the range moved forward, grew at the end or was cut at the end
+		int shift = 0;
+		if (!labels.isEmpty()) {
+			while (shift < points.size() && !points.get(shift).getXValue().equals(labels.get(0))) {
+				shift++;
+			}
+		}
+		int common = Math.min(points.size() - shift, labels.size());
+		boolean continues = shift < points.size() || points.isEmpty();
+		for (int i = 0; continues && i < common; i++) {
+			continues = points.get(shift + i).getXValue().equals(labels.get(i));
+		}
+		if (!continues) {
+			List<XYChart.Data<String, Number>> replacement = new ArrayList<>(labels.size());
+			for (int i = 0; i < labels.size(); i++) {
+				replacement.add(new XYChart.Data<>(labels.get(i), values.get(i)));
+			}
+			points.setAll(replacement);
+			return;
+		}
+
+		if (shift + common < points.size()) {
+			points.remove(shift + common, points.size());
+		}
+		if (shift > 0) {
+			points.remove(0, shift);
+		}
+		for (int i = 0; i < common; i++) {
+			XYChart.Data<String, Number> point = points.get(i);
+			if (!sameValue(point.getYValue(), values.get(i))) {
+				point.setYValue(values.get(i));
+			}
+		}
+		if (labels.size() > common) {
+			List<XYChart.Data<String, Number>> added = new ArrayList<>(labels.size() - common);
+			for (int i = common; i < labels.size(); i++) {
+				added.add(new XYChart.Data<>(labels.get(i), values.get(i)));
+			}
+			points.addAll(added);
+		}
+	}
+
+	/**
+	 * Compares two chart values numerically.
+	 *
+	 * @param a first value, may be null
+	 * @param b second value, may be null
+	 * @return true if both are null or have the same double value
+	 */
+	private static boolean sameValue(Number a, Number b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+	}
+
+	/**
+	 * Returns a value as a double, 0 for null.
+	 *
+	 * @param values the values
+	 * @param index  the index
+	 * @return the value
+	 */
+	private static double valueAt(List<? extends Number> values, int index) {
+		Number value = values.get(index);
+		return value != null ? value.doubleValue() : 0;
+	}
+}
@@ -1,11 +1,13 @@
 package controllers;
 
 import static common.Message.MessageType.KIOSK_ID_LOGIN;
+import static common.Message.MessageType.KIOSK_LOGIN_RESPONSE;
 import static common.Message.MessageType.KIOSK_RF_LOGIN;
 
 import java.util.Optional;
 
 import client.BParkKioskScenes;
+import client.KioskOfflineStore;
 import common.Message;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -168,7 +170,8 @@ public class KioskController {
 				try {
 					int userID = Integer.parseInt(userIDStr);
 					Message msg = new Message(KIOSK_ID_LOGIN, username + "," + userID);
-					BParkKioskScenes.sendMessage(msg);
+					KioskOfflineStore.sendOrDecideOffline(msg, KIOSK_LOGIN_RESPONSE,
+							() -> loginOffline(userID, username));
 				} catch (NumberFormatException e) {
 					showAlert("Invalid Input", "User ID must be numeric.");
 				}
@@ -192,7 +195,7 @@ public class KioskController {
 			try {
 				int userID = Integer.parseInt(idStr);
 				Message msg = new Message(KIOSK_RF_LOGIN, userID);
-				BParkKioskScenes.sendMessage(msg);
+				KioskOfflineStore.sendOrDecideOffline(msg, KIOSK_LOGIN_RESPONSE, () -> loginOffline(userID, null));
 			} catch (NumberFormatException e) {
 				showAlert("Invalid Input", "Please enter a valid numeric User ID.");
 			}
@@ -203,9 +206,10 @@ public class KioskController {
 	 * Handles the login result sent back from the server. If login is successful,
 	 * shows a welcome message and loads the dashboard screen.
 	 * 
-	 * @param content The login result content from the server.
+	 * @param content      The login result content from the server.
+	 * @param sessionToken The session token issued by the server.
 	 */
-	public static void handleKioskLoginResult(Object content) {
+	public static void handleKioskLoginResult(Object content, String sessionToken) {
 		if (content instanceof String response) {
 			if (!response.isEmpty()) {
 				// Split "John Doe,4"
@@ -215,7 +219,7 @@ public class KioskController {
 					int userID = Integer.parseInt(parts[1].trim());
 
 					// Store for future operations
-					KioskDashboardController.setLoggedInUser(name, userID);
+					KioskDashboardController.setLoggedInUser(name, userID, sessionToken);
 
 					// Welcome message and load dashboard
 					showWelcomeAndLoadDashboard(name);
@@ -228,6 +232,26 @@ public class KioskController {
 		}
 	}
 
+	/**
+	 * Logs a user in from the offline snapshot when the server cannot be
+	 * reached. The dashboard then records all requests offline.
+	 * 
+	 * @param userID   The user ID entered.
+	 * @param username The username entered, or null for an RF login.
+	 */
+	private static void loginOffline(int userID, String username) {
+		String name = KioskOfflineStore.login(userID, username);
+		if (name != null) {
+			KioskDashboardController.setLoggedInUser(name, userID, null);
+			showWelcomeAndLoadDashboard(name);
+		} else if (KioskOfflineStore.isAvailable()) {
+			showAlertStatic("Login Failed", "Invalid credentials or user not found.");
+		} else {
+			showAlertStatic("Login Failed",
+					"The parking system cannot be reached. Please try again later or contact the parking attendant.");
+		}
+	}
+
 	/**
 	 * Shows an alert with a given title and message.
 	 * 
@@ -7,9 +7,13 @@ import static common.Message.MessageType.EXIT_PARKING;
 import static common.Message.MessageType.RETRIEVE_CAR_KIOSK;
 
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 import client.BParkKioskScenes;
+import client.KioskOfflineStore;
 import common.Message;
+import common.Message.MessageType;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -49,6 +53,9 @@ public class KioskDashboardController {
 	/** The user ID of the currently logged-in user */
 	private static int loggedInUserID;
 
+	/** Session token issued by the server at login, sent with every request; null after an offline login */
+	private static String sessionToken;
+
 	// UI element declarations
 	/** Label that displays user-related information, such as user name or ID */
 	@FXML
@@ -83,11 +90,14 @@ public class KioskDashboardController {
 	 * 
 	 * @param username the user's name
 	 * @param userID   the user's ID
+	 * @param token    the session token issued by the server, or null if the
+	 *                 user logged in offline
 	 */
-	public static void setLoggedInUser(String username, int userID) {
+	public static void setLoggedInUser(String username, int userID, String token) {
 		loggedInUsername = username; // Store username
 
 		loggedInUserID = userID;
+		sessionToken = token;
 	}
 
 	/**
@@ -97,6 +107,28 @@ public class KioskDashboardController {
 		loggedInUsername = null; // Reset username
 
 		loggedInUserID = 0;
+		sessionToken = null;
+	}
+
+	/**
+	 * Sends a request to the server with the session token attached. If the
+	 * server cannot be reached or does not answer in time, or the user logged in
+	 * offline, the request is decided from the offline snapshot instead; see
+	 * {@link KioskOfflineStore}.
+	 * 
+	 * @param msg          the request to send
+	 * @param responseType the type of the server's response
+	 * @param title        title of the offline result alert
+	 * @param offline      decides the request offline and returns the result
+	 */
+	private void sendWithSession(Message msg, MessageType responseType, String title, Supplier<String> offline) {
+		Runnable decideOffline = () -> showInfo(title, offline.get());
+		if (sessionToken == null) {
+			decideOffline.run();
+			return;
+		}
+		msg.setSessionToken(sessionToken);
+		KioskOfflineStore.sendOrDecideOffline(msg, responseType, decideOffline);
 	}
 
 	/**
@@ -106,8 +138,11 @@ public class KioskDashboardController {
 	 */
 	@FXML
 	private void handleEnterParking(ActionEvent event) {
-		Message msg = new Message(ENTER_PARKING_KIOSK, loggedInUserID);
-		BParkKioskScenes.sendMessage(msg);
+		int userID = loggedInUserID;
+		Message msg = new Message(ENTER_PARKING_KIOSK, userID);
+		msg.setOperationID(UUID.randomUUID().toString());
+		sendWithSession(msg, MessageType.ENTER_PARKING_KIOSK_RESPONSE, "Enter Parking",
+				() -> KioskOfflineStore.enter(userID));
 	}
 
 	/**
@@ -139,9 +174,12 @@ public class KioskDashboardController {
 				int parkingInfoID = Integer.parseInt(codeStr);
 				// Send parking code with logged in user ID for validation
 				// Format: parkingCode,userID  
-				String exitData = parkingInfoID + "," + loggedInUserID;
+				int userID = loggedInUserID;
+				String exitData = parkingInfoID + "," + userID;
 				Message msg = new Message(EXIT_PARKING, exitData);
-				BParkKioskScenes.sendMessage(msg);
+				msg.setOperationID(UUID.randomUUID().toString());
+				sendWithSession(msg, MessageType.EXIT_PARKING_RESPONSE, "Retrieve Car",
+						() -> KioskOfflineStore.exit(parkingInfoID, userID));
 			} catch (NumberFormatException e) {
 				showInfo("Invalid Input", "Parking code must be numeric.");
 			}
@@ -155,8 +193,10 @@ public class KioskDashboardController {
 	 */
 	@FXML
 	private void handleForgotCode(ActionEvent event) {
-		Message msg = new Message(FORGOT_CODE_KIOSK, loggedInUserID);
-		BParkKioskScenes.sendMessage(msg);
+		int userID = loggedInUserID;
+		Message msg = new Message(FORGOT_CODE_KIOSK, userID);
+		sendWithSession(msg, MessageType.FORGOT_CODE_KIOSK_RESPONSE, "Parking Code",
+				() -> KioskOfflineStore.forgotCode(userID));
 	}
 
 	/**
@@ -175,8 +215,11 @@ public class KioskDashboardController {
 		result.ifPresent(codeStr -> {
 			try {
 				int parkingInfoID = Integer.parseInt(codeStr);
+				int userID = loggedInUserID;
 				Message msg = new Message(ACTIVATE_RESERVATION_KIOSK, parkingInfoID);
-				BParkKioskScenes.sendMessage(msg);
+				msg.setOperationID(UUID.randomUUID().toString());
+				sendWithSession(msg, MessageType.ACTIVATE_RESERVATION_KIOSK_RESPONSE, "Activate Reservation",
+						() -> KioskOfflineStore.activate(parkingInfoID, userID));
 			} catch (NumberFormatException e) {
 				showInfo("Invalid Input", "Reservation code must be numeric.");
 			}
@@ -4,15 +4,18 @@ import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import client.SubscriberTableModel;
 import common.Message;
 import common.Message.MessageType;
+import common.OccupancyBucket;
 import common.ParkingOrder;
 import common.ParkingReport;
 import common.ParkingSubscriber;
+import common.SubscriberPage;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -25,8 +28,8 @@ import javafx.scene.chart.AreaChart;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.PieChart;
-import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -117,6 +120,13 @@ public class ManagerController implements Initializable {
 	@FXML
 	private TableColumn<ParkingSubscriber, String> colSubUsername;
 
+	/** Search field filtering the subscribers table */
+	@FXML
+	private TextField txtSubscriberSearch;
+
+	/** Rows of the subscribers table, loaded from the server page by page */
+	private final SubscriberTableModel subscriberModel = new SubscriberTableModel();
+
 	// === Active Parking Table ===
 
 	/** TableView displaying currently active parkings */
@@ -157,6 +167,10 @@ public class ManagerController implements Initializable {
 	@FXML
 	private LineChart<String, Number> occupancyChart;
 
+	/** ComboBox selecting the time range of the occupancy chart */
+	@FXML
+	private ComboBox<String> comboOccupancyRange;
+
 	/** Pie chart showing distribution of parking types */
 	@FXML
 	private PieChart parkingTypesChart;
@@ -191,6 +205,18 @@ public class ManagerController implements Initializable {
 	@FXML
 	private PieChart chartLateSubscribersRate;
 
+	/** Bar chart showing p50/p90/p99 of parking time and late exit minutes */
+	@FXML
+	private BarChart<String, Number> chartDurationPercentiles;
+
+	/** Bar chart showing how many parkings fall into each duration range */
+	@FXML
+	private BarChart<String, Number> chartDurationHistogram;
+
+	/** Label summarizing the parking time percentiles */
+	@FXML
+	private Label lblDurationPercentiles;
+
 	/** Label showing total number of extensions */
 	@FXML
 	private Label lblTotalExtensions;
@@ -297,14 +323,20 @@ public class ManagerController implements Initializable {
 	private void setupUI() {
 		setupTableColumns();
 
+		if (comboOccupancyRange != null) {
+			comboOccupancyRange.getItems().addAll("Day", "Week", "Month");
+			comboOccupancyRange.setValue("Day");
+		}
+
 		// Set manager info
 		if (lblManagerInfo != null) {
 			lblManagerInfo.setText("Manager: " + BParkClientScenes.getCurrentUser());
 		}
 
 		if (tableSubscribers != null) {
-			colUserID.setCellValueFactory(
-					cellData -> new SimpleStringProperty(cellData.getValue().getSubscriberID() + ""));
+			colUserID.setCellValueFactory(cellData -> new SimpleStringProperty(
+					SubscriberTableModel.isPlaceholder(cellData.getValue()) ? ""
+							: cellData.getValue().getSubscriberID() + ""));
 			colSubName.setCellValueFactory(
 					cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getFirstName()));
 			colSubPhone.setCellValueFactory(
@@ -315,6 +347,7 @@ public class ManagerController implements Initializable {
 					cellData -> new javafx.beans.property.SimpleStringProperty(cellData.getValue().getCarNumber()));
 			colSubUsername.setCellValueFactory(cellData -> new javafx.beans.property.SimpleStringProperty(
 					cellData.getValue().getSubscriberCode()));
+			subscriberModel.bind(tableSubscribers, txtSubscriberSearch);
 		}
 
 	}
@@ -329,6 +362,9 @@ public class ManagerController implements Initializable {
 		// Load initial reports
 		loadReports("ALL");
 
+		// Load occupancy history
+		loadOccupancyHistory();
+
 		// Update timestamp
 		updateLastRefreshTime();
 	}
@@ -341,6 +377,7 @@ public class ManagerController implements Initializable {
 		refreshTimeline = new Timeline(new KeyFrame(Duration.seconds(30), event -> {
 			checkParkingStatus();
 			loadReports("ALL");
+			loadOccupancyHistory();
 			updateLastRefreshTime();
 		}));
 		refreshTimeline.setCycleCount(Timeline.INDEFINITE);
@@ -389,6 +426,25 @@ public class ManagerController implements Initializable {
 		BParkClientScenes.sendMessage(msg);
 	}
 
+	/**
+	 * Reloads the occupancy chart when a different range is selected.
+	 */
+	@FXML
+	private void handleOccupancyRangeChange() {
+		loadOccupancyHistory();
+	}
+
+	/**
+	 * Sends a request for the occupancy history of the selected range.
+	 */
+	private void loadOccupancyHistory() {
+		String range = comboOccupancyRange != null && comboOccupancyRange.getValue() != null
+				? comboOccupancyRange.getValue().toUpperCase()
+				: "DAY";
+		Message msg = new Message(MessageType.GET_OCCUPANCY_HISTORY, range);
+		BParkClientScenes.sendMessage(msg);
+	}
+
 	// ===== UI Update Methods =====
 
 	/**
@@ -444,6 +500,10 @@ public class ManagerController implements Initializable {
 
 		updateChartLateSubscribersRate(report.getLateSubscribers(), report.getTotalSubscribers());
 
+		if (report.getParkingTimePercentiles() != null)
+			updateChartDurationPercentiles(report.getParkingTimePercentiles(), report.getLateExitPercentiles(),
+					report.getParkingTimeHistogram());
+
 		if (lblTotalLateExits != null)
 			lblTotalLateExits.setText("Total Late Exits: " + report.getLateExits());
 
@@ -589,8 +649,7 @@ public class ManagerController implements Initializable {
 	 */
 	@FXML
 	private void loadSubscribers() {
-		Message msg = new Message(MessageType.GET_ALL_SUBSCRIBERS, null);
-		BParkClientScenes.sendMessage(msg);
+		subscriberModel.refresh();
 	}
 
 	/**
@@ -605,6 +664,29 @@ public class ManagerController implements Initializable {
 		});
 	}
 
+	/**
+	 * Adds a page of the subscriber list received from the server to the
+	 * subscribers table.
+	 *
+	 * @param page the page
+	 */
+	public void showSubscriberPage(SubscriberPage page) {
+		Platform.runLater(() -> {
+			subscriberModel.acceptPage(page);
+		});
+	}
+
+	/**
+	 * Shows subscriber search results in the subscribers table.
+	 *
+	 * @param results the best matches for the search text
+	 */
+	public void showSubscriberSearchResults(SubscriberPage results) {
+		Platform.runLater(() -> {
+			subscriberModel.acceptSearchResults(results);
+		});
+	}
+
 	// =======================
 	// Parking Report
 	// =======================
@@ -616,13 +698,7 @@ public class ManagerController implements Initializable {
 	 */
 	private void updateChartTotalParkingTimePerDay(java.util.Map<String, Integer> data) {
 		Platform.runLater(() -> {
-			chartTotalParkingTimePerDay.getData().clear();
-			XYChart.Series<String, Number> series = new XYChart.Series<>();
-			series.setName("Total Parking Time Per Day");
-			for (Map.Entry<String, Integer> entry : data.entrySet()) {
-				series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
-			}
-			chartTotalParkingTimePerDay.getData().add(series);
+			ChartDataUpdater.updateSeries(chartTotalParkingTimePerDay, 0, "Total Parking Time Per Day", data);
 		});
 	}
 
@@ -633,13 +709,7 @@ public class ManagerController implements Initializable {
 	 */
 	private void updateChartHourlyDistribution(java.util.Map<String, Integer> data) {
 		Platform.runLater(() -> {
-			chartHourlyDistribution.getData().clear();
-			XYChart.Series<String, Number> series = new XYChart.Series<>();
-			series.setName("Hourly Distribution");
-			for (Map.Entry<String, Integer> entry : data.entrySet()) {
-				series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
-			}
-			chartHourlyDistribution.getData().add(series);
+			ChartDataUpdater.updateSeries(chartHourlyDistribution, 0, "Hourly Distribution", data);
 		});
 	}
 
@@ -652,9 +722,8 @@ public class ManagerController implements Initializable {
 	 */
 	private void updateChartExtensionsPercentage(int extensions, int noExtensions, int totalSubscribers) {
 		Platform.runLater(() -> {
-			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
-					new PieChart.Data("Extensions", extensions), new PieChart.Data("No Extensions", noExtensions));
-			chartExtensionsPercentage.setData(pieChartData);
+			ChartDataUpdater.updatePie(chartExtensionsPercentage, new String[] { "Extensions", "No Extensions" },
+					new double[] { extensions, noExtensions });
 			lblTotalExtensions.setText("Total Extensions: " + extensions);
 
 			int total = extensions + noExtensions;
@@ -671,13 +740,73 @@ public class ManagerController implements Initializable {
 	 */
 	private void updateChartLateExitsByHour(java.util.Map<String, Integer> data) {
 		Platform.runLater(() -> {
-			chartLateExitsByHour.getData().clear();
-			XYChart.Series<String, Number> series = new XYChart.Series<>();
-			series.setName("Late Exits By Hour (from End Time)");
-			for (Map.Entry<String, Integer> entry : data.entrySet()) {
-				series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+			ChartDataUpdater.updateSeries(chartLateExitsByHour, 0, "Late Exits By Hour (from End Time)", data);
+		});
+	}
+
+	/**
+	 * Updates the occupancy chart with average, minimum and maximum occupied spots
+	 * per time bucket. Long ranges are downsampled on the average line, and the
+	 * same buckets are kept for the minimum and maximum lines so the three stay
+	 * aligned.
+	 * 
+	 * @param buckets List of occupancy buckets, oldest first
+	 */
+	public void updateOccupancyChart(ArrayList<OccupancyBucket> buckets) {
+		Platform.runLater(() -> {
+			if (occupancyChart == null) {
+				return;
+			}
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+			List<String> labels = new ArrayList<>(buckets.size());
+			List<Number> avg = new ArrayList<>(buckets.size());
+			List<Number> min = new ArrayList<>(buckets.size());
+			List<Number> max = new ArrayList<>(buckets.size());
+			for (OccupancyBucket bucket : buckets) {
+				labels.add(bucket.getStartTime().format(formatter));
+				avg.add(bucket.getAverageOccupied());
+				min.add(bucket.getMinOccupied());
+				max.add(bucket.getMaxOccupied());
+			}
+
+			int[] kept = ChartDataUpdater.downsample(avg, ChartDataUpdater.pointBudget(occupancyChart));
+			labels = ChartDataUpdater.select(labels, kept);
+			ChartDataUpdater.updateSeries(occupancyChart, 0, "Average", labels, ChartDataUpdater.select(avg, kept));
+			ChartDataUpdater.updateSeries(occupancyChart, 1, "Min", labels, ChartDataUpdater.select(min, kept));
+			ChartDataUpdater.updateSeries(occupancyChart, 2, "Max", labels, ChartDataUpdater.select(max, kept));
+		});
+	}
+
+	/**
+	 * Updates the duration percentile and histogram charts and the summary label.
+	 * 
+	 * @param parkingTime Map of percentile label to parking minutes
+	 * @param lateExit    Map of percentile label to late exit minutes (may be
+	 *                    null)
+	 * @param histogram   Map of duration range to number of parkings (may be
+	 *                    null)
+	 */
+	private void updateChartDurationPercentiles(java.util.Map<String, Integer> parkingTime,
+			java.util.Map<String, Integer> lateExit, java.util.Map<String, Integer> histogram) {
+		Platform.runLater(() -> {
+			if (chartDurationPercentiles != null) {
+				ChartDataUpdater.updateSeries(chartDurationPercentiles, 0, "Parking Time (min)", parkingTime);
+				if (lateExit != null) {
+					ChartDataUpdater.updateSeries(chartDurationPercentiles, 1, "Late Exit (min past end time)", lateExit);
+				} else {
+					ChartDataUpdater.trimSeries(chartDurationPercentiles, 1);
+				}
+			}
+
+			if (chartDurationHistogram != null && histogram != null) {
+				ChartDataUpdater.updateSeries(chartDurationHistogram, 0, "Parkings by Duration", histogram);
+			}
+
+			if (lblDurationPercentiles != null) {
+				lblDurationPercentiles.setText(String.format("Parking Time p50 / p90 / p99: %d / %d / %d min",
+						parkingTime.getOrDefault("p50", 0), parkingTime.getOrDefault("p90", 0),
+						parkingTime.getOrDefault("p99", 0)));
 			}
-			chartLateExitsByHour.getData().add(series);
 		});
 	}
 
@@ -690,9 +819,8 @@ public class ManagerController implements Initializable {
 	private void updateChartLateSubscribersRate(int lateSubscribers, int totalSubscribers) {
 		Platform.runLater(() -> {
 			int onTime = totalSubscribers - lateSubscribers;
-			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
-					new PieChart.Data("Late", lateSubscribers), new PieChart.Data("On Time", onTime));
-			chartLateSubscribersRate.setData(pieChartData);
+			ChartDataUpdater.updatePie(chartLateSubscribersRate, new String[] { "Late", "On Time" },
+					new double[] { lateSubscribers, onTime });
 			double percent = (totalSubscribers == 0) ? 0 : (lateSubscribers * 100.0 / totalSubscribers);
 			lblLateSubscriberPercent.setText(String.format("%.1f", percent) + "%" + " of Subscribers are late!");
 		});
@@ -707,11 +835,9 @@ public class ManagerController implements Initializable {
 	 */
 	private void updateChartReservationUsage(int preOrderReservations, int used, int cancelled) {
 		Platform.runLater(() -> {
-			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
-					new PieChart.Data("Open Reservations", preOrderReservations),
-					new PieChart.Data("Used Reservations", used),
-					new PieChart.Data("Cancelled Reservations", cancelled));
-			chartReservationUsage.setData(pieChartData);
+			ChartDataUpdater.updatePie(chartReservationUsage,
+					new String[] { "Open Reservations", "Used Reservations", "Cancelled Reservations" },
+					new double[] { preOrderReservations, used, cancelled });
 			lblTotalReservations.setText("Total Reservations: " + (preOrderReservations + used + cancelled));
 			lblUsedReservations.setText("used Reservations: " + used);
 			lblPreOrderReservations.setText("Open Reservations: " + preOrderReservations);
@@ -4,12 +4,20 @@ import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import common.ParkingOrder;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.ComboBox;
@@ -109,10 +117,84 @@ public class ParkingHistoryController implements Initializable {
 
 	// Data
 
+	/**
+	 * Status groups used by the filter and the statistics. Every record belongs
+	 * to exactly one group.
+	 */
+	private enum StatusBucket {
+		/** Car is inside */
+		ACTIVE,
+		/** Finished session */
+		COMPLETED,
+		/** Reservation not yet activated */
+		PREORDER,
+		/** Cancelled reservation */
+		CANCELED,
+		/** Any other status */
+		OTHER;
+
+		/**
+		 * Returns the group of a status string as sent by the server.
+		 *
+		 * @param status the status, may be null
+		 * @return the group
+		 */
+		static StatusBucket of(String status) {
+			if (status == null) {
+				return OTHER;
+			}
+			switch (status.toLowerCase()) {
+			case "active":
+				return ACTIVE;
+			case "finished":
+			case "completed":
+				return COMPLETED;
+			case "preorder":
+				return PREORDER;
+			case "cancelled":
+			case "canceled":
+				return CANCELED;
+			default:
+				return OTHER;
+			}
+		}
+
+		/**
+		 * Returns the group selected by a filter combo box value.
+		 *
+		 * @param filter the combo box value
+		 * @return the group, or null for "All Sessions"
+		 */
+		static StatusBucket ofFilter(String filter) {
+			if (filter == null) {
+				return null;
+			}
+			switch (filter) {
+			case "Active":
+				return ACTIVE;
+			case "Completed":
+				return COMPLETED;
+			case "Preorder":
+				return PREORDER;
+			case "Canceled":
+				return CANCELED;
+			default: // "All Sessions"
+				return null;
+			}
+		}
+	}
+
 	/** List containing all historical parking records */
 	private ObservableList<ParkingOrder> allHistory = FXCollections.observableArrayList();
-	/** List containing filtered parking records based on status */
-	private ObservableList<ParkingOrder> filteredHistory = FXCollections.observableArrayList();
+	/** Records of {@link #allHistory} that match the selected status filter */
+	private FilteredList<ParkingOrder> filteredHistory = new FilteredList<>(allHistory);
+	/** {@link #filteredHistory} in the order of the table's sort columns */
+	private SortedList<ParkingOrder> sortedHistory = new SortedList<>(filteredHistory);
+
+	/** Status group of each record, classified once when it is added */
+	private final IdentityHashMap<ParkingOrder, StatusBucket> bucketOf = new IdentityHashMap<>();
+	/** Number of records in each status group */
+	private final EnumMap<StatusBucket, Integer> bucketCounts = new EnumMap<>(StatusBucket.class);
 
 	/**
 	 * Initializes the controller: sets up the table and the status filter combo
@@ -120,6 +202,10 @@ public class ParkingHistoryController implements Initializable {
 	 */
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
+		for (StatusBucket bucket : StatusBucket.values()) {
+			bucketCounts.put(bucket, 0);
+		}
+		allHistory.addListener(this::onHistoryChanged);
 		setupTable();
 		setupFilter();
 		updateStatus("Ready");
@@ -386,8 +472,9 @@ public class ParkingHistoryController implements Initializable {
 			};
 		});
 
-		// Bind the filtered list to the table
-		tableHistory.setItems(filteredHistory);
+		// Bind the filtered, sorted view to the table
+		sortedHistory.comparatorProperty().bind(tableHistory.comparatorProperty());
+		tableHistory.setItems(sortedHistory);
 	}
 
 	/**
@@ -415,17 +502,59 @@ public class ParkingHistoryController implements Initializable {
 	 *
 	 * @param history A list of parking records to display.
 	 */
-
 	public void loadHistory(ArrayList<ParkingOrder> history) {
 		Platform.runLater(() -> {
-			allHistory.clear();
-			allHistory.addAll(history);
+			allHistory.setAll(history);
 			applyFilter();
 			updateStatistics();
 			updateStatus("Loaded " + history.size() + " parking records");
 		});
 	}
 
+	/**
+	 * Appends a page of records to the history. Only the status groups of the new
+	 * records are updated, and the current filter is kept.
+	 *
+	 * @param page the records to add
+	 */
+	public void appendHistory(List<ParkingOrder> page) {
+		Platform.runLater(() -> {
+			allHistory.addAll(page);
+			updateStatistics();
+			updateStatus("Loaded " + allHistory.size() + " parking records");
+		});
+	}
+
+	/**
+	 * Merges changed records into the history: records already shown are
+	 * replaced in place, new records are added at the top. The current filter is
+	 * kept.
+	 *
+	 * @param changes the records created or changed since the last sync
+	 */
+	public void mergeHistory(List<ParkingOrder> changes) {
+		Platform.runLater(() -> {
+			Map<Integer, Integer> indexOf = new HashMap<>();
+			for (int i = 0; i < allHistory.size(); i++) {
+				indexOf.put(allHistory.get(i).getOrderID(), i);
+			}
+			List<ParkingOrder> added = new ArrayList<>();
+			for (ParkingOrder order : changes) {
+				Integer index = indexOf.get(order.getOrderID());
+				if (index != null) {
+					allHistory.set(index, order);
+				} else {
+					added.add(order);
+				}
+			}
+			allHistory.addAll(0, added);
+			updateStatistics();
+			updateStatus(changes.isEmpty() ? "History is up to date"
+					: "Updated " + changes.size() + " parking records");
+		});
+	}
+
+
 	/**
 	 * Apply the selected filter to the data
 	 */
@@ -435,49 +564,51 @@ public class ParkingHistoryController implements Initializable {
 	}
 
 	/**
-	 * Apply the current filter selection
+	 * Apply the current filter selection. Only the predicate of the filtered view
+	 * changes; the status of each record was classified when it was added.
 	 */
 	private void applyFilter() {
-		String selectedFilter = comboStatusFilter.getValue();
-		filteredHistory.clear();
-
-		switch (selectedFilter) {
-		case "Active":
-			allHistory.stream().filter(order -> "active".equalsIgnoreCase(order.getStatus()))
-					.forEach(filteredHistory::add);
-			break;
-		case "Completed":
-			allHistory.stream().filter(order -> "finished".equalsIgnoreCase(order.getStatus())
-					|| "completed".equalsIgnoreCase(order.getStatus())).forEach(filteredHistory::add);
-			break;
-		case "Preorder":
-			allHistory.stream().filter(order -> "preorder".equalsIgnoreCase(order.getStatus()))
-					.forEach(filteredHistory::add);
-			break;
-		case "Canceled":
-			allHistory.stream().filter(order -> "cancelled".equalsIgnoreCase(order.getStatus())
-					|| "canceled".equalsIgnoreCase(order.getStatus())).forEach(filteredHistory::add);
-			break;
-		default: // "All Sessions"
-			filteredHistory.addAll(allHistory);
-			break;
+		StatusBucket selected = StatusBucket.ofFilter(comboStatusFilter.getValue());
+		if (selected == null) {
+			filteredHistory.setPredicate(null);
+		} else {
+			filteredHistory.setPredicate(order -> bucketOf.get(order) == selected);
 		}
 	}
 
+	/**
+	 * Keeps the status groups and their counts in step with {@link #allHistory},
+	 * touching only the records that were added or removed.
+	 *
+	 * @param change the list change
+	 */
+	private void onHistoryChanged(ListChangeListener.Change<? extends ParkingOrder> change) {
+		while (change.next()) {
+			for (ParkingOrder order : change.getRemoved()) {
+				StatusBucket bucket = bucketOf.remove(order);
+				if (bucket != null) {
+					bucketCounts.merge(bucket, -1, Integer::sum);
+				}
+			}
+			for (ParkingOrder order : change.getAddedSubList()) {
+				StatusBucket bucket = StatusBucket.of(order.getStatus());
+				bucketOf.put(order, bucket);
+				bucketCounts.merge(bucket, 1, Integer::sum);
+			}
+		}
+	}
+
+
 	/**
 	 * Updates the labels showing total, active, and completed sessions.
 	 */
 	private void updateStatistics() {
-		int total = allHistory.size();
-		int active = (int) allHistory.stream().filter(order -> "active".equalsIgnoreCase(order.getStatus())).count();
-		int completed = (int) allHistory.stream().filter(order -> "finished".equalsIgnoreCase(order.getStatus())
-				|| "completed".equalsIgnoreCase(order.getStatus())).count();
-
-		lblTotalSessions.setText(String.valueOf(total));
-		lblActiveSessions.setText(String.valueOf(active));
-		lblCompletedSessions.setText(String.valueOf(completed));
+		lblTotalSessions.setText(String.valueOf(allHistory.size()));
+		lblActiveSessions.setText(String.valueOf(bucketCounts.get(StatusBucket.ACTIVE)));
+		lblCompletedSessions.setText(String.valueOf(bucketCounts.get(StatusBucket.COMPLETED)));
 	}
 
+
 	/**
 	 * Updates the status label at the bottom of the window.
 	 * 
@@ -496,9 +627,8 @@ public class ParkingHistoryController implements Initializable {
 	@FXML
 	private void handleRefresh() {
 		updateStatus("Refreshing...");
-		// Send request for updated parking history
-		client.BParkClientScenes.sendMessage(new common.Message(common.Message.MessageType.GET_PARKING_HISTORY,
-				client.BParkClientScenes.getCurrentUser()));
+		// Request only the records changed since the cached version
+		client.HistoryCache.refresh(client.BParkClientScenes.getCurrentUser());
 	}
 
 	/**
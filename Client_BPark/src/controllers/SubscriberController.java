@@ -7,6 +7,7 @@ import java.util.Optional;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import client.HistoryCache;
 import common.Message;
 import common.Message.MessageType;
 import common.ParkingOrder;
@@ -304,11 +305,13 @@ public class SubscriberController implements Initializable {
 		}
 	}
 
-	/** Requests parking history data from the server. */
+	/**
+	 * Opens the parking history from the local cache and requests the records
+	 * changed since it was last synced.
+	 */
 	@FXML
 	private void handleViewHistory() {
-		Message msg = new Message(MessageType.GET_PARKING_HISTORY, BParkClientScenes.getCurrentUser());
-		BParkClientScenes.sendMessage(msg);
+		HistoryCache.open(BParkClientScenes.getCurrentUser());
 	}
 
 	/**
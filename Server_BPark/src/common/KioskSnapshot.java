@@ -0,0 +1,200 @@
+package common;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The part of the parking state a kiosk needs to keep admitting and releasing
+ * cars while the server cannot be reached: the free spots, the preorder and
+ * active sessions, and the subscribers who may log in. Subscribers are stored
+ * as two parallel arrays ordered by User_ID, which keeps the snapshot small
+ * for large subscriber lists.
+ */
+public class KioskSnapshot implements Serializable {
+
+	/** Identifier for Serializable class version control. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * One preorder or active parking session.
+	 */
+	public static class Session implements Serializable {
+
+		/** Identifier for Serializable class version control. */
+		private static final long serialVersionUID = 1L;
+
+		/** ParkingInfo_ID, the parking or reservation code */
+		private final int code;
+
+		/** Owner of the session */
+		private final int userID;
+
+		/** Assigned parking spot */
+		private final int spotID;
+
+		/** True for an active session, false for a preorder */
+		private final boolean active;
+
+		/** Reserved or actual start time */
+		private final LocalDateTime estimatedStart;
+
+		/** Expected end time */
+		private final LocalDateTime estimatedEnd;
+
+		/**
+		 * Constructs a session.
+		 *
+		 * @param code           the parking or reservation code
+		 * @param userID         owner of the session
+		 * @param spotID         assigned parking spot
+		 * @param active         true for an active session, false for a preorder
+		 * @param estimatedStart reserved or actual start time
+		 * @param estimatedEnd   expected end time
+		 */
+		public Session(int code, int userID, int spotID, boolean active, LocalDateTime estimatedStart,
+				LocalDateTime estimatedEnd) {
+			this.code = code;
+			this.userID = userID;
+			this.spotID = spotID;
+			this.active = active;
+			this.estimatedStart = estimatedStart;
+			this.estimatedEnd = estimatedEnd;
+		}
+
+		/**
+		 * Returns the parking or reservation code.
+		 *
+		 * @return the ParkingInfo_ID
+		 */
+		public int getCode() {
+			return code;
+		}
+
+		/**
+		 * Returns the owner of the session.
+		 *
+		 * @return the User_ID
+		 */
+		public int getUserID() {
+			return userID;
+		}
+
+		/**
+		 * Returns the assigned parking spot.
+		 *
+		 * @return the spot ID
+		 */
+		public int getSpotID() {
+			return spotID;
+		}
+
+		/**
+		 * Returns whether the car is parked.
+		 *
+		 * @return true for an active session, false for a preorder
+		 */
+		public boolean isActive() {
+			return active;
+		}
+
+		/**
+		 * Returns the reserved or actual start time.
+		 *
+		 * @return the start time
+		 */
+		public LocalDateTime getEstimatedStart() {
+			return estimatedStart;
+		}
+
+		/**
+		 * Returns the expected end time.
+		 *
+		 * @return the end time
+		 */
+		public LocalDateTime getEstimatedEnd() {
+			return estimatedEnd;
+		}
+	}
+
+	/** Server time at which the snapshot was taken */
+	private LocalDateTime takenAt;
+
+	/** IDs of the parking spots that are not occupied */
+	private ArrayList<Integer> freeSpots;
+
+	/** Preorder and active sessions */
+	private ArrayList<Session> sessions;
+
+	/** User_IDs of all subscribers, ascending */
+	private int[] subscriberIDs;
+
+	/** Username of each subscriber, parallel to {@link #subscriberIDs} */
+	private String[] usernames;
+
+	/**
+	 * Constructs a snapshot.
+	 *
+	 * @param takenAt       server time at which the snapshot was taken
+	 * @param freeSpots     IDs of the parking spots that are not occupied
+	 * @param sessions      preorder and active sessions
+	 * @param subscriberIDs User_IDs of all subscribers, ascending
+	 * @param usernames     username of each subscriber, parallel to the IDs
+	 */
+	public KioskSnapshot(LocalDateTime takenAt, ArrayList<Integer> freeSpots, ArrayList<Session> sessions,
+			int[] subscriberIDs, String[] usernames) {
+		this.takenAt = takenAt;
+		this.freeSpots = freeSpots;
+		this.sessions = sessions;
+		this.subscriberIDs = subscriberIDs;
+		this.usernames = usernames;
+	}
+
+	/**
+	 * Returns the server time at which the snapshot was taken.
+	 *
+	 * @return the snapshot time
+	 */
+	public LocalDateTime getTakenAt() {
+		return takenAt;
+	}
+
+	/**
+	 * Returns the IDs of the parking spots that were not occupied.
+	 *
+	 * @return the free spot IDs
+	 */
+	public ArrayList<Integer> getFreeSpots() {
+		return freeSpots;
+	}
+
+	/**
+	 * Returns the preorder and active sessions.
+	 *
+	 * @return the sessions
+	 */
+	public ArrayList<Session> getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * Returns the number of subscribers in the snapshot.
+	 *
+	 * @return subscriber count
+	 */
+	public int getSubscriberCount() {
+		return subscriberIDs.length;
+	}
+
+	/**
+	 * Returns the username of a subscriber.
+	 *
+	 * @param userID the User_ID
+	 * @return the username, or null if the subscriber is unknown
+	 */
+	public String getUsername(int userID) {
+		int i = Arrays.binarySearch(subscriberIDs, userID);
+		return i >= 0 ? usernames[i] : null;
+	}
+}
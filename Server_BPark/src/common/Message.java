@@ -27,6 +27,20 @@ public class Message implements Serializable {
 	 */
 	private Serializable content;
 
+	/**
+	 * Session token issued by the server at kiosk login, sent back with every
+	 * follow-up kiosk request. Null for all other messages.
+	 */
+	private String sessionToken;
+
+	/**
+	 * Unique ID of a state-changing request, chosen by the client. A request
+	 * sent again with the same ID is answered with the original result instead
+	 * of being executed twice; the response carries the ID back. Null for
+	 * requests that are not retried.
+	 */
+	private String operationID;
+
 	/**
 	 * The message type enumeration for parking system operations.
 	 */
@@ -74,6 +88,10 @@ public class Message implements Serializable {
 		GET_PARKING_HISTORY,
 		/** Parking history response */
 		PARKING_HISTORY_RESPONSE,
+		/** Get history records changed since a version (content: "userName,version") */
+		GET_PARKING_HISTORY_CHANGES,
+		/** Changed history records (content: {@link HistoryChanges}) */
+		PARKING_HISTORY_CHANGES_RESPONSE,
 
 		// Manager operations
 		/** Manager login request */
@@ -96,6 +114,10 @@ public class Message implements Serializable {
 		GENERATE_MONTHLY_REPORTS,
 		/** Monthly reports response */
 		MONTHLY_REPORTS_RESPONSE,
+		/** Get occupancy history ("DAY", "WEEK" or "MONTH") */
+		GET_OCCUPANCY_HISTORY,
+		/** Occupancy history response (list of OccupancyBucket) */
+		OCCUPANCY_HISTORY_RESPONSE,
 
 		// Reservations
 		/** Get available time slots for a date/time (15-minute precision) */
@@ -152,6 +174,14 @@ public class Message implements Serializable {
 		ACTIVATE_RESERVATION_KIOSK,
 		/** Server responds to kiosk reservation activation request */
 		ACTIVATE_RESERVATION_KIOSK_RESPONSE,
+		/** Kiosk requests the state it needs to work offline */
+		GET_KIOSK_SNAPSHOT,
+		/** Offline state for a kiosk (content: {@link KioskSnapshot}) */
+		KIOSK_SNAPSHOT_RESPONSE,
+		/** Kiosk replays operations recorded offline (content: list of {@link KioskOperation}) */
+		REPLAY_KIOSK_JOURNAL,
+		/** Replayed operations with their outcome (content: list of {@link KioskOperation}) */
+		KIOSK_JOURNAL_REPLAY_RESPONSE,
 
 		// Additional subscriber operations
 		/** Get subscriber by name */
@@ -165,7 +195,25 @@ public class Message implements Serializable {
 		/** Request subscriber data (for profile update) */
 		REQUEST_SUBSCRIBER_DATA,
 		/** Subscriber data response */
-		SUBSCRIBER_DATA_RESPONSE
+		SUBSCRIBER_DATA_RESPONSE,
+		/** Request a window of the subscriber list (content: "offset,limit") */
+		GET_SUBSCRIBER_PAGE,
+		/** Window of the subscriber list (content: SubscriberPage) */
+		SUBSCRIBER_PAGE_RESPONSE,
+		/** Search subscribers by name, username, phone or car number (content: "limit,query") */
+		SEARCH_SUBSCRIBERS,
+		/** Best matching subscribers (content: SubscriberPage with the query) */
+		SEARCH_SUBSCRIBERS_RESPONSE,
+
+		// Server load
+		/** Request rejected because the server is overloaded (content: rejected MessageType) */
+		SERVER_BUSY,
+
+		// Connection health
+		/** Sent by an idle client to check that its connection is alive */
+		HEARTBEAT,
+		/** Answer to HEARTBEAT */
+		HEARTBEAT_RESPONSE
 	}
 
 	// Constructors ******************************************************
@@ -218,4 +266,40 @@ public class Message implements Serializable {
 	public void setContent(Serializable content) {
 		this.content = content;
 	}
+
+	/**
+	 * Returns the kiosk session token of the message.
+	 * 
+	 * @return the session token, or null if none was set
+	 */
+	public String getSessionToken() {
+		return sessionToken;
+	}
+
+	/**
+	 * Sets the kiosk session token of the message.
+	 * 
+	 * @param sessionToken the session token issued by the server
+	 */
+	public void setSessionToken(String sessionToken) {
+		this.sessionToken = sessionToken;
+	}
+
+	/**
+	 * Returns the operation ID of the message.
+	 * 
+	 * @return the operation ID, or null if none was set
+	 */
+	public String getOperationID() {
+		return operationID;
+	}
+
+	/**
+	 * Sets the operation ID of the message.
+	 * 
+	 * @param operationID unique ID of the request, or of the request answered
+	 */
+	public void setOperationID(String operationID) {
+		this.operationID = operationID;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package common;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One point of the occupancy history shown on the manager dashboard. Holds the
+ * lowest, highest and average number of occupied spots within a time bucket.
+ */
+public class OccupancyBucket implements Serializable {
+
+	/** Identifier for Serializable class version control. */
+	private static final long serialVersionUID = 1L;
+
+	/** Start time of the bucket */
+	private LocalDateTime startTime;
+
+	/** Lowest number of occupied spots in the bucket */
+	private int minOccupied;
+
+	/** Highest number of occupied spots in the bucket */
+	private int maxOccupied;
+
+	/** Average number of occupied spots in the bucket */
+	private double averageOccupied;
+
+	/**
+	 * Constructs an occupancy bucket.
+	 *
+	 * @param startTime       start time of the bucket
+	 * @param minOccupied     lowest number of occupied spots
+	 * @param maxOccupied     highest number of occupied spots
+	 * @param averageOccupied average number of occupied spots
+	 */
+	public OccupancyBucket(LocalDateTime startTime, int minOccupied, int maxOccupied, double averageOccupied) {
+		this.startTime = startTime;
+		this.minOccupied = minOccupied;
+		this.maxOccupied = maxOccupied;
+		this.averageOccupied = averageOccupied;
+	}
+
+	/**
+	 * Returns the start time of the bucket.
+	 *
+	 * @return bucket start time
+	 */
+	public LocalDateTime getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the lowest number of occupied spots in the bucket.
+	 *
+	 * @return minimum occupancy
+	 */
+	public int getMinOccupied() {
+		return minOccupied;
+	}
+
+	/**
+	 * Returns the highest number of occupied spots in the bucket.
+	 *
+	 * @return maximum occupancy
+	 */
+	public int getMaxOccupied() {
+		return maxOccupied;
+	}
+
+	/**
+	 * Returns the average number of occupied spots in the bucket.
+	 *
+	 * @return average occupancy
+	 */
+	public double getAverageOccupied() {
+		return averageOccupied;
+	}
+
+	@Override
+	public String toString() {
+		return "OccupancyBucket{" + "startTime=" + startTime + ", min=" + minOccupied + ", max=" + maxOccupied
+				+ ", avg=" + averageOccupied + '}';
+	}
+}
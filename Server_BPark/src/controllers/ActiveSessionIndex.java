@@ -0,0 +1,434 @@
+package controllers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import repository.Repositories;
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * In-memory index of all preorder and active parking sessions, keyed by
+ * ParkingInfo_ID (the parking code) and by User_ID. It is rebuilt from
+ * parkinginfo on startup and updated after every state change (reservation,
+ * entry, activation, extension, exit, cancellation), so lookups of the current
+ * session of a code or user need no query.
+ *
+ * Sessions are immutable snapshots; a change replaces the whole entry.
+ *
+ * If the sessions cannot be loaded, the index stays incomplete and the load is
+ * retried on later lookups, at most every {@link #RETRY_INTERVAL_MILLIS}. Code
+ * lookups that must not miss a session use {@link #findActive(int)}, which
+ * falls back to storage.
+ */
+public class ActiveSessionIndex {
+
+	/**
+	 * Snapshot of one preorder or active parking session.
+	 */
+	public static class Session {
+		/** ParkingInfo_ID, also the parking code */
+		private final int parkingInfoID;
+		/** Owner of the session */
+		private final int userID;
+		/** Assigned parking spot */
+		private final int spotID;
+		/** "preorder" or "active" */
+		private final String status;
+		/** Whether the session came from a reservation */
+		private final boolean ordered;
+		/** Reserved or actual start time */
+		private final LocalDateTime estimatedStart;
+		/** Expected end time */
+		private final LocalDateTime estimatedEnd;
+		/** Actual entry time, null for preorders */
+		private final LocalDateTime actualStart;
+		/** Whether the session was already extended */
+		private final boolean extended;
+		/** Whether the session was marked as late */
+		private final boolean late;
+
+		/**
+		 * Creates a session snapshot.
+		 *
+		 * @param parkingInfoID  ParkingInfo_ID of the session
+		 * @param userID         owner of the session
+		 * @param spotID         assigned parking spot
+		 * @param status         "preorder" or "active"
+		 * @param ordered        whether the session came from a reservation
+		 * @param estimatedStart reserved or actual start time
+		 * @param estimatedEnd   expected end time
+		 * @param actualStart    actual entry time, null for preorders
+		 * @param extended       whether the session was already extended
+		 * @param late           whether the session was marked as late
+		 */
+		public Session(int parkingInfoID, int userID, int spotID, String status, boolean ordered,
+				LocalDateTime estimatedStart, LocalDateTime estimatedEnd, LocalDateTime actualStart, boolean extended,
+				boolean late) {
+			this.parkingInfoID = parkingInfoID;
+			this.userID = userID;
+			this.spotID = spotID;
+			this.status = status;
+			this.ordered = ordered;
+			this.estimatedStart = estimatedStart;
+			this.estimatedEnd = estimatedEnd;
+			this.actualStart = actualStart;
+			this.extended = extended;
+			this.late = late;
+		}
+
+		/**
+		 * Returns the ParkingInfo_ID of the session.
+		 *
+		 * @return parking code
+		 */
+		public int getParkingInfoID() {
+			return parkingInfoID;
+		}
+
+		/**
+		 * Returns the owner of the session.
+		 *
+		 * @return User_ID
+		 */
+		public int getUserID() {
+			return userID;
+		}
+
+		/**
+		 * Returns the assigned parking spot.
+		 *
+		 * @return ParkingSpot_ID
+		 */
+		public int getSpotID() {
+			return spotID;
+		}
+
+		/**
+		 * Returns the session status.
+		 *
+		 * @return "preorder" or "active"
+		 */
+		public String getStatus() {
+			return status;
+		}
+
+		/**
+		 * Checks whether the session is active (car inside).
+		 *
+		 * @return true if active
+		 */
+		public boolean isActive() {
+			return "active".equals(status);
+		}
+
+		/**
+		 * Checks whether the session came from a reservation.
+		 *
+		 * @return true if reserved in advance
+		 */
+		public boolean isOrdered() {
+			return ordered;
+		}
+
+		/**
+		 * Returns the reserved or actual start time.
+		 *
+		 * @return estimated start time
+		 */
+		public LocalDateTime getEstimatedStart() {
+			return estimatedStart;
+		}
+
+		/**
+		 * Returns the expected end time.
+		 *
+		 * @return estimated end time
+		 */
+		public LocalDateTime getEstimatedEnd() {
+			return estimatedEnd;
+		}
+
+		/**
+		 * Returns the actual entry time.
+		 *
+		 * @return actual start time, null for preorders
+		 */
+		public LocalDateTime getActualStart() {
+			return actualStart;
+		}
+
+		/**
+		 * Checks whether the session was already extended.
+		 *
+		 * @return true if extended
+		 */
+		public boolean isExtended() {
+			return extended;
+		}
+
+		/**
+		 * Checks whether the session was marked as late.
+		 *
+		 * @return true if late
+		 */
+		public boolean isLate() {
+			return late;
+		}
+
+		/**
+		 * Returns a copy of this session activated at the given time.
+		 *
+		 * @param start the entry time
+		 * @return the activated session
+		 */
+		public Session activated(LocalDateTime start) {
+			return new Session(parkingInfoID, userID, spotID, "active", ordered, estimatedStart, estimatedEnd, start,
+					extended, late);
+		}
+
+		/**
+		 * Returns a copy of this session extended until the given time.
+		 *
+		 * @param newEnd the new expected end time
+		 * @return the extended session
+		 */
+		public Session extendedUntil(LocalDateTime newEnd) {
+			return new Session(parkingInfoID, userID, spotID, status, ordered, estimatedStart, newEnd, actualStart,
+					true, late);
+		}
+
+		/**
+		 * Returns a copy of this session marked as late.
+		 *
+		 * @return the late session
+		 */
+		public Session markedLate() {
+			return new Session(parkingInfoID, userID, spotID, status, ordered, estimatedStart, estimatedEnd,
+					actualStart, extended, true);
+		}
+	}
+
+	/** Minimum time between attempts to load the sessions after a failure */
+	private static final long RETRY_INTERVAL_MILLIS = 30_000;
+
+	/** Singleton instance */
+	private static ActiveSessionIndex instance;
+
+	/** Sessions by ParkingInfo_ID */
+	private final ConcurrentHashMap<Integer, Session> byCode = new ConcurrentHashMap<>();
+
+	/** ParkingInfo_IDs of each user's sessions */
+	private final ConcurrentHashMap<Integer, Set<Integer>> byUser = new ConcurrentHashMap<>();
+
+	/** Whether all open sessions were loaded */
+	private volatile boolean loaded = false;
+
+	/** Time of the last attempt to load the sessions */
+	private volatile long lastLoadAttempt = 0;
+
+	/**
+	 * Private constructor. Loads all preorder and active sessions.
+	 */
+	private ActiveSessionIndex() {
+		rebuild();
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use. Requires the
+	 * storage backend of {@link Repositories} to be available.
+	 *
+	 * @return the ActiveSessionIndex instance
+	 */
+	public static synchronized ActiveSessionIndex getInstance() {
+		if (instance == null) {
+			instance = new ActiveSessionIndex();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the session with the given code.
+	 *
+	 * @param parkingInfoID the parking code
+	 * @return the session, or null if there is no preorder or active session
+	 *         with this code
+	 */
+	public Session get(int parkingInfoID) {
+		retryLoadIfDue();
+		return byCode.get(parkingInfoID);
+	}
+
+	/**
+	 * Returns the active session with the given code.
+	 *
+	 * @param parkingInfoID the parking code
+	 * @return the session, or null if there is no active session with this code
+	 */
+	public Session getActive(int parkingInfoID) {
+		retryLoadIfDue();
+		Session session = byCode.get(parkingInfoID);
+		return session != null && session.isActive() ? session : null;
+	}
+
+	/**
+	 * Returns the active session with the given code, reading it from storage
+	 * if the index does not have it. Use where a missed session would wrongly
+	 * reject a request, e.g. an exit.
+	 *
+	 * @param parkingInfoID the parking code
+	 * @return the session, or null if there is no active session with this code
+	 */
+	public Session findActive(int parkingInfoID) {
+		Session session = getActive(parkingInfoID);
+		if (session != null) {
+			return session;
+		}
+		retryLoadIfDue();
+		session = Repositories.getSessions().findOpenSession(parkingInfoID);
+		if (session == null) {
+			return null;
+		}
+		put(session);
+		return session.isActive() ? session : null;
+	}
+
+	/**
+	 * Returns the active session of a user.
+	 *
+	 * @param userID the user's ID
+	 * @return the active session, or null if the user has none
+	 */
+	public Session getActiveByUser(int userID) {
+		retryLoadIfDue();
+		Set<Integer> codes = byUser.get(userID);
+		if (codes != null) {
+			for (Integer code : codes) {
+				Session session = byCode.get(code);
+				if (session != null && session.isActive()) {
+					return session;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all active sessions ordered by entry time.
+	 *
+	 * @return list of active sessions
+	 */
+	public List<Session> getActiveSessions() {
+		List<Session> result = new ArrayList<>();
+		for (Session session : byCode.values()) {
+			if (session.isActive()) {
+				result.add(session);
+			}
+		}
+		result.sort(Comparator.comparing(Session::getActualStart, Comparator.nullsLast(Comparator.naturalOrder())));
+		return result;
+	}
+
+	/**
+	 * Returns all preorder and active sessions, in no particular order.
+	 *
+	 * @return list of sessions
+	 */
+	public List<Session> getOpenSessions() {
+		return new ArrayList<>(byCode.values());
+	}
+
+	/**
+	 * Adds or replaces a session.
+	 *
+	 * @param session the new session state
+	 */
+	public void put(Session session) {
+		byCode.put(session.getParkingInfoID(), session);
+		byUser.compute(session.getUserID(), (id, codes) -> {
+			if (codes == null) {
+				codes = ConcurrentHashMap.newKeySet();
+			}
+			codes.add(session.getParkingInfoID());
+			return codes;
+		});
+	}
+
+	/**
+	 * Removes a session that was finished or cancelled.
+	 *
+	 * @param parkingInfoID the parking code
+	 */
+	public void remove(int parkingInfoID) {
+		Session removed = byCode.remove(parkingInfoID);
+		if (removed != null) {
+			byUser.computeIfPresent(removed.getUserID(), (id, codes) -> {
+				codes.remove(parkingInfoID);
+				return codes.isEmpty() ? null : codes;
+			});
+		}
+	}
+
+	/**
+	 * Reloads a single session from storage, e.g. after a change whose new state
+	 * is not known in memory. Removes it from the index if it is no longer
+	 * preorder or active.
+	 *
+	 * @param parkingInfoID the parking code
+	 */
+	public void reload(int parkingInfoID) {
+		Session session = Repositories.getSessions().findOpenSession(parkingInfoID);
+		if (session != null) {
+			put(session);
+		} else {
+			remove(parkingInfoID);
+		}
+	}
+
+	/**
+	 * Replaces the whole index with the preorder and active sessions in storage.
+	 * If they cannot be loaded, the index is kept and marked as not loaded.
+	 */
+	public synchronized void rebuild() {
+		lastLoadAttempt = System.currentTimeMillis();
+		List<Session> sessions;
+		try {
+			sessions = Repositories.getSessions().findOpenSessions();
+		} catch (RuntimeException e) {
+			// No connection available in time
+			sessions = null;
+		}
+		if (sessions == null) {
+			loaded = false;
+			ServerLog.log(Level.WARN, "session_index_load_failed", "retrySeconds", RETRY_INTERVAL_MILLIS / 1000);
+			return;
+		}
+		byCode.clear();
+		byUser.clear();
+		for (Session session : sessions) {
+			put(session);
+		}
+		loaded = true;
+		ServerLog.log(Level.INFO, "session_index_loaded", "sessions", byCode.size());
+	}
+
+	/**
+	 * Loads the sessions again if the last load failed and the retry interval
+	 * has passed.
+	 */
+	private void retryLoadIfDue() {
+		if (!loaded && System.currentTimeMillis() - lastLoadAttempt >= RETRY_INTERVAL_MILLIS) {
+			synchronized (this) {
+				if (!loaded && System.currentTimeMillis() - lastLoadAttempt >= RETRY_INTERVAL_MILLIS) {
+					rebuild();
+				}
+			}
+		}
+	}
+}
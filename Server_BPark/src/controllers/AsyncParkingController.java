@@ -0,0 +1,183 @@
+package controllers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import common.HistoryChanges;
+import common.ParkingOrder;
+import common.ParkingSubscriber;
+import server.RequestMetrics;
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * Asynchronous facade over {@link ParkingController}. Every method returns a
+ * {@link CompletableFuture} and runs its blocking JDBC and mail work on a
+ * dedicated I/O executor, so the calling thread is free as soon as the work is
+ * started. Where a request needs several independent lookups, they run in
+ * parallel and are combined; confirmation emails are sent after the reply is
+ * ready instead of before it.
+ *
+ * The futures never complete exceptionally: failures are turned into the same
+ * reply texts the synchronous methods return.
+ */
+public class AsyncParkingController {
+
+	/** Number of I/O threads */
+	private static final int IO_THREADS = Math.max(2, Integer.getInteger("bpark.async.ioThreads", 8));
+
+	/** The synchronous controller doing the actual work */
+	private final ParkingController controller;
+
+	/** Executor for blocking database and mail calls */
+	private final ExecutorService io;
+
+	/** {@link #io} keeping the request metrics trace of the caller */
+	private final Executor tracedIo;
+
+	/**
+	 * Creates the facade and its I/O threads.
+	 *
+	 * @param controller the synchronous controller to delegate to
+	 */
+	public AsyncParkingController(ParkingController controller) {
+		this.controller = controller;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.io = Executors.newFixedThreadPool(IO_THREADS, r -> {
+			Thread t = new Thread(r, "ParkingIO-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.tracedIo = RequestMetrics.propagating(io);
+	}
+
+	/**
+	 * Makes a reservation. The subscriber is looked up first; the 40% rule check,
+	 * spot search and insert then run in one transaction, and the confirmation
+	 * email is sent in the background.
+	 *
+	 * @param userName               the username of the subscriber
+	 * @param reservationDateTimeStr the requested reservation time
+	 * @return future reply text, as {@link ParkingController#makeReservation}
+	 */
+	public CompletableFuture<String> makeReservation(String userName, String reservationDateTimeStr) {
+		LocalDateTime start;
+		try {
+			start = controller.parseReservationTime(reservationDateTimeStr);
+		} catch (IllegalArgumentException e) {
+			return CompletableFuture.completedFuture("Reservation failed: " + e.getMessage());
+		}
+		String timeError = controller.checkReservationTime(start);
+		if (timeError != null) {
+			return CompletableFuture.completedFuture(timeError);
+		}
+
+		return CompletableFuture.supplyAsync(() -> controller.getUserInfo(userName), tracedIo).thenApply(subscriber -> {
+			if (subscriber == null) {
+				return "User not found";
+			}
+			try {
+				return controller.insertReservation(subscriber.getSubscriberID(), start,
+						reservation -> CompletableFuture
+								.runAsync(() -> controller.sendReservationConfirmation(subscriber, reservation), io));
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}).exceptionally(e -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			ServerLog.log(Level.WARN, "reservation_failed", "user", userName, "error", cause.getMessage());
+			return "Reservation failed: " + cause.getMessage();
+		});
+	}
+
+	/**
+	 * Looks up a subscriber by username.
+	 *
+	 * @param userName the username
+	 * @return future subscriber, or null if not found
+	 */
+	public CompletableFuture<ParkingSubscriber> getUserInfo(String userName) {
+		return supply(() -> controller.getUserInfo(userName), null);
+	}
+
+	/**
+	 * Retrieves the parking history of a subscriber.
+	 *
+	 * @param userName the username
+	 * @return future history, empty on error
+	 */
+	public CompletableFuture<ArrayList<ParkingOrder>> getParkingHistory(String userName) {
+		return supply(() -> controller.getParkingHistory(userName), new ArrayList<>());
+	}
+
+	/**
+	 * Retrieves the history records of a subscriber changed since a version.
+	 *
+	 * @param userName the username
+	 * @param version  the client's version, 0 for the full history
+	 * @return future change set, empty on error
+	 */
+	public CompletableFuture<HistoryChanges> getParkingHistoryChanges(String userName, long version) {
+		return supply(() -> controller.getParkingHistoryChanges(userName, version),
+				new HistoryChanges(new ArrayList<>(), version));
+	}
+
+	/**
+	 * Counts the free parking spots.
+	 *
+	 * @return future number of free spots
+	 */
+	public CompletableFuture<Integer> getAvailableParkingSpots() {
+		return supply(controller::getAvailableParkingSpots, 0);
+	}
+
+	/**
+	 * Sends the parking code of the subscriber's active session by email.
+	 *
+	 * @param userName the username
+	 * @return future reply text
+	 */
+	public CompletableFuture<String> sendLostParkingCode(String userName) {
+		return supply(() -> controller.sendLostParkingCode(userName), "Error sending parking code.");
+	}
+
+	/**
+	 * Stops the I/O threads after the work already started has finished.
+	 */
+	public void shutdown() {
+		io.shutdown();
+		try {
+			if (!io.awaitTermination(5, TimeUnit.SECONDS)) {
+				io.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			io.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs a synchronous call on the I/O executor.
+	 *
+	 * @param <T>      result type
+	 * @param call     the call
+	 * @param fallback result if the call throws
+	 * @return future result
+	 */
+	private <T> CompletableFuture<T> supply(Supplier<T> call, T fallback) {
+		return CompletableFuture.supplyAsync(call, tracedIo).exceptionally(e -> {
+			ServerLog.log(Level.WARN, "async_call_failed", "error", e.getMessage());
+			return fallback;
+		});
+	}
+}
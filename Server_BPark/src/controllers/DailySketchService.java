@@ -0,0 +1,779 @@
+package controllers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+import services.DurationSketch;
+import services.HyperLogLog;
+
+/**
+ * ||in SERVER||
+ *
+ * Maintains one {@link DurationSketch} per day and metric in the
+ * daily_sketches table. Sketches are updated incrementally on a background
+ * thread whenever a parking session finishes, so exits never wait for the
+ * statistics update. Percentile reports over any date range merge the stored
+ * daily sketches instead of scanning parkinginfo.
+ *
+ * Duration days are keyed by DATE(Estimated_start_time), the same column the
+ * reports use for their monthly window. A day without a stored row (data from
+ * before the sketches existed) is built once from the raw rows and then kept up
+ * to date incrementally. A scheduled job builds the missing closed days of the
+ * last {@link #PREBUILD_DAYS} days at startup and after every midnight, so
+ * reports normally only merge stored rows. A day a report still finds missing
+ * is read from the raw rows on the report's own connection pool, without
+ * storing it, and queued for the job.
+ *
+ * A build counts the sessions that ended at or before a watermark
+ * {@link #WATERMARK_GRACE_SECONDS} behind the database clock, and stores the
+ * watermark in Rebuilt_At. Sessions ending after the watermark are added
+ * by their own incremental update instead, so a session whose transaction was
+ * still open during the build is not lost.
+ *
+ * The same table also holds a {@link HyperLogLog} of the subscribers who
+ * started a parking session each day (keyed by DATE(Actual_start_time)), so
+ * distinct subscribers over any window is a merge of daily sketches.
+ *
+ * All writes run on the single worker thread, in order, so they need no lock.
+ */
+public class DailySketchService {
+
+	/** Metric name for total parking duration in minutes */
+	public static final String PARKING_TIME = "PARKING_TIME";
+
+	/** Metric name for minutes past the estimated end time of late exits */
+	public static final String LATE_EXIT_MINUTES = "LATE_EXIT_MINUTES";
+
+	/** Metric name for the distinct subscribers who started a session */
+	public static final String ACTIVE_SUBSCRIBERS = "ACTIVE_SUBSCRIBERS";
+
+	/** Number of closed days the scheduled job keeps built, covering the previous month's report */
+	private static final int PREBUILD_DAYS = 62;
+
+	/** Time after midnight at which the scheduled job builds the day that just closed */
+	private static final Duration PREBUILD_AFTER_MIDNIGHT = Duration.ofMinutes(10);
+
+	/**
+	 * Distance of the build watermark behind the database clock. Longer than any
+	 * transaction that finishes a session may stay open (InnoDB's lock wait
+	 * timeout is 50 seconds).
+	 */
+	private static final int WATERMARK_GRACE_SECONDS = 300;
+
+	/** Singleton instance */
+	private static DailySketchService instance;
+
+	/** Single background thread that applies session updates and builds days in order */
+	private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "daily-sketch-worker");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/** Indicates if the scheduled build job is running */
+	private boolean isRunning = false;
+
+	/**
+	 * Private constructor. The daily_sketches table is created by
+	 * {@link server.SchemaMigrator}.
+	 */
+	private DailySketchService() {
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use. Requires
+	 * {@link DBController} to be initialized.
+	 *
+	 * @return the DailySketchService instance
+	 */
+	public static synchronized DailySketchService getInstance() {
+		if (instance == null) {
+			instance = new DailySketchService();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts the job that builds missing closed days: once now and then every
+	 * day shortly after midnight.
+	 */
+	public synchronized void startService() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		LocalDateTime nextRun = LocalDate.now().plusDays(1).atStartOfDay().plus(PREBUILD_AFTER_MIDNIGHT);
+		worker.execute(this::prebuildClosedDays);
+		worker.scheduleAtFixedRate(this::prebuildClosedDays,
+				Duration.between(LocalDateTime.now(), nextRun).toMillis(), TimeUnit.DAYS.toMillis(1),
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues a finished parking session for inclusion in its day's sketches.
+	 * Returns immediately; the update runs on the background worker.
+	 *
+	 * @param parkingInfoID the ParkingInfo_ID of the session that just finished
+	 */
+	public void sessionFinished(int parkingInfoID) {
+		try {
+			worker.execute(() -> recordSession(parkingInfoID));
+		} catch (Exception e) {
+			ServerLog.log(Level.WARN, "sketch_update_not_queued", "parkingInfoID", parkingInfoID, "error", e.getMessage());
+		}
+	}
+
+	/**
+	 * Queues a started parking session for the distinct-subscriber sketch of the
+	 * day it started. Called when a parking session starts (spontaneous entry or
+	 * activated reservation).
+	 *
+	 * @param parkingInfoID the ParkingInfo_ID of the session that just started
+	 */
+	public void sessionStarted(int parkingInfoID) {
+		try {
+			worker.execute(() -> recordSubscriber(parkingInfoID));
+		} catch (Exception e) {
+			ServerLog.log(Level.WARN, "subscriber_sketch_update_not_queued", "parkingInfoID", parkingInfoID, "error",
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the merged sketch of a metric over the days in [fromDay, toDay).
+	 * Days without a stored row are read from the raw rows and queued for the
+	 * build job.
+	 *
+	 * @param metric  {@link #PARKING_TIME} or {@link #LATE_EXIT_MINUTES}
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @return merged sketch (empty if there is no data)
+	 */
+	public DurationSketch getMergedSketch(String metric, LocalDate fromDay, LocalDate toDay) {
+		DurationSketch merged = new DurationSketch();
+		String qry = """
+				SELECT Stat_Date, Sketch
+				FROM daily_sketches
+				WHERE Metric = ? AND Stat_Date >= ? AND Stat_Date < ?
+				""";
+
+		Set<LocalDate> storedDays = new HashSet<>();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.REPORTING);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setString(1, metric);
+			stmt.setDate(2, java.sql.Date.valueOf(fromDay));
+			stmt.setDate(3, java.sql.Date.valueOf(toDay));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					storedDays.add(rs.getDate("Stat_Date").toLocalDate());
+					merged.merge(DurationSketch.fromBytes(rs.getBytes("Sketch")));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_load_failed", "metric", metric, "error", e.getMessage());
+			return merged;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		// Days the build job has not stored yet (up to today)
+		LocalDate last = toDay.isAfter(LocalDate.now()) ? LocalDate.now().plusDays(1) : toDay;
+		for (LocalDate day = fromDay; day.isBefore(last); day = day.plusDays(1)) {
+			if (!storedDays.contains(day)) {
+				merged.merge(readDay(day, DBController.Pool.REPORTING, 0).sketches.get(metric));
+				queueBuild(day);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the merged distinct-subscriber sketch over the days in [fromDay,
+	 * toDay). Days without a stored row are read from the raw rows and queued
+	 * for the build job.
+	 *
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @return merged sketch (empty if there is no data)
+	 */
+	public HyperLogLog getMergedSubscribers(LocalDate fromDay, LocalDate toDay) {
+		HyperLogLog merged = new HyperLogLog();
+		for (HyperLogLog day : loadSubscriberDays(fromDay, toDay).values()) {
+			merged.merge(day);
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the estimated number of distinct subscribers per day in [fromDay,
+	 * toDay). Days without sessions are left out, like the exact query.
+	 *
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @return map of date string (yyyy-MM-dd) to estimated subscriber count
+	 */
+	public Map<String, Integer> getSubscribersPerDay(LocalDate fromDay, LocalDate toDay) {
+		Map<String, Integer> map = new TreeMap<>();
+		for (Map.Entry<LocalDate, HyperLogLog> entry : loadSubscriberDays(fromDay, toDay).entrySet()) {
+			int estimate = (int) entry.getValue().estimate();
+			if (estimate > 0) {
+				map.put(entry.getKey().toString(), estimate);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Stops the background worker of the running instance (if any), letting
+	 * queued updates finish first. A later {@link #getInstance()} starts a fresh
+	 * instance.
+	 */
+	public static void shutdownInstance() {
+		DailySketchService running;
+		synchronized (DailySketchService.class) {
+			running = instance;
+			instance = null;
+		}
+		if (running != null) {
+			running.shutdown();
+		}
+	}
+
+	/**
+	 * Stops the background worker, letting queued updates finish first. The
+	 * scheduled build job does not run again.
+	 */
+	private void shutdown() {
+		worker.shutdown();
+		try {
+			if (!worker.awaitTermination(5, TimeUnit.SECONDS)) {
+				worker.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			worker.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queues the build of a day that a report found missing.
+	 *
+	 * @param day the day
+	 */
+	private void queueBuild(LocalDate day) {
+		try {
+			worker.execute(() -> {
+				if (storedDays(PARKING_TIME, day, day.plusDays(1)).isEmpty()) {
+					buildDay(day);
+				}
+				if (storedDays(ACTIVE_SUBSCRIBERS, day, day.plusDays(1)).isEmpty()) {
+					buildSubscriberDay(day);
+				}
+			});
+		} catch (Exception e) {
+			// Shutting down; the next start builds it
+		}
+	}
+
+	/**
+	 * Builds the closed days of the last {@link #PREBUILD_DAYS} days that have
+	 * no stored row. Runs on the worker.
+	 */
+	private void prebuildClosedDays() {
+		try {
+			LocalDate today = LocalDate.now();
+			LocalDate from = today.minusDays(PREBUILD_DAYS);
+			Set<LocalDate> durations = storedDays(PARKING_TIME, from, today);
+			Set<LocalDate> subscribers = storedDays(ACTIVE_SUBSCRIBERS, from, today);
+			int built = 0;
+			for (LocalDate day = from; day.isBefore(today); day = day.plusDays(1)) {
+				if (!durations.contains(day) && buildDay(day) != null) {
+					built++;
+				}
+				if (!subscribers.contains(day) && buildSubscriberDay(day) != null) {
+					built++;
+				}
+			}
+			ServerLog.log(Level.INFO, "sketch_prebuild_done", "from", from, "built", built);
+		} catch (RuntimeException e) {
+			// Keep the daily schedule alive
+			ServerLog.log(Level.ERROR, "sketch_prebuild_failed", "error", e.toString());
+		}
+	}
+
+	/**
+	 * Returns the days in [fromDay, toDay) that have a stored row for a metric.
+	 *
+	 * @param metric  the metric name
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @return the stored days; all days if they could not be read, so that
+	 *         nothing is built twice
+	 */
+	private Set<LocalDate> storedDays(String metric, LocalDate fromDay, LocalDate toDay) {
+		Set<LocalDate> days = new HashSet<>();
+		String qry = """
+				SELECT Stat_Date
+				FROM daily_sketches
+				WHERE Metric = ? AND Stat_Date >= ? AND Stat_Date < ?
+				""";
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setString(1, metric);
+			stmt.setDate(2, java.sql.Date.valueOf(fromDay));
+			stmt.setDate(3, java.sql.Date.valueOf(toDay));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					days.add(rs.getDate("Stat_Date").toLocalDate());
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_load_failed", "metric", metric, "error", e.getMessage());
+			for (LocalDate day = fromDay; day.isBefore(toDay); day = day.plusDays(1)) {
+				days.add(day);
+			}
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return days;
+	}
+
+	/**
+	 * Adds one finished session to the sketches of its day. A session that
+	 * ended at or before the watermark of the day's build was counted by the build.
+	 * Runs on the worker.
+	 *
+	 * @param parkingInfoID the finished session
+	 */
+	private void recordSession(int parkingInfoID) {
+		String qry = """
+				SELECT Estimated_start_time, Estimated_end_time, Actual_start_time, Actual_end_time
+				FROM parkinginfo
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'finished'
+				AND Actual_start_time IS NOT NULL AND Actual_end_time IS NOT NULL
+				""";
+
+		LocalDate day;
+		LocalDateTime actualEnd;
+		long duration;
+		long lateMinutes;
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setInt(1, parkingInfoID);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return;
+				}
+				day = rs.getTimestamp("Estimated_start_time").toLocalDateTime().toLocalDate();
+				actualEnd = rs.getTimestamp("Actual_end_time").toLocalDateTime();
+				duration = ChronoUnit.MINUTES.between(rs.getTimestamp("Actual_start_time").toLocalDateTime(),
+						actualEnd);
+				Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
+				lateMinutes = estimatedEnd == null ? 0
+						: ChronoUnit.MINUTES.between(estimatedEnd.toLocalDateTime(), actualEnd);
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_session_read_failed", "parkingInfoID", parkingInfoID, "error", e.getMessage());
+			return;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		StoredDay stored = loadDay(day);
+		if (stored == null) {
+			// First session of a day without sketches
+			stored = buildDay(day);
+			if (stored == null) {
+				// Not stored: the next build reads this session from the raw rows
+				return;
+			}
+		}
+		if (stored.rebuiltAt != null && !actualEnd.isAfter(stored.rebuiltAt)) {
+			// Ended at or before the build's watermark, so the build counted it
+			return;
+		}
+
+		stored.sketches.get(PARKING_TIME).record(duration);
+		if (lateMinutes > 0) {
+			stored.sketches.get(LATE_EXIT_MINUTES).record(lateMinutes);
+		}
+		saveDay(day, stored.sketches, stored.rebuiltAt);
+	}
+
+	/**
+	 * Loads the stored sketches of a day.
+	 *
+	 * @param day the day to load
+	 * @return the stored day, or null if no sketch exists for the day
+	 */
+	private StoredDay loadDay(LocalDate day) {
+		String qry = """
+				SELECT Metric, Sketch, Rebuilt_At
+				FROM daily_sketches
+				WHERE Stat_Date = ? AND Metric IN (?, ?)
+				""";
+		StoredDay stored = null;
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setDate(1, java.sql.Date.valueOf(day));
+			stmt.setString(2, PARKING_TIME);
+			stmt.setString(3, LATE_EXIT_MINUTES);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					if (stored == null) {
+						stored = new StoredDay();
+						Timestamp rebuiltAt = rs.getTimestamp("Rebuilt_At");
+						stored.rebuiltAt = rebuiltAt == null ? null : rebuiltAt.toLocalDateTime();
+					}
+					stored.sketches.put(rs.getString("Metric"), DurationSketch.fromBytes(rs.getBytes("Sketch")));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_load_failed", "day", day, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		if (stored != null) {
+			stored.sketches.putIfAbsent(PARKING_TIME, new DurationSketch());
+			stored.sketches.putIfAbsent(LATE_EXIT_MINUTES, new DurationSketch());
+		}
+		return stored;
+	}
+
+	/**
+	 * Builds the sketches of a day from the sessions that ended at or before the
+	 * watermark, and stores them with the watermark. Runs on the worker.
+	 *
+	 * @param day the day to build
+	 * @return the stored day, or null if the raw rows could not be read
+	 */
+	private StoredDay buildDay(LocalDate day) {
+		StoredDay built = readDay(day, DBController.Pool.BACKGROUND, WATERMARK_GRACE_SECONDS);
+		if (built.rebuiltAt == null) {
+			// Could not read the raw rows: do not store an incomplete day
+			return null;
+		}
+		saveDay(day, built.sketches, built.rebuiltAt);
+		return built;
+	}
+
+	/**
+	 * Builds the sketches of a day from the raw parkinginfo rows without storing
+	 * them.
+	 *
+	 * @param day          the day to read
+	 * @param pool         the pool to read on
+	 * @param graceSeconds distance of the watermark behind the database clock;
+	 *                     only sessions that ended at or before it are counted
+	 * @return the sketches, with the watermark; the watermark is null if the rows
+	 *         could not be read
+	 */
+	private StoredDay readDay(LocalDate day, DBController.Pool pool, int graceSeconds) {
+		StoredDay rebuilt = new StoredDay();
+		Map<String, DurationSketch> sketches = rebuilt.sketches;
+		sketches.put(PARKING_TIME, new DurationSketch());
+		sketches.put(LATE_EXIT_MINUTES, new DurationSketch());
+
+		String qry = """
+				SELECT TIMESTAMPDIFF(MINUTE, Actual_start_time, Actual_end_time) AS duration,
+				       TIMESTAMPDIFF(MINUTE, Estimated_end_time, Actual_end_time) AS late_minutes
+				FROM parkinginfo
+				WHERE statusEnum = 'finished'
+				AND Actual_start_time IS NOT NULL AND Actual_end_time IS NOT NULL
+				AND Estimated_start_time >= ? AND Estimated_start_time < ?
+				AND Actual_end_time <= ?
+				""";
+
+		LocalDateTime watermark;
+		Connection conn = DBController.getInstance().getConnection(pool);
+		try {
+			try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW() - INTERVAL ? SECOND AS watermark")) {
+				stmt.setInt(1, graceSeconds);
+				try (ResultSet rs = stmt.executeQuery()) {
+					rs.next();
+					watermark = rs.getTimestamp("watermark").toLocalDateTime();
+				}
+			}
+			try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+				stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+				stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+				stmt.setTimestamp(3, Timestamp.valueOf(watermark));
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						sketches.get(PARKING_TIME).record(rs.getLong("duration"));
+						long lateMinutes = rs.getLong("late_minutes");
+						if (lateMinutes > 0) {
+							sketches.get(LATE_EXIT_MINUTES).record(lateMinutes);
+						}
+					}
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_rebuild_failed", "day", day, "error", e.getMessage());
+			return rebuilt;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		rebuilt.rebuiltAt = watermark;
+		return rebuilt;
+	}
+
+	/**
+	 * Upserts the sketches of a day.
+	 *
+	 * @param day       the day
+	 * @param sketches  sketches keyed by metric
+	 * @param rebuiltAt watermark of the day's build (kept as is)
+	 */
+	private void saveDay(LocalDate day, Map<String, DurationSketch> sketches, LocalDateTime rebuiltAt) {
+		String qry = """
+				INSERT INTO daily_sketches (Stat_Date, Metric, Sketch, Rebuilt_At)
+				VALUES (?, ?, ?, ?)
+				ON DUPLICATE KEY UPDATE Sketch = VALUES(Sketch), Rebuilt_At = VALUES(Rebuilt_At)
+				""";
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			for (Map.Entry<String, DurationSketch> entry : sketches.entrySet()) {
+				stmt.setDate(1, java.sql.Date.valueOf(day));
+				stmt.setString(2, entry.getKey());
+				stmt.setBytes(3, entry.getValue().toBytes());
+				stmt.setTimestamp(4, rebuiltAt == null ? null : Timestamp.valueOf(rebuiltAt));
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_save_failed", "day", day, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Adds the subscriber of a started session to the sketch of the day the
+	 * session started. A day without a stored sketch is built from the raw rows
+	 * first; adding an ID twice has no effect, so the session may be in both.
+	 * Runs on the worker.
+	 *
+	 * @param parkingInfoID the started session
+	 */
+	private void recordSubscriber(int parkingInfoID) {
+		String qry = """
+				SELECT User_ID, Actual_start_time
+				FROM parkinginfo
+				WHERE ParkingInfo_ID = ? AND Actual_start_time IS NOT NULL
+				""";
+
+		LocalDate day;
+		int userID;
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setInt(1, parkingInfoID);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return;
+				}
+				userID = rs.getInt("User_ID");
+				day = rs.getTimestamp("Actual_start_time").toLocalDateTime().toLocalDate();
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_session_read_failed", "parkingInfoID", parkingInfoID, "error",
+					e.getMessage());
+			return;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		Map<LocalDate, HyperLogLog> stored = readSubscriberDays(day, day.plusDays(1), DBController.Pool.BACKGROUND);
+		if (stored == null) {
+			return;
+		}
+		HyperLogLog sketch = stored.get(day);
+		if (sketch == null) {
+			// The build already includes this committed session
+			buildSubscriberDay(day);
+			return;
+		}
+		sketch.add(userID);
+		saveSketch(day, ACTIVE_SUBSCRIBERS, sketch.toBytes(), null);
+	}
+
+	/**
+	 * Loads the distinct-subscriber sketches of the days in [fromDay, toDay).
+	 * Days without a stored sketch (up to today) are read from the raw rows and
+	 * queued for the build job.
+	 *
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @return sketches keyed by day
+	 */
+	private Map<LocalDate, HyperLogLog> loadSubscriberDays(LocalDate fromDay, LocalDate toDay) {
+		Map<LocalDate, HyperLogLog> days = readSubscriberDays(fromDay, toDay, DBController.Pool.REPORTING);
+		if (days == null) {
+			return new TreeMap<>();
+		}
+
+		LocalDate last = toDay.isAfter(LocalDate.now()) ? LocalDate.now().plusDays(1) : toDay;
+		for (LocalDate day = fromDay; day.isBefore(last); day = day.plusDays(1)) {
+			if (!days.containsKey(day)) {
+				HyperLogLog sketch = readSubscriberDay(day, DBController.Pool.REPORTING);
+				days.put(day, sketch != null ? sketch : new HyperLogLog());
+				queueBuild(day);
+			}
+		}
+		return days;
+	}
+
+	/**
+	 * Reads the stored distinct-subscriber sketches of the days in [fromDay,
+	 * toDay).
+	 *
+	 * @param fromDay first day (inclusive)
+	 * @param toDay   last day (exclusive)
+	 * @param pool    the pool to read on
+	 * @return sketches keyed by day, or null if they could not be read
+	 */
+	private Map<LocalDate, HyperLogLog> readSubscriberDays(LocalDate fromDay, LocalDate toDay,
+			DBController.Pool pool) {
+		Map<LocalDate, HyperLogLog> days = new TreeMap<>();
+		String qry = """
+				SELECT Stat_Date, Sketch
+				FROM daily_sketches
+				WHERE Metric = ? AND Stat_Date >= ? AND Stat_Date < ?
+				""";
+
+		Connection conn = DBController.getInstance().getConnection(pool);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setString(1, ACTIVE_SUBSCRIBERS);
+			stmt.setDate(2, java.sql.Date.valueOf(fromDay));
+			stmt.setDate(3, java.sql.Date.valueOf(toDay));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					days.put(rs.getDate("Stat_Date").toLocalDate(), HyperLogLog.fromBytes(rs.getBytes("Sketch")));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_load_failed", "metric", ACTIVE_SUBSCRIBERS, "error", e.getMessage());
+			return null;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return days;
+	}
+
+	/**
+	 * Builds the distinct-subscriber sketch of a day from the raw parkinginfo
+	 * rows and stores it. Runs on the worker.
+	 *
+	 * @param day the day to build
+	 * @return the stored sketch, or null if the raw rows could not be read
+	 */
+	private HyperLogLog buildSubscriberDay(LocalDate day) {
+		LocalDateTime rebuiltAt = LocalDateTime.now();
+		HyperLogLog sketch = readSubscriberDay(day, DBController.Pool.BACKGROUND);
+		if (sketch != null) {
+			saveSketch(day, ACTIVE_SUBSCRIBERS, sketch.toBytes(), rebuiltAt);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Builds the distinct-subscriber sketch of a day from the raw parkinginfo rows
+	 * without storing it.
+	 *
+	 * @param day  the day to read
+	 * @param pool the pool to read on
+	 * @return the sketch, or null if the rows could not be read
+	 */
+	private HyperLogLog readSubscriberDay(LocalDate day, DBController.Pool pool) {
+		HyperLogLog sketch = new HyperLogLog();
+		String qry = """
+				SELECT DISTINCT User_ID
+				FROM parkinginfo
+				WHERE statusEnum IN ('active', 'finished')
+				AND Actual_start_time >= ? AND Actual_start_time < ?
+				""";
+
+		Connection conn = DBController.getInstance().getConnection(pool);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+			stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					sketch.add(rs.getInt("User_ID"));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_rebuild_failed", "metric", ACTIVE_SUBSCRIBERS, "day", day, "error",
+					e.getMessage());
+			return null;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Upserts a single serialized sketch.
+	 *
+	 * @param day       the day
+	 * @param metric    the metric name
+	 * @param data      serialized sketch
+	 * @param rebuiltAt time of the last rebuild from raw rows, or null to keep the
+	 *                  stored value
+	 */
+	private void saveSketch(LocalDate day, String metric, byte[] data, LocalDateTime rebuiltAt) {
+		String qry = """
+				INSERT INTO daily_sketches (Stat_Date, Metric, Sketch, Rebuilt_At)
+				VALUES (?, ?, ?, ?)
+				ON DUPLICATE KEY UPDATE Sketch = VALUES(Sketch),
+				    Rebuilt_At = COALESCE(VALUES(Rebuilt_At), Rebuilt_At)
+				""";
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setDate(1, java.sql.Date.valueOf(day));
+			stmt.setString(2, metric);
+			stmt.setBytes(3, data);
+			stmt.setTimestamp(4, rebuiltAt == null ? null : Timestamp.valueOf(rebuiltAt));
+			stmt.executeUpdate();
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "sketch_save_failed", "metric", metric, "day", day, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Sketches of one day, as stored in the database or rebuilt from raw rows.
+	 */
+	private static class StoredDay {
+		/** Sketches keyed by metric name */
+		private final Map<String, DurationSketch> sketches = new HashMap<>();
+		/** Time the day was last rebuilt from raw rows (null if never) */
+		private LocalDateTime rebuiltAt;
+	}
+}
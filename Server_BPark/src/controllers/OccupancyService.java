@@ -0,0 +1,174 @@
+package controllers;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import common.OccupancyBucket;
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+import services.OccupancyTimeSeries;
+
+/**
+ * ||in SERVER||
+ *
+ * Records the number of occupied parking spots over time. A sample is taken
+ * every minute and right after every entry or exit, on a background thread so
+ * gate operations are not delayed. Samples are stored in an
+ * {@link OccupancyTimeSeries} under the directory given by the
+ * bpark.occupancy.dir system property (default "occupancy-data").
+ */
+public class OccupancyService {
+
+	/** Interval between periodic samples in seconds */
+	private static final int SAMPLE_INTERVAL_SECONDS = 60;
+
+	/** Singleton instance */
+	private static OccupancyService instance;
+
+	/** Underlying time series storage */
+	private final OccupancyTimeSeries series;
+
+	/** Background thread taking the samples */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "occupancy-sampler");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/** Indicates if the periodic sampling is running */
+	private boolean isRunning = false;
+
+	/**
+	 * Private constructor. Opens the time series storage.
+	 */
+	private OccupancyService() {
+		series = new OccupancyTimeSeries(new File(System.getProperty("bpark.occupancy.dir", "occupancy-data")));
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use.
+	 *
+	 * @return the OccupancyService instance
+	 */
+	public static synchronized OccupancyService getInstance() {
+		if (instance == null) {
+			instance = new OccupancyService();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts sampling the occupancy every minute.
+	 */
+	public synchronized void startService() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				sample();
+			} catch (Exception e) {
+				ServerLog.log(Level.ERROR, "occupancy_recorder_failed", "error", e.toString());
+			}
+		}, 0, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		System.out.println("Occupancy recorder started (sampling every minute)");
+	}
+
+	/**
+	 * Takes an extra sample after a car entered or left. Returns immediately.
+	 */
+	public void occupancyChanged() {
+		try {
+			scheduler.execute(this::sample);
+		} catch (Exception e) {
+			ServerLog.log(Level.WARN, "occupancy_sample_not_queued", "error", e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the occupancy history of the last day, week or month, downsampled
+	 * so the chart gets a few hundred points at most.
+	 *
+	 * @param range "DAY", "WEEK" or "MONTH"
+	 * @return list of buckets with min/max/avg occupancy, oldest first
+	 */
+	public ArrayList<OccupancyBucket> getOccupancyHistory(String range) {
+		LocalDateTime to = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+		LocalDateTime from;
+		int bucketMinutes;
+
+		switch (range == null ? "DAY" : range.toUpperCase()) {
+		case "WEEK":
+			from = to.minusDays(7);
+			bucketMinutes = 30;
+			break;
+		case "MONTH":
+			from = to.minusDays(30);
+			bucketMinutes = 120;
+			break;
+		default:
+			from = to.minusDays(1);
+			bucketMinutes = 5;
+			break;
+		}
+
+		ArrayList<OccupancyBucket> result = new ArrayList<>();
+		for (OccupancyTimeSeries.Bucket b : series.query(from, to, bucketMinutes)) {
+			result.add(new OccupancyBucket(b.start, b.min, b.max, b.avg));
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the running instance (if any) and closes its storage.
+	 */
+	public static void shutdownInstance() {
+		OccupancyService running;
+		synchronized (OccupancyService.class) {
+			running = instance;
+			instance = null;
+		}
+		if (running != null) {
+			running.scheduler.shutdown();
+			try {
+				if (!running.scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+					running.scheduler.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				running.scheduler.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			running.series.close();
+		}
+	}
+
+	/**
+	 * Reads the current number of occupied spots and records it.
+	 */
+	private void sample() {
+		String qry = "SELECT COUNT(*) AS occupied FROM parkingspot WHERE isOccupied = TRUE";
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					series.record(LocalDateTime.now(), rs.getInt("occupied"));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "occupancy_sample_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+}
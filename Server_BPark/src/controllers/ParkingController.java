@@ -5,17 +5,29 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
+import common.HistoryChanges;
+import common.KioskOperation;
+import common.KioskSnapshot;
 import common.ParkingOrder;
 import common.ParkingSubscriber;
+import common.SubscriberPage;
+import repository.Repositories;
 import server.DBController;
+import server.SchemaMigrator;
+import server.ServerLog;
+import server.ServerLog.Level;
+import server.UnitOfWork;
 import services.EmailService;
 
 /**
@@ -80,7 +92,14 @@ public class ParkingController {
 		autoCancellationService = new SimpleAutoCancellationService(this);
 
 		if (successFlag == 1) {
+			SchemaMigrator.migrate();
+			if (Boolean.getBoolean("bpark.debugQueryPlans")) {
+				SchemaMigrator.debugQueryPlans();
+			}
+			ActiveSessionIndex.getInstance();
 			startAutoCancellationService();
+			UsernameIndex.getInstance();
+			SubscriberSearchIndex.getInstance();
 		}
 	}
 
@@ -305,6 +324,10 @@ public class ParkingController {
 		if (autoCancellationService != null) {
 			autoCancellationService.shutdown();
 		}
+		DailySketchService.shutdownInstance();
+		OccupancyService.shutdownInstance();
+		System.out.println(SubscriberCache.getInstance().getStatistics());
+		System.out.print(DBController.getInstance().getStatistics());
 	}
 
 	// ========== AUTHENTICATION & USER MANAGEMENT ==========
@@ -317,21 +340,9 @@ public class ParkingController {
 	 * @return The user's role type if valid, otherwise "None".
 	 */
 	public String checkLogin(String userName, String userCode) {
-		String qry = "SELECT UserTypeEnum FROM users WHERE UserName = ? AND User_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			stmt.setString(2, userCode);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getString("UserTypeEnum");
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error checking login: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		ParkingSubscriber user = SubscriberCache.getInstance().getByUsername(userName);
+		if (user != null && String.valueOf(user.getSubscriberID()).equals(userCode)) {
+			return user.getUserType();
 		}
 		return "None";
 	}
@@ -344,30 +355,7 @@ public class ParkingController {
 	 *         found
 	 */
 	public ParkingSubscriber getUserInfo(String userName) {
-		String qry = "SELECT * FROM users WHERE UserName = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					ParkingSubscriber user = new ParkingSubscriber();
-					user.setSubscriberID(rs.getInt("User_ID"));
-					user.setFirstName(rs.getString("Name"));
-					user.setPhoneNumber(rs.getString("Phone"));
-					user.setEmail(rs.getString("Email"));
-					user.setCarNumber(rs.getString("CarNum"));
-					user.setSubscriberCode(userName);
-					user.setUserType(rs.getString("UserTypeEnum"));
-					return user;
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting user info: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return null;
+		return SubscriberCache.getInstance().getByUsername(userName);
 	}
 
 	/**
@@ -377,21 +365,9 @@ public class ParkingController {
 	 * @return the user's role as a UserRole enum, or null if not found
 	 */
 	private UserRole getUserRole(String userName) {
-		String qry = "SELECT UserTypeEnum FROM users WHERE UserName = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					String userType = rs.getString("UserTypeEnum");
-					return UserRole.fromDbValue(userType);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting user role: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		ParkingSubscriber user = SubscriberCache.getInstance().getByUsername(userName);
+		if (user != null) {
+			return UserRole.fromDbValue(user.getUserType());
 		}
 		return null;
 	}
@@ -432,15 +408,26 @@ public class ParkingController {
 	 * @return true if reservation is allowed, false if blocked by the rule
 	 */
 	public boolean canMakeReservationForTimeSlot(LocalDateTime startTime, LocalDateTime endTime) {
-		int availableSpots = getAvailableSpotsForTimeSlot(startTime, endTime);
+		return isAboveReservationThreshold(startTime, getAvailableSpotsForTimeSlot(startTime, endTime));
+	}
+
+	/**
+	 * Applies the strict 40% rule to the availability of a time slot.
+	 *
+	 * @param startTime      the start of the requested time slot, for logging
+	 * @param availableSpots the minimum number of free spots during the slot
+	 * @return true if reservation is allowed, false if blocked by the rule
+	 */
+	private boolean isAboveReservationThreshold(LocalDateTime startTime, int availableSpots) {
 		int requiredSpots = (int) Math.ceil(TOTAL_PARKING_SPOTS * RESERVATION_THRESHOLD);
 
 		// STRICT: Must have MORE than 40%, not just exactly 40%
 		boolean allowed = availableSpots > requiredSpots;
 
-		System.out.println("Time slot check (STRICT): " + startTime + " to " + endTime);
-		System.out.println("Available spots: " + availableSpots + ", Required: >" + requiredSpots);
-		System.out.println("Result: " + (allowed ? "ALLOWED" : "BLOCKED"));
+		if (ServerLog.isEnabled(Level.DEBUG)) {
+			ServerLog.log(Level.DEBUG, "time_slot_check", "start", startTime, "available", availableSpots, "allowed",
+					allowed);
+		}
 
 		return allowed;
 	}
@@ -455,6 +442,29 @@ public class ParkingController {
 	 * @return the minimum number of available spots during the given period
 	 */
 	public int getAvailableSpotsForTimeSlot(LocalDateTime startTime, LocalDateTime endTime) {
+		Connection conn = DBController.getInstance().getConnection();
+		try {
+			return getAvailableSpotsForTimeSlot(conn, startTime, endTime);
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "time_slot_availability_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return 0;
+	}
+
+	/**
+	 * Calculates the minimum number of available spots during a time slot on the
+	 * given connection, e.g. inside a transaction.
+	 *
+	 * @param conn      the connection to run the query on
+	 * @param startTime the start of the time slot
+	 * @param endTime   the end of the time slot
+	 * @return the minimum number of available spots during the given period
+	 * @throws SQLException if the query fails
+	 */
+	private int getAvailableSpotsForTimeSlot(Connection conn, LocalDateTime startTime, LocalDateTime endTime)
+			throws SQLException {
 		// Get all reservations that overlap with our period
 		String qry = """
 				SELECT ParkingSpot_ID, Estimated_start_time, Estimated_end_time
@@ -466,7 +476,6 @@ public class ParkingController {
 				ORDER BY Estimated_start_time
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			stmt.setTimestamp(1, Timestamp.valueOf(endTime));
 			stmt.setTimestamp(2, Timestamp.valueOf(startTime));
@@ -501,16 +510,12 @@ public class ParkingController {
 				checkTime = checkTime.plusMinutes(15);
 			}
 
-			System.out.println(
-					"Time slot " + startTime + " to " + endTime + " has minimum " + minAvailable + " spots available");
+			if (ServerLog.isEnabled(Level.DEBUG)) {
+				ServerLog.log(Level.DEBUG, "time_slot_availability", "start", startTime, "end", endTime, "minAvailable",
+						minAvailable);
+			}
 			return minAvailable;
-
-		} catch (SQLException e) {
-			System.out.println("Error getting available spots for time slot: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
-		return 0;
 	}
 
 	/**
@@ -545,7 +550,8 @@ public class ParkingController {
 
 	/**
 	 * Makes a new parking reservation for a user, with full validation and strict
-	 * 40% availability rule.
+	 * 40% availability rule. {@link AsyncParkingController} runs the same steps
+	 * off the request thread.
 	 *
 	 * @param userName               the username of the subscriber
 	 * @param reservationDateTimeStr the requested reservation time (in string
@@ -554,51 +560,198 @@ public class ParkingController {
 	 *         successful
 	 */
 	public String makeReservation(String userName, String reservationDateTimeStr) {
-		Connection conn = DBController.getInstance().getConnection();
 		try {
 			// Parse the datetime string
 			LocalDateTime reservationDateTime = parseDateTime(reservationDateTimeStr);
 
 			// Validate reservation timing
-			LocalDateTime now = LocalDateTime.now();
-			if (reservationDateTime.isBefore(now.plusHours(24))) {
-				return "Reservation must be at least 24 hours in advance";
-			}
-			if (reservationDateTime.isAfter(now.plusDays(7))) {
-				return "Reservation cannot be more than 7 days in advance";
+			String timeError = checkReservationTime(reservationDateTime);
+			if (timeError != null) {
+				return timeError;
 			}
 
-			// Get user ID
-			int userID = getUserID(userName);
-			if (userID == -1) {
+			// Get user
+			ParkingSubscriber user = getUserInfo(userName);
+			if (user == null) {
 				return "User not found";
 			}
 
-			// Calculate end time
-			LocalDateTime estimatedEndTime = reservationDateTime.plusHours(DEFAULT_PARKING_HOURS);
+			// Checks the 40% rule and stores the reservation in one transaction
+			return insertReservation(user.getSubscriberID(), reservationDateTime,
+					reservation -> sendReservationConfirmation(user, reservation));
+		} catch (Exception e) {
+			ServerLog.log(Level.WARN, "reservation_failed", "user", userName, "error", e.getMessage());
+			return "Reservation failed: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * A reservation that was stored.
+	 */
+	public static class Reservation {
+		/** Confirmation code (ParkingInfo_ID) */
+		private final int code;
+		/** Reserved parking spot */
+		private final int spotID;
+		/** Reserved start time */
+		private final LocalDateTime start;
+
+		/**
+		 * Creates a reservation result.
+		 *
+		 * @param code   confirmation code
+		 * @param spotID reserved parking spot
+		 * @param start  reserved start time
+		 */
+		Reservation(int code, int spotID, LocalDateTime start) {
+			this.code = code;
+			this.spotID = spotID;
+			this.start = start;
+		}
+
+		/**
+		 * Returns the confirmation code.
+		 *
+		 * @return ParkingInfo_ID of the reservation
+		 */
+		public int getCode() {
+			return code;
+		}
+
+		/**
+		 * Returns the reserved parking spot.
+		 *
+		 * @return ParkingSpot_ID
+		 */
+		public int getSpotID() {
+			return spotID;
+		}
+
+		/**
+		 * Returns the reserved start time.
+		 *
+		 * @return start time
+		 */
+		public LocalDateTime getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns the confirmation message sent to the subscriber.
+		 *
+		 * @return confirmation text with date, code and spot
+		 */
+		@Override
+		public String toString() {
+			return "Reservation confirmed for " + start.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+					+ ". Confirmation code: " + code + ". Spot: " + spotID;
+		}
+	}
+
+	/**
+	 * Parses the requested reservation time.
+	 *
+	 * @param reservationDateTimeStr the requested time, e.g. "2025-07-12 15:00"
+	 * @return the parsed time
+	 * @throws IllegalArgumentException if the format is not supported
+	 */
+	public LocalDateTime parseReservationTime(String reservationDateTimeStr) {
+		return parseDateTime(reservationDateTimeStr);
+	}
+
+	/**
+	 * Checks that a reservation starts between 24 hours and 7 days from now.
+	 *
+	 * @param reservationDateTime the requested start time
+	 * @return an error message, or null if the time is allowed
+	 */
+	public String checkReservationTime(LocalDateTime reservationDateTime) {
+		LocalDateTime now = LocalDateTime.now();
+		if (reservationDateTime.isBefore(now.plusHours(24))) {
+			return "Reservation must be at least 24 hours in advance";
+		}
+		if (reservationDateTime.isAfter(now.plusDays(7))) {
+			return "Reservation cannot be more than 7 days in advance";
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the expected end of a reservation.
+	 *
+	 * @param reservationDateTime the reserved start time
+	 * @return start time plus the default parking duration
+	 */
+	public LocalDateTime getReservationEnd(LocalDateTime reservationDateTime) {
+		return reservationDateTime.plusHours(DEFAULT_PARKING_HOURS);
+	}
+
+	/**
+	 * Returns the reply for a reservation blocked by the 40% rule.
+	 *
+	 * @param reservationDateTime the requested start time
+	 * @return the error message
+	 */
+	public String getReservationBlockedMessage(LocalDateTime reservationDateTime) {
+		return "Not enough available spots for reservation at "
+				+ reservationDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+				+ ". Must have more than 40% spots available (need > 4 spots free)";
+	}
+
+	/**
+	 * Checks the strict 40% rule, finds a free spot for the reserved time slot
+	 * and stores the preorder, in one transaction. The reservation_lock row is
+	 * locked first, so reservations check the rule and store their preorder one
+	 * at a time and two of them can never both pass on the same free spots; gate
+	 * entries do not take this lock. The chosen spot stays locked until the
+	 * preorder is stored, so concurrent reservations for overlapping slots never
+	 * get the same spot.
+	 *
+	 * @param userID              the subscriber's ID
+	 * @param reservationDateTime the reserved start time
+	 * @param onStored            called with the stored reservation after the
+	 *                            commit, e.g. to send the confirmation
+	 * @return the confirmation text, or the reason the reservation was refused
+	 * @throws SQLException if the reservation cannot be stored
+	 */
+	public String insertReservation(int userID, LocalDateTime reservationDateTime, Consumer<Reservation> onStored)
+			throws SQLException {
+		LocalDateTime estimatedEndTime = getReservationEnd(reservationDateTime);
+
+		// Create reservation
+		String qry = """
+				INSERT INTO parkinginfo
+				(ParkingSpot_ID, User_ID, Date_Of_Placing_Order, Estimated_start_time,
+				 Estimated_end_time, IsOrderedEnum, IsLate, IsExtended, statusEnum)
+				VALUES (?, ?, NOW(), ?, ?, 'yes', 'no', 'no', 'preorder')
+				""";
+
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			// Locking read: does not start the snapshot, so the count below sees every committed reservation
+			long lockStart = System.nanoTime();
+			try (PreparedStatement stmt = uow
+					.prepare("SELECT Lock_ID FROM reservation_lock WHERE Lock_ID = 1 FOR UPDATE")) {
+				stmt.executeQuery().close();
+			}
+			if (ServerLog.isEnabled(Level.DEBUG)) {
+				ServerLog.log(Level.DEBUG, "reservation_lock_wait", "user", userID, "ms",
+						(System.nanoTime() - lockStart) / 1_000_000);
+			}
 
 			// Check 40% rule for the specific time slot (STRICT: need MORE than 40%)
-			if (!canMakeReservationForTimeSlot(reservationDateTime, estimatedEndTime)) {
-				return "Not enough available spots for reservation at "
-						+ reservationDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
-						+ ". Must have more than 40% spots available (need > 4 spots free)";
+			int availableSpots = getAvailableSpotsForTimeSlot(uow.getConnection(), reservationDateTime,
+					estimatedEndTime);
+			if (!isAboveReservationThreshold(reservationDateTime, availableSpots)) {
+				return getReservationBlockedMessage(reservationDateTime);
 			}
 
-			// Find available spot for the time slot
-			int parkingSpotID = findAvailableSpotForTimeSlot(reservationDateTime, estimatedEndTime);
+			// Find and lock an available spot for the time slot
+			int parkingSpotID = findAvailableSpotForTimeSlot(uow, reservationDateTime, estimatedEndTime);
 			if (parkingSpotID == -1) {
 				return "No parking spots available for the requested time slot";
 			}
 
-			// Create reservation
-			String qry = """
-					INSERT INTO parkinginfo
-					(ParkingSpot_ID, User_ID, Date_Of_Placing_Order, Estimated_start_time,
-					 Estimated_end_time, IsOrderedEnum, IsLate, IsExtended, statusEnum)
-					VALUES (?, ?, NOW(), ?, ?, 'yes', 'no', 'no', 'preorder')
-					""";
-
-			try (PreparedStatement stmt = conn.prepareStatement(qry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+			try (PreparedStatement stmt = uow.prepare(qry, PreparedStatement.RETURN_GENERATED_KEYS)) {
 				stmt.setInt(1, parkingSpotID);
 				stmt.setInt(2, userID);
 				stmt.setTimestamp(3, Timestamp.valueOf(reservationDateTime));
@@ -606,34 +759,40 @@ public class ParkingController {
 				stmt.executeUpdate();
 
 				try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-					if (generatedKeys.next()) {
-						int reservationCode = generatedKeys.getInt(1);
-						System.out.println("New preorder reservation created: " + reservationCode);
-
-						// Send email confirmation
-						ParkingSubscriber user = getUserInfo(userName);
-						if (user != null && user.getEmail() != null) {
-							String formattedDateTime = reservationDateTime
-									.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-							EmailService.sendReservationConfirmation(user.getEmail(), user.getFirstName(),
-									String.valueOf(reservationCode), formattedDateTime, "Spot " + parkingSpotID);
-						}
-
-						return "Reservation confirmed for "
-								+ reservationDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
-								+ ". Confirmation code: " + reservationCode + ". Spot: " + parkingSpotID;
+					if (!generatedKeys.next()) {
+						throw new SQLException("No reservation code generated");
 					}
+					int reservationCode = generatedKeys.getInt(1);
+					Reservation reservation = new Reservation(reservationCode, parkingSpotID, reservationDateTime);
+					uow.afterCommit(() -> ActiveSessionIndex.getInstance()
+							.put(new ActiveSessionIndex.Session(reservationCode, userID, parkingSpotID, "preorder",
+									true, reservationDateTime, estimatedEndTime, null, false, false)));
+					uow.afterCommit(() -> onStored.accept(reservation));
+					uow.commit();
+					ServerLog.log(Level.INFO, "reservation_created", "reservation", reservationCode, "user", userID,
+							"spot", parkingSpotID);
+					return reservation.toString();
 				}
 			}
-		} catch (Exception e) {
-			System.out.println("Error making reservation: " + e.getMessage());
-			return "Reservation failed: " + e.getMessage();
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
-		return "Reservation failed";
 	}
 
+	/**
+	 * Emails the reservation confirmation to the subscriber, if they have an email
+	 * address.
+	 *
+	 * @param user        the subscriber
+	 * @param reservation the stored reservation
+	 */
+	public void sendReservationConfirmation(ParkingSubscriber user, Reservation reservation) {
+		if (user.getEmail() != null) {
+			String formattedDateTime = reservation.getStart().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+			EmailService.sendReservationConfirmation(user.getEmail(), user.getFirstName(),
+					String.valueOf(reservation.getCode()), formattedDateTime, "Spot " + reservation.getSpotID());
+		}
+	}
+
+
 	/**
 	 * Cancels a reservation by its code (used when a subscriber cancels).
 	 *
@@ -641,7 +800,7 @@ public class ParkingController {
 	 * @return result message indicating success or failure
 	 */
 	public String cancelReservation(int reservationCode) {
-		return cancelReservationInternal(reservationCode, "User requested cancellation");
+		return cancelReservationInternal(reservationCode, null, "User requested cancellation");
 	}
 	
 
@@ -654,94 +813,76 @@ public class ParkingController {
 	 * @return result message indicating success or failure
 	 */
 	public String cancelReservation(String subscriberUserName, int reservationCode) {
-		return cancelReservationInternal(reservationCode, "User requested cancellation");
+		return cancelReservationInternal(reservationCode, null, "User requested cancellation");
 	}
 	
 	/**
 	 * Cancels a parking reservation if the given user is the owner of the reservation.
-	 * First checks whether the reservation belongs to the user, and if so, proceeds with the cancellation.
+	 * The ownership check is part of the cancelling update itself.
 	 *
 	 * @param reservationCode the unique code identifying the reservation
 	 * @param userID the ID of the user requesting the cancellation
 	 * @return a message indicating whether the cancellation was successful or access was denied
 	 */
 	public String cancelReservation(int reservationCode, int userID) {
-		// Validate parking order ownership
-		if (!validateParkingOrderOwnership(reservationCode, userID)) {
-			return "Access denied: This reservation does not belong to your account.";
-		}
-
-		return cancelReservationInternal(reservationCode, "User requested cancellation");
+		return cancelReservationInternal(reservationCode, userID, "User requested cancellation");
 	}
 
 	/**
-	 * Internal helper method that cancels a reservation and notifies the user.
+	 * Internal helper method that cancels a reservation and notifies the user. The
+	 * reservation is cancelled with a single conditional update; the user's email
+	 * and name for the notification come from the {@link SubscriberCache}.
 	 *
 	 * @param reservationCode the ID of the reservation to cancel
+	 * @param ownerID         if not null, the reservation is only cancelled if it
+	 *                        belongs to this user
 	 * @param reason          the reason for cancellation (for logging purposes)
 	 * @return a status message about the cancellation
 	 */
-	private String cancelReservationInternal(int reservationCode, String reason) {
-		// Get reservation info for notification
-		String getUserQry = """
-				SELECT u.Email, u.Name, pi.statusEnum, pi.ParkingSpot_ID
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				WHERE pi.ParkingInfo_ID = ?
-				""";
-
-		String userEmail = null;
-		String userName = null;
-		String currentStatus = null;
-		Integer spotId = null;
-
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
-			stmt.setInt(1, reservationCode);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					userEmail = rs.getString("Email");
-					userName = rs.getString("Name");
-					currentStatus = rs.getString("statusEnum");
-					spotId = rs.getObject("ParkingSpot_ID", Integer.class);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting reservation info: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-
-		// Update reservation status
+	private String cancelReservationInternal(int reservationCode, Integer ownerID, String reason) {
+		// Cancel and return the owner's User_ID in one statement
 		String qry = """
 				UPDATE parkinginfo
-				SET statusEnum = 'cancelled'
+				SET statusEnum = 'cancelled', User_ID = LAST_INSERT_ID(User_ID)
 				WHERE ParkingInfo_ID = ? AND statusEnum IN ('preorder', 'active')
+				  AND (? IS NULL OR User_ID = ?)
 				""";
 
-		conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, reservationCode);
-			int rowsUpdated = stmt.executeUpdate();
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			int userID;
+			try (PreparedStatement stmt = uow.prepare(qry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				stmt.setInt(1, reservationCode);
+				stmt.setObject(2, ownerID);
+				stmt.setObject(3, ownerID);
+				userID = executeReturningId(stmt);
+			}
 
-			if (rowsUpdated > 0) {
-				// Free up the spot
-				if (spotId != null) {
-					updateParkingSpotStatus(spotId, false);
+			if (userID == -1) {
+				if (ownerID != null && !validateParkingOrderOwnership(uow.getConnection(), reservationCode, ownerID)) {
+					return "Access denied: This reservation does not belong to your account.";
 				}
+				return "Reservation not found or already cancelled/finished";
+			}
 
-				// Send email notification
-				if (userEmail != null && userName != null) {
-					EmailService.sendReservationCancelled(userEmail, userName, String.valueOf(reservationCode));
+			// Free up the spot
+			freeParkingSpotOf(uow, reservationCode);
+			uow.afterCommit(() -> ActiveSessionIndex.getInstance().remove(reservationCode));
+
+			// Send email notification
+			uow.afterCommit(() -> {
+				ParkingSubscriber user = SubscriberCache.getInstance().getById(userID);
+				if (user != null && user.getEmail() != null && user.getFirstName() != null) {
+					EmailService.sendReservationCancelled(user.getEmail(), user.getFirstName(),
+							String.valueOf(reservationCode));
 				}
+			});
 
-				System.out.println("Reservation " + reservationCode + " cancelled - " + reason);
-				return "Reservation cancelled successfully";
-			}
+			uow.commit();
+			ServerLog.log(Level.INFO, "reservation_cancelled", "reservation", reservationCode, "reason", reason);
+			return "Reservation cancelled successfully";
 		} catch (SQLException e) {
-			System.out.println("Error cancelling reservation: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+			ServerLog.log(Level.WARN, "reservation_cancel_failed", "reservation", reservationCode, "error",
+					e.getMessage());
 		}
 
 		return "Reservation not found or already cancelled/finished";
@@ -750,39 +891,20 @@ public class ParkingController {
 	// ========== PARKING ENTRY/EXIT ==========
 
 	/**
-	 * Handles spontaneous parking entry. Does not enforce 40% rule.
+	 * Handles spontaneous parking entry. Does not enforce 40% rule. The free spot
+	 * is locked with SKIP LOCKED, so concurrent entries never get the same spot,
+	 * and the whole entry runs in one transaction on one connection. An existing
+	 * active session is rejected early through the {@link ActiveSessionIndex}
+	 * and then checked again in the transaction, with the user's row locked so
+	 * that two entries of one user cannot both pass.
 	 *
 	 * @param userID the ID of the user entering the parking
 	 * @return message indicating success or reason for failure
 	 */
 	public String enterParking(int userID) {
 		// Check if user already has active parking
-		String checkActiveQry = "SELECT COUNT(*) FROM parkinginfo WHERE User_ID = ? AND statusEnum = 'active'";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement activeStmt = conn.prepareStatement(checkActiveQry)) {
-			activeStmt.setInt(1, userID);
-			try (ResultSet rs = activeStmt.executeQuery()) {
-				if (rs.next() && rs.getInt(1) > 0) {
-					return "You already have an active parking session.";
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error checking active parking: " + e.getMessage());
-			return "Could not verify active parking.";
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-
-		// Check if ANY spot is available (NO 40% restriction for spontaneous!)
-		if (isParkingFull()) {
-			return "Parking is full. Try later.";
-		}
-
-		// Find first available parking spot
-		int spotID = getAvailableParkingSpotID();
-		if (spotID == -1) {
-			return "No parking spots available.";
+		if (ActiveSessionIndex.getInstance().getActiveByUser(userID) != null) {
+			return "You already have an active parking session.";
 		}
 
 		// Insert new active parking record
@@ -793,169 +915,241 @@ public class ParkingController {
 				VALUES (?, ?, NOW(), NOW(), NOW() + INTERVAL 4 HOUR, 'no', 'no', 'no', 'active')
 				""";
 
-		conn = DBController.getInstance().getConnection();
-		try (PreparedStatement insertStmt = conn.prepareStatement(insertQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
-			insertStmt.setInt(1, spotID);
-			insertStmt.setInt(2, userID);
-			insertStmt.executeUpdate();
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			if (hasActiveSession(uow, userID)) {
+				return "You already have an active parking session.";
+			}
+
+			// Find and lock the first available parking spot
+			int spotID = getAvailableParkingSpotID(uow);
+			if (spotID == -1) {
+				// Check if ANY spot is free (NO 40% restriction for spontaneous!)
+				if (getAvailableParkingSpots(uow) <= 0) {
+					return "Parking is full. Try later.";
+				}
+				return "No parking spots available.";
+			}
 
-			try (ResultSet generatedKeys = insertStmt.getGeneratedKeys()) {
-				if (generatedKeys.next()) {
-					int parkingCode = generatedKeys.getInt(1);
+			try (PreparedStatement insertStmt = uow.prepare(insertQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				insertStmt.setInt(1, spotID);
+				insertStmt.setInt(2, userID);
+				insertStmt.executeUpdate();
 
-					// Mark spot as occupied
-					updateParkingSpotStatus(spotID, true);
+				try (ResultSet generatedKeys = insertStmt.getGeneratedKeys()) {
+					if (generatedKeys.next()) {
+						int parkingCode = generatedKeys.getInt(1);
 
-					return "Entry successful. Parking code: " + parkingCode + ". Spot: " + spotID;
-				} else {
-					return "Entry failed: No parking code generated.";
+						// Mark spot as occupied
+						updateParkingSpotStatus(uow, spotID, true);
+						LocalDateTime now = LocalDateTime.now().withNano(0);
+						uow.afterCommit(() -> ActiveSessionIndex.getInstance()
+								.put(new ActiveSessionIndex.Session(parkingCode, userID, spotID, "active", false, now,
+										now.plusHours(DEFAULT_PARKING_HOURS), now, false, false)));
+						uow.afterCommit(() -> DailySketchService.getInstance().sessionStarted(parkingCode));
+						String result = "Entry successful. Parking code: " + parkingCode + ". Spot: " + spotID;
+						uow.setResult(result);
+						uow.commit();
+
+						return result;
+					} else {
+						return "Entry failed: No parking code generated.";
+					}
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error handling entry: " + e.getMessage());
+			ServerLog.log(Level.WARN, "entry_failed", "user", userID, "error", e.getMessage());
 			return "Entry failed due to database error.";
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Checks in a transaction whether a user has an active parking session. The
+	 * user's row is locked first, so concurrent entries of the same user wait
+	 * for each other and each sees the session the other committed.
+	 *
+	 * @param uow    the transaction
+	 * @param userID the user's ID
+	 * @return true if the user has an active session
+	 * @throws SQLException if a query fails
+	 */
+	private boolean hasActiveSession(UnitOfWork uow, int userID) throws SQLException {
+		try (PreparedStatement stmt = uow.prepare("SELECT User_ID FROM users WHERE User_ID = ? FOR UPDATE")) {
+			stmt.setInt(1, userID);
+			stmt.executeQuery().close();
+		}
+		String qry = """
+				SELECT 1 FROM parkinginfo
+				WHERE User_ID = ? AND statusEnum = 'active'
+				LIMIT 1
+				FOR UPDATE
+				""";
+		try (PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setInt(1, userID);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next();
+			}
 		}
 	}
 
 	/**
 	 * Handles parking entry using a reservation code. Validates time and activates
-	 * the reservation.
+	 * the reservation with a single conditional update: only a preorder for today
+	 * whose start time is at most 15 minutes ago is activated. The reservation is
+	 * read only if the update did not match, to explain why.
 	 *
 	 * @param reservationCode the reservation ID
 	 * @return message indicating success or reason for rejection
 	 */
 	public String enterParkingWithReservation(int reservationCode) {
-		String checkQry = """
-				SELECT pi.*, u.User_ID,
-				       TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) as minutes_since_start
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				WHERE pi.ParkingInfo_ID = ? AND pi.statusEnum = 'preorder'
+		// Activate and return the User_ID in one statement
+		String activateQry = """
+				UPDATE parkinginfo
+				SET statusEnum = 'active', Actual_start_time = NOW(), User_ID = LAST_INSERT_ID(User_ID)
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'preorder'
+				  AND Estimated_start_time >= CURDATE()
+				  AND Estimated_start_time < CURDATE() + INTERVAL 1 DAY
+				  AND Estimated_start_time > NOW() - INTERVAL 16 MINUTE
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
-			stmt.setInt(1, reservationCode);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					int minutesSinceStart = rs.getInt("minutes_since_start");
-					int parkingSpotID = rs.getInt("ParkingSpot_ID");
-
-					LocalDateTime estimatedStartTime = rs.getTimestamp("Estimated_start_time").toLocalDateTime();
-					LocalDateTime now = LocalDateTime.now();
-
-					// Check if it's today
-					if (!estimatedStartTime.toLocalDate().equals(now.toLocalDate())) {
-						if (estimatedStartTime.isBefore(now)) {
-							cancelReservation(reservationCode);
-							return "Reservation expired (wrong date).";
-						} else {
-							return "Reservation is for a future date.";
-						}
-					}
-
-					// Check if within 15 min after reserved time
-					if (minutesSinceStart > 15) {
-						cancelReservation(reservationCode);
-						return "Reservation expired: arrived more than 15 min late.";
-					}
+		// Mark the reserved spot as occupied and return its ID
+		String occupyQry = """
+				UPDATE ParkingSpot
+				SET isOccupied = TRUE, ParkingSpot_ID = LAST_INSERT_ID(ParkingSpot_ID)
+				WHERE ParkingSpot_ID = (SELECT ParkingSpot_ID FROM parkinginfo WHERE ParkingInfo_ID = ?)
+				""";
 
-					// Update reservation to active
-					String updateQry = """
-							UPDATE parkinginfo
-							SET statusEnum = 'active', Actual_start_time = NOW()
-							WHERE ParkingInfo_ID = ?
-							""";
+		String expiredMessage = null;
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			int userID;
+			try (PreparedStatement stmt = uow.prepare(activateQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				stmt.setInt(1, reservationCode);
+				userID = executeReturningId(stmt);
+			}
 
-					try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
-						updateStmt.setInt(1, reservationCode);
-						updateStmt.executeUpdate();
+			if (userID != -1) {
+				int parkingSpotID;
+				try (PreparedStatement stmt = uow.prepare(occupyQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+					stmt.setInt(1, reservationCode);
+					parkingSpotID = executeReturningId(stmt);
+				}
+				uow.afterCommit(() -> activateInIndex(reservationCode, LocalDateTime.now().withNano(0)));
+				uow.afterCommit(() -> OccupancyService.getInstance().occupancyChanged());
+				uow.afterCommit(() -> DailySketchService.getInstance().sessionStarted(reservationCode));
+				String result = "Entry successful! Reservation activated. Parking code: " + reservationCode
+						+ ". Spot: " + parkingSpotID;
+				uow.setResult(result);
+				uow.commit();
+
+				ServerLog.log(Level.INFO, "reservation_activated", "reservation", reservationCode, "spot",
+						parkingSpotID);
+				return result;
+			}
 
-						// Mark spot as occupied
-						updateParkingSpotStatus(parkingSpotID, true);
+			// Not activated: find out why
+			String checkQry = """
+					SELECT Estimated_start_time
+					FROM parkinginfo
+					WHERE ParkingInfo_ID = ? AND statusEnum = 'preorder'
+					""";
+			try (PreparedStatement stmt = uow.prepare(checkQry)) {
+				stmt.setInt(1, reservationCode);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next()) {
+						LocalDateTime estimatedStartTime = rs.getTimestamp("Estimated_start_time").toLocalDateTime();
+						LocalDateTime now = LocalDateTime.now();
 
-						System.out.println("Reservation " + reservationCode + " activated");
-						return "Entry successful! Reservation activated. Parking code: " + reservationCode + ". Spot: "
-								+ parkingSpotID;
+						if (!estimatedStartTime.toLocalDate().equals(now.toLocalDate())) {
+							if (estimatedStartTime.isBefore(now)) {
+								expiredMessage = "Reservation expired (wrong date).";
+							} else {
+								return "Reservation is for a future date.";
+							}
+						} else {
+							expiredMessage = "Reservation expired: arrived more than 15 min late.";
+						}
 					}
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error handling reservation entry: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+			ServerLog.log(Level.WARN, "reservation_activation_failed", "reservation", reservationCode, "error",
+					e.getMessage());
+		}
+
+		// Cancel only after the reservation's transaction is closed
+		if (expiredMessage != null) {
+			cancelReservation(reservationCode);
+			return expiredMessage;
 		}
 		return "Invalid reservation code or reservation not in preorder status.";
 	}
 
 	/**
 	 * Handles parking exit using a parking code. Marks parking as finished,
-	 * releases the spot, and sends notification if late.
+	 * releases the spot, and sends notification if late. The session is finished
+	 * with a conditional update that only matches an on-time exit; if it does not
+	 * match, a second one finishes it as late. Codes the
+	 * {@link ActiveSessionIndex} does not know are looked up in the database
+	 * before they are rejected.
 	 *
 	 * @param parkingCodeStr the parking session code
 	 * @return message confirming exit or explaining failure
 	 */
 	public String exitParking(String parkingCodeStr) {
-		Connection conn = DBController.getInstance().getConnection();
-
+		int parkingCode;
 		try {
-			int parkingCode = Integer.parseInt(parkingCodeStr);
-			String qry = """
-					SELECT pi.*, ps.ParkingSpot_ID
-					FROM parkinginfo pi
-					JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID
-					WHERE pi.ParkingInfo_ID = ? AND pi.statusEnum = 'active'
-					""";
-
-			try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-				stmt.setInt(1, parkingCode);
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next()) {
-						int parkingInfoID = rs.getInt("ParkingInfo_ID");
-						int spotID = rs.getInt("ParkingSpot_ID");
-						Timestamp estimatedEndTime = rs.getTimestamp("Estimated_end_time");
-						int userID = rs.getInt("User_ID");
-
-						LocalDateTime now = LocalDateTime.now();
-						LocalDateTime estimatedEnd = estimatedEndTime.toLocalDateTime();
-
-						// Check if late
-						boolean isLate = now.isAfter(estimatedEnd);
-
-						// Update parking info
-						String updateQry = """
-								UPDATE parkinginfo
-								SET Actual_end_time = ?, IsLate = ?, statusEnum = 'finished'
-								WHERE ParkingInfo_ID = ?
-								""";
-
-						try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
-							updateStmt.setTimestamp(1, Timestamp.valueOf(now));
-							updateStmt.setString(2, isLate ? "yes" : "no");
-							updateStmt.setInt(3, parkingInfoID);
-							updateStmt.executeUpdate();
-
-							// Free the parking spot
-							updateParkingSpotStatus(spotID, false);
-
-							if (isLate) {
-								sendLateExitNotification(userID);
-								return "Exit successful. You were late - please arrive on time for future reservations";
-							}
-
-							return "Exit successful. Thank you for using ParkB!";
-						}
-					}
-				}
-			}
+			parkingCode = Integer.parseInt(parkingCodeStr);
 		} catch (NumberFormatException e) {
 			return "Invalid parking code format";
-		} catch (SQLException e) {
-			System.out.println("Error handling exit: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		}
+		if (ActiveSessionIndex.getInstance().findActive(parkingCode) == null) {
+			return "Invalid parking code or already exited";
+		}
+
+		// Finish and return the User_ID in one statement
+		String onTimeQry = """
+				UPDATE parkinginfo
+				SET Actual_end_time = NOW(), IsLate = 'no', statusEnum = 'finished', User_ID = LAST_INSERT_ID(User_ID)
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'active' AND Estimated_end_time >= NOW()
+				""";
+		String lateQry = """
+				UPDATE parkinginfo
+				SET Actual_end_time = NOW(), IsLate = 'yes', statusEnum = 'finished', User_ID = LAST_INSERT_ID(User_ID)
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'active'
+				""";
+
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			boolean isLate = false;
+			int userID;
+			try (PreparedStatement stmt = uow.prepare(onTimeQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				stmt.setInt(1, parkingCode);
+				userID = executeReturningId(stmt);
+			}
+			if (userID == -1) {
+				try (PreparedStatement stmt = uow.prepare(lateQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+					stmt.setInt(1, parkingCode);
+					userID = executeReturningId(stmt);
+				}
+				isLate = true;
+			}
+			if (userID == -1) {
+				return "Invalid parking code or already exited";
+			}
+
+			// Free the parking spot
+			freeParkingSpotOf(uow, parkingCode);
+			uow.afterCommit(() -> ActiveSessionIndex.getInstance().remove(parkingCode));
+			uow.afterCommit(() -> DailySketchService.getInstance().sessionFinished(parkingCode));
+			if (isLate) {
+				int lateUserID = userID;
+				uow.afterCommit(() -> sendLateExitNotification(lateUserID));
+			}
+			String result = isLate ? "Exit successful. You were late - please arrive on time for future reservations"
+					: "Exit successful. Thank you for using ParkB!";
+			uow.setResult(result);
+			uow.commit();
+			return result;
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "exit_failed", "parkingCode", parkingCode, "error", e.getMessage());
 		}
 		return "Invalid parking code or already exited";
 	}
@@ -977,7 +1171,7 @@ public class ParkingController {
 			int parkingCode = Integer.parseInt(parkingCodeStr);
 
 			// Validate parking order ownership
-			if (!validateParkingOrderOwnership(parkingCode, userID)) {
+			if (!ownsSession(parkingCode, userID)) {
 				return "Access denied: This parking session does not belong to your account.";
 			}
 
@@ -989,105 +1183,343 @@ public class ParkingController {
 	}
 
 	/**
-	 * Extends an active parking session by a specified number of hours. Only one
-	 * extension is allowed, and it must not conflict with future reservations.
+	 * Collects the state a kiosk needs to work while the server cannot be
+	 * reached. Sessions and subscribers come from the in-memory indexes; only
+	 * the free spots are queried.
 	 *
-	 * @param parkingCodeStr  the active parking session code
-	 * @param additionalHours number of hours to extend (must be between 1–4)
-	 * @return result message indicating success or reason for failure
+	 * @return the kiosk snapshot
 	 */
-	public String extendParkingTime(String parkingCodeStr, int additionalHours) {
-		if (additionalHours < MIN_EXTENSION_HOURS || additionalHours > MAX_EXTENSION_HOURS) {
-			return "Can only extend parking by " + MIN_EXTENSION_HOURS + "-" + MAX_EXTENSION_HOURS + " hours.";
+	public KioskSnapshot getKioskSnapshot() {
+		ArrayList<KioskSnapshot.Session> sessions = new ArrayList<>();
+		for (ActiveSessionIndex.Session session : ActiveSessionIndex.getInstance().getOpenSessions()) {
+			sessions.add(new KioskSnapshot.Session(session.getParkingInfoID(), session.getUserID(),
+					session.getSpotID(), session.isActive(), session.getEstimatedStart(), session.getEstimatedEnd()));
 		}
 
-		Connection conn = DBController.getInstance().getConnection();
+		List<ParkingSubscriber> subscribers = SubscriberSearchIndex.getInstance().getAll();
+		int[] subscriberIDs = new int[subscribers.size()];
+		String[] usernames = new String[subscribers.size()];
+		for (int i = 0; i < subscribers.size(); i++) {
+			subscriberIDs[i] = subscribers.get(i).getSubscriberID();
+			usernames[i] = subscribers.get(i).getSubscriberCode();
+		}
+
+		return new KioskSnapshot(LocalDateTime.now().withNano(0),
+				new ArrayList<>(Repositories.getSpots().findFreeSpotIds()), sessions, subscriberIDs, usernames);
+	}
+
+	/**
+	 * Applies a gate operation a kiosk recorded while offline, as of the time it
+	 * happened, and stores the outcome in the operation. Replays are detected
+	 * from the parking state: an entry whose session already exists, an exit of
+	 * a finished session and the activation of an activated reservation are
+	 * reported as duplicates. A reservation that is no longer valid, e.g. because
+	 * it was cancelled as a no-show while the kiosk was offline, is recorded as a
+	 * spontaneous entry, since the car is in the parking lot.
+	 *
+	 * @param operation the operation
+	 * @return the same operation with its outcome set
+	 */
+	public KioskOperation replayKioskOperation(KioskOperation operation) {
+		if (operation.getType() == null || operation.getTime() == null) {
+			operation.setResult(KioskOperation.Outcome.REJECTED, "Incomplete operation");
+			return operation;
+		}
 		try {
-			int parkingCode = Integer.parseInt(parkingCodeStr);
+			switch (operation.getType()) {
+			case ENTRY:
+				replayEntry(operation, operation.getSpotID());
+				break;
+			case EXIT:
+				replayExit(operation);
+				break;
+			case ACTIVATE:
+				replayActivation(operation);
+				break;
+			}
+		} catch (SQLIntegrityConstraintViolationException e) {
+			operation.setResult(KioskOperation.Outcome.REJECTED, "Rejected by the database: " + e.getMessage());
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "kiosk_replay_failed", "operation", operation.getOperationID(), "error",
+					e.getMessage());
+			operation.setResult(KioskOperation.Outcome.FAILED, "Database error");
+		}
+		return operation;
+	}
 
-			// Get current parking info
-			String getUserQry = """
-					SELECT pi.*, u.Email, u.Name
-					FROM parkinginfo pi
-					JOIN users u ON pi.User_ID = u.User_ID
-					WHERE pi.ParkingInfo_ID = ? AND pi.statusEnum = 'active'
-					""";
+	/**
+	 * Records an offline entry. The spot given out at the gate is used if it is
+	 * still free, otherwise the first free spot.
+	 *
+	 * @param operation     the entry, or the activation recorded as an entry
+	 * @param preferredSpot the spot given out at the gate, 0 if none
+	 * @throws SQLException if a query fails
+	 */
+	private void replayEntry(KioskOperation operation, int preferredSpot) throws SQLException {
+		String insertQry = """
+				INSERT INTO parkinginfo
+				(ParkingSpot_ID, User_ID, Actual_start_time, Estimated_start_time, Estimated_end_time,
+				 IsOrderedEnum, IsLate, IsExtended, statusEnum)
+				VALUES (?, ?, ?, ?, ?, 'no', 'no', 'no', 'active')
+				""";
 
-			try (PreparedStatement stmt = conn.prepareStatement(getUserQry)) {
-				stmt.setInt(1, parkingCode);
+		int userID = operation.getUserID();
+		LocalDateTime start = operation.getTime();
+		LocalDateTime end = start.plusHours(DEFAULT_PARKING_HOURS);
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			Integer existing = findSessionStartedAt(uow, userID, start);
+			if (existing != null) {
+				operation.setResult(KioskOperation.Outcome.DUPLICATE, "Parking code: " + existing);
+				return;
+			}
+			ActiveSessionIndex.Session active = ActiveSessionIndex.getInstance().getActiveByUser(userID);
+			if (active != null) {
+				operation.setResult(KioskOperation.Outcome.REJECTED,
+						"User already has an active parking session (code " + active.getParkingInfoID() + ")");
+				return;
+			}
 
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next()) {
-						String isExtended = rs.getString("IsExtended");
+			int spotID = lockSpotIfFree(uow, preferredSpot);
+			if (spotID == -1) {
+				spotID = getAvailableParkingSpotID(uow);
+			}
+			if (spotID == -1) {
+				operation.setResult(KioskOperation.Outcome.REJECTED, "No free spot to record the entry on");
+				return;
+			}
 
-						// Block if already extended
-						if ("yes".equalsIgnoreCase(isExtended)) {
-							return "Cannot extend again: You already extended this active parking session.";
-						}
+			int parkingCode;
+			try (PreparedStatement stmt = uow.prepare(insertQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				stmt.setInt(1, spotID);
+				stmt.setInt(2, userID);
+				stmt.setTimestamp(3, Timestamp.valueOf(start));
+				stmt.setTimestamp(4, Timestamp.valueOf(start));
+				stmt.setTimestamp(5, Timestamp.valueOf(end));
+				stmt.executeUpdate();
+				try (ResultSet keys = stmt.getGeneratedKeys()) {
+					if (!keys.next()) {
+						operation.setResult(KioskOperation.Outcome.FAILED, "No parking code generated");
+						return;
+					}
+					parkingCode = keys.getInt(1);
+				}
+			}
 
-						Timestamp currentEstimatedEnd = rs.getTimestamp("Estimated_end_time");
-						String userEmail = rs.getString("Email");
-						String userName = rs.getString("Name");
-						int parkingSpotId = rs.getInt("ParkingSpot_ID");
-
-						LocalDateTime newEstimatedEnd = currentEstimatedEnd.toLocalDateTime()
-								.plusHours(additionalHours);
-
-						// Check for conflicting reservations
-						String conflictCheckQry = """
-								SELECT 1 FROM parkinginfo
-								WHERE ParkingSpot_ID = ?
-								  AND statusEnum = 'preorder'
-								  AND Estimated_start_time > ?
-								  AND Estimated_start_time < ?
-								""";
-
-						try (PreparedStatement checkStmt = conn.prepareStatement(conflictCheckQry)) {
-							checkStmt.setInt(1, parkingSpotId);
-							checkStmt.setTimestamp(2, currentEstimatedEnd);
-							checkStmt.setTimestamp(3, Timestamp.valueOf(newEstimatedEnd));
-
-							try (ResultSet conflictRs = checkStmt.executeQuery()) {
-								if (conflictRs.next()) {
-									return "Cannot extend parking: A reservation is scheduled during the extension period.";
-								}
-							}
-						}
+			updateParkingSpotStatus(uow, spotID, true);
+			int occupiedSpot = spotID;
+			uow.afterCommit(() -> ActiveSessionIndex.getInstance().put(new ActiveSessionIndex.Session(parkingCode,
+					userID, occupiedSpot, "active", false, start, end, start, false, false)));
+			uow.afterCommit(() -> DailySketchService.getInstance().sessionStarted(parkingCode));
+			uow.commit();
+			operation.setResult(KioskOperation.Outcome.APPLIED, "Parking code: " + parkingCode + ". Spot: " + spotID);
+		}
+	}
 
-						// Update parking time
-						String updateQry = """
-								UPDATE parkinginfo
-								SET Estimated_end_time = ?, IsExtended = 'yes'
-								WHERE ParkingInfo_ID = ?
-								""";
-
-						try (PreparedStatement updateStmt = conn.prepareStatement(updateQry)) {
-							updateStmt.setTimestamp(1, Timestamp.valueOf(newEstimatedEnd));
-							updateStmt.setInt(2, parkingCode);
-							updateStmt.executeUpdate();
-
-							// Send email confirmation
-							if (userEmail != null && userName != null) {
-								EmailService.sendExtensionConfirmation(userEmail, userName, parkingCodeStr,
-										additionalHours, newEstimatedEnd.toString());
-							}
+	/**
+	 * Records an offline exit, of an active session by code or of an offline
+	 * entry by its entry time.
+	 *
+	 * @param operation the exit
+	 * @throws SQLException if a query fails
+	 */
+	private void replayExit(KioskOperation operation) throws SQLException {
+		String readQry = """
+				SELECT User_ID, statusEnum, Estimated_end_time
+				FROM parkinginfo
+				WHERE ParkingInfo_ID = ?
+				FOR UPDATE
+				""";
+		String finishQry = """
+				UPDATE parkinginfo
+				SET Actual_end_time = ?, IsLate = ?, statusEnum = 'finished'
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'active'
+				""";
 
-							return "Parking time extended by " + additionalHours + " hours until " + newEstimatedEnd;
-						}
+		int userID = operation.getUserID();
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			Integer code = operation.getCode() > 0 ? Integer.valueOf(operation.getCode())
+					: operation.getEntryTime() != null ? findSessionStartedAt(uow, userID, operation.getEntryTime())
+							: null;
+			if (code == null) {
+				operation.setResult(KioskOperation.Outcome.REJECTED, "No session found for the offline entry");
+				return;
+			}
+			int parkingCode = code;
+
+			boolean isLate;
+			try (PreparedStatement stmt = uow.prepare(readQry)) {
+				stmt.setInt(1, parkingCode);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next() || rs.getInt("User_ID") != userID) {
+						operation.setResult(KioskOperation.Outcome.REJECTED,
+								"Parking code " + parkingCode + " does not belong to the user");
+						return;
+					}
+					String status = rs.getString("statusEnum");
+					if ("finished".equals(status)) {
+						operation.setResult(KioskOperation.Outcome.DUPLICATE,
+								"Parking code " + parkingCode + " already exited");
+						return;
+					}
+					if (!"active".equals(status)) {
+						operation.setResult(KioskOperation.Outcome.REJECTED,
+								"Parking code " + parkingCode + " is not an active session");
+						return;
 					}
+					Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
+					isLate = estimatedEnd != null && operation.getTime().isAfter(estimatedEnd.toLocalDateTime());
 				}
 			}
-		} catch (NumberFormatException e) {
-			return "Invalid parking code format.";
-		} catch (SQLException e) {
-			System.out.println("Error extending parking time: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+
+			try (PreparedStatement stmt = uow.prepare(finishQry)) {
+				stmt.setTimestamp(1, Timestamp.valueOf(operation.getTime()));
+				stmt.setString(2, isLate ? "yes" : "no");
+				stmt.setInt(3, parkingCode);
+				stmt.executeUpdate();
+			}
+			freeParkingSpotOf(uow, parkingCode);
+			uow.afterCommit(() -> ActiveSessionIndex.getInstance().remove(parkingCode));
+			uow.afterCommit(() -> DailySketchService.getInstance().sessionFinished(parkingCode));
+			if (isLate) {
+				uow.afterCommit(() -> sendLateExitNotification(userID));
+			}
+			uow.commit();
+			operation.setResult(KioskOperation.Outcome.APPLIED,
+					"Exit recorded for parking code " + parkingCode + (isLate ? " (late)" : ""));
 		}
+	}
 
-		return "Invalid parking code or parking session not active.";
+	/**
+	 * Records an offline reservation activation. The reservation is activated
+	 * if it was still a preorder and the car arrived within the allowed 15
+	 * minutes; otherwise the arrival is recorded as an entry.
+	 *
+	 * @param operation the activation
+	 * @throws SQLException if a query fails
+	 */
+	private void replayActivation(KioskOperation operation) throws SQLException {
+		String readQry = """
+				SELECT User_ID, ParkingSpot_ID, statusEnum, Estimated_start_time
+				FROM parkinginfo
+				WHERE ParkingInfo_ID = ?
+				FOR UPDATE
+				""";
+		String activateQry = """
+				UPDATE parkinginfo
+				SET statusEnum = 'active', Actual_start_time = ?
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'preorder'
+				""";
+
+		int reservationCode = operation.getCode();
+		int userID = operation.getUserID();
+		LocalDateTime arrival = operation.getTime();
+		int reservedSpot;
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			boolean valid;
+			try (PreparedStatement stmt = uow.prepare(readQry)) {
+				stmt.setInt(1, reservationCode);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next() || rs.getInt("User_ID") != userID) {
+						operation.setResult(KioskOperation.Outcome.REJECTED,
+								"Reservation " + reservationCode + " does not belong to the user");
+						return;
+					}
+					String status = rs.getString("statusEnum");
+					if ("active".equals(status) || "finished".equals(status)) {
+						operation.setResult(KioskOperation.Outcome.DUPLICATE,
+								"Reservation " + reservationCode + " was already activated");
+						return;
+					}
+					reservedSpot = rs.getInt("ParkingSpot_ID");
+					LocalDateTime start = rs.getTimestamp("Estimated_start_time").toLocalDateTime();
+					valid = "preorder".equals(status) && start.toLocalDate().equals(arrival.toLocalDate())
+							&& start.isAfter(arrival.minusMinutes(16));
+				}
+			}
+
+			if (valid) {
+				try (PreparedStatement stmt = uow.prepare(activateQry)) {
+					stmt.setTimestamp(1, Timestamp.valueOf(arrival));
+					stmt.setInt(2, reservationCode);
+					stmt.executeUpdate();
+				}
+				updateParkingSpotStatus(uow, reservedSpot, true);
+				uow.afterCommit(() -> activateInIndex(reservationCode, arrival));
+				uow.afterCommit(() -> DailySketchService.getInstance().sessionStarted(reservationCode));
+				uow.commit();
+				operation.setResult(KioskOperation.Outcome.APPLIED,
+						"Reservation " + reservationCode + " activated. Spot: " + reservedSpot);
+				return;
+			}
+		}
+
+		// The car is in the parking lot: record the arrival as an entry
+		replayEntry(operation, reservedSpot);
+		if (operation.getOutcome() == KioskOperation.Outcome.APPLIED) {
+			operation.setResult(KioskOperation.Outcome.APPLIED, "Reservation " + reservationCode
+					+ " was no longer valid, recorded as entry. " + operation.getResult());
+		}
 	}
-	
+
+	/**
+	 * Finds a session of a user by its exact start time, which identifies an
+	 * entry recorded offline.
+	 *
+	 * @param uow    the transaction to run the query in
+	 * @param userID the user
+	 * @param start  the start time, to the second
+	 * @return the ParkingInfo_ID, or null if there is no such session
+	 * @throws SQLException if the query fails
+	 */
+	private Integer findSessionStartedAt(UnitOfWork uow, int userID, LocalDateTime start) throws SQLException {
+		String qry = "SELECT ParkingInfo_ID FROM parkinginfo WHERE User_ID = ? AND Actual_start_time = ? LIMIT 1";
+		try (PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setInt(1, userID);
+			stmt.setTimestamp(2, Timestamp.valueOf(start));
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+
+	/**
+	 * Locks a given parking spot for the transaction if it is not occupied.
+	 *
+	 * @param uow    the transaction that will occupy the spot
+	 * @param spotID the spot, 0 if none
+	 * @return the spot ID, or -1 if it is occupied, locked or unknown
+	 * @throws SQLException if the query fails
+	 */
+	private int lockSpotIfFree(UnitOfWork uow, int spotID) throws SQLException {
+		if (spotID <= 0) {
+			return -1;
+		}
+		String qry = """
+				SELECT ParkingSpot_ID
+				FROM ParkingSpot
+				WHERE ParkingSpot_ID = ? AND isOccupied = false
+				FOR UPDATE SKIP LOCKED
+				""";
+		try (PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setInt(1, spotID);
+			try (ResultSet rs = stmt.executeQuery()) {
+				return rs.next() ? spotID : -1;
+			}
+		}
+	}
+
+	/**
+	 * Extends an active parking session by a specified number of hours. Only one
+	 * extension is allowed, and it must not conflict with future reservations.
+	 *
+	 * @param parkingCodeStr  the active parking session code
+	 * @param additionalHours number of hours to extend (must be between 1–4)
+	 * @return result message indicating success or reason for failure
+	 */
+	public String extendParkingTime(String parkingCodeStr, int additionalHours) {
+		return extendParkingTime(parkingCodeStr, additionalHours, null);
+	}
+
 	/**
 	 * Extends a parking session if the user owns it and the number of hours is valid.
 	 *
@@ -1097,22 +1529,179 @@ public class ParkingController {
 	 * @return a message with the result (success, error, or access denied)
 	 */
 	public String extendParkingTime(String parkingCodeStr, int additionalHours, int userID) {
+		return extendParkingTime(parkingCodeStr, additionalHours, Integer.valueOf(userID));
+	}
+
+	/**
+	 * Extends a parking session in one transaction. A compare-and-set update
+	 * extends the session only if it is active, not extended yet and, when an
+	 * owner is given, belongs to that user; it keeps the row locked until the
+	 * end of the transaction. The spot is then locked and checked for a
+	 * reservation that starts during the extension; if there is one, the
+	 * transaction is rolled back. The row is read only if the update did not
+	 * match, to explain why.
+	 *
+	 * @param parkingCodeStr  the parking code as a string
+	 * @param additionalHours number of hours to add
+	 * @param ownerID         the user that must own the session, or null to skip the check
+	 * @return a message with the result (success, error, or access denied)
+	 */
+	private String extendParkingTime(String parkingCodeStr, int additionalHours, Integer ownerID) {
 		if (additionalHours < MIN_EXTENSION_HOURS || additionalHours > MAX_EXTENSION_HOURS) {
 			return "Can only extend parking by " + MIN_EXTENSION_HOURS + "-" + MAX_EXTENSION_HOURS + " hours.";
 		}
 
+		int parkingCode;
 		try {
-			int parkingCode = Integer.parseInt(parkingCodeStr);
+			parkingCode = Integer.parseInt(parkingCodeStr);
+		} catch (NumberFormatException e) {
+			return "Invalid parking code format.";
+		}
 
-			// Validate parking order ownership
-			if (!validateParkingOrderOwnership(parkingCode, userID)) {
-				return "Access denied: This parking order does not belong to your account.";
+		// Extend and return the ParkingSpot_ID in one statement
+		String extendQry = """
+				UPDATE parkinginfo
+				SET Estimated_end_time = Estimated_end_time + INTERVAL ? HOUR, IsExtended = 'yes',
+				    ParkingSpot_ID = LAST_INSERT_ID(ParkingSpot_ID)
+				WHERE ParkingInfo_ID = ? AND statusEnum = 'active' AND IsExtended = 'no'
+				  AND (? IS NULL OR User_ID = ?)
+				""";
+
+		// Lock the spot so no reservation can be placed on it meanwhile
+		String lockSpotQry = """
+				SELECT ParkingSpot_ID FROM ParkingSpot WHERE ParkingSpot_ID = ? FOR UPDATE
+				""";
+
+		String readQry = """
+				SELECT User_ID, Estimated_end_time FROM parkinginfo WHERE ParkingInfo_ID = ?
+				""";
+
+		// Check for conflicting reservations
+		String conflictCheckQry = """
+				SELECT 1 FROM parkinginfo
+				WHERE ParkingSpot_ID = ?
+				  AND statusEnum = 'preorder'
+				  AND Estimated_start_time > ?
+				  AND Estimated_start_time < ?
+				LIMIT 1
+				FOR SHARE
+				""";
+
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			int spotID;
+			try (PreparedStatement stmt = uow.prepare(extendQry, PreparedStatement.RETURN_GENERATED_KEYS)) {
+				stmt.setInt(1, additionalHours);
+				stmt.setInt(2, parkingCode);
+				if (ownerID == null) {
+					stmt.setNull(3, Types.INTEGER);
+					stmt.setNull(4, Types.INTEGER);
+				} else {
+					stmt.setInt(3, ownerID);
+					stmt.setInt(4, ownerID);
+				}
+				spotID = executeReturningId(stmt);
 			}
 
-			// Call the original method if validation passes
-			return extendParkingTime(parkingCodeStr, additionalHours);
-		} catch (NumberFormatException e) {
-			return "Invalid parking code format.";
+			if (spotID == -1) {
+				return explainExtensionRejected(uow, parkingCode, ownerID);
+			}
+
+			try (PreparedStatement stmt = uow.prepare(lockSpotQry)) {
+				stmt.setInt(1, spotID);
+				stmt.executeQuery().close();
+			}
+
+			int userID;
+			LocalDateTime newEstimatedEnd;
+			try (PreparedStatement stmt = uow.prepare(readQry)) {
+				stmt.setInt(1, parkingCode);
+				try (ResultSet rs = stmt.executeQuery()) {
+					rs.next();
+					userID = rs.getInt("User_ID");
+					newEstimatedEnd = rs.getTimestamp("Estimated_end_time").toLocalDateTime();
+				}
+			}
+			LocalDateTime currentEstimatedEnd = newEstimatedEnd.minusHours(additionalHours);
+
+			try (PreparedStatement stmt = uow.prepare(conflictCheckQry)) {
+				stmt.setInt(1, spotID);
+				stmt.setTimestamp(2, Timestamp.valueOf(currentEstimatedEnd));
+				stmt.setTimestamp(3, Timestamp.valueOf(newEstimatedEnd));
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next()) {
+						// Closing without commit rolls the extension back
+						return "Cannot extend parking: A reservation is scheduled during the extension period.";
+					}
+				}
+			}
+
+			uow.afterCommit(() -> extendInIndex(parkingCode, newEstimatedEnd));
+			uow.afterCommit(() -> {
+				ParkingSubscriber user = SubscriberCache.getInstance().getById(userID);
+				if (user != null && user.getEmail() != null && user.getFirstName() != null) {
+					EmailService.sendExtensionConfirmation(user.getEmail(), user.getFirstName(), parkingCodeStr,
+							additionalHours, newEstimatedEnd.toString());
+				}
+			});
+			String result = "Parking time extended by " + additionalHours + " hours until " + newEstimatedEnd;
+			uow.setResult(result);
+			uow.commit();
+
+			ServerLog.log(Level.INFO, "parking_extended", "parkingCode", parkingCode, "hours", additionalHours);
+			return result;
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "extend_failed", "parkingCode", parkingCode, "error", e.getMessage());
+			return "Invalid parking code or parking session not active.";
+		}
+	}
+
+	/**
+	 * Explains why the extension update did not match a session.
+	 *
+	 * @param uow         the open unit of work
+	 * @param parkingCode the parking code
+	 * @param ownerID     the user that must own the session, or null
+	 * @return the rejection message
+	 * @throws SQLException if the query fails
+	 */
+	private String explainExtensionRejected(UnitOfWork uow, int parkingCode, Integer ownerID) throws SQLException {
+		String qry = """
+				SELECT User_ID, statusEnum, IsExtended FROM parkinginfo WHERE ParkingInfo_ID = ?
+				""";
+		try (PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setInt(1, parkingCode);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					return "Invalid parking code or parking session not active.";
+				}
+				if (ownerID != null && rs.getInt("User_ID") != ownerID) {
+					ServerLog.log(Level.WARN, "unauthorized_access", "user", ownerID, "parkingInfoID", parkingCode);
+					return "Access denied: This parking order does not belong to your account.";
+				}
+				// The update changed nothing, so the index can be refreshed right away
+				ActiveSessionIndex.getInstance().reload(parkingCode);
+				if (!"active".equals(rs.getString("statusEnum"))) {
+					return "Invalid parking code or parking session not active.";
+				}
+				return "Cannot extend again: You already extended this active parking session.";
+			}
+		}
+	}
+
+	/**
+	 * Records an extension in the {@link ActiveSessionIndex}. Reloads the session
+	 * if the index did not know it.
+	 *
+	 * @param parkingCode     the extended session
+	 * @param newEstimatedEnd the new estimated end time
+	 */
+	private void extendInIndex(int parkingCode, LocalDateTime newEstimatedEnd) {
+		ActiveSessionIndex index = ActiveSessionIndex.getInstance();
+		ActiveSessionIndex.Session session = index.get(parkingCode);
+		if (session == null) {
+			index.reload(parkingCode);
+		} else {
+			index.put(session.extendedUntil(newEstimatedEnd));
 		}
 	}
 
@@ -1124,23 +1713,10 @@ public class ParkingController {
 	 * @return number of free (not occupied) parking spots
 	 */
 	public int getAvailableParkingSpots() {
-		String qry = "SELECT COUNT(*) as available FROM ParkingSpot WHERE isOccupied = false";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getInt("available");
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting available spots: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return 0;
+		return Repositories.getSpots().countFreeSpots();
 	}
 
+
 	/**
 	 * Checks if the parking lot is currently full.
 	 *
@@ -1151,112 +1727,69 @@ public class ParkingController {
 	}
 
 	/**
-	 * Retrieves the full parking history for a given user.
+	 * Counts the free parking spots within a transaction.
+	 *
+	 * @param uow the transaction to run the query in
+	 * @return number of free (not occupied) parking spots
+	 * @throws SQLException if the query fails
+	 */
+	private int getAvailableParkingSpots(UnitOfWork uow) throws SQLException {
+		String qry = "SELECT COUNT(*) as available FROM ParkingSpot WHERE isOccupied = false";
+
+		try (PreparedStatement stmt = uow.prepare(qry); ResultSet rs = stmt.executeQuery()) {
+			if (rs.next()) {
+				return rs.getInt("available");
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Retrieves the full parking history for a given user. With the MySQL
+	 * backend this runs as a read-only unit of work, on the read replica when one
+	 * is available.
 	 *
 	 * @param userName the username to search history for
 	 * @return a list of {@link ParkingOrder} objects representing past sessions
 	 */
 	public ArrayList<ParkingOrder> getParkingHistory(String userName) {
-		ArrayList<ParkingOrder> history = new ArrayList<>();
-		String qry = """
-				SELECT pi.*, ps.ParkingSpot_ID
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID
-				WHERE u.UserName = ?
-				ORDER BY pi.Date_Of_Placing_Order DESC
-				""";
-
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			try (ResultSet rs = stmt.executeQuery()) {
-				while (rs.next()) {
-					ParkingOrder order = new ParkingOrder();
-					order.setOrderID(rs.getInt("ParkingInfo_ID"));
-					order.setParkingCode(String.valueOf(rs.getInt("ParkingInfo_ID")));
-					order.setOrderType(rs.getString("IsOrderedEnum"));
-					order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
-
-					// Convert Timestamps to LocalDateTime
-					Timestamp actualStart = rs.getTimestamp("Actual_start_time");
-					Timestamp actualEnd = rs.getTimestamp("Actual_end_time");
-					Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
-					Timestamp estimatedStart = rs.getTimestamp("Estimated_start_time");
-
-					if (actualStart != null) {
-						order.setEntryTime(actualStart.toLocalDateTime());
-					}
-					if (actualEnd != null) {
-						order.setExitTime(actualEnd.toLocalDateTime());
-					}
-					if (estimatedEnd != null) {
-						order.setExpectedExitTime(estimatedEnd.toLocalDateTime());
-					}
-					if (estimatedStart != null) {
-						order.setEstimatedStartTime(estimatedStart.toLocalDateTime());
-					}
-
-					order.setLate("yes".equals(rs.getString("IsLate")));
-					order.setExtended("yes".equals(rs.getString("IsExtended")));
-					order.setStatus(rs.getString("statusEnum"));
+		return Repositories.getSessions().findHistory(userName);
+	}
 
-					history.add(order);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting parking history: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return history;
+	/**
+	 * Retrieves the history records of a user that were created or changed since
+	 * the version the client already has.
+	 *
+	 * @param userName the username to search history for
+	 * @param version  the client's version, 0 for the full history
+	 * @return the changed records and the client's new version
+	 */
+	public HistoryChanges getParkingHistoryChanges(String userName, long version) {
+		return Repositories.getSessions().findHistoryChangedSince(userName, version);
 	}
 
+
 	/**
-	 * Retrieves all active parking sessions (status = 'active').
+	 * Retrieves all active parking sessions (status = 'active'). The sessions come
+	 * from the {@link ActiveSessionIndex} and the names from the
+	 * {@link SubscriberCache}.
 	 *
 	 * @return a list of currently active ParkingOrder entries
 	 */
 	public ArrayList<ParkingOrder> getActiveParkings() {
 		ArrayList<ParkingOrder> activeParkings = new ArrayList<>();
-		String qry = """
-				SELECT pi.*, u.Name, ps.ParkingSpot_ID
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID
-				WHERE pi.statusEnum = 'active'
-				ORDER BY pi.Actual_start_time
-				""";
-
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			try (ResultSet rs = stmt.executeQuery()) {
-				while (rs.next()) {
-					ParkingOrder order = new ParkingOrder();
-					order.setOrderID(rs.getInt("ParkingInfo_ID"));
-					order.setParkingCode(String.valueOf(rs.getInt("ParkingInfo_ID")));
-					order.setOrderType(rs.getString("IsOrderedEnum"));
-					order.setSubscriberName(rs.getString("Name"));
-					order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
-
-					Timestamp actualStart = rs.getTimestamp("Actual_start_time");
-					Timestamp estimatedEnd = rs.getTimestamp("Estimated_end_time");
-
-					if (actualStart != null) {
-						order.setEntryTime(actualStart.toLocalDateTime());
-					}
-					if (estimatedEnd != null) {
-						order.setExpectedExitTime(estimatedEnd.toLocalDateTime());
-					}
-
-					order.setStatus("active");
-					activeParkings.add(order);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting active parkings: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		for (ActiveSessionIndex.Session session : ActiveSessionIndex.getInstance().getActiveSessions()) {
+			ParkingOrder order = new ParkingOrder();
+			order.setOrderID(session.getParkingInfoID());
+			order.setParkingCode(String.valueOf(session.getParkingInfoID()));
+			order.setOrderType(session.isOrdered() ? "yes" : "no");
+			ParkingSubscriber user = SubscriberCache.getInstance().getById(session.getUserID());
+			order.setSubscriberName(user != null ? user.getFirstName() : null);
+			order.setSpotNumber("Spot " + session.getSpotID());
+			order.setEntryTime(session.getActualStart());
+			order.setExpectedExitTime(session.getEstimatedEnd());
+			order.setStatus("active");
+			activeParkings.add(order);
 		}
 		return activeParkings;
 	}
@@ -1272,77 +1805,43 @@ public class ParkingController {
 	 *         session
 	 */
 	public String sendLostParkingCode(String userName) {
-		String qry = """
-				SELECT pi.ParkingInfo_ID, u.Email, u.Phone, u.Name
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				WHERE u.UserName = ? AND pi.statusEnum = 'active'
-				""";
-
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					int parkingCode = rs.getInt("ParkingInfo_ID");
-					String email = rs.getString("Email");
-					String phone = rs.getString("Phone");
-					String name = rs.getString("Name");
+		ParkingSubscriber user = SubscriberCache.getInstance().getByUsername(userName);
+		ActiveSessionIndex.Session session = user != null
+				? ActiveSessionIndex.getInstance().getActiveByUser(user.getSubscriberID())
+				: null;
+		if (session == null) {
+			return "No active parking session found";
+		}
 
-					// Send email notification
-					EmailService.sendParkingCodeRecovery(email, name, String.valueOf(parkingCode));
+		// Send email notification
+		int parkingCode = session.getParkingInfoID();
+		EmailService.sendParkingCodeRecovery(user.getEmail(), user.getFirstName(), String.valueOf(parkingCode));
 
-					return String.valueOf(parkingCode);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error sending lost code: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return "No active parking session found";
+		return String.valueOf(parkingCode);
 	}
 
 	/**
 	 * Sends the parking code to the user (by userID) if they have an active parking
-	 * session. The code is sent via email.
+	 * session. The code is sent via email. The session is found in the
+	 * {@link ActiveSessionIndex} and the user in the {@link SubscriberCache}, so
+	 * usually no query is needed.
 	 *
 	 * @param userID the unique ID of the user
 	 * @return a message with the parking code or an error message if no active
 	 *         session is found
 	 */
 	public String sendLostParkingCode(int userID) {
-		String qry = """
-				SELECT pi.ParkingInfo_ID, u.Email, u.Phone, u.Name
-				FROM parkinginfo pi
-				JOIN users u ON pi.User_ID = u.User_ID
-				WHERE u.User_ID = ? AND pi.statusEnum = 'active'
-				""";
-
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, userID);
-
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					int parkingCode = rs.getInt("ParkingInfo_ID");
-					String email = rs.getString("Email");
-					String phone = rs.getString("Phone");
-					String name = rs.getString("Name");
-
-					// Send recovery email
-					EmailService.sendParkingCodeRecovery(email, name, String.valueOf(parkingCode));
-
-					return "Your active parking code is: " + parkingCode;
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error sending lost code: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		ActiveSessionIndex.Session session = ActiveSessionIndex.getInstance().getActiveByUser(userID);
+		ParkingSubscriber user = session != null ? SubscriberCache.getInstance().getById(userID) : null;
+		if (user == null) {
+			return "No active parking session found for this user.";
 		}
 
-		return "No active parking session found for this user.";
+		// Send recovery email
+		int parkingCode = session.getParkingInfoID();
+		EmailService.sendParkingCodeRecovery(user.getEmail(), user.getFirstName(), String.valueOf(parkingCode));
+
+		return "Your active parking code is: " + parkingCode;
 	}
 
 	// ========== USER REGISTRATION ==========
@@ -1421,7 +1920,11 @@ public class ParkingController {
 					}
 				}
 
-				System.out.println("New subscriber registered: " + userName + " with User_ID: " + userID);
+				ServerLog.log(Level.INFO, "subscriber_registered", "username", userName, "user", userID);
+				SubscriberCache.getInstance().invalidate(userName);
+				UsernameIndex.getInstance().add(userName);
+				SubscriberSearchIndex.getInstance()
+						.put(new ParkingSubscriber(userID, userName, name, phone, email, carNumber, "sub"));
 
 				// Send email notifications
 				EmailService.sendRegistrationConfirmation(email, name, userName, userID);
@@ -1429,8 +1932,12 @@ public class ParkingController {
 
 				return "SUCCESS:Subscriber registered successfully. Username: " + userName + ", User ID: " + userID;
 			}
+		} catch (SQLIntegrityConstraintViolationException e) {
+			// Unique key on UserName: someone registered the same name meanwhile
+			UsernameIndex.getInstance().add(userName);
+			return "Username already exists. Please choose a different username.";
 		} catch (SQLException e) {
-			System.out.println("Registration failed: " + e.getMessage());
+			ServerLog.log(Level.WARN, "registration_failed", "username", userName, "error", e.getMessage());
 			return "Registration failed: " + e.getMessage();
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
@@ -1440,26 +1947,15 @@ public class ParkingController {
 	}
 
 	/**
-	 * Generates a unique username based on the base name provided.
+	 * Generates a unique username based on the base name provided. Uses the
+	 * in-memory {@link UsernameIndex}, so no database query is needed.
 	 *
 	 * @param baseName the base name to generate a username from
 	 * @return a unique username
 	 */
 	public String generateUniqueUsername(String baseName) {
 		String cleanName = baseName.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-
-		if (isUsernameAvailable(cleanName)) {
-			return cleanName;
-		}
-
-		for (int i = 1; i <= 999; i++) {
-			String candidate = cleanName + i;
-			if (isUsernameAvailable(candidate)) {
-				return candidate;
-			}
-		}
-
-		return cleanName + System.currentTimeMillis() % 10000;
+		return UsernameIndex.getInstance().nextAvailable(cleanName);
 	}
 
 	/**
@@ -1513,11 +2009,13 @@ public class ParkingController {
 			stmt.setString(values.size() + 1, userName);
 
 			int rowsUpdated = stmt.executeUpdate();
+			SubscriberCache.getInstance().invalidate(userName);
 			if (rowsUpdated > 0) {
+				SubscriberSearchIndex.getInstance().put(SubscriberCache.getInstance().getByUsername(userName));
 				return "Subscriber information updated successfully";
 			}
 		} catch (SQLException e) {
-			System.out.println("Error updating subscriber info: " + e.getMessage());
+			ServerLog.log(Level.WARN, "subscriber_update_failed", "username", userName, "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -1529,22 +2027,27 @@ public class ParkingController {
 
 	/**
 	 * Searches the database for an available parking spot that is not reserved or
-	 * active during the specified time slot. Returns the first available spot ID or
-	 * -1 if none found.
+	 * active during the specified time slot, and locks it for the given
+	 * transaction. Spots locked by other transactions are skipped, so concurrent
+	 * reservations get different spots. Returns the first available spot ID or -1
+	 * if none found.
 	 *
+	 * @param uow       the transaction that will reserve the spot
 	 * @param startTime the desired start time of the reservation
 	 * @param endTime   the desired end time of the reservation
 	 * @return the ID of the available parking spot, or -1 if none found
+	 * @throws SQLException if the query fails
 	 */
-	private int findAvailableSpotForTimeSlot(LocalDateTime startTime, LocalDateTime endTime) {
+	private int findAvailableSpotForTimeSlot(UnitOfWork uow, LocalDateTime startTime, LocalDateTime endTime)
+			throws SQLException {
 		String qry = """
 				SELECT ps.ParkingSpot_ID
 				FROM parkingspot ps
-				WHERE ps.ParkingSpot_ID NOT IN (
-				    SELECT DISTINCT pi.ParkingSpot_ID
+				WHERE NOT EXISTS (
+				    SELECT 1
 				    FROM parkinginfo pi
-				    WHERE pi.statusEnum IN ('preorder', 'active')
-				    AND pi.ParkingSpot_ID IS NOT NULL
+				    WHERE pi.ParkingSpot_ID = ps.ParkingSpot_ID
+				    AND pi.statusEnum IN ('preorder', 'active')
 				    AND (
 				        -- Check if times overlap
 				        (pi.Estimated_start_time < ? AND pi.Estimated_end_time > ?)
@@ -1554,10 +2057,10 @@ public class ParkingController {
 				)
 				ORDER BY ps.ParkingSpot_ID
 				LIMIT 1
+				FOR UPDATE OF ps SKIP LOCKED
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+		try (PreparedStatement stmt = uow.prepare(qry)) {
 			stmt.setTimestamp(1, Timestamp.valueOf(endTime));
 			stmt.setTimestamp(2, Timestamp.valueOf(startTime));
 			stmt.setTimestamp(3, Timestamp.valueOf(startTime));
@@ -1566,18 +2069,16 @@ public class ParkingController {
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
 					int spotId = rs.getInt("ParkingSpot_ID");
-					System.out.println(
-							"Found available spot " + spotId + " for time slot " + startTime + " to " + endTime);
+					if (ServerLog.isEnabled(Level.DEBUG)) {
+						ServerLog.log(Level.DEBUG, "time_slot_spot_found", "spot", spotId, "start", startTime, "end",
+								endTime);
+					}
 					return spotId;
 				}
 			}
-		} catch (SQLException e) {
-			System.out.println("Error finding available spot for time slot: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
 
-		System.out.println("No available spots for time slot " + startTime + " to " + endTime);
+		ServerLog.log(Level.DEBUG, "time_slot_spot_none", "start", startTime, "end", endTime);
 		return -1;
 	}
 
@@ -1610,87 +2111,105 @@ public class ParkingController {
 		}
 	}
 
-	/**
-	 * Returns the user ID associated with a given username. If not found or in case
-	 * of error, returns -1.
-	 *
-	 * @param userName the username to search
-	 * @return user ID if found, -1 otherwise
-	 */
-	private int getUserID(String userName) {
-		String qry = "SELECT User_ID FROM users WHERE UserName = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, userName);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getInt("User_ID");
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting user ID: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return -1;
-	}
-
 	/**
 	 * Returns the ID of the first available parking spot that is not currently
-	 * reserved or occupied.
+	 * reserved or occupied, and locks it for the given transaction. Spots locked
+	 * by other transactions are skipped, so concurrent entries get different
+	 * spots.
 	 *
+	 * @param uow the transaction that will occupy the spot
 	 * @return available parking spot ID, or -1 if none found
+	 * @throws SQLException if the query fails
 	 */
-	private int getAvailableParkingSpotID() {
+	private int getAvailableParkingSpotID(UnitOfWork uow) throws SQLException {
 		String qry = """
 				SELECT ps.ParkingSpot_ID
 				FROM ParkingSpot ps
 				WHERE ps.isOccupied = false
-				  AND ps.ParkingSpot_ID NOT IN (
-				      SELECT pi.ParkingSpot_ID
+				  AND NOT EXISTS (
+				      SELECT 1
 				      FROM parkinginfo pi
-				      WHERE pi.statusEnum IN ('preorder', 'active')
+				      WHERE pi.ParkingSpot_ID = ps.ParkingSpot_ID
+				        AND pi.statusEnum IN ('preorder', 'active')
 				        AND (
 				            (pi.Estimated_start_time <= NOW() AND pi.Estimated_end_time >= NOW())
-				            OR (pi.statusEnum = 'preorder' AND TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) BETWEEN 0 AND 15)
+				            OR (pi.statusEnum = 'preorder' AND pi.Estimated_start_time <= NOW()
+				                AND pi.Estimated_start_time > NOW() - INTERVAL 16 MINUTE)
 				        )
 				  )
+				ORDER BY ps.ParkingSpot_ID
 				LIMIT 1
+				FOR UPDATE OF ps SKIP LOCKED
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement stmt = conn.prepareStatement(qry); ResultSet rs = stmt.executeQuery()) {
+		try (PreparedStatement stmt = uow.prepare(qry); ResultSet rs = stmt.executeQuery()) {
 			if (rs.next()) {
 				return rs.getInt("ParkingSpot_ID");
 			}
-		} catch (SQLException e) {
-			System.out.println("Error getting available spot ID: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
 		return -1;
 	}
 
 	/**
-	 * Updates the 'isOccupied' status of a given parking spot.
+	 * Frees the parking spot assigned to a parking session, without reading the
+	 * spot ID first.
 	 *
+	 * @param uow           the transaction to run the update in
+	 * @param parkingInfoID the parking session whose spot is freed
+	 * @throws SQLException if the update fails
+	 */
+	private void freeParkingSpotOf(UnitOfWork uow, int parkingInfoID) throws SQLException {
+		String qry = """
+				UPDATE ParkingSpot
+				SET isOccupied = FALSE
+				WHERE ParkingSpot_ID = (SELECT ParkingSpot_ID FROM parkinginfo WHERE ParkingInfo_ID = ?)
+				""";
+
+		try (PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setInt(1, parkingInfoID);
+			stmt.executeUpdate();
+		}
+		uow.afterCommit(() -> OccupancyService.getInstance().occupancyChanged());
+	}
+
+	/**
+	 * Executes a conditional UPDATE that stores one column of the matched row in
+	 * LAST_INSERT_ID(column), and returns that value. MySQL has no RETURNING
+	 * clause; the driver reports LAST_INSERT_ID with the update result, so this
+	 * takes no extra round trip. The statement must be prepared with
+	 * {@link PreparedStatement#RETURN_GENERATED_KEYS}.
+	 *
+	 * @param stmt the prepared UPDATE statement, parameters already set
+	 * @return the returned column value, or -1 if no row matched
+	 * @throws SQLException if the update fails
+	 */
+	private int executeReturningId(PreparedStatement stmt) throws SQLException {
+		if (stmt.executeUpdate() == 0) {
+			return -1;
+		}
+		try (ResultSet keys = stmt.getGeneratedKeys()) {
+			return keys.next() ? keys.getInt(1) : -1;
+		}
+	}
+
+	/**
+	 * Updates the 'isOccupied' status of a given parking spot as part of a
+	 * transaction. The occupancy recorder is notified after the commit.
+	 *
+	 * @param uow        the transaction to run the update in
 	 * @param spotID     ID of the parking spot to update
 	 * @param isOccupied new occupancy status
+	 * @throws SQLException if the update fails
 	 */
-	private void updateParkingSpotStatus(int spotID, boolean isOccupied) {
+	private void updateParkingSpotStatus(UnitOfWork uow, int spotID, boolean isOccupied) throws SQLException {
 		String qry = "UPDATE ParkingSpot SET isOccupied = ? WHERE ParkingSpot_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
 
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+		try (PreparedStatement stmt = uow.prepare(qry)) {
 			stmt.setBoolean(1, isOccupied);
 			stmt.setInt(2, spotID);
 			stmt.executeUpdate();
-		} catch (SQLException e) {
-			System.out.println("Error updating parking spot status: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
+		uow.afterCommit(() -> OccupancyService.getInstance().occupancyChanged());
 	}
 
 	/**
@@ -1700,38 +2219,13 @@ public class ParkingController {
 	 * @param userID the user's ID
 	 */
 	private void sendLateExitNotification(int userID) {
-		String qry = "SELECT Email, Phone, Name FROM users WHERE User_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, userID);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					String email = rs.getString("Email");
-					String phone = rs.getString("Phone");
-					String name = rs.getString("Name");
-
-					// Send email notification
-					EmailService.sendLatePickupNotification(email, name);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error sending late notification: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		ParkingSubscriber user = SubscriberCache.getInstance().getById(userID);
+		if (user != null) {
+			// Send email notification
+			EmailService.sendLatePickupNotification(user.getEmail(), user.getFirstName());
 		}
 	}
 
-	/**
-	 * Checks whether a given username is available (i.e., not already used).
-	 *
-	 * @param userName the username to check
-	 * @return true if available, false otherwise
-	 */
-	private boolean isUsernameAvailable(String userName) {
-		return !doesUsernameExist(userName);
-	}
-
 	/**
 	 * Checks if a username already exists in the database.
 	 *
@@ -1750,7 +2244,7 @@ public class ParkingController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error checking username: " + e.getMessage());
+			ServerLog.log(Level.WARN, "username_check_failed", "username", username, "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -1764,22 +2258,7 @@ public class ParkingController {
 	 * @return true if user exists, false otherwise
 	 */
 	public boolean doesUserIDExist(int userID) {
-		String qry = "SELECT COUNT(*) FROM users WHERE User_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, userID);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getInt(1) > 0;
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error checking user ID: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return false;
+		return SubscriberCache.getInstance().getById(userID) != null;
 	}
 	
 	/**
@@ -1789,8 +2268,24 @@ public class ParkingController {
 	 * @return true if the parking order belongs to the user, false otherwise
 	 */
 	public boolean validateParkingOrderOwnership(int parkingInfoID, int userID) {
-		String qry = "SELECT COUNT(*) FROM parkinginfo WHERE ParkingInfo_ID = ? AND User_ID = ?";
 		Connection conn = DBController.getInstance().getConnection();
+		try {
+			return validateParkingOrderOwnership(conn, parkingInfoID, userID);
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Runs the ownership check on the given connection.
+	 *
+	 * @param conn          the connection to use
+	 * @param parkingInfoID The parking order ID
+	 * @param userID        The user ID to validate ownership
+	 * @return true if the parking order belongs to the user, false otherwise
+	 */
+	private boolean validateParkingOrderOwnership(Connection conn, int parkingInfoID, int userID) {
+		String qry = "SELECT COUNT(*) FROM parkinginfo WHERE ParkingInfo_ID = ? AND User_ID = ?";
 
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			stmt.setInt(1, parkingInfoID);
@@ -1799,19 +2294,55 @@ public class ParkingController {
 				if (rs.next()) {
 					boolean isOwner = rs.getInt(1) > 0;
 					if (!isOwner) {
-						System.out.println("Security Alert: User " + userID + " attempted to access parking order " + parkingInfoID + " without authorization");
+						ServerLog.log(Level.WARN, "unauthorized_access", "user", userID, "parkingInfoID", parkingInfoID);
 					}
 					return isOwner;
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error validating parking order ownership: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+			ServerLog.log(Level.WARN, "ownership_check_failed", "parkingInfoID", parkingInfoID, "error",
+					e.getMessage());
 		}
 		return false;
 	}
 
+	/**
+	 * Checks ownership of a parking order, using the {@link ActiveSessionIndex}
+	 * for preorder and active sessions and the database for all others.
+	 *
+	 * @param parkingInfoID The parking order ID
+	 * @param userID        The user ID to validate ownership
+	 * @return true if the parking order belongs to the user, false otherwise
+	 */
+	private boolean ownsSession(int parkingInfoID, int userID) {
+		ActiveSessionIndex.Session session = ActiveSessionIndex.getInstance().get(parkingInfoID);
+		if (session == null) {
+			return validateParkingOrderOwnership(parkingInfoID, userID);
+		}
+		if (session.getUserID() != userID) {
+			ServerLog.log(Level.WARN, "unauthorized_access", "user", userID, "parkingInfoID", parkingInfoID);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Marks a reservation as active in the {@link ActiveSessionIndex} after it was
+	 * activated. Reloads it if the index did not know the reservation.
+	 *
+	 * @param reservationCode the activated reservation
+	 * @param start           the actual start time
+	 */
+	private void activateInIndex(int reservationCode, LocalDateTime start) {
+		ActiveSessionIndex index = ActiveSessionIndex.getInstance();
+		ActiveSessionIndex.Session session = index.get(reservationCode);
+		if (session != null) {
+			index.put(session.activated(start));
+		} else {
+			index.reload(reservationCode);
+		}
+	}
+
 
 	/**
 	 * Retrieves the user's full name by matching both username and user ID.
@@ -1821,25 +2352,23 @@ public class ParkingController {
 	 * @return full name if found, null otherwise
 	 */
 	public String getNameByUsernameAndUserID(String username, int userID) {
-		String qry = "SELECT Name FROM users WHERE UserName = ? AND User_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, username);
-			stmt.setInt(2, userID);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getString("Name");
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting name: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		ParkingSubscriber user = SubscriberCache.getInstance().getById(userID);
+		if (user != null && user.getSubscriberCode().equals(username)) {
+			return user.getFirstName();
 		}
 		return null;
 	}
 
+	/**
+	 * Retrieves a user by their ID.
+	 *
+	 * @param userID the user's ID
+	 * @return the user, or null if not found
+	 */
+	public ParkingSubscriber getSubscriberByID(int userID) {
+		return SubscriberCache.getInstance().getById(userID);
+	}
+
 	/**
 	 * Retrieves the full name of a user by their ID.
 	 *
@@ -1847,32 +2376,23 @@ public class ParkingController {
 	 * @return full name if found, null otherwise
 	 */
 	public String getNameByUserID(int userID) {
-		String qry = "SELECT Name FROM users WHERE User_ID = ?";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, userID);
-			try (ResultSet rs = stmt.executeQuery()) {
-				if (rs.next()) {
-					return rs.getString("Name");
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting name by user ID: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
-		return null;
+		ParkingSubscriber user = SubscriberCache.getInstance().getById(userID);
+		return user != null ? user.getFirstName() : null;
 	}
 
 	/**
-	 * Fetches a subscriber's details based on their name.
+	 * Fetches a subscriber's details based on their name. Subscribers are found
+	 * in the {@link SubscriberSearchIndex}; other users (the Name column has no
+	 * index) are looked up in the database.
 	 *
 	 * @param name subscriber's name
 	 * @return ParkingSubscriber object if found, null otherwise
 	 */
 	public ParkingSubscriber getSubscriberByName(String name) {
-		ParkingSubscriber subscriber = null;
+		ParkingSubscriber subscriber = SubscriberSearchIndex.getInstance().findByName(name);
+		if (subscriber != null) {
+			return subscriber;
+		}
 		String query = "SELECT * FROM users WHERE Name = ?";
 		Connection conn = DBController.getInstance().getConnection();
 
@@ -1886,13 +2406,35 @@ public class ParkingController {
 			}
 			rs.close();
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ServerLog.log(Level.WARN, "subscriber_lookup_failed", "name", name, "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
 		return subscriber;
 	}
 
+	/**
+	 * Returns a window of the subscriber list ordered by User_ID.
+	 *
+	 * @param offset position of the first row
+	 * @param limit  number of rows
+	 * @return the window and the total number of subscribers
+	 */
+	public SubscriberPage getSubscriberPage(int offset, int limit) {
+		return SubscriberSearchIndex.getInstance().getPage(offset, limit);
+	}
+
+	/**
+	 * Searches subscribers by name, username, phone or car number.
+	 *
+	 * @param query the search text
+	 * @param limit number of results
+	 * @return the best matches and the number of all matches
+	 */
+	public SubscriberPage searchSubscribers(String query, int limit) {
+		return SubscriberSearchIndex.getInstance().search(query, limit);
+	}
+
 	/**
 	 * Retrieves a list of all parking subscribers from the database.
 	 *
@@ -1901,7 +2443,7 @@ public class ParkingController {
 	public List<ParkingSubscriber> getAllSubscribers() {
 		List<ParkingSubscriber> list = new ArrayList<>();
 		String query = "SELECT * FROM users WHERE UserTypeEnum = 'sub'";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.REPORTING);
 
 		try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
 
@@ -1913,7 +2455,7 @@ public class ParkingController {
 			}
 
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ServerLog.log(Level.WARN, "subscriber_list_failed", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -1923,58 +2465,53 @@ public class ParkingController {
 
 	/**
 	 * Ends the parking session and marks the spot as free, based on a parking info
-	 * ID (used by attendants).
+	 * ID (used by attendants). The session is finished with a single conditional
+	 * update that also returns its spot.
 	 *
 	 * @param parkingInfoID ID of the parking session
 	 * @return status message to show to the user
 	 */
 	public String retrieveCarByCode(int parkingInfoID) {
-		System.out.println("[DEBUG] retrieveCarByCode called with ParkingInfo_ID: " + parkingInfoID);
+		if (ServerLog.isEnabled(Level.DEBUG)) {
+			ServerLog.log(Level.DEBUG, "retrieve_car", "parkingInfoID", parkingInfoID);
+		}
+		if (ActiveSessionIndex.getInstance().findActive(parkingInfoID) == null) {
+			return "No active parking session found for this code.";
+		}
 
-		String selectQry = """
-				SELECT ParkingSpot_ID
-				FROM parkinginfo
+		// Finish and return the ParkingSpot_ID in one statement
+		String updateParkingInfo = """
+				UPDATE parkinginfo
+				SET Actual_end_time = NOW(), statusEnum = 'finished', ParkingSpot_ID = LAST_INSERT_ID(ParkingSpot_ID)
 				WHERE ParkingInfo_ID = ? AND statusEnum = 'active'
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
-		try (PreparedStatement selectStmt = conn.prepareStatement(selectQry)) {
-			selectStmt.setInt(1, parkingInfoID);
-
-			try (ResultSet rs = selectStmt.executeQuery()) {
-				if (rs.next()) {
-					int parkingSpotID = rs.getInt("ParkingSpot_ID");
-					System.out.println("[DEBUG] Found active parking: Spot ID = " + parkingSpotID);
-
-					// Update parkinginfo
-					String updateParkingInfo = """
-							UPDATE parkinginfo
-							SET Actual_end_time = NOW(), statusEnum = 'finished'
-							WHERE ParkingInfo_ID = ?
-							""";
-
-					try (PreparedStatement updateInfoStmt = conn.prepareStatement(updateParkingInfo)) {
-						updateInfoStmt.setInt(1, parkingInfoID);
-						int rowsUpdated = updateInfoStmt.executeUpdate();
-						System.out.println("[DEBUG] Updated parkinginfo rows: " + rowsUpdated);
-					}
-
-					// Update parking spot
-					updateParkingSpotStatus(parkingSpotID, false);
+		try (UnitOfWork uow = UnitOfWork.begin()) {
+			int parkingSpotID;
+			try (PreparedStatement updateInfoStmt = uow.prepare(updateParkingInfo,
+					PreparedStatement.RETURN_GENERATED_KEYS)) {
+				updateInfoStmt.setInt(1, parkingInfoID);
+				parkingSpotID = executeReturningId(updateInfoStmt);
+			}
 
-					return "Car retrieved successfully from spot " + parkingSpotID;
-				} else {
-					System.out.println("[DEBUG] No active parking found for ParkingInfo_ID: " + parkingInfoID);
-					return "No active parking session found for this code.";
-				}
+			if (parkingSpotID == -1) {
+				return "No active parking session found for this code.";
 			}
+			if (ServerLog.isEnabled(Level.DEBUG)) {
+				ServerLog.log(Level.DEBUG, "retrieve_car_finished", "parkingInfoID", parkingInfoID, "spot",
+						parkingSpotID);
+			}
+
+			// Update parking spot
+			updateParkingSpotStatus(uow, parkingSpotID, false);
+			uow.afterCommit(() -> ActiveSessionIndex.getInstance().remove(parkingInfoID));
+			uow.afterCommit(() -> DailySketchService.getInstance().sessionFinished(parkingInfoID));
+			uow.commit();
 
+			return "Car retrieved successfully from spot " + parkingSpotID;
 		} catch (SQLException e) {
-			System.out.println("Error retrieving car: " + e.getMessage());
-			e.printStackTrace();
+			ServerLog.log(Level.WARN, "retrieve_car_failed", "parkingInfoID", parkingInfoID, "error", e.getMessage());
 			return "Error retrieving car.";
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
 		}
 	}
 
@@ -1983,31 +2520,13 @@ public class ParkingController {
 	 * auto-cancellation service if applicable.
 	 */
 	public void initializeParkingSpots() {
-		Connection conn = DBController.getInstance().getConnection();
-
-		try {
-			// Check if spots already exist
-			String checkQry = "SELECT COUNT(*) FROM ParkingSpot";
-			try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next() && rs.getInt(1) == 0) {
-						// Initialize parking spots
-						String insertQry = "INSERT INTO ParkingSpot (isOccupied) VALUES (false)";
-						try (PreparedStatement insertStmt = conn.prepareStatement(insertQry)) {
-							for (int i = 1; i <= TOTAL_PARKING_SPOTS; i++) {
-								insertStmt.executeUpdate();
-							}
-						}
-						System.out.println("Successfully initialized " + TOTAL_PARKING_SPOTS + " parking spots");
-					} else {
-						System.out.println("Parking spots already exist: " + rs.getInt(1) + " spots found");
-					}
-				}
+		int existing = Repositories.getSpots().countSpots();
+		if (existing == 0) {
+			if (Repositories.getSpots().createSpots(TOTAL_PARKING_SPOTS)) {
+				System.out.println("Successfully initialized " + TOTAL_PARKING_SPOTS + " parking spots");
 			}
-		} catch (SQLException e) {
-			System.out.println("Error initializing parking spots: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		} else if (existing > 0) {
+			System.out.println("Parking spots already exist: " + existing + " spots found");
 		}
 
 		// Start auto-cancellation service if needed
@@ -2022,7 +2541,7 @@ public class ParkingController {
 	 * @param userName the username to log out
 	 */
 	public void logoutUser(String userName) {
-		System.out.println("User logged out: " + userName);
+		ServerLog.log(Level.INFO, "user_logged_out", "username", userName);
 	}
 
 	/**
@@ -2051,7 +2570,7 @@ public class ParkingController {
 				ORDER BY ParkingSpot_ID, Estimated_start_time
 				""";
 
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			stmt.setTimestamp(1, Timestamp.valueOf(endTime));
 			stmt.setTimestamp(2, Timestamp.valueOf(startTime));
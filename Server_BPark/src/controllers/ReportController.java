@@ -1,16 +1,23 @@
 package controllers;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TreeMap;
 
 import common.ParkingReport;
+import repository.Repositories;
 import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+import services.DurationSketch;
+import services.HyperLogLog;
 
 /**
  * ||in SERVER||
@@ -20,6 +27,13 @@ import server.DBController;
  */
 public class ReportController {
 
+	/**
+	 * When true, distinct subscriber counts use exact COUNT(DISTINCT) queries
+	 * (audit mode) instead of the daily HyperLogLog sketches. Can be enabled at
+	 * startup with -Dbpark.reports.exactDistinct=true.
+	 */
+	private volatile boolean exactDistinctCounts = Boolean.getBoolean("bpark.reports.exactDistinct");
+
 	/**
 	 * Initializes the report controller and sets up the database connection.
 	 *
@@ -32,6 +46,25 @@ public class ReportController {
 //		conn = DBController.getInstance().getConnection();
 	}
 
+	/**
+	 * Switches between exact distinct subscriber counts (audit mode) and the
+	 * approximate counts merged from daily sketches.
+	 *
+	 * @param exact true to use exact COUNT(DISTINCT) queries
+	 */
+	public void setExactDistinctCounts(boolean exact) {
+		this.exactDistinctCounts = exact;
+	}
+
+	/**
+	 * Returns whether distinct subscriber counts are computed exactly.
+	 *
+	 * @return true in audit mode
+	 */
+	public boolean isExactDistinctCounts() {
+		return exactDistinctCounts;
+	}
+
 	/**
 	 * Retrieves parking reports based on the specified report type.
 	 *
@@ -54,7 +87,7 @@ public class ReportController {
 			reports.add(generateSubscriberStatusReport());
 			break;
 		default:
-			System.out.println("Unknown report type: " + reportType);
+			ServerLog.log(Level.WARN, "unknown_report_type", "type", reportType);
 			break;
 		}
 
@@ -96,7 +129,7 @@ public class ReportController {
 			storeMonthlyReports(monthlyReports);
 
 		} catch (Exception e) {
-			System.out.println("Error generating monthly reports: " + e.getMessage());
+			ServerLog.log(Level.WARN, "monthly_reports_failed", "month", monthYear, "error", e.getMessage());
 		}
 
 		return monthlyReports;
@@ -111,7 +144,7 @@ public class ReportController {
 	 */
 	private ParkingReport generateParkingTimeReport() {
 		ParkingReport report = new ParkingReport("PARKING_TIME", LocalDate.now());
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		String qry = """
 				SELECT
@@ -123,8 +156,8 @@ public class ReportController {
 				    MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as max_duration
 				FROM parkinginfo
 				WHERE statusEnum IN ('active', 'finished')
-				AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 
 
@@ -146,7 +179,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error generating parking time report: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_failed", "report", "parking_time", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -164,6 +197,9 @@ public class ReportController {
 		report.setpreOrderReservations(getPreOrderedReservations());
 		report.setOccupied(getOccupied());
 		report.setTotalSpots(getTotalSpots());
+
+		LocalDate monthStart = LocalDate.now().minusMonths(1).withDayOfMonth(1);
+		setDurationPercentiles(report, monthStart, monthStart.plusMonths(1));
 		return report;
 	}
 
@@ -176,14 +212,14 @@ public class ReportController {
 	 */
 	private ParkingReport generateSubscriberStatusReport() {
 		ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", LocalDate.now());
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		// Get active subscribers count
 		String activeSubQry = """
 								SELECT COUNT(DISTINCT User_ID) as active_subscribers
 								FROM parkinginfo
-								WHERE MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								WHERE Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								""";
 
@@ -195,8 +231,8 @@ public class ReportController {
 								    SUM(CASE WHEN IsOrderedEnum = 'no' THEN 1 ELSE 0 END) as immediate_entries,
 								    AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, NOW()))) as zavg_session_duration
 								FROM parkinginfo
-								WHERE MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								WHERE Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								AND statusEnum IN ('active', 'finished')
 								""";
@@ -206,17 +242,19 @@ public class ReportController {
 								SELECT COUNT(*) as cancelled_reservations
 								FROM parkinginfo
 								WHERE statusEnum = 'cancelled'
-								AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								""";
 
 		try {
-			// Get active subscribers
-			try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next()) {
-						report.setActiveSubscribers(rs.getInt("active_subscribers"));
+			// Get active subscribers (exact only in audit mode, see below)
+			if (exactDistinctCounts) {
+				try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
+					try (ResultSet rs = stmt.executeQuery()) {
+						if (rs.next()) {
+							report.setActiveSubscribers(rs.getInt("active_subscribers"));
+						}
 					}
 				}
 			}
@@ -243,11 +281,16 @@ public class ReportController {
 			}
 
 		} catch (SQLException e) {
-			System.out.println("Error generating subscriber status report: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_failed", "report", "subscriber_status", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
 
+		if (!exactDistinctCounts) {
+			LocalDate monthStart = LocalDate.now().minusMonths(1).withDayOfMonth(1);
+			report.setActiveSubscribers(getApproximateActiveSubscribers(monthStart));
+			report.setSubscriberCountError(HyperLogLog.getRelativeStandardError());
+		}
 		report.setSubscribersPerDay(getSubscribersPerDay());
 		report.setTotalSubscribers(getTotalSubscribers());
 		report.setLateSubscribers(getLateSubscribers());
@@ -264,7 +307,7 @@ public class ReportController {
 	 */
 	private ParkingReport generateMonthlyParkingTimeReport(LocalDate reportDate) {
 		ParkingReport report = new ParkingReport("PARKING_TIME", reportDate);
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		String qry = """
 				SELECT
@@ -275,15 +318,15 @@ public class ReportController {
 				    MIN(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as min_duration,
 				    MAX(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as max_duration
 				FROM parkinginfo
-				WHERE YEAR(Estimated_start_time) = ? AND MONTH(Estimated_start_time) = ?
-				AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				WHERE Estimated_start_time >= ? AND Estimated_start_time < ?
+				AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				AND statusEnum IN ('active', 'finished')
 				""";
 
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setInt(1, reportDate.getYear());
-			stmt.setInt(2, reportDate.getMonthValue());
+			stmt.setDate(1, Date.valueOf(reportDate.withDayOfMonth(1)));
+			stmt.setDate(2, Date.valueOf(reportDate.withDayOfMonth(1).plusMonths(1)));
 
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
@@ -293,12 +336,13 @@ public class ReportController {
 					report.setExtensions(rs.getInt("extensions"));
 					report.setMinParkingTime(rs.getInt("min_duration"));
 					report.setMaxParkingTime(rs.getInt("max_duration"));
+					setDurationPercentiles(report, reportDate, reportDate.plusMonths(1));
 
 					return report;
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error generating monthly parking time report: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_failed", "report", "monthly_parking_time", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -315,13 +359,13 @@ public class ReportController {
 	 */
 	private ParkingReport generateMonthlySubscriberStatusReport(LocalDate reportDate) {
 		ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", reportDate);
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		// Get active subscribers for the month
 		String activeSubQry = """
 				SELECT COUNT(DISTINCT User_ID) as active_subscribers
 				FROM parkinginfo
-				WHERE YEAR(Estimated_start_time) = ? AND MONTH(Estimated_start_time) = ?
+				WHERE Estimated_start_time >= ? AND Estimated_start_time < ?
 				""";
 
 		// Get monthly order statistics
@@ -332,7 +376,7 @@ public class ReportController {
 				    SUM(CASE WHEN IsOrderedEnum = 'no' THEN 1 ELSE 0 END) as immediate_entries,
 				    AVG(TIMESTAMPDIFF(MINUTE, Actual_start_time, COALESCE(Actual_end_time, Estimated_end_time))) as avg_session_duration
 				FROM parkinginfo
-				WHERE YEAR(Estimated_start_time) = ? AND MONTH(Estimated_start_time) = ?
+				WHERE Estimated_start_time >= ? AND Estimated_start_time < ?
 				AND statusEnum IN ('active', 'finished')
 				""";
 
@@ -341,25 +385,30 @@ public class ReportController {
 				SELECT COUNT(*) as cancelled_reservations
 				FROM parkinginfo
 				WHERE statusEnum = 'cancelled'
-				AND YEAR(Estimated_start_time) = ? AND MONTH(Estimated_start_time) = ?
+				AND Estimated_start_time >= ? AND Estimated_start_time < ?
 				""";
 
 		try {
 			// Get active subscribers
-			try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
-				stmt.setInt(1, reportDate.getYear());
-				stmt.setInt(2, reportDate.getMonthValue());
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next()) {
-						report.setActiveSubscribers(rs.getInt("active_subscribers"));
+			if (exactDistinctCounts) {
+				try (PreparedStatement stmt = conn.prepareStatement(activeSubQry)) {
+					stmt.setDate(1, Date.valueOf(reportDate.withDayOfMonth(1)));
+					stmt.setDate(2, Date.valueOf(reportDate.withDayOfMonth(1).plusMonths(1)));
+					try (ResultSet rs = stmt.executeQuery()) {
+						if (rs.next()) {
+							report.setActiveSubscribers(rs.getInt("active_subscribers"));
+						}
 					}
 				}
+			} else {
+				report.setActiveSubscribers(getApproximateActiveSubscribers(reportDate));
+				report.setSubscriberCountError(HyperLogLog.getRelativeStandardError());
 			}
 
 			// Get order statistics
 			try (PreparedStatement stmt = conn.prepareStatement(ordersQry)) {
-				stmt.setInt(1, reportDate.getYear());
-				stmt.setInt(2, reportDate.getMonthValue());
+				stmt.setDate(1, Date.valueOf(reportDate.withDayOfMonth(1)));
+				stmt.setDate(2, Date.valueOf(reportDate.withDayOfMonth(1).plusMonths(1)));
 				try (ResultSet rs = stmt.executeQuery()) {
 					if (rs.next()) {
 						report.setTotalOrders(rs.getInt("total_orders"));
@@ -372,8 +421,8 @@ public class ReportController {
 
 			// Get cancelled reservations
 			try (PreparedStatement stmt = conn.prepareStatement(cancelledQry)) {
-				stmt.setInt(1, reportDate.getYear());
-				stmt.setInt(2, reportDate.getMonthValue());
+				stmt.setDate(1, Date.valueOf(reportDate.withDayOfMonth(1)));
+				stmt.setDate(2, Date.valueOf(reportDate.withDayOfMonth(1).plusMonths(1)));
 				try (ResultSet rs = stmt.executeQuery()) {
 					if (rs.next()) {
 						report.setCancelledReservations(rs.getInt("cancelled_reservations"));
@@ -384,7 +433,7 @@ public class ReportController {
 			return report;
 
 		} catch (SQLException e) {
-			System.out.println("Error generating monthly subscriber status report: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_failed", "report", "monthly_subscriber_status", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -393,29 +442,18 @@ public class ReportController {
 	}
 
 	/**
-	 * Stores a list of monthly reports in the database. Each report is saved with
-	 * its type and generation timestamp.
+	 * Stores a list of monthly reports. Each report is saved with its type and
+	 * generation timestamp.
 	 *
 	 * @param reports List of ParkingReport objects to be saved.
 	 */
 	private void storeMonthlyReports(ArrayList<ParkingReport> reports) {
-		String qry = "INSERT INTO reports (Report_Type, Generated_Date, Report_Data) VALUES (?, NOW(), ?)";
-		Connection conn = DBController.getInstance().getConnection();
-
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			for (ParkingReport report : reports) {
-				stmt.setString(1, report.getReportType());
-				stmt.setString(2, report.toString()); // Store as JSON or formatted string
-				stmt.executeUpdate();
-			}
-			System.out.println("Monthly reports stored successfully");
-		} catch (SQLException e) {
-			System.out.println("Error storing monthly reports: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
+		if (Repositories.getReports().storeReports(reports)) {
+			ServerLog.log(Level.INFO, "monthly_reports_stored", "reports", reports.size());
 		}
 	}
 
+
 	/**
 	 * Retrieves previously generated reports of a given type between specified
 	 * dates.
@@ -426,43 +464,49 @@ public class ReportController {
 	 * @return List of ParkingReport objects within the specified date range
 	 */
 	public ArrayList<ParkingReport> getHistoricalReports(String reportType, LocalDate fromDate, LocalDate toDate) {
-		ArrayList<ParkingReport> reports = new ArrayList<>();
-		Connection conn = DBController.getInstance().getConnection();
-
-		String qry = """
-				SELECT * FROM reports
-				WHERE Report_Type = ?
-				MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND DATE(Generated_Date) BETWEEN ? AND ?
-				ORDER BY Generated_Date DESC
-				""";
+		return Repositories.getReports().findReports(reportType, fromDate, toDate);
+	}
 
-		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
-			stmt.setString(1, reportType);
-			stmt.setString(2, fromDate.toString());
-			stmt.setString(3, toDate.toString());
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				while (rs.next()) {
-					// This would need to be enhanced to parse the stored report data
-					// For now, we'll create a basic report object
-					ParkingReport report = new ParkingReport();
-					report.setReportType(rs.getString("Report_Type"));
-					Timestamp genDate = rs.getTimestamp("Generated_Date");
-					if (genDate != null) {
-						report.setReportDate(genDate.toLocalDateTime().toLocalDate());
-					}
-					reports.add(report);
-				}
-			}
-		} catch (SQLException e) {
-			System.out.println("Error getting historical reports: " + e.getMessage());
-		} finally {
-			DBController.getInstance().releaseConnection(conn);
-		}
+	/**
+	 * Fills the duration percentiles and histogram of a report from the stored
+	 * daily sketches, so no raw rows are scanned for days already summarized.
+	 *
+	 * @param report  the report to fill
+	 * @param fromDay first day of the period (inclusive)
+	 * @param toDay   last day of the period (exclusive)
+	 */
+	private void setDurationPercentiles(ParkingReport report, LocalDate fromDay, LocalDate toDay) {
+		DailySketchService sketches = DailySketchService.getInstance();
+		DurationSketch parkingTime = sketches.getMergedSketch(DailySketchService.PARKING_TIME, fromDay, toDay);
+		DurationSketch lateExits = sketches.getMergedSketch(DailySketchService.LATE_EXIT_MINUTES, fromDay, toDay);
+
+		report.setParkingTimePercentiles(getPercentiles(parkingTime));
+		report.setLateExitPercentiles(getPercentiles(lateExits));
+
+		Map<String, Integer> histogram = new LinkedHashMap<>();
+		histogram.put("0-30m", (int) parkingTime.countBetween(0, 30));
+		histogram.put("30-60m", (int) parkingTime.countBetween(30, 60));
+		histogram.put("1-2h", (int) parkingTime.countBetween(60, 120));
+		histogram.put("2-4h", (int) parkingTime.countBetween(120, 240));
+		histogram.put("4-6h", (int) parkingTime.countBetween(240, 360));
+		histogram.put("6-8h", (int) parkingTime.countBetween(360, 480));
+		histogram.put("8h+", (int) parkingTime.countBetween(480, Long.MAX_VALUE));
+		report.setParkingTimeHistogram(histogram);
+	}
 
-		return reports;
+	/**
+	 * Extracts the p50, p90 and p99 values of a sketch.
+	 *
+	 * @param sketch the sketch to read
+	 * @return map of percentile label to minutes
+	 */
+	private Map<String, Integer> getPercentiles(DurationSketch sketch) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		map.put("p50", (int) sketch.getValueAtQuantile(0.50));
+		map.put("p90", (int) sketch.getValueAtQuantile(0.90));
+		map.put("p99", (int) sketch.getValueAtQuantile(0.99));
+		return map;
 	}
 
 	/**
@@ -480,12 +524,12 @@ public class ReportController {
 				WHERE statusEnum = 'finished'
 				  AND Actual_start_time IS NOT NULL
 				  AND Actual_end_time IS NOT NULL
-				  AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				  AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				GROUP BY day
 				ORDER BY day;
 								""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
@@ -495,7 +539,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "parking_time_per_day", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -514,12 +558,12 @@ public class ReportController {
 				    SELECT HOUR(Actual_start_time) as hour, COUNT(*) as cnt
 				    FROM parkinginfo
 				    WHERE statusEnum = 'finished'
-				    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-					AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+					AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				    GROUP BY hour
 				    ORDER BY hour
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
@@ -529,7 +573,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "hourly_distribution", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -547,12 +591,12 @@ public class ReportController {
 				    SELECT HOUR(Actual_end_time) as hour, COUNT(*) as cnt
 				    FROM parkinginfo
 				    WHERE IsLate = 'yes' AND Actual_end_time IS NOT NULL
-				    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-					AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+					AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				    GROUP BY hour
 				    ORDER BY hour
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
@@ -562,32 +606,51 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "late_exits_by_hour", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
 		return map;
 	}
 
+	/**
+	 * Estimates the number of distinct subscribers who parked during a month by
+	 * merging the daily HyperLogLog sketches.
+	 *
+	 * @param monthStart first day of the month
+	 * @return estimated number of active subscribers
+	 */
+	private int getApproximateActiveSubscribers(LocalDate monthStart) {
+		HyperLogLog merged = DailySketchService.getInstance().getMergedSubscribers(monthStart,
+				monthStart.plusMonths(1));
+		return (int) merged.estimate();
+	}
+
 	/**
 	 * Retrieves the number of unique subscribers per day in recent parking
-	 * sessions.
+	 * sessions. Uses the daily HyperLogLog sketches unless exact counts are
+	 * enabled.
 	 *
 	 * @return Map of date strings to unique subscriber counts
 	 */
 	private java.util.Map<String, Integer> getSubscribersPerDay() {
+		if (!exactDistinctCounts) {
+			LocalDate monthStart = LocalDate.now().minusMonths(1).withDayOfMonth(1);
+			return DailySketchService.getInstance().getSubscribersPerDay(monthStart, monthStart.plusMonths(1));
+		}
+
 		java.util.Map<String, Integer> map = new TreeMap<>();
 		String qry = """
 				    SELECT DATE(Actual_start_time) as day, COUNT(DISTINCT User_ID) as cnt
 				    FROM parkinginfo
 				    WHERE statusEnum IN ('active', 'finished')
 				    AND Actual_start_time IS NOT NULL
-				    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-					AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+					AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				    GROUP BY day
 				    ORDER BY day
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
@@ -597,7 +660,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "subscribers_per_day", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -614,11 +677,11 @@ public class ReportController {
 				    SELECT COUNT(*) as noext
 				    FROM parkinginfo
 				    WHERE IsExtended = 'no'
-				    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-					AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+					AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 				    AND  statusEnum IN ('active', 'finished')
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
@@ -626,7 +689,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "no_extensions", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -643,11 +706,11 @@ public class ReportController {
 				    SELECT COUNT(DISTINCT User_ID) as cnt
 				    FROM parkinginfo
 				    WHERE IsLate = 'yes'
-				      AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-					  AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				      AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+					  AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
@@ -655,7 +718,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "late_subscribers", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -669,7 +732,7 @@ public class ReportController {
 	 */
 	private int getTotalSubscribers() {
 		String qry = "SELECT COUNT(*) as cnt FROM users";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
 			try (ResultSet rs = stmt.executeQuery()) {
 				if (rs.next()) {
@@ -677,7 +740,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "total_subscribers", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -692,15 +755,15 @@ public class ReportController {
 	 */
 	public int getUsedReservations() {
 		int result = 0; // usedReservations
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		String usedReservationsQry = """
 								    SELECT COUNT(*) as used_reservations
 								    FROM parkinginfo
 								    WHERE IsOrderedEnum = 'yes'
 								    AND statusEnum = 'finished'
-								    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								""";
 
@@ -715,7 +778,7 @@ public class ReportController {
 			}
 
 		} catch (SQLException e) {
-			System.out.println("Error getting reservations usage data: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "used_reservations", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -730,15 +793,15 @@ public class ReportController {
 	 */
 	public int getCancelledReservations() {
 		int result = 0; // cancelledReservations
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		String cancelledReservationsQry = """
 								    SELECT COUNT(*) as cancelled_reservations
 								    FROM parkinginfo
 								    WHERE IsOrderedEnum = 'yes'
 								    AND statusEnum = 'cancelled'
-								    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								""";
 
@@ -752,7 +815,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error getting reservations usage data: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "cancelled_reservations", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -766,15 +829,15 @@ public class ReportController {
 	 */
 	public int getPreOrderedReservations() {
 		int result = 0; // cancelledReservations
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		String cancelledReservationsQry = """
 								    SELECT COUNT(*) as cancelled_reservations
 								    FROM parkinginfo
 								    WHERE IsOrderedEnum = 'yes'
 								    AND statusEnum = 'preorder'
-								    AND MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
-				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+								    AND Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
 
 								""";
 
@@ -788,7 +851,7 @@ public class ReportController {
 				}
 			}
 		} catch (SQLException e) {
-			System.out.println("Error getting reservations usage data: " + e.getMessage());
+			ServerLog.log(Level.WARN, "report_query_failed", "query", "preordered_reservations", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -808,7 +871,7 @@ public class ReportController {
 				""";
 
 		int result = 0;
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 
 		try (PreparedStatement stmt = conn.prepareStatement(qry); ResultSet rs = stmt.executeQuery()) {
 
@@ -817,7 +880,7 @@ public class ReportController {
 			}
 
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ServerLog.log(Level.WARN, "occupied_count_failed", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
@@ -837,13 +900,13 @@ public class ReportController {
 	private int getTotalSpots() {
 		String sql = "SELECT COUNT(*) FROM parkingspot";
 		int result = 0;
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
 		try (PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
 			if (rs.next()) {
 				result = rs.getInt(1);
 			}
 		} catch (SQLException e) {
-			e.printStackTrace();
+			ServerLog.log(Level.WARN, "spot_count_failed", "error", e.getMessage());
 		} finally {
 			DBController.getInstance().releaseConnection(conn);
 		}
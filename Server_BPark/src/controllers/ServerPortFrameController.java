@@ -3,6 +3,9 @@ package controllers;
 import java.util.Collection;
 import java.util.Map;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -14,7 +17,9 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import server.ParkingServer;
+import server.RequestMetrics;
 import server.ServerUI;
 
 /**
@@ -52,6 +57,16 @@ public class ServerPortFrameController extends Application {
 	@FXML
 	private TextArea txtClientConnection;
 
+	/** Text area displaying the live request metrics */
+	@FXML
+	private TextArea txtMetrics;
+
+	/** Interval between refreshes of the request metrics */
+	private static final Duration METRICS_REFRESH = Duration.seconds(2);
+
+	/** Refreshes the request metrics while the server runs */
+	private Timeline metricsRefresh;
+
 	/** Reference to this controller instance */
 	ServerPortFrameController controller;
 
@@ -97,6 +112,7 @@ public class ServerPortFrameController extends Application {
 					controller.textMessage.setText("ParkB Server Running Successfully!");
 
 					showSystemInfo();
+					startMetricsRefresh();
 				} else {
 					controller.textMessage.setText("Database connection failed! Check MySQL server.");
 				}
@@ -153,6 +169,26 @@ public class ServerPortFrameController extends Application {
 		});
 	}
 
+	/**
+	 * Shows the request metrics in the GUI and refreshes them every
+	 * {@link #METRICS_REFRESH}, keeping the scroll position.
+	 */
+	private void startMetricsRefresh() {
+		if (controller == null || controller.txtMetrics == null || metricsRefresh != null) {
+			return;
+		}
+		TextArea area = controller.txtMetrics;
+		metricsRefresh = new Timeline(new KeyFrame(METRICS_REFRESH, e -> {
+			double top = area.getScrollTop();
+			double left = area.getScrollLeft();
+			area.setText(RequestMetrics.getReport());
+			area.setScrollTop(top);
+			area.setScrollLeft(left);
+		}));
+		metricsRefresh.setCycleCount(Animation.INDEFINITE);
+		metricsRefresh.play();
+	}
+
 	/**
 	 * Displays system information in the GUI after successful startup. Includes DB,
 	 * port, server IP, auto-cancellation policy, etc.
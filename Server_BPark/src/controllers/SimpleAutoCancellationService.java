@@ -100,12 +100,11 @@ public class SimpleAutoCancellationService {
 				FROM parkinginfo pi
 				JOIN users u ON pi.User_ID = u.User_ID
 				WHERE pi.statusEnum = 'preorder'
-				AND DATE(pi.Estimated_start_time) = CURDATE()
+				AND pi.Estimated_start_time >= CURDATE()
+				AND pi.Estimated_start_time <= NOW() - INTERVAL ? MINUTE
 				AND pi.ParkingSpot_ID IS NOT NULL
-				AND pi.Estimated_start_time IS NOT NULL
-				AND TIMESTAMPDIFF(MINUTE, pi.Estimated_start_time, NOW()) >= ?
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 		try (PreparedStatement stmt = conn.prepareStatement(query)) {
 			stmt.setInt(1, LATE_THRESHOLD_MINUTES);
 
@@ -166,11 +165,10 @@ public class SimpleAutoCancellationService {
 				JOIN users u ON pi.User_ID = u.User_ID
 				WHERE pi.statusEnum = 'active'
 				AND pi.Actual_end_time IS NULL
-				AND pi.Estimated_end_time IS NOT NULL
-				AND TIMESTAMPDIFF(MINUTE, pi.Estimated_end_time, NOW()) >= ?
+				AND pi.Estimated_end_time <= NOW() - INTERVAL ? MINUTE
 				AND pi.IsLate = 'no'
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 
 		try (PreparedStatement stmt = conn.prepareStatement(query)) {
 			stmt.setInt(1, LATE_THRESHOLD_MINUTES);
@@ -216,7 +214,7 @@ public class SimpleAutoCancellationService {
 	 * @return true if update and email were successful, false otherwise.
 	 */
 	private boolean markAsLateAndNotify(int parkingInfoId, String userEmail, String fullName) {
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 
 		try {
 			// Update IsLate to 'yes'
@@ -233,6 +231,12 @@ public class SimpleAutoCancellationService {
 			}
 
 			if (updated > 0) {
+				ActiveSessionIndex index = ActiveSessionIndex.getInstance();
+				ActiveSessionIndex.Session session = index.get(parkingInfoId);
+				if (session != null) {
+					index.put(session.markedLate());
+				}
+
 				// Send late pickup email notification
 				if (userEmail != null && fullName != null) {
 					EmailService.sendLatePickupNotification(userEmail, fullName);
@@ -259,7 +263,7 @@ public class SimpleAutoCancellationService {
 	 * @return true if successfully canceled, false otherwise.
 	 */
 	private boolean cancelLateReservation(int reservationCode, int spotId) {
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 
 		try {
 			conn.setAutoCommit(false);
@@ -295,6 +299,8 @@ public class SimpleAutoCancellationService {
 			}
 
 			conn.commit();
+			ActiveSessionIndex.getInstance().remove(reservationCode);
+			OccupancyService.getInstance().occupancyChanged();
 			return true;
 
 		} catch (SQLException e) {
@@ -329,13 +335,14 @@ public class SimpleAutoCancellationService {
 				SET statusEnum = 'active', Actual_start_time = NOW()
 				WHERE ParkingInfo_ID = ? AND statusEnum = 'preorder'
 				""";
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 
 		try (PreparedStatement stmt = conn.prepareStatement(query)) {
 			stmt.setInt(1, reservationCode);
 			int updated = stmt.executeUpdate();
 
 			if (updated > 0) {
+				ActiveSessionIndex.getInstance().reload(reservationCode);
 				System.out.println("Reservation " + reservationCode + " activated (preorder → active)");
 				return true;
 			}
@@ -357,7 +364,7 @@ public class SimpleAutoCancellationService {
 	 * @return true if successfully finished, false otherwise.
 	 */
 	public boolean finishReservation(int reservationCode, int spotId) {
-		Connection conn = DBController.getInstance().getConnection();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
 
 		try {
 			conn.setAutoCommit(false);
@@ -393,6 +400,9 @@ public class SimpleAutoCancellationService {
 			}
 
 			conn.commit();
+			ActiveSessionIndex.getInstance().remove(reservationCode);
+			DailySketchService.getInstance().sessionFinished(reservationCode);
+			OccupancyService.getInstance().occupancyChanged();
 			System.out.println("Reservation " + reservationCode + " finished and spot " + spotId + " freed");
 			return true;
 
@@ -0,0 +1,248 @@
+package controllers;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.ParkingSubscriber;
+import repository.Repositories;
+
+/**
+ * ||in SERVER||
+ *
+ * Read-through cache of rows from the users table, looked up by User_ID or by
+ * UserName. Logins, kiosk identification and role checks read the same few
+ * users over and over, so most of these lookups are answered without a query.
+ *
+ * The cache holds at most {@link #MAX_ENTRIES} users and evicts the least
+ * recently used one when full. Entries are dropped whenever the user's row is
+ * changed through {@link ParkingController}. Callers always receive a copy, so
+ * changing a returned subscriber does not affect the cache.
+ */
+public class SubscriberCache {
+
+	/** Maximum number of cached users */
+	private static final int MAX_ENTRIES = Integer.getInteger("bpark.subscriberCache.size", 1000);
+
+	/** Singleton instance */
+	private static SubscriberCache instance;
+
+	/** Cached users by User_ID, in access order for LRU eviction */
+	private final LinkedHashMap<Integer, ParkingSubscriber> byId = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, ParkingSubscriber> eldest) {
+			if (size() > MAX_ENTRIES) {
+				byUsername.remove(eldest.getValue().getSubscriberCode());
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/** User_ID of every cached user by UserName */
+	private final HashMap<String, Integer> byUsername = new HashMap<>();
+
+	/** Number of lookups answered from the cache */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups that needed a query */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of users evicted because the cache was full */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Incremented on every invalidation, so a row loaded before the invalidation
+	 * is not put back into the cache afterwards.
+	 */
+	private long generation = 0;
+
+	/**
+	 * Private constructor for the singleton.
+	 */
+	private SubscriberCache() {
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use.
+	 *
+	 * @return the SubscriberCache instance
+	 */
+	public static synchronized SubscriberCache getInstance() {
+		if (instance == null) {
+			instance = new SubscriberCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the user with the given ID, loading it from the database on a miss.
+	 *
+	 * @param userID the User_ID to look up
+	 * @return a copy of the user, or null if no such user exists
+	 */
+	public ParkingSubscriber getById(int userID) {
+		long loadGeneration;
+		synchronized (this) {
+			ParkingSubscriber cached = byId.get(userID);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return copy(cached);
+			}
+			loadGeneration = generation;
+		}
+		misses.incrementAndGet();
+		return store(Repositories.getUsers().findById(userID), loadGeneration);
+	}
+
+	/**
+	 * Returns the user with the given username, loading it from the database on a
+	 * miss.
+	 *
+	 * @param userName the UserName to look up
+	 * @return a copy of the user, or null if no such user exists
+	 */
+	public ParkingSubscriber getByUsername(String userName) {
+		if (userName == null) {
+			return null;
+		}
+		long loadGeneration;
+		synchronized (this) {
+			Integer userID = byUsername.get(userName);
+			if (userID != null) {
+				ParkingSubscriber cached = byId.get(userID);
+				if (cached != null) {
+					hits.incrementAndGet();
+					return copy(cached);
+				}
+			}
+			loadGeneration = generation;
+		}
+		misses.incrementAndGet();
+		return store(Repositories.getUsers().findByUsername(userName), loadGeneration);
+	}
+
+	/**
+	 * Drops the user with the given ID from the cache.
+	 *
+	 * @param userID the User_ID to drop
+	 */
+	public synchronized void invalidate(int userID) {
+		generation++;
+		ParkingSubscriber removed = byId.remove(userID);
+		if (removed != null) {
+			byUsername.remove(removed.getSubscriberCode());
+		}
+	}
+
+	/**
+	 * Drops the user with the given username from the cache.
+	 *
+	 * @param userName the UserName to drop
+	 */
+	public synchronized void invalidate(String userName) {
+		generation++;
+		Integer userID = byUsername.remove(userName);
+		if (userID != null) {
+			byId.remove(userID);
+		}
+	}
+
+	/**
+	 * Empties the cache. Statistics are kept.
+	 */
+	public synchronized void clear() {
+		generation++;
+		byId.clear();
+		byUsername.clear();
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache.
+	 *
+	 * @return hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that needed a database query.
+	 *
+	 * @return miss count
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of users evicted because the cache was full.
+	 *
+	 * @return eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the share of lookups answered from the cache.
+	 *
+	 * @return hit ratio between 0 and 1 (0 if there were no lookups yet)
+	 */
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Returns a one-line summary of the cache statistics.
+	 *
+	 * @return statistics text
+	 */
+	public synchronized String getStatistics() {
+		return String.format("Subscriber cache: %d/%d entries, %d hits, %d misses (%.1f%% hit ratio), %d evictions",
+				byId.size(), MAX_ENTRIES, hits.get(), misses.get(), getHitRatio() * 100, evictions.get());
+	}
+
+	/**
+	 * Adds a freshly loaded user to the cache, unless the cache was invalidated
+	 * while the row was being loaded.
+	 *
+	 * @param subscriber     the loaded user, may be null
+	 * @param loadGeneration value of {@link #generation} when the load started
+	 * @return a copy of the user, or null if subscriber is null
+	 */
+	private ParkingSubscriber store(ParkingSubscriber subscriber, long loadGeneration) {
+		if (subscriber == null) {
+			return null;
+		}
+		synchronized (this) {
+			if (loadGeneration != generation) {
+				return copy(subscriber);
+			}
+			ParkingSubscriber previous = byId.put(subscriber.getSubscriberID(), subscriber);
+			if (previous != null && !previous.getSubscriberCode().equals(subscriber.getSubscriberCode())) {
+				byUsername.remove(previous.getSubscriberCode());
+			}
+			byUsername.put(subscriber.getSubscriberCode(), subscriber.getSubscriberID());
+		}
+		return copy(subscriber);
+	}
+
+	/**
+	 * Creates a copy of a cached user so callers cannot modify the cache.
+	 *
+	 * @param subscriber the cached user
+	 * @return a new ParkingSubscriber with the same values
+	 */
+	private static ParkingSubscriber copy(ParkingSubscriber subscriber) {
+		return new ParkingSubscriber(subscriber.getSubscriberID(), subscriber.getSubscriberCode(),
+				subscriber.getFirstName(), subscriber.getPhoneNumber(), subscriber.getEmail(),
+				subscriber.getCarNumber(), subscriber.getUserType());
+	}
+}
@@ -0,0 +1,593 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import common.ParkingSubscriber;
+import common.SubscriberPage;
+import repository.Repositories;
+
+/**
+ * ||in SERVER||
+ *
+ * In-memory index of all subscribers, used for the subscriber tables of the
+ * manager and attendant screens. It serves windows of the list ordered by
+ * User_ID, so a table only fetches the rows it shows, and answers searches by
+ * name, username, phone or car number as the user types.
+ *
+ * Every field is split into words, and each word is indexed by its trigrams
+ * (for matches anywhere in the word) and by its first one and two characters
+ * (for short prefixes). A search intersects the posting lists of the query's
+ * grams, checks the remaining candidates against the actual fields, and keeps
+ * the best {@code limit} by score in a bounded heap. Phone and car numbers are
+ * indexed without separators, so "054-123" finds "0541234567".
+ *
+ * The index is loaded once from the users table and updated on every
+ * registration and profile change made through {@link ParkingController}.
+ */
+public class SubscriberSearchIndex {
+
+	/** Largest window or search result returned at once */
+	public static final int MAX_ROWS = 500;
+
+	/** Marks a word-start gram, which cannot occur inside a normalized word */
+	private static final char START = '^';
+
+	/** Runs of characters that separate words */
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/** Singleton instance */
+	private static SubscriberSearchIndex instance;
+
+	/** Subscribers by slot; a slot is assigned once and never reused */
+	private final ArrayList<Entry> slots = new ArrayList<>();
+
+	/** Slot of each subscriber by User_ID */
+	private final HashMap<Integer, Integer> slotOf = new HashMap<>();
+
+	/** Subscribers ordered by User_ID, for windows */
+	private final ArrayList<ParkingSubscriber> ordered = new ArrayList<>();
+
+	/** Slots containing each gram, ascending */
+	private final HashMap<String, Postings> postings = new HashMap<>();
+
+	/** Searches run in parallel; updates are exclusive */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Private constructor. Loads all subscribers.
+	 */
+	private SubscriberSearchIndex() {
+		long started = System.currentTimeMillis();
+		for (ParkingSubscriber subscriber : Repositories.getUsers().findAllSubscribers()) {
+			put(subscriber);
+		}
+		System.out.println("Subscriber search index: " + ordered.size() + " subscribers, " + postings.size()
+				+ " grams, loaded in " + (System.currentTimeMillis() - started) + " ms");
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use. Requires the
+	 * storage backend of {@link Repositories} to be available.
+	 *
+	 * @return the SubscriberSearchIndex instance
+	 */
+	public static synchronized SubscriberSearchIndex getInstance() {
+		if (instance == null) {
+			instance = new SubscriberSearchIndex();
+		}
+		return instance;
+	}
+
+	/**
+	 * Adds a subscriber, or replaces the indexed values of a known one. Users of
+	 * other types are ignored.
+	 *
+	 * @param subscriber the subscriber as stored in the users table
+	 */
+	public void put(ParkingSubscriber subscriber) {
+		if (subscriber == null || !"sub".equals(subscriber.getUserType())) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			Entry entry = new Entry(subscriber);
+			Integer slot = slotOf.get(subscriber.getSubscriberID());
+			if (slot != null) {
+				for (String gram : slots.get(slot).grams()) {
+					Postings list = postings.get(gram);
+					if (list != null) {
+						list.remove(slot);
+					}
+				}
+				slots.set(slot, entry);
+				ordered.set(position(subscriber.getSubscriberID()), subscriber);
+			} else {
+				slot = slots.size();
+				slots.add(entry);
+				slotOf.put(subscriber.getSubscriberID(), slot);
+				int position = position(subscriber.getSubscriberID());
+				ordered.add(position < 0 ? -position - 1 : position, subscriber);
+			}
+			for (String gram : entry.grams()) {
+				postings.computeIfAbsent(gram, g -> new Postings()).add(slot);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a window of the subscriber list ordered by User_ID.
+	 *
+	 * @param offset position of the first row
+	 * @param limit  number of rows, at most {@link #MAX_ROWS}
+	 * @return the window and the size of the full list
+	 */
+	public SubscriberPage getPage(int offset, int limit) {
+		lock.readLock().lock();
+		try {
+			int from = Math.max(0, Math.min(offset, ordered.size()));
+			int to = Math.min(ordered.size(), from + Math.max(0, Math.min(limit, MAX_ROWS)));
+			return new SubscriberPage(new ArrayList<>(ordered.subList(from, to)), from, ordered.size(), null);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the subscribers best matching a search text. Every word of the
+	 * query must occur in some field; words shorter than three characters must
+	 * start a word. Exact and prefix matches rank above matches inside a word.
+	 *
+	 * @param query the search text
+	 * @param limit number of results, at most {@link #MAX_ROWS}
+	 * @return the best matches, best first, and the number of all matches
+	 */
+	public SubscriberPage search(String query, int limit) {
+		String[] words = words(query, false);
+		int k = Math.max(1, Math.min(limit, MAX_ROWS));
+		if (words.length == 0) {
+			return new SubscriberPage(new ArrayList<>(), 0, 0, query);
+		}
+
+		lock.readLock().lock();
+		try {
+			Postings candidates = candidates(words);
+			if (candidates == null) {
+				return new SubscriberPage(new ArrayList<>(), 0, 0, query);
+			}
+
+			String whole = String.join("", words);
+			PriorityQueue<Match> best = new PriorityQueue<>();
+			int matches = 0;
+			for (int i = 0; i < candidates.size; i++) {
+				Entry entry = slots.get(candidates.slots[i]);
+				int score = entry.score(words, whole);
+				if (score < 0) {
+					continue;
+				}
+				matches++;
+				if (best.size() < k) {
+					best.add(new Match(score, entry));
+				} else if (score >= best.peek().score) {
+					Match match = new Match(score, entry);
+					if (match.compareTo(best.peek()) > 0) {
+						best.poll();
+						best.add(match);
+					}
+				}
+			}
+
+			ArrayList<ParkingSubscriber> rows = new ArrayList<>(best.size());
+			while (!best.isEmpty()) {
+				rows.add(best.poll().subscriber);
+			}
+			Collections.reverse(rows);
+			return new SubscriberPage(rows, 0, matches, query);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds a subscriber by full name, ignoring case and extra spaces.
+	 *
+	 * @param name the name
+	 * @return the subscriber with the lowest User_ID and that name, or null
+	 */
+	public ParkingSubscriber findByName(String name) {
+		String[] words = words(name, false);
+		if (words.length == 0) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Postings candidates = candidates(words);
+			ParkingSubscriber found = null;
+			for (int i = 0; candidates != null && i < candidates.size; i++) {
+				Entry entry = slots.get(candidates.slots[i]);
+				if (entry.hasName(words)
+						&& (found == null || entry.subscriber.getSubscriberID() < found.getSubscriberID())) {
+					found = entry.subscriber;
+				}
+			}
+			return found;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns all indexed subscribers ordered by User_ID.
+	 *
+	 * @return a copy of the subscriber list
+	 */
+	public List<ParkingSubscriber> getAll() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(ordered);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of indexed subscribers.
+	 *
+	 * @return subscriber count
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ordered.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Intersects the posting lists of all grams of the query words, starting with
+	 * the shortest list.
+	 *
+	 * @param words normalized query words
+	 * @return candidate slots, or null if some gram does not occur at all
+	 */
+	private Postings candidates(String[] words) {
+		Set<String> grams = new HashSet<>();
+		for (String word : words) {
+			if (word.length() < 3) {
+				grams.add(START + word);
+			} else {
+				for (int i = 0; i + 3 <= word.length(); i++) {
+					grams.add(word.substring(i, i + 3));
+				}
+			}
+		}
+		List<Postings> lists = new ArrayList<>(grams.size());
+		for (String gram : grams) {
+			Postings list = postings.get(gram);
+			if (list == null || list.size == 0) {
+				return null;
+			}
+			lists.add(list);
+		}
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+		Postings result = lists.get(0);
+		for (int i = 1; i < lists.size() && result.size > 0; i++) {
+			result = result.intersect(lists.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the position of a User_ID in {@link #ordered}.
+	 *
+	 * @param userID the User_ID
+	 * @return the index if present, otherwise (-(insertion point) - 1)
+	 */
+	private int position(int userID) {
+		int low = 0;
+		int high = ordered.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = ordered.get(mid).getSubscriberID();
+			if (id < userID) {
+				low = mid + 1;
+			} else if (id > userID) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Splits a text into lower-case words of letters and digits.
+	 *
+	 * @param text   the text, may be null
+	 * @param joined true to drop separators and return one word (phone and car
+	 *               numbers)
+	 * @return the words, empty if there are none
+	 */
+	private static String[] words(String text, boolean joined) {
+		if (text == null) {
+			return new String[0];
+		}
+		String lower = text.toLowerCase(Locale.ROOT);
+		if (joined) {
+			String digits = SEPARATORS.matcher(lower).replaceAll("");
+			return digits.isEmpty() ? new String[0] : new String[] { digits };
+		}
+		String trimmed = SEPARATORS.matcher(lower).replaceAll(" ").trim();
+		return trimmed.isEmpty() ? new String[0] : trimmed.split(" ");
+	}
+
+	/**
+	 * An indexed subscriber. The normalized fields are kept in one string, e.g.
+	 * "dana cohen|dana3|0541234567|1234567", so checking a candidate reads a
+	 * single array instead of one per word.
+	 */
+	private static class Entry {
+
+		/** Separates the fields in {@link #text} */
+		static final char FIELD = '|';
+
+		/** The subscriber */
+		final ParkingSubscriber subscriber;
+
+		/** Name words, username words, phone and car number, see class comment */
+		final String text;
+
+		/**
+		 * Normalizes the searchable fields of a subscriber.
+		 *
+		 * @param subscriber the subscriber
+		 */
+		Entry(ParkingSubscriber subscriber) {
+			this.subscriber = subscriber;
+			this.text = String.join(" ", words(subscriber.getFirstName(), false)) + FIELD
+					+ String.join(" ", words(subscriber.getSubscriberCode(), false)) + FIELD
+					+ String.join(" ", words(subscriber.getPhoneNumber(), true)) + FIELD
+					+ String.join(" ", words(subscriber.getCarNumber(), true));
+		}
+
+		/**
+		 * Returns whether the name consists of exactly these words.
+		 *
+		 * @param words normalized words
+		 * @return true if the name matches
+		 */
+		boolean hasName(String[] words) {
+			String name = String.join(" ", words);
+			return text.startsWith(name) && text.charAt(name.length()) == FIELD;
+		}
+
+		/**
+		 * Returns the grams this subscriber is indexed under.
+		 *
+		 * @return trigrams and word-start grams of all field words
+		 */
+		Set<String> grams() {
+			Set<String> grams = new HashSet<>();
+			int start = 0;
+			for (int end = 0; end <= text.length(); end++) {
+				if (end < text.length() && !isSeparator(text.charAt(end))) {
+					continue;
+				}
+				if (end > start) {
+					grams.add(START + text.substring(start, start + 1));
+					if (end - start >= 2) {
+						grams.add(START + text.substring(start, start + 2));
+					}
+					for (int i = start; i + 3 <= end; i++) {
+						grams.add(text.substring(i, i + 3));
+					}
+				}
+				start = end + 1;
+			}
+			return grams;
+		}
+
+		/**
+		 * Scores this subscriber against a query. Each query word scores 3 if it
+		 * equals a field word, 2 if it starts one and 1 if it occurs inside one
+		 * (only words of three or more characters); a query equal to a whole field
+		 * scores 4 more.
+		 *
+		 * @param words normalized query words
+		 * @param whole the query words joined without separators
+		 * @return the score, or -1 if some query word matches no field
+		 */
+		int score(String[] words, String whole) {
+			int score = 0;
+			for (String word : words) {
+				int best = 0;
+				int index = text.indexOf(word);
+				while (index >= 0 && best < 3) {
+					int end = index + word.length();
+					boolean starts = index == 0 || isSeparator(text.charAt(index - 1));
+					if (starts) {
+						best = Math.max(best, end == text.length() || isSeparator(text.charAt(end)) ? 3 : 2);
+					} else if (word.length() >= 3) {
+						best = Math.max(best, 1);
+					}
+					index = text.indexOf(word, index + 1);
+				}
+				if (best == 0) {
+					return -1;
+				}
+				score += best;
+			}
+			return isWholeField(whole) ? score + 4 : score;
+		}
+
+		/**
+		 * Returns whether a field, ignoring the spaces between its words, equals
+		 * the given text.
+		 *
+		 * @param whole the text
+		 * @return true if some field matches
+		 */
+		private boolean isWholeField(String whole) {
+			int start = 0;
+			for (int end = 0; end <= text.length(); end++) {
+				if (end < text.length() && text.charAt(end) != FIELD) {
+					continue;
+				}
+				int j = 0;
+				int i = start;
+				while (i < end && j < whole.length()) {
+					char c = text.charAt(i++);
+					if (c != ' ' && c != whole.charAt(j++)) {
+						j = -1;
+						break;
+					}
+				}
+				while (j >= 0 && i < end && text.charAt(i) == ' ') {
+					i++;
+				}
+				if (j == whole.length() && i == end) {
+					return true;
+				}
+				start = end + 1;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns whether a character separates words in {@link #text}.
+		 *
+		 * @param c the character
+		 * @return true for a space or the field separator
+		 */
+		private static boolean isSeparator(char c) {
+			return c == ' ' || c == FIELD;
+		}
+	}
+
+	/**
+	 * A scored search result. Higher scores are better; ties go to the shorter
+	 * name, then to the lower User_ID.
+	 */
+	private static class Match implements Comparable<Match> {
+
+		/** The score */
+		final int score;
+
+		/** Length of the normalized name */
+		final int nameLength;
+
+		/** The subscriber */
+		final ParkingSubscriber subscriber;
+
+		/**
+		 * Creates a result.
+		 *
+		 * @param score the score
+		 * @param entry the matching entry
+		 */
+		Match(int score, Entry entry) {
+			this.score = score;
+			this.nameLength = entry.text.indexOf(Entry.FIELD);
+			this.subscriber = entry.subscriber;
+		}
+
+		/**
+		 * Orders results from worst to best.
+		 */
+		@Override
+		public int compareTo(Match other) {
+			if (score != other.score) {
+				return Integer.compare(score, other.score);
+			}
+			if (nameLength != other.nameLength) {
+				return Integer.compare(other.nameLength, nameLength);
+			}
+			return Integer.compare(other.subscriber.getSubscriberID(), subscriber.getSubscriberID());
+		}
+	}
+
+	/**
+	 * Ascending list of slots, stored in a growable int array.
+	 */
+	private static class Postings {
+
+		/** The slots; only the first {@link #size} are used */
+		int[] slots = new int[4];
+
+		/** Number of slots */
+		int size = 0;
+
+		/**
+		 * Adds a slot, keeping the list ascending.
+		 *
+		 * @param slot the slot
+		 */
+		void add(int slot) {
+			if (size == slots.length) {
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			if (size == 0 || slots[size - 1] < slot) {
+				slots[size++] = slot;
+				return;
+			}
+			int index = Arrays.binarySearch(slots, 0, size, slot);
+			if (index >= 0) {
+				return;
+			}
+			index = -index - 1;
+			System.arraycopy(slots, index, slots, index + 1, size - index);
+			slots[index] = slot;
+			size++;
+		}
+
+		/**
+		 * Removes a slot if present.
+		 *
+		 * @param slot the slot
+		 */
+		void remove(int slot) {
+			int index = Arrays.binarySearch(slots, 0, size, slot);
+			if (index >= 0) {
+				System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+				size--;
+			}
+		}
+
+		/**
+		 * Returns the slots contained in both lists.
+		 *
+		 * @param other the other list
+		 * @return a new list
+		 */
+		Postings intersect(Postings other) {
+			Postings result = new Postings();
+			result.slots = new int[Math.max(1, Math.min(size, other.size))];
+			int i = 0;
+			int j = 0;
+			while (i < size && j < other.size) {
+				if (slots[i] < other.slots[j]) {
+					i++;
+				} else if (slots[i] > other.slots[j]) {
+					j++;
+				} else {
+					result.slots[result.size++] = slots[i];
+					i++;
+					j++;
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package controllers;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+
+import repository.Repositories;
+
+/**
+ * ||in SERVER||
+ *
+ * In-memory index of all usernames, used to generate a free username without
+ * probing the database once per candidate. For every prefix that is followed
+ * by a number in some username, the index remembers the highest such number,
+ * so the next free "prefix + number" is found with a single lookup.
+ *
+ * The index is loaded once from the users table and updated on every
+ * registration. The unique key on users.UserName stays the final guard
+ * against duplicates, e.g. for rows inserted outside the server.
+ */
+public class UsernameIndex {
+
+	/** Longest numeric suffix that is tracked (fits in an int) */
+	private static final int MAX_SUFFIX_DIGITS = 9;
+
+	/** Singleton instance */
+	private static UsernameIndex instance;
+
+	/** All known usernames, lower-cased */
+	private final HashSet<String> names = new HashSet<>();
+
+	/** Highest numeric suffix used after each prefix, e.g. "dana" -> 3 for dana3 */
+	private final HashMap<String, Integer> maxSuffix = new HashMap<>();
+
+	/**
+	 * Private constructor. Loads all usernames. The unique key on users.UserName
+	 * is added by {@link server.SchemaMigrator}.
+	 */
+	private UsernameIndex() {
+		load();
+	}
+
+	/**
+	 * Returns the singleton instance, creating it on first use. Requires
+	 * the storage backend of {@link Repositories} to be available.
+	 *
+	 * @return the UsernameIndex instance
+	 */
+	public static synchronized UsernameIndex getInstance() {
+		if (instance == null) {
+			instance = new UsernameIndex();
+		}
+		return instance;
+	}
+
+	/**
+	 * Checks whether a username is already taken (case-insensitive, like the
+	 * column collation).
+	 *
+	 * @param userName the username to check
+	 * @return true if the username exists
+	 */
+	public synchronized boolean contains(String userName) {
+		return userName != null && names.contains(userName.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Returns a free username for the given cleaned base name: the base name
+	 * itself if free, otherwise the base name followed by one more than the
+	 * highest number already used after it.
+	 *
+	 * @param cleanName lower-case base name without special characters
+	 * @return a username not present in the index
+	 */
+	public synchronized String nextAvailable(String cleanName) {
+		if (!names.contains(cleanName)) {
+			return cleanName;
+		}
+		int next = maxSuffix.getOrDefault(cleanName, 0) + 1;
+		return cleanName + next;
+	}
+
+	/**
+	 * Adds a newly registered username to the index.
+	 *
+	 * @param userName the username that was inserted
+	 */
+	public synchronized void add(String userName) {
+		if (userName == null) {
+			return;
+		}
+		String name = userName.toLowerCase(Locale.ROOT);
+		if (!names.add(name)) {
+			return;
+		}
+		// Register every split of the trailing digits, e.g. "ab12" counts as
+		// "ab" + 12 and as "ab1" + 2
+		int end = name.length();
+		for (int start = end - 1; start > 0 && end - start <= MAX_SUFFIX_DIGITS
+				&& Character.isDigit(name.charAt(start)); start--) {
+			if (name.charAt(start) == '0') {
+				continue;
+			}
+			int suffix = Integer.parseInt(name.substring(start));
+			maxSuffix.merge(name.substring(0, start), suffix, Math::max);
+		}
+	}
+
+	/**
+	 * Loads all existing usernames through the users repository.
+	 */
+	private void load() {
+		for (String name : Repositories.getUsers().findAllUsernames()) {
+			add(name);
+		}
+		System.out.println("Username index loaded (" + names.size() + " usernames)");
+	}
+
+}
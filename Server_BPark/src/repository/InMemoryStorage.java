@@ -0,0 +1,307 @@
+package repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import common.HistoryChanges;
+import common.ParkingOrder;
+import common.ParkingReport;
+import common.ParkingSubscriber;
+import controllers.ActiveSessionIndex.Session;
+
+/**
+ * ||in SERVER||
+ *
+ * Embedded backend that keeps users, sessions, spots and reports in memory.
+ * It implements all repositories on one shared data set, so a server or a
+ * benchmark can run the read paths (login lookups, session index, history,
+ * spot counts, stored reports) without a MySQL server. The data is seeded
+ * through {@link #addUser(ParkingSubscriber)}, {@link #addSession(Session)} and
+ * {@link #finishSession(int, LocalDateTime)}, and is lost when the process
+ * ends.
+ *
+ * All methods are synchronized; callers always receive copies.
+ */
+public class InMemoryStorage implements UserRepository, SessionRepository, SpotRepository, ReportRepository {
+
+	/** Users by User_ID */
+	private final Map<Integer, ParkingSubscriber> users = new LinkedHashMap<>();
+
+	/** Preorder and active sessions by ParkingInfo_ID */
+	private final Map<Integer, Session> openSessions = new LinkedHashMap<>();
+
+	/** Finished sessions, oldest first */
+	private final List<ParkingOrder> finished = new ArrayList<>();
+
+	/** User_ID of each finished session, parallel to {@link #finished} */
+	private final List<Integer> finishedOwners = new ArrayList<>();
+
+	/** Stored reports, oldest first */
+	private final List<ParkingReport> reports = new ArrayList<>();
+
+	/** Number of parking spots */
+	private int spots;
+
+	/**
+	 * Adds or replaces a user.
+	 *
+	 * @param subscriber the user
+	 */
+	public synchronized void addUser(ParkingSubscriber subscriber) {
+		users.put(subscriber.getSubscriberID(), copy(subscriber));
+	}
+
+	/**
+	 * Adds or replaces a preorder or active session.
+	 *
+	 * @param session the session
+	 */
+	public synchronized void addSession(Session session) {
+		openSessions.put(session.getParkingInfoID(), session);
+	}
+
+	/**
+	 * Moves an open session to the history as finished.
+	 *
+	 * @param parkingInfoID the parking code
+	 * @param end           the exit time
+	 * @return true if the session was open
+	 */
+	public synchronized boolean finishSession(int parkingInfoID, LocalDateTime end) {
+		Session session = openSessions.remove(parkingInfoID);
+		if (session == null) {
+			return false;
+		}
+		ParkingOrder order = toOrder(session);
+		order.setExitTime(end);
+		order.setStatus("finished");
+		finished.add(order);
+		finishedOwners.add(session.getUserID());
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized ParkingSubscriber findById(int userID) {
+		ParkingSubscriber subscriber = users.get(userID);
+		return subscriber != null ? copy(subscriber) : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized ParkingSubscriber findByUsername(String userName) {
+		for (ParkingSubscriber subscriber : users.values()) {
+			if (subscriber.getSubscriberCode().equals(userName)) {
+				return copy(subscriber);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized List<String> findAllUsernames() {
+		List<String> names = new ArrayList<>();
+		for (ParkingSubscriber subscriber : users.values()) {
+			names.add(subscriber.getSubscriberCode());
+		}
+		return names;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized List<ParkingSubscriber> findAllSubscribers() {
+		List<ParkingSubscriber> subscribers = new ArrayList<>();
+		for (ParkingSubscriber subscriber : users.values()) {
+			if ("sub".equals(subscriber.getUserType())) {
+				subscribers.add(copy(subscriber));
+			}
+		}
+		subscribers.sort((a, b) -> Integer.compare(a.getSubscriberID(), b.getSubscriberID()));
+		return subscribers;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized List<Session> findOpenSessions() {
+		return new ArrayList<>(openSessions.values());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Session findOpenSession(int parkingInfoID) {
+		return openSessions.get(parkingInfoID);
+	}
+
+	/**
+	 * {@inheritDoc} Newest sessions first.
+	 */
+	@Override
+	public synchronized ArrayList<ParkingOrder> findHistory(String userName) {
+		ArrayList<ParkingOrder> history = new ArrayList<>();
+		ParkingSubscriber subscriber = findByUsername(userName);
+		if (subscriber == null) {
+			return history;
+		}
+		int userID = subscriber.getSubscriberID();
+		for (Session session : openSessions.values()) {
+			if (session.getUserID() == userID) {
+				history.add(toOrder(session));
+			}
+		}
+		for (int i = 0; i < finished.size(); i++) {
+			if (finishedOwners.get(i) == userID) {
+				history.add(finished.get(i));
+			}
+		}
+		history.sort(Comparator.comparing(ParkingOrder::getEstimatedStartTime,
+				Comparator.nullsLast(Comparator.reverseOrder())));
+		return history;
+	}
+
+	/**
+	 * {@inheritDoc} The in-memory data set keeps no modification times, so the
+	 * full history is returned every time.
+	 */
+	@Override
+	public synchronized HistoryChanges findHistoryChangedSince(String userName, long version) {
+		return new HistoryChanges(findHistory(userName), Math.max(version, System.currentTimeMillis()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int countSpots() {
+		return spots;
+	}
+
+	/**
+	 * {@inheritDoc} A spot is occupied while an active session holds it.
+	 */
+	@Override
+	public synchronized int countFreeSpots() {
+		int occupied = 0;
+		for (Session session : openSessions.values()) {
+			if (session.isActive()) {
+				occupied++;
+			}
+		}
+		return Math.max(0, spots - occupied);
+	}
+
+	/**
+	 * {@inheritDoc} Spots are numbered from 1.
+	 */
+	@Override
+	public synchronized List<Integer> findFreeSpotIds() {
+		Set<Integer> occupied = new HashSet<>();
+		for (Session session : openSessions.values()) {
+			if (session.isActive()) {
+				occupied.add(session.getSpotID());
+			}
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (int id = 1; id <= spots; id++) {
+			if (!occupied.contains(id)) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean createSpots(int count) {
+		spots += count;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc} Reports without a date are stored with today's date.
+	 */
+	@Override
+	public synchronized boolean storeReports(List<ParkingReport> newReports) {
+		for (ParkingReport report : newReports) {
+			ParkingReport stored = new ParkingReport();
+			stored.setReportType(report.getReportType());
+			stored.setReportDate(LocalDate.now());
+			reports.add(stored);
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized ArrayList<ParkingReport> findReports(String reportType, LocalDate fromDate,
+			LocalDate toDate) {
+		ArrayList<ParkingReport> result = new ArrayList<>();
+		for (int i = reports.size() - 1; i >= 0; i--) {
+			ParkingReport report = reports.get(i);
+			if (report.getReportType().equals(reportType) && !report.getReportDate().isBefore(fromDate)
+					&& !report.getReportDate().isAfter(toDate)) {
+				ParkingReport copy = new ParkingReport();
+				copy.setReportType(report.getReportType());
+				copy.setReportDate(report.getReportDate());
+				result.add(copy);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Converts a session to a history entry, like a parkinginfo row.
+	 *
+	 * @param session the session
+	 * @return the history entry
+	 */
+	private static ParkingOrder toOrder(Session session) {
+		ParkingOrder order = new ParkingOrder();
+		order.setOrderID(session.getParkingInfoID());
+		order.setParkingCode(String.valueOf(session.getParkingInfoID()));
+		order.setOrderType(session.isOrdered() ? "yes" : "no");
+		order.setSpotNumber("Spot " + session.getSpotID());
+		order.setEntryTime(session.getActualStart());
+		order.setExpectedExitTime(session.getEstimatedEnd());
+		order.setEstimatedStartTime(session.getEstimatedStart());
+		order.setLate(session.isLate());
+		order.setExtended(session.isExtended());
+		order.setStatus(session.getStatus());
+		return order;
+	}
+
+	/**
+	 * Creates a copy of a stored user so callers cannot modify the data set.
+	 *
+	 * @param subscriber the user
+	 * @return a new ParkingSubscriber with the same values
+	 */
+	private static ParkingSubscriber copy(ParkingSubscriber subscriber) {
+		return new ParkingSubscriber(subscriber.getSubscriberID(), subscriber.getSubscriberCode(),
+				subscriber.getFirstName(), subscriber.getPhoneNumber(), subscriber.getEmail(),
+				subscriber.getCarNumber(), subscriber.getUserType());
+	}
+}
@@ -0,0 +1,89 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import common.ParkingReport;
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * {@link ReportRepository} on the MySQL reports table.
+ */
+public class MySqlReportRepository implements ReportRepository {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean storeReports(List<ParkingReport> reports) {
+		String qry = "INSERT INTO reports (Report_Type, Generated_Date, Report_Data) VALUES (?, NOW(), ?)";
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.REPORTING);
+
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			for (ParkingReport report : reports) {
+				stmt.setString(1, report.getReportType());
+				stmt.setString(2, report.toString()); // Store as JSON or formatted string
+				stmt.executeUpdate();
+			}
+			return true;
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "reports_store_failed", "error", e.getMessage());
+			return false;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ArrayList<ParkingReport> findReports(String reportType, LocalDate fromDate, LocalDate toDate) {
+		ArrayList<ParkingReport> reports = new ArrayList<>();
+		Connection conn = DBController.getInstance().getReadConnection(DBController.Pool.REPORTING);
+
+		String qry = """
+				SELECT * FROM reports
+				WHERE Report_Type = ?
+				AND Generated_Date >= ? AND Generated_Date < ?
+				ORDER BY Generated_Date DESC
+				""";
+
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setString(1, reportType);
+			stmt.setDate(2, Date.valueOf(fromDate));
+			stmt.setDate(3, Date.valueOf(toDate.plusDays(1)));
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					// This would need to be enhanced to parse the stored report data
+					// For now, we'll create a basic report object
+					ParkingReport report = new ParkingReport();
+					report.setReportType(rs.getString("Report_Type"));
+					Timestamp genDate = rs.getTimestamp("Generated_Date");
+					if (genDate != null) {
+						report.setReportDate(genDate.toLocalDateTime().toLocalDate());
+					}
+					reports.add(report);
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "historical_reports_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+
+		return reports;
+	}
+}
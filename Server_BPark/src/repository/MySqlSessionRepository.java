@@ -0,0 +1,194 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import common.HistoryChanges;
+import common.ParkingOrder;
+import controllers.ActiveSessionIndex.Session;
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+import server.UnitOfWork;
+
+/**
+ * ||in SERVER||
+ *
+ * {@link SessionRepository} on the MySQL parkinginfo table.
+ */
+public class MySqlSessionRepository implements SessionRepository {
+
+	/** Query selecting all preorder and active sessions */
+	private static final String SELECT_OPEN_SESSIONS = """
+			SELECT ParkingInfo_ID, User_ID, ParkingSpot_ID, statusEnum, IsOrderedEnum, Estimated_start_time,
+			       Estimated_end_time, Actual_start_time, IsExtended, IsLate
+			FROM parkinginfo
+			WHERE statusEnum IN ('preorder', 'active')
+			""";
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<Session> findOpenSessions() {
+		List<Session> sessions = new ArrayList<>();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_OPEN_SESSIONS);
+				ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				sessions.add(readSession(rs));
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "open_sessions_load_failed", "error", e.getMessage());
+			return null;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return sessions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Session findOpenSession(int parkingInfoID) {
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(SELECT_OPEN_SESSIONS + " AND ParkingInfo_ID = ?")) {
+			stmt.setInt(1, parkingInfoID);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return readSession(rs);
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "session_reload_failed", "parkingInfoID", parkingInfoID, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc} Runs as a read-only unit of work, on the read replica when
+	 * one is available.
+	 */
+	@Override
+	public ArrayList<ParkingOrder> findHistory(String userName) {
+		ArrayList<ParkingOrder> history = new ArrayList<>();
+		String qry = """
+				SELECT pi.*, ps.ParkingSpot_ID
+				FROM parkinginfo pi
+				JOIN users u ON pi.User_ID = u.User_ID
+				JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID
+				WHERE u.UserName = ?
+				ORDER BY pi.Date_Of_Placing_Order DESC
+				""";
+
+		try (UnitOfWork uow = UnitOfWork.beginReadOnly(DBController.Pool.OPERATIONAL);
+				PreparedStatement stmt = uow.prepare(qry)) {
+			stmt.setString(1, userName);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					history.add(readOrder(rs));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "parking_history_failed", "error", e.getMessage());
+		}
+		return history;
+	}
+
+	/**
+	 * {@inheritDoc} Reads from the primary, so a change the user just made is
+	 * never missed because of replica lag.
+	 */
+	@Override
+	public HistoryChanges findHistoryChangedSince(String userName, long version) {
+		ArrayList<ParkingOrder> changes = new ArrayList<>();
+		long newest = version;
+		String qry = """
+				SELECT pi.*, ps.ParkingSpot_ID
+				FROM parkinginfo pi
+				JOIN users u ON pi.User_ID = u.User_ID
+				JOIN parkingspot ps ON pi.ParkingSpot_ID = ps.ParkingSpot_ID
+				WHERE u.UserName = ? AND pi.Last_Modified >= ?
+				ORDER BY pi.Date_Of_Placing_Order DESC
+				""";
+
+		Connection conn = DBController.getInstance().getConnection();
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setString(1, userName);
+			stmt.setTimestamp(2, new Timestamp(version));
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					changes.add(readOrder(rs));
+					newest = Math.max(newest, rs.getTimestamp("Last_Modified").getTime());
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "parking_history_changes_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return new HistoryChanges(changes, newest);
+	}
+
+	/**
+	 * Reads a history record from the current row.
+	 *
+	 * @param rs result set positioned on a parkinginfo row
+	 * @return the record
+	 * @throws SQLException if a column cannot be read
+	 */
+	private static ParkingOrder readOrder(ResultSet rs) throws SQLException {
+		ParkingOrder order = new ParkingOrder();
+		order.setOrderID(rs.getInt("ParkingInfo_ID"));
+		order.setParkingCode(String.valueOf(rs.getInt("ParkingInfo_ID")));
+		order.setOrderType(rs.getString("IsOrderedEnum"));
+		order.setSpotNumber("Spot " + rs.getInt("ParkingSpot_ID"));
+
+		// Convert Timestamps to LocalDateTime
+		order.setEntryTime(toLocalDateTime(rs.getTimestamp("Actual_start_time")));
+		order.setExitTime(toLocalDateTime(rs.getTimestamp("Actual_end_time")));
+		order.setExpectedExitTime(toLocalDateTime(rs.getTimestamp("Estimated_end_time")));
+		order.setEstimatedStartTime(toLocalDateTime(rs.getTimestamp("Estimated_start_time")));
+
+		order.setLate("yes".equals(rs.getString("IsLate")));
+		order.setExtended("yes".equals(rs.getString("IsExtended")));
+		order.setStatus(rs.getString("statusEnum"));
+		return order;
+	}
+
+
+	/**
+	 * Reads a session from the current row.
+	 *
+	 * @param rs result set positioned on a row of {@link #SELECT_OPEN_SESSIONS}
+	 * @return the session
+	 * @throws SQLException if a column cannot be read
+	 */
+	private static Session readSession(ResultSet rs) throws SQLException {
+		return new Session(rs.getInt("ParkingInfo_ID"), rs.getInt("User_ID"), rs.getInt("ParkingSpot_ID"),
+				rs.getString("statusEnum"), "yes".equalsIgnoreCase(rs.getString("IsOrderedEnum")),
+				toLocalDateTime(rs.getTimestamp("Estimated_start_time")),
+				toLocalDateTime(rs.getTimestamp("Estimated_end_time")),
+				toLocalDateTime(rs.getTimestamp("Actual_start_time")),
+				"yes".equalsIgnoreCase(rs.getString("IsExtended")), "yes".equalsIgnoreCase(rs.getString("IsLate")));
+	}
+
+	/**
+	 * Converts a nullable timestamp.
+	 *
+	 * @param ts the timestamp, may be null
+	 * @return the LocalDateTime, or null
+	 */
+	private static LocalDateTime toLocalDateTime(Timestamp ts) {
+		return ts != null ? ts.toLocalDateTime() : null;
+	}
+}
@@ -0,0 +1,100 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * {@link SpotRepository} on the MySQL ParkingSpot table.
+ */
+public class MySqlSpotRepository implements SpotRepository {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countSpots() {
+		return count("SELECT COUNT(*) FROM ParkingSpot", DBController.Pool.BACKGROUND, "Error counting parking spots");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countFreeSpots() {
+		return Math.max(0, count("SELECT COUNT(*) FROM ParkingSpot WHERE isOccupied = false",
+				DBController.Pool.OPERATIONAL, "Error getting available spots"));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<Integer> findFreeSpotIds() {
+		String qry = "SELECT ParkingSpot_ID FROM ParkingSpot WHERE isOccupied = false ORDER BY ParkingSpot_ID";
+		List<Integer> ids = new ArrayList<>();
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry); ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "free_spots_failed", "error", e.getMessage());
+			ids.clear();
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return ids;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean createSpots(int count) {
+		String qry = "INSERT INTO ParkingSpot (isOccupied) VALUES (false)";
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			for (int i = 0; i < count; i++) {
+				stmt.executeUpdate();
+			}
+			return true;
+		} catch (SQLException e) {
+			ServerLog.log(Level.ERROR, "spots_init_failed", "error", e.getMessage());
+			return false;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Runs a COUNT query.
+	 *
+	 * @param qry  the query
+	 * @param pool the pool to take the connection from
+	 * @param what prefix of the error message
+	 * @return the count, or -1 on error
+	 */
+	private int count(String qry, DBController.Pool pool, String what) {
+		Connection conn = DBController.getInstance().getConnection(pool);
+		try (PreparedStatement stmt = conn.prepareStatement(qry); ResultSet rs = stmt.executeQuery()) {
+			if (rs.next()) {
+				return rs.getInt(1);
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "spot_count_failed", "query", what, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,121 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import common.ParkingSubscriber;
+import server.DBController;
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * {@link UserRepository} on the MySQL users table.
+ */
+public class MySqlUserRepository implements UserRepository {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ParkingSubscriber findById(int userID) {
+		return load("SELECT * FROM users WHERE User_ID = ?", userID);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ParkingSubscriber findByUsername(String userName) {
+		return load("SELECT * FROM users WHERE UserName = ?", userName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> findAllUsernames() {
+		List<String> names = new ArrayList<>();
+		String qry = "SELECT UserName FROM users";
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry); ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				names.add(rs.getString("UserName"));
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "usernames_load_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return names;
+	}
+
+	/**
+	 * {@inheritDoc} Runs on the background pool; the rows are streamed in
+	 * batches instead of being buffered by the driver.
+	 */
+	@Override
+	public List<ParkingSubscriber> findAllSubscribers() {
+		List<ParkingSubscriber> subscribers = new ArrayList<>();
+		String qry = "SELECT * FROM users WHERE UserTypeEnum = 'sub' ORDER BY User_ID";
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					subscribers.add(read(rs));
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "subscribers_load_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return subscribers;
+	}
+
+	/**
+	 * Loads a single user with the given query.
+	 *
+	 * @param qry   the query selecting all columns of one user
+	 * @param value the User_ID (Integer) or UserName (String) to bind
+	 * @return the user, or null if not found or on error
+	 */
+	private ParkingSubscriber load(String qry, Object value) {
+		Connection conn = DBController.getInstance().getConnection();
+		try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+			if (value instanceof Integer) {
+				stmt.setInt(1, (Integer) value);
+			} else {
+				stmt.setString(1, (String) value);
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					return read(rs);
+				}
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "subscriber_load_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the user at the current row.
+	 *
+	 * @param rs result set positioned on a users row
+	 * @return the user
+	 * @throws SQLException if a column cannot be read
+	 */
+	private ParkingSubscriber read(ResultSet rs) throws SQLException {
+		return new ParkingSubscriber(rs.getInt("User_ID"), rs.getString("UserName"), rs.getString("Name"),
+				rs.getString("Phone"), rs.getString("Email"), rs.getString("CarNum"), rs.getString("UserTypeEnum"));
+	}
+}
@@ -0,0 +1,34 @@
+package repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import common.ParkingReport;
+
+/**
+ * ||in SERVER||
+ *
+ * Storage of generated reports (the reports table).
+ */
+public interface ReportRepository {
+
+	/**
+	 * Stores generated reports with the current time as generation date.
+	 *
+	 * @param reports the reports to store
+	 * @return true if all reports were stored
+	 */
+	boolean storeReports(List<ParkingReport> reports);
+
+	/**
+	 * Returns the stored reports of a type generated between two dates, newest
+	 * first.
+	 *
+	 * @param reportType the report type ("PARKING_TIME" or "SUBSCRIBER_STATUS")
+	 * @param fromDate   first day (inclusive)
+	 * @param toDate     last day (inclusive)
+	 * @return list of reports (empty on error)
+	 */
+	ArrayList<ParkingReport> findReports(String reportType, LocalDate fromDate, LocalDate toDate);
+}
@@ -0,0 +1,103 @@
+package repository;
+
+import server.ServerLog;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * Holds the repositories the server reads through. The backend is chosen by
+ * the system property {@code bpark.storage}: {@code mysql} (default) uses the
+ * MySQL database of {@link server.DBController}, {@code memory} uses an empty
+ * {@link InMemoryStorage}. Tools and benchmarks can switch backends at
+ * runtime with {@link #useInMemory(InMemoryStorage)} and {@link #useMySql()}
+ * before the controllers are created.
+ */
+public final class Repositories {
+
+	/** Users backend */
+	private static volatile UserRepository users;
+
+	/** Sessions backend */
+	private static volatile SessionRepository sessions;
+
+	/** Spots backend */
+	private static volatile SpotRepository spots;
+
+	/** Reports backend */
+	private static volatile ReportRepository reports;
+
+	static {
+		if ("memory".equalsIgnoreCase(System.getProperty("bpark.storage", "mysql"))) {
+			useInMemory(new InMemoryStorage());
+		} else {
+			useMySql();
+		}
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private Repositories() {
+	}
+
+	/**
+	 * Switches all repositories to the MySQL backend.
+	 */
+	public static synchronized void useMySql() {
+		users = new MySqlUserRepository();
+		sessions = new MySqlSessionRepository();
+		spots = new MySqlSpotRepository();
+		reports = new MySqlReportRepository();
+		ServerLog.log(Level.INFO, "storage_backend", "backend", "mysql");
+	}
+
+	/**
+	 * Switches all repositories to an in-memory data set.
+	 *
+	 * @param storage the data set to use
+	 */
+	public static synchronized void useInMemory(InMemoryStorage storage) {
+		users = storage;
+		sessions = storage;
+		spots = storage;
+		reports = storage;
+		ServerLog.log(Level.INFO, "storage_backend", "backend", "memory");
+	}
+
+	/**
+	 * Returns the users repository.
+	 *
+	 * @return the current UserRepository
+	 */
+	public static UserRepository getUsers() {
+		return users;
+	}
+
+	/**
+	 * Returns the sessions repository.
+	 *
+	 * @return the current SessionRepository
+	 */
+	public static SessionRepository getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * Returns the spots repository.
+	 *
+	 * @return the current SpotRepository
+	 */
+	public static SpotRepository getSpots() {
+		return spots;
+	}
+
+	/**
+	 * Returns the reports repository.
+	 *
+	 * @return the current ReportRepository
+	 */
+	public static ReportRepository getReports() {
+		return reports;
+	}
+}
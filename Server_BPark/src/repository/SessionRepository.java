@@ -0,0 +1,50 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import common.HistoryChanges;
+import common.ParkingOrder;
+import controllers.ActiveSessionIndex.Session;
+
+/**
+ * ||in SERVER||
+ *
+ * Read access to parking sessions (the parkinginfo table).
+ */
+public interface SessionRepository {
+
+	/**
+	 * Returns all preorder and active sessions.
+	 *
+	 * @return list of open sessions, or null if they could not be loaded
+	 */
+	List<Session> findOpenSessions();
+
+	/**
+	 * Finds a session if it is preorder or active.
+	 *
+	 * @param parkingInfoID the ParkingInfo_ID
+	 * @return the session, or null if it is not open, not found or on error
+	 */
+	Session findOpenSession(int parkingInfoID);
+
+	/**
+	 * Returns all sessions of a user, newest order first.
+	 *
+	 * @param userName the user's UserName
+	 * @return list of sessions (empty on error)
+	 */
+	ArrayList<ParkingOrder> findHistory(String userName);
+
+	/**
+	 * Finds the history records of a user that were created or changed at or
+	 * after a version.
+	 *
+	 * @param userName the UserName
+	 * @param version  last-modified time in epoch milliseconds; 0 for all records
+	 * @return the changed records, newest first, and the version of the newest
+	 *         one (the given version if nothing changed)
+	 */
+	HistoryChanges findHistoryChangedSince(String userName, long version);
+}
@@ -0,0 +1,40 @@
+package repository;
+
+import java.util.List;
+
+/**
+ * ||in SERVER||
+ *
+ * Access to the ParkingSpot table.
+ */
+public interface SpotRepository {
+
+	/**
+	 * Counts all parking spots.
+	 *
+	 * @return number of spots, or -1 on error
+	 */
+	int countSpots();
+
+	/**
+	 * Counts the parking spots that are not occupied.
+	 *
+	 * @return number of free spots (0 on error)
+	 */
+	int countFreeSpots();
+
+	/**
+	 * Lists the parking spots that are not occupied.
+	 *
+	 * @return IDs of the free spots, ascending (empty on error)
+	 */
+	List<Integer> findFreeSpotIds();
+
+	/**
+	 * Adds free parking spots.
+	 *
+	 * @param count number of spots to add
+	 * @return true if all spots were added
+	 */
+	boolean createSpots(int count);
+}
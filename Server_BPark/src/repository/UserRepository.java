@@ -0,0 +1,43 @@
+package repository;
+
+import java.util.List;
+
+import common.ParkingSubscriber;
+
+/**
+ * ||in SERVER||
+ *
+ * Read access to the users table.
+ */
+public interface UserRepository {
+
+	/**
+	 * Finds a user by ID.
+	 *
+	 * @param userID the User_ID
+	 * @return the user, or null if not found or on error
+	 */
+	ParkingSubscriber findById(int userID);
+
+	/**
+	 * Finds a user by username.
+	 *
+	 * @param userName the UserName
+	 * @return the user, or null if not found or on error
+	 */
+	ParkingSubscriber findByUsername(String userName);
+
+	/**
+	 * Returns the usernames of all users.
+	 *
+	 * @return list of usernames (empty on error)
+	 */
+	List<String> findAllUsernames();
+
+	/**
+	 * Returns all users of type subscriber.
+	 *
+	 * @return subscribers ordered by User_ID (empty on error)
+	 */
+	List<ParkingSubscriber> findAllSubscribers();
+}
@@ -2,32 +2,305 @@ package server;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import server.ServerLog.Level;
 
 /**
  * ||in SERVER||
- * 
- * DBController manages a pool of database connections using the Singleton
+ *
+ * DBController manages the database connection pools using the Singleton
  * pattern. It provides thread-safe methods for acquiring and releasing
  * connections.
- * 
- * The class initializes a fixed-size connection pool upon first invocation, and
- * allows controlled access to connections for database operations.
- * 
+ *
+ * Connections are split into separate pools by workload (see {@link Pool}), so
+ * heavy report queries or a backlog of background jobs can only use up their
+ * own connections and never the ones needed for gate entries and exits. Each
+ * pool has its own size and wait timeout and keeps its own usage statistics.
+ *
+ * Read-only work (reports, parking history) can be routed to a read replica,
+ * configured with the system property bpark.db.replicaUrl (a JDBC URL; user
+ * and password default to the primary's and can be set with
+ * bpark.db.replicaUser and bpark.db.replicaPassword). The replica's lag is
+ * checked every few seconds on a background thread, which also reopens broken
+ * replica connections; while the replica is unreachable, not replicating or
+ * more than bpark.db.maxReplicaLagSeconds behind, or all its connections are
+ * busy, {@link #getReadConnection(Pool)} falls back to the primary without
+ * waiting.
+ *
  * @author Yair
  * @version 1.0
  */
 public class DBController {
 
+	/**
+	 * The connection pools. Sizes and timeouts can be overridden with the system
+	 * properties bpark.pool.&lt;name&gt;.size and bpark.pool.&lt;name&gt;.timeoutMs,
+	 * e.g. bpark.pool.reporting.size=3.
+	 */
+	public enum Pool {
+		/** Kiosk, subscriber and attendant requests */
+		OPERATIONAL(6, 5000),
+		/** Report generation and report queries */
+		REPORTING(2, 30000),
+		/** Scheduled jobs, statistics and startup loading */
+		BACKGROUND(2, 10000),
+		/** Read-only work on the read replica (only if one is configured) */
+		REPLICA(3, 2000);
+
+		/** Default number of connections */
+		private final int defaultSize;
+		/** Default wait for a free connection in milliseconds */
+		private final long defaultTimeoutMillis;
+
+		/**
+		 * Creates a pool definition.
+		 *
+		 * @param defaultSize          default number of connections
+		 * @param defaultTimeoutMillis default wait for a free connection
+		 */
+		Pool(int defaultSize, long defaultTimeoutMillis) {
+			this.defaultSize = defaultSize;
+			this.defaultTimeoutMillis = defaultTimeoutMillis;
+		}
+
+		/**
+		 * Returns the configured number of connections.
+		 *
+		 * @return pool size
+		 */
+		int size() {
+			return Math.max(1, Integer.getInteger("bpark.pool." + propertyName() + ".size", defaultSize));
+		}
+
+		/**
+		 * Returns the configured wait for a free connection.
+		 *
+		 * @return timeout in milliseconds
+		 */
+		long timeoutMillis() {
+			return Long.getLong("bpark.pool." + propertyName() + ".timeoutMs", defaultTimeoutMillis);
+		}
+
+		/**
+		 * Returns the name used in system properties and log output.
+		 *
+		 * @return lower-case pool name
+		 */
+		String propertyName() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * A single fixed-size pool with its usage statistics. All methods lock the
+	 * pool itself, so the pools do not block each other.
+	 */
+	private static class ConnectionPool {
+		/** Which pool this is */
+		final Pool pool;
+		/** Number of connections */
+		final int size;
+		/** Wait for a free connection in milliseconds */
+		final long timeoutMillis;
+		/** JDBC URL, user and password used to reopen connections */
+		final String url, user, password;
+		/** Whether the connections are read-only */
+		final boolean readOnly;
+		/** Idle connections */
+		final Queue<Connection> idle = new LinkedList<>();
+		/** Borrow time of each connection in use, in nanoseconds */
+		final Map<Connection, Long> borrowedAt = new IdentityHashMap<>();
+
+		/** Number of successful borrows */
+		long borrows;
+		/** Number of borrows that had to wait */
+		long waits;
+		/** Number of borrows that timed out */
+		long timeouts;
+		/** Total time spent waiting for a connection, in nanoseconds */
+		long totalWaitNanos;
+		/** Longest wait for a connection, in nanoseconds */
+		long maxWaitNanos;
+		/** Total time connections were held, in nanoseconds */
+		long totalHeldNanos;
+		/** Highest number of connections in use at once */
+		int peakInUse;
+
+		/**
+		 * Creates an empty pool.
+		 *
+		 * @param pool     which pool this is
+		 * @param url      JDBC URL of the database
+		 * @param user     database user
+		 * @param password database password
+		 * @param readOnly whether the connections are read-only
+		 */
+		ConnectionPool(Pool pool, String url, String user, String password, boolean readOnly) {
+			this.pool = pool;
+			this.size = pool.size();
+			this.timeoutMillis = pool.timeoutMillis();
+			this.url = url;
+			this.user = user;
+			this.password = password;
+			this.readOnly = readOnly;
+		}
+
+		/**
+		 * Opens a new connection to the pool's database.
+		 *
+		 * @return the connection
+		 * @throws SQLException if the connection cannot be opened
+		 */
+		Connection open() throws SQLException {
+			Connection conn = DriverManager.getConnection(url, user, password);
+			conn.setReadOnly(readOnly);
+			return conn;
+		}
+
+		/**
+		 * Takes a connection, waiting up to the pool's timeout.
+		 *
+		 * @return the connection
+		 * @throws RuntimeException if no connection becomes available in time
+		 */
+		synchronized Connection borrow() {
+			long start = System.nanoTime();
+			long deadline = start + timeoutMillis * 1_000_000;
+			boolean waited = false;
+			while (idle.isEmpty()) {
+				long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+				if (remainingMillis <= 0) {
+					timeouts++;
+					throw new RuntimeException("Timeout: No available DB connections in " + pool.propertyName()
+							+ " pool.");
+				}
+				if (!waited) {
+					ServerLog.log(Level.DEBUG, "db_pool_wait", "pool", pool.propertyName());
+					waited = true;
+				}
+				try {
+					wait(remainingMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					timeouts++;
+					throw new RuntimeException("Interrupted while waiting for a DB connection.");
+				}
+			}
+
+			long now = System.nanoTime();
+			RequestMetrics.addDbNanos(now - start);
+			if (waited) {
+				waits++;
+				totalWaitNanos += now - start;
+				maxWaitNanos = Math.max(maxWaitNanos, now - start);
+			}
+			return take(now);
+		}
+
+		/**
+		 * Takes a connection if one is idle, without waiting.
+		 *
+		 * @return the connection, or null if all connections are in use
+		 */
+		synchronized Connection tryBorrow() {
+			return idle.isEmpty() ? null : take(System.nanoTime());
+		}
+
+		/**
+		 * Removes an idle connection and records it as borrowed.
+		 *
+		 * @param now the borrow time in nanoseconds
+		 * @return the connection
+		 */
+		private Connection take(long now) {
+			borrows++;
+			Connection conn = idle.remove();
+			borrowedAt.put(conn, now);
+			peakInUse = Math.max(peakInUse, borrowedAt.size());
+			return conn;
+		}
+
+		/**
+		 * Swaps a borrowed connection for a new one, which stays borrowed.
+		 *
+		 * @param broken      the borrowed connection
+		 * @param replacement the new connection
+		 */
+		synchronized void replace(Connection broken, Connection replacement) {
+			Long since = borrowedAt.remove(broken);
+			borrowedAt.put(replacement, since != null ? since : System.nanoTime());
+		}
+
+		/**
+		 * Returns a connection and wakes up waiting threads.
+		 *
+		 * @param conn the connection
+		 */
+		synchronized void release(Connection conn) {
+			Long since = borrowedAt.remove(conn);
+			if (since != null) {
+				long held = System.nanoTime() - since;
+				totalHeldNanos += held;
+				RequestMetrics.addDbNanos(held);
+			}
+			idle.add(conn);
+			notifyAll();
+		}
+
+		/**
+		 * Returns the share of connections currently in use.
+		 *
+		 * @return utilization between 0 and 1
+		 */
+		synchronized double utilization() {
+			return (double) borrowedAt.size() / size;
+		}
+
+		/**
+		 * Returns a one-line summary of the pool's statistics.
+		 *
+		 * @return statistics text
+		 */
+		synchronized String statistics() {
+			return String.format(
+					"DB pool %-11s %d/%d in use (peak %d), %d borrows, %d waited (avg %.1f ms, max %.1f ms), %d timeouts, avg hold %.1f ms",
+					pool.propertyName(), borrowedAt.size(), size, peakInUse, borrows, waits,
+					waits == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / waits, maxWaitNanos / 1_000_000.0, timeouts,
+					borrows == 0 ? 0.0 : totalHeldNanos / 1_000_000.0 / borrows);
+		}
+	}
+
 	/** Singleton instance of DBController */
 	private static DBController instance = null;
 
-	/** Queue representing the connection pool */
-	private final Queue<Connection> connectionPool = new LinkedList<>();
+	/** Maximum replica lag in seconds before reads fall back to the primary */
+	private static final long MAX_REPLICA_LAG_SECONDS = Long.getLong("bpark.db.maxReplicaLagSeconds", 10);
+
+	/** Interval between replica lag checks */
+	private static final long LAG_CHECK_INTERVAL_MILLIS = 5000;
 
-	/** Fixed size of the connection pool */
-	private final int POOL_SIZE = 6;
+	/** Seconds a replica connection may take to answer the validity check */
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	/** The pools by workload */
+	private final EnumMap<Pool, ConnectionPool> pools = new EnumMap<>(Pool.class);
+
+	/**
+	 * The pool each connection belongs to. Locked on itself, since the replica
+	 * check replaces broken connections while others are released.
+	 */
+	private final Map<Connection, ConnectionPool> owners = new IdentityHashMap<>();
 
 	/**
 	 * Flag indicating whether the DB initialization succeeded (1 = success, 0 =
@@ -35,9 +308,31 @@ public class DBController {
 	 */
 	private final int successFlag;
 
+	/** Background thread checking the replica, started with the replica pool */
+	private ScheduledExecutorService replicaChecker;
+
+	/** Whether reads may currently go to the replica */
+	private volatile boolean replicaUsable = false;
+
+	/** Replica lag in seconds at the last check, -1 if unknown */
+	private volatile long replicaLagSeconds = -1;
+
+	/** Number of read connections served by the replica */
+	private long replicaReads = 0;
+
+	/** Number of read connections that fell back to the primary */
+	private long primaryReads = 0;
+
+	/** Number of fallbacks because the replica was not usable */
+	private long unusableFallbacks = 0;
+
+	/** Number of fallbacks because all replica connections were busy */
+	private long busyFallbacks = 0;
+
 	/**
-	 * Private constructor. Establishes a pool of connections to the specified
-	 * database.
+	 * Private constructor. Establishes all connection pools to the specified
+	 * database on {@code bpark.db.host} (default localhost) as
+	 * {@code bpark.db.user} (default root).
 	 *
 	 * @param dbName   the name of the database to connect to
 	 * @param password the root user's password for the database
@@ -47,15 +342,29 @@ public class DBController {
 
 		try {
 			Class.forName("com.mysql.cj.jdbc.Driver");
-			String url = "jdbc:mysql://localhost/" + dbName + "?serverTimezone=Asia/Jerusalem";
+			String host = System.getProperty("bpark.db.host", "localhost");
+			String user = System.getProperty("bpark.db.user", "root");
+			String url = "jdbc:mysql://" + host + "/" + dbName + "?serverTimezone=Asia/Jerusalem";
 
-			for (int i = 0; i < POOL_SIZE; i++) {
-				Connection conn = DriverManager.getConnection(url, "root", password);
-				connectionPool.add(conn);
+			for (Pool pool : Pool.values()) {
+				if (pool != Pool.REPLICA) {
+					createPool(pool, url, user, password, false);
+				}
 			}
 
 			System.out.println("Database connection established.");
-			System.out.println("Initialized DB connection pool with " + connectionPool.size() + " connections.");
+
+			String replicaUrl = System.getProperty("bpark.db.replicaUrl");
+			if (replicaUrl != null && !replicaUrl.isBlank()) {
+				try {
+					createPool(Pool.REPLICA, replicaUrl, System.getProperty("bpark.db.replicaUser", user),
+							System.getProperty("bpark.db.replicaPassword", password), true);
+					startReplicaChecker();
+				} catch (SQLException e) {
+					// Reads keep working on the primary
+					System.err.println("Failed to connect to read replica: " + e.getMessage());
+				}
+			}
 
 			flag = 1;
 		} catch (Exception e) {
@@ -65,6 +374,31 @@ public class DBController {
 		this.successFlag = flag;
 	}
 
+	/**
+	 * Opens the connections of one pool.
+	 *
+	 * @param pool     which pool to create
+	 * @param url      JDBC URL of the database
+	 * @param user     database user
+	 * @param password database password
+	 * @param readOnly whether to mark the connections read-only
+	 * @throws SQLException if a connection cannot be opened
+	 */
+	private void createPool(Pool pool, String url, String user, String password, boolean readOnly)
+			throws SQLException {
+		ConnectionPool connectionPool = new ConnectionPool(pool, url, user, password, readOnly);
+		for (int i = 0; i < connectionPool.size; i++) {
+			Connection conn = connectionPool.open();
+			connectionPool.idle.add(conn);
+			synchronized (owners) {
+				owners.put(conn, connectionPool);
+			}
+		}
+		pools.put(pool, connectionPool);
+		System.out.println("Initialized " + pool.propertyName() + " DB connection pool with " + connectionPool.size
+				+ " connections.");
+	}
+
 	/**
 	 * Initializes the singleton instance of DBController. This method must be
 	 * called once before calling {@link #getInstance()}.
@@ -94,46 +428,266 @@ public class DBController {
 	}
 
 	/**
-	 * Retrieves a database connection from the pool. Waits up to 5 seconds if no
-	 * connection is currently available.
+	 * Retrieves a database connection from the operational pool. Waits up to the
+	 * pool's timeout (5 seconds by default) if no connection is currently
+	 * available.
+	 *
+	 * @return a {@link Connection} object from the pool
+	 * @throws RuntimeException if no connection becomes available in time
+	 */
+	public Connection getConnection() {
+		return getConnection(Pool.OPERATIONAL);
+	}
+
+	/**
+	 * Retrieves a database connection from the given pool. Waits up to the pool's
+	 * timeout if no connection is currently available.
 	 *
+	 * @param pool the pool matching the caller's workload
 	 * @return a {@link Connection} object from the pool
-	 * @throws RuntimeException if no connection becomes available within 5 seconds
-	 */
-	public synchronized Connection getConnection() {
-		long startTime = System.currentTimeMillis();
-		int waitCounter = 0;
-		while (connectionPool.isEmpty()) {
-			if (System.currentTimeMillis() - startTime > 5000) {
-				throw new RuntimeException("Timeout: No available DB connections.");
+	 * @throws RuntimeException if no connection becomes available in time
+	 */
+	public Connection getConnection(Pool pool) {
+		ConnectionPool connectionPool = pools.get(pool);
+		if (connectionPool == null) {
+			throw new RuntimeException("DB connection pool " + pool.propertyName() + " is not available.");
+		}
+		return connectionPool.borrow();
+	}
+
+	/**
+	 * Retrieves a connection for read-only work. Uses the read replica if one is
+	 * configured, reachable, not lagging behind and has an idle connection;
+	 * otherwise takes a connection from the given primary pool. Never waits for
+	 * the replica: its state comes from the background check and its pool is
+	 * only polled. Must only be used for queries that can accept data that is a
+	 * few seconds old.
+	 *
+	 * @param fallback the primary pool to use when the replica cannot be used
+	 * @return a {@link Connection} object, released with
+	 *         {@link #releaseConnection(Connection)} as usual
+	 * @throws RuntimeException if no connection becomes available in time
+	 */
+	public Connection getReadConnection(Pool fallback) {
+		ConnectionPool replica = pools.get(Pool.REPLICA);
+		if (replica != null) {
+			Connection conn = replicaUsable ? replica.tryBorrow() : null;
+			synchronized (this) {
+				if (conn != null) {
+					replicaReads++;
+					return conn;
+				}
+				if (replicaUsable) {
+					busyFallbacks++;
+				} else {
+					unusableFallbacks++;
+				}
+			}
+		}
+		synchronized (this) {
+			primaryReads++;
+		}
+		return getConnection(fallback);
+	}
+
+	/**
+	 * Starts the background thread that checks the replica every
+	 * {@link #LAG_CHECK_INTERVAL_MILLIS}.
+	 */
+	private void startReplicaChecker() {
+		replicaChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "replica-checker");
+			t.setDaemon(true);
+			return t;
+		});
+		replicaChecker.scheduleWithFixedDelay(this::checkReplica, 0, LAG_CHECK_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Checks the replica: reopens idle connections that broke and then reads the
+	 * replication lag. Runs on the replica checker thread only.
+	 */
+	private void checkReplica() {
+		try {
+			reopenBrokenReplicaConnections();
+			checkReplicaLag();
+		} catch (RuntimeException e) {
+			// Keep the schedule alive
+			replicaUsable = false;
+			ServerLog.log(Level.WARN, "replica_check_failed", "error", e.toString());
+		}
+	}
+
+	/**
+	 * Validates the idle replica connections one at a time, without holding the
+	 * pool's lock while they answer, and replaces the ones that are closed or no
+	 * longer answer.
+	 */
+	private void reopenBrokenReplicaConnections() {
+		ConnectionPool replica = pools.get(Pool.REPLICA);
+		for (int i = 0; i < replica.size; i++) {
+			Connection conn = replica.tryBorrow();
+			if (conn == null) {
+				return;
 			}
-			if (waitCounter % 10 == 0) {
-				System.out.println("Waiting for available DB connection...");
+			try {
+				if (!isValid(conn)) {
+					conn = reopen(replica, conn);
+				}
+			} catch (SQLException e) {
+				// The broken connection goes back and is tried again next time
+				ServerLog.log(Level.WARN, "replica_reopen_failed", "error", e.getMessage());
+			} finally {
+				replica.release(conn);
 			}
+		}
+	}
+
+	/**
+	 * Checks whether a connection still answers.
+	 *
+	 * @param conn the connection
+	 * @return true if the connection is open and answers in time
+	 */
+	private static boolean isValid(Connection conn) {
+		try {
+			return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Replaces a broken borrowed connection with a new one, which stays
+	 * borrowed.
+	 *
+	 * @param connectionPool the pool of the connection
+	 * @param broken         the broken connection
+	 * @return the new connection
+	 * @throws SQLException if a new connection cannot be opened
+	 */
+	private Connection reopen(ConnectionPool connectionPool, Connection broken) throws SQLException {
+		Connection replacement = connectionPool.open();
+		synchronized (owners) {
+			owners.remove(broken);
+			owners.put(replacement, connectionPool);
+		}
+		connectionPool.replace(broken, replacement);
+		try {
+			broken.close();
+		} catch (SQLException e) {
+			// Already broken
+		}
+		ServerLog.log(Level.INFO, "db_connection_reopened", "pool", connectionPool.pool.propertyName());
+		return replacement;
+	}
+
+	/**
+	 * Reads the replication lag from the replica. A replica whose replication is
+	 * stopped (lag NULL) is not used. A server without replication status (e.g. a
+	 * stand-in instance for local testing) counts as lag 0.
+	 */
+	private void checkReplicaLag() {
+		boolean wasUsable = replicaUsable;
+		ConnectionPool replica = pools.get(Pool.REPLICA);
+		Connection conn = replica.tryBorrow();
+		if (conn == null) {
+			// All connections serve reads, so the replica is answering
+			return;
+		}
+		try {
+			long lag;
 			try {
-				wait(100);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+				lag = readLag(conn, "SHOW REPLICA STATUS", "Seconds_Behind_Source");
+			} catch (SQLException e) {
+				// MySQL before 8.0.22
+				lag = readLag(conn, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
 			}
-			waitCounter++;
+			replicaLagSeconds = lag;
+			replicaUsable = lag >= 0 && lag <= MAX_REPLICA_LAG_SECONDS;
+		} catch (SQLException e) {
+			replicaLagSeconds = -1;
+			replicaUsable = false;
+			ServerLog.log(Level.WARN, "replica_lag_check_failed", "error", e.getMessage());
+		} finally {
+			replica.release(conn);
+		}
+		if (wasUsable != replicaUsable) {
+			ServerLog.log(Level.INFO, "replica_state_changed", "usable", replicaUsable, "lagSeconds",
+					replicaLagSeconds < 0 ? "unknown" : replicaLagSeconds);
 		}
+	}
 
-		Connection conn = connectionPool.remove();
-		System.out.println("Connection taken. Remaining in pool: " + connectionPool.size());
-		return conn;
+	/**
+	 * Runs a replication status statement and returns the lag column.
+	 *
+	 * @param conn      a replica connection
+	 * @param statement the status statement
+	 * @param column    the lag column
+	 * @return lag in seconds, 0 if the server has no replication status, -1 if
+	 *         replication is stopped
+	 * @throws SQLException if the statement fails
+	 */
+	private static long readLag(Connection conn, String statement, String column) throws SQLException {
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(statement)) {
+			if (!rs.next()) {
+				return 0;
+			}
+			long lag = rs.getLong(column);
+			return rs.wasNull() ? -1 : lag;
+		}
 	}
 
 	/**
-	 * Returns a used connection back to the pool and notifies waiting threads.
+	 * Returns a used connection back to the pool it came from and notifies
+	 * waiting threads.
 	 *
 	 * @param conn the {@link Connection} to return to the pool
 	 */
-	public synchronized void releaseConnection(Connection conn) {
+	public void releaseConnection(Connection conn) {
 		if (conn != null) {
-			connectionPool.add(conn);
-			System.out.println("Connection returned. Now available in pool: " + connectionPool.size());
-			notifyAll(); // Wake up waiting threads
+			ConnectionPool connectionPool;
+			synchronized (owners) {
+				connectionPool = owners.get(conn);
+			}
+			if (connectionPool != null) {
+				connectionPool.release(conn);
+			}
+		}
+	}
+
+	/**
+	 * Returns the share of a pool's connections currently in use.
+	 *
+	 * @param pool the pool
+	 * @return utilization between 0 and 1
+	 */
+	public double getUtilization(Pool pool) {
+		ConnectionPool connectionPool = pools.get(pool);
+		return connectionPool == null ? 0 : connectionPool.utilization();
+	}
+
+	/**
+	 * Returns the usage statistics of all pools, one line per pool.
+	 *
+	 * @return statistics text
+	 */
+	public String getStatistics() {
+		StringBuilder sb = new StringBuilder();
+		for (ConnectionPool connectionPool : pools.values()) {
+			sb.append(connectionPool.statistics()).append(System.lineSeparator());
+		}
+		if (pools.containsKey(Pool.REPLICA)) {
+			synchronized (this) {
+				sb.append(String.format(
+						"Read routing: %d reads on replica, %d on primary (%d replica not usable, %d replica busy), replica %s (lag %s)%n",
+						replicaReads, primaryReads, unusableFallbacks, busyFallbacks,
+						replicaUsable ? "in use" : "not used",
+						replicaLagSeconds < 0 ? "unknown" : replicaLagSeconds + " s"));
+			}
 		}
+		return sb.toString();
 	}
 
 	/**
@@ -0,0 +1,132 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.ParkingSubscriber;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * ||in SERVER||
+ *
+ * Issues short-lived session tokens to kiosk users. A token is created when a
+ * subscriber identifies at a kiosk (by username and ID or by RF card) and
+ * carries the subscriber resolved at that moment. Follow-up kiosk requests
+ * send the token back, so the server knows who is at the kiosk without looking
+ * the user up again, and requests without a valid token are rejected before
+ * any database work.
+ *
+ * A token is only valid on the connection it was issued to and expires after
+ * {@link #TTL_MILLIS} without use. Each connection has at most one session.
+ */
+public class KioskSessionManager {
+
+	/** Key under which the token is stored on the {@link ConnectionToClient} */
+	private static final String CONNECTION_KEY = "kioskSessionToken";
+
+	/** Idle time after which a session expires */
+	private static final long TTL_MILLIS = Long.getLong("bpark.kioskSession.ttlMinutes", 5) * 60_000L;
+
+	/** Number of random bytes in a token */
+	private static final int TOKEN_BYTES = 18;
+
+	/**
+	 * A kiosk session: the identified subscriber and the expiry time.
+	 */
+	private static class KioskSession {
+		/** The subscriber identified at login */
+		final ParkingSubscriber subscriber;
+		/** The connection the session is bound to */
+		final ConnectionToClient client;
+		/** Expiry time in milliseconds, extended on every use */
+		volatile long expiresAt;
+
+		/**
+		 * Creates a session.
+		 *
+		 * @param subscriber the identified subscriber
+		 * @param client     the kiosk connection
+		 */
+		KioskSession(ParkingSubscriber subscriber, ConnectionToClient client) {
+			this.subscriber = subscriber;
+			this.client = client;
+			this.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+		}
+	}
+
+	/** Open sessions by token */
+	private final ConcurrentHashMap<String, KioskSession> sessions = new ConcurrentHashMap<>();
+
+	/** Source of token bytes */
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Opens a session for a subscriber who identified at a kiosk. Any previous
+	 * session of the same connection is closed.
+	 *
+	 * @param client     the kiosk connection
+	 * @param subscriber the identified subscriber
+	 * @return the new session token
+	 */
+	public String open(ConnectionToClient client, ParkingSubscriber subscriber) {
+		close(client);
+		purgeExpired();
+
+		byte[] bytes = new byte[TOKEN_BYTES];
+		random.nextBytes(bytes);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+		sessions.put(token, new KioskSession(subscriber, client));
+		client.setInfo(CONNECTION_KEY, token);
+		return token;
+	}
+
+	/**
+	 * Returns the subscriber of a session if the token is valid on this
+	 * connection, and extends the session.
+	 *
+	 * @param client the connection the request came from
+	 * @param token  the token sent with the request, may be null
+	 * @return the session's subscriber, or null if the token is missing, unknown,
+	 *         expired or belongs to another connection
+	 */
+	public ParkingSubscriber resolve(ConnectionToClient client, String token) {
+		if (token == null) {
+			return null;
+		}
+		KioskSession session = sessions.get(token);
+		if (session == null || session.client != client) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (session.expiresAt < now) {
+			sessions.remove(token);
+			return null;
+		}
+		session.expiresAt = now + TTL_MILLIS;
+		return session.subscriber;
+	}
+
+	/**
+	 * Closes the session of a connection, e.g. on logout or disconnect.
+	 *
+	 * @param client the kiosk connection
+	 */
+	public void close(ConnectionToClient client) {
+		Object token = client.getInfo(CONNECTION_KEY);
+		if (token != null) {
+			sessions.remove(token);
+			client.setInfo(CONNECTION_KEY, null);
+		}
+	}
+
+	/**
+	 * Removes all expired sessions, including those of connections that were
+	 * dropped without a logout.
+	 */
+	private void purgeExpired() {
+		long now = System.currentTimeMillis();
+		sessions.values().removeIf(session -> session.expiresAt < now);
+	}
+}
@@ -0,0 +1,292 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import common.Message.MessageType;
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * Remembers the results of state-changing requests by their client-chosen
+ * operation ID, so that a request sent again after a timeout is answered with
+ * the original result instead of being executed twice. Kiosks can then retry
+ * quickly instead of waiting long for a slow response.
+ *
+ * Only results of operations that committed a change are remembered: a
+ * rejection or a failure changed nothing, so a retry simply runs the operation
+ * again and gets a fresh answer. Remembered results are kept in memory for
+ * {@link #TTL_MILLIS}. A retry that arrives
+ * while the original request is still running is not answered: the original
+ * request answers, and a later retry gets the result. Retries therefore never
+ * hold a worker thread.
+ *
+ * To survive restarts, the operation is recorded in the processed_operations
+ * table by the first {@link UnitOfWork} it commits, in the same transaction as
+ * its state change, together with the result set through
+ * {@link UnitOfWork#setResult(String)}. The record and the change are
+ * therefore saved or lost together, and no extra connection is borrowed. If
+ * the operation was already recorded, the primary key rejects the record, the
+ * transaction rolls back and the stored result is returned instead. An
+ * operation that changes nothing records nothing and simply runs again.
+ */
+public class OperationLog {
+
+	/** Time results are kept in memory */
+	private static final long TTL_MILLIS = Long.getLong("bpark.operationLog.ttlMinutes", 30) * 60_000L;
+
+	/** Hours results are kept in the database */
+	private static final int RETENTION_HOURS = 24;
+
+	/** Interval between purges of old database rows */
+	private static final long DB_PURGE_INTERVAL_MILLIS = 3_600_000L;
+
+	/** Longest operation ID accepted, the size of the key column */
+	private static final int MAX_ID_LENGTH = 64;
+
+	/** Result of a recorded operation whose result was not stored */
+	private static final String RESULT_UNKNOWN = "Operation already processed";
+
+	/**
+	 * State of an operation seen by this server.
+	 */
+	private enum State {
+		/** The first execution is still running */
+		RUNNING,
+		/** The result is known */
+		DONE
+	}
+
+	/**
+	 * An operation seen by this server: its state and result, and when it
+	 * arrived.
+	 */
+	private static class Entry {
+		/** Result of the operation, set before {@link #state} becomes DONE */
+		volatile String result;
+		/** Whether the result is known */
+		volatile State state = State.RUNNING;
+		/** Arrival time in milliseconds */
+		final long createdAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * The operation the current thread runs, recorded by the first transaction
+	 * it commits.
+	 */
+	private static class Pending {
+		/** The operation ID */
+		final String operationID;
+		/** The request type */
+		final MessageType type;
+		/** Set once a committed transaction recorded the operation */
+		boolean recorded;
+		/** Result saved with the record, possibly null */
+		String storedResult;
+		/** Set if the operation had been recorded before */
+		boolean duplicate;
+
+		/**
+		 * Creates the pending operation.
+		 *
+		 * @param operationID the operation ID
+		 * @param type        the request type
+		 */
+		Pending(String operationID, MessageType type) {
+			this.operationID = operationID;
+			this.type = type;
+		}
+	}
+
+	/** Operation run by the current thread, if it has an operation ID */
+	private static final ThreadLocal<Pending> current = new ThreadLocal<>();
+
+	/** Time of the last purge of old database rows */
+	private static volatile long lastDbPurge = 0;
+
+	/** Operations by operation ID */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs an operation once per operation ID. The result is remembered only if
+	 * the operation committed a {@link UnitOfWork}, or had been committed before;
+	 * any other result, e.g. a rejection or a database error, is returned but
+	 * not remembered, so that a retry runs the operation again.
+	 *
+	 * @param operationID the client-chosen ID, or null to run without
+	 *                    deduplication
+	 * @param type        the request type, stored for diagnosis
+	 * @param operation   the operation
+	 * @return the result of the operation, or of its first execution; null if
+	 *         the first execution is still running and no reply must be sent
+	 */
+	public String execute(String operationID, MessageType type, Supplier<String> operation) {
+		if (operationID == null || operationID.isEmpty() || operationID.length() > MAX_ID_LENGTH) {
+			return operation.get();
+		}
+		purgeExpired();
+
+		Entry entry = new Entry();
+		Entry existing = entries.putIfAbsent(operationID, entry);
+		if (existing != null) {
+			boolean done = existing.state == State.DONE;
+			ServerLog.log(Level.INFO, "operation_repeated", "operation", operationID, "type", type, "state",
+					existing.state);
+			return done ? existing.result : null;
+		}
+
+		Pending pending = new Pending(operationID, type);
+		String result = null;
+		current.set(pending);
+		try {
+			result = operation.get();
+		} finally {
+			current.remove();
+			if (pending.duplicate) {
+				result = loadResult(operationID);
+			} else if (pending.recorded) {
+				if (result != null && !result.equals(pending.storedResult)) {
+					store(operationID, result);
+				}
+				purgeStoredIfDue();
+			}
+			if (result != null && (pending.recorded || pending.duplicate)) {
+				entry.result = result;
+				entry.state = State.DONE;
+			} else {
+				// Nothing committed: let a retry run it again
+				entries.remove(operationID, entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Records the operation the current thread runs, if any, in a transaction
+	 * that is about to commit. Called by {@link UnitOfWork#commit()}; only the
+	 * first committed transaction of an operation records it.
+	 *
+	 * @param uow    the transaction
+	 * @param result the result set on the transaction, or null
+	 * @throws SQLException if the operation was recorded before, or the record
+	 *                      could not be written; the transaction must then roll
+	 *                      back
+	 */
+	static void beforeCommit(UnitOfWork uow, String result) throws SQLException {
+		Pending pending = current.get();
+		if (pending == null || pending.recorded) {
+			return;
+		}
+		String insertQry = """
+				INSERT INTO processed_operations (Operation_ID, Message_Type, Result, Created_At)
+				VALUES (?, ?, ?, ?)
+				""";
+		try (PreparedStatement stmt = uow.prepare(insertQry)) {
+			stmt.setString(1, pending.operationID);
+			stmt.setString(2, pending.type != null ? pending.type.name() : "");
+			stmt.setString(3, result);
+			stmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+			stmt.executeUpdate();
+		} catch (SQLIntegrityConstraintViolationException e) {
+			// Applied before, possibly by a server that has since restarted
+			pending.duplicate = true;
+			throw e;
+		}
+		uow.afterCommit(() -> {
+			pending.recorded = true;
+			pending.storedResult = result;
+		});
+	}
+
+	/**
+	 * Reads the stored result of a recorded operation.
+	 *
+	 * @param operationID the operation ID
+	 * @return the result, or {@link #RESULT_UNKNOWN} if it was not stored
+	 */
+	private String loadResult(String operationID) {
+		ServerLog.log(Level.INFO, "operation_repeated", "operation", operationID, "state", "stored");
+		Connection conn = null;
+		try {
+			conn = DBController.getInstance().getConnection(DBController.Pool.OPERATIONAL);
+			try (PreparedStatement stmt = conn
+					.prepareStatement("SELECT Result FROM processed_operations WHERE Operation_ID = ?")) {
+				stmt.setString(1, operationID);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() && rs.getString("Result") != null) {
+						return rs.getString("Result");
+					}
+				}
+			}
+		} catch (SQLException | RuntimeException e) {
+			ServerLog.log(Level.WARN, "operation_read_failed", "operation", operationID, "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+		return RESULT_UNKNOWN;
+	}
+
+	/**
+	 * Stores the result of a recorded operation that did not set it on its
+	 * transaction. If the server stops before this, a retry gets
+	 * {@link #RESULT_UNKNOWN}, but the operation still does not run again.
+	 *
+	 * @param operationID the operation ID
+	 * @param result      the result
+	 */
+	private void store(String operationID, String result) {
+		update("UPDATE processed_operations SET Result = ? WHERE Operation_ID = ?", result, operationID);
+	}
+
+	/**
+	 * Runs an update on the processed_operations table.
+	 *
+	 * @param qry    the statement
+	 * @param params the parameters
+	 */
+	private static void update(String qry, Object... params) {
+		Connection conn = null;
+		try {
+			conn = DBController.getInstance().getConnection(DBController.Pool.OPERATIONAL);
+			try (PreparedStatement stmt = conn.prepareStatement(qry)) {
+				for (int i = 0; i < params.length; i++) {
+					stmt.setObject(i + 1, params[i]);
+				}
+				stmt.executeUpdate();
+			}
+		} catch (SQLException | RuntimeException e) {
+			ServerLog.log(Level.WARN, "operation_log_update_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Deletes database rows older than {@link #RETENTION_HOURS}, at most once
+	 * per {@link #DB_PURGE_INTERVAL_MILLIS}.
+	 */
+	private static void purgeStoredIfDue() {
+		long now = System.currentTimeMillis();
+		if (now - lastDbPurge < DB_PURGE_INTERVAL_MILLIS) {
+			return;
+		}
+		lastDbPurge = now;
+		update("DELETE FROM processed_operations WHERE Created_At < ?",
+				new Timestamp(now - RETENTION_HOURS * 3_600_000L));
+	}
+
+	/**
+	 * Removes finished operations older than {@link #TTL_MILLIS} from memory.
+	 */
+	private void purgeExpired() {
+		long oldest = System.currentTimeMillis() - TTL_MILLIS;
+		entries.values().removeIf(entry -> entry.createdAt < oldest && entry.state == State.DONE);
+	}
+}
@@ -11,17 +11,27 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import common.HistoryChanges;
+import common.KioskOperation;
 import common.Message;
+import common.OccupancyBucket;
 import common.ParkingOrder;
 import common.ParkingReport;
 import common.ParkingSubscriber;
+import common.SubscriberPage;
 import common.Message.MessageType;
+import controllers.AsyncParkingController;
+import controllers.DailySketchService;
+import controllers.OccupancyService;
 import controllers.ParkingController;
 import controllers.ReportController;
 import controllers.ServerPortFrameController;
 import ocsf.server.AbstractServer;
 import ocsf.server.ConnectionToClient;
+import server.ServerLog.Level;
 
 /**
  * ||in SERVER||
@@ -51,6 +61,24 @@ public class ParkingServer extends AbstractServer {
 	/** IP address and port on which the server is running. */
 	public static String serverIp;
 
+	/** Runs requests by priority class on worker threads. */
+	private final RequestScheduler scheduler = new RequestScheduler();
+
+	/** Asynchronous facade used for requests that overlap their I/O. */
+	private AsyncParkingController asyncParkingController;
+
+	/** Session tokens of subscribers identified at a kiosk. */
+	private final KioskSessionManager kioskSessions = new KioskSessionManager();
+
+	/** Results of state-changing requests by operation ID, for retries. */
+	private final OperationLog operationLog = new OperationLog();
+
+	/** Reply to kiosk requests without a valid session token. */
+	private static final String KIOSK_SESSION_EXPIRED = "Your kiosk session has expired. Please log in again.";
+
+	/** Key of the client's IP address in its connection info, removed once it disconnected. */
+	private static final String CLIENT_IP = "clientIP";
+
 	/**
 	 * Constructs a new ParkingServer on the given port.
 	 *
@@ -67,28 +95,240 @@ public class ParkingServer extends AbstractServer {
 	}
 
 	/**
-	 * Handles all incoming messages from clients.
+	 * Handles all incoming messages from clients. Message objects are queued in
+	 * the {@link RequestScheduler} by priority and handled on its worker threads;
+	 * if the queue of their class is full, the client gets a SERVER_BUSY reply.
+	 * Requests served by the {@link AsyncParkingController} only occupy a worker
+	 * while they are started, and their reply is sent by the thread that finishes
+	 * the work.
 	 *
 	 * @param msg    the received message object.
 	 * @param client the connection to the client.
 	 */
-	public synchronized void handleMessageFromClient(Object msg, ConnectionToClient client) {
-		System.out.println("Message received: " + msg + " from " + client);
-
+	public void handleMessageFromClient(Object msg, ConnectionToClient client) {
 		try {
+			long receivedAt = System.nanoTime();
 			if (msg instanceof byte[]) {
 				msg = deserialize(msg);
 			}
 
-			if (msg instanceof Message) {
-				handleMessageObject((Message) msg, client);
+			if (msg instanceof Message message && message.getType() == MessageType.HEARTBEAT) {
+				// Answered here rather than queued, so a slow request of this client
+				// does not make the connection look dead
+				send(client, new Message(MessageType.HEARTBEAT_RESPONSE, null));
+			} else if (msg instanceof Message message) {
+				RequestMetrics.Trace trace = RequestMetrics.received(message.getType(), receivedAt);
+				if (ServerLog.isEnabled(Level.DEBUG)) {
+					ServerLog.log(Level.DEBUG, "request_received", "req", trace.getId(), "type", message.getType(),
+							"client", client);
+				}
+				boolean queued;
+				if (isAsync(message.getType())) {
+					queued = scheduler.submitAsync(client, message.getType(), () -> {
+						trace.start();
+						try {
+							return handleAsyncMessage(message, client).whenComplete((result, e) -> {
+								if (e != null) {
+									trace.fail();
+								}
+								trace.finish();
+							});
+						} finally {
+							trace.detach();
+						}
+					});
+				} else {
+					queued = scheduler.submit(client, message.getType(), () -> {
+						trace.start();
+						try {
+							handleMessageObject(message, client);
+						} catch (IOException e) {
+							trace.fail();
+							ServerLog.log(Level.WARN, "reply_failed", "client", client, "error", e.getMessage());
+						} finally {
+							trace.finish();
+						}
+					});
+				}
+				if (!queued) {
+					trace.reject();
+					ServerLog.log(Level.WARN, "request_rejected", "req", trace.getId(), "type", message.getType(),
+							"client", client);
+					send(client, new Message(MessageType.SERVER_BUSY, message.getType()));
+				}
 			} else if (msg instanceof String) {
+				ServerLog.log(Level.DEBUG, "command_received", "command", msg, "client", client);
 				handleStringMessage((String) msg, client);
 			}
 
 		} catch (Exception e) {
-			System.err.println("General error in handleMessageFromClient: " + e.getMessage());
-			e.printStackTrace();
+			ServerLog.log(Level.ERROR, "receive_failed", "client", client, "error", e.toString());
+		}
+	}
+
+	/**
+	 * Checks whether a request type is served by the
+	 * {@link AsyncParkingController}.
+	 *
+	 * @param type the request type
+	 * @return true if the request is handled by
+	 *         {@link #handleAsyncMessage(Message, ConnectionToClient)}
+	 */
+	private boolean isAsync(MessageType type) {
+		if (asyncParkingController == null) {
+			return false;
+		}
+		switch (type) {
+		case CHECK_PARKING_AVAILABILITY:
+		case RESERVE_PARKING:
+		case REQUEST_LOST_CODE:
+		case GET_PARKING_HISTORY:
+		case GET_PARKING_HISTORY_CHANGES:
+		case REQUEST_SUBSCRIBER_DATA:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Starts an asynchronous request and sends its reply when the work is done.
+	 *
+	 * @param message the message to process
+	 * @param client  the client that sent the message
+	 * @return future that completes once the reply was sent
+	 */
+	private CompletableFuture<Void> handleAsyncMessage(Message message, ConnectionToClient client) {
+		CompletableFuture<?> result;
+		try {
+			switch (message.getType()) {
+			case CHECK_PARKING_AVAILABILITY:
+				result = asyncParkingController.getAvailableParkingSpots();
+				break;
+
+			case RESERVE_PARKING:
+				String[] reservationData = ((String) message.getContent()).split(",");
+				result = asyncParkingController.makeReservation(reservationData[0], reservationData[1]);
+				break;
+
+			case REQUEST_LOST_CODE:
+				result = asyncParkingController.sendLostParkingCode((String) message.getContent());
+				break;
+
+			case GET_PARKING_HISTORY:
+				result = asyncParkingController.getParkingHistory((String) message.getContent());
+				break;
+
+			case GET_PARKING_HISTORY_CHANGES:
+				// Expected format: "userName,version"
+				String[] changesData = ((String) message.getContent()).split(",");
+				result = asyncParkingController.getParkingHistoryChanges(changesData[0].trim(),
+						historyVersion(message));
+				break;
+
+			case REQUEST_SUBSCRIBER_DATA:
+				result = asyncParkingController.getUserInfo((String) message.getContent());
+				break;
+
+			default:
+				throw new IllegalArgumentException("Not an asynchronous request: " + message.getType());
+			}
+		} catch (Exception e) {
+			result = CompletableFuture.failedFuture(e);
+		}
+		return reply(client, message, result);
+	}
+
+	/**
+	 * Sends the result of a future to the client once it completes, on the thread
+	 * that completes it. If the future failed the client still gets an answer of
+	 * the response type it waits for, with the same content the
+	 * {@link AsyncParkingController} uses for failures, and the returned future
+	 * fails so that the request is counted as failed.
+	 *
+	 * @param client  the client to reply to
+	 * @param request the request being answered
+	 * @param result  the future reply content
+	 * @return future that completes once the reply was sent
+	 */
+	private CompletableFuture<Void> reply(ConnectionToClient client, Message request, CompletableFuture<?> result) {
+		return result.handle((content, error) -> {
+			try {
+				send(client, new Message(responseType(request.getType()),
+						(Serializable) (error == null ? content : failureContent(request))));
+			} catch (IOException e) {
+				ServerLog.log(Level.WARN, "reply_failed", "client", client, "error", e.getMessage());
+			}
+			if (error != null) {
+				throw error instanceof CompletionException ? (CompletionException) error
+						: new CompletionException(error);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the response type the client waits for after an asynchronous
+	 * request.
+	 *
+	 * @param type the request type
+	 * @return the matching response type
+	 */
+	private static MessageType responseType(MessageType type) {
+		switch (type) {
+		case CHECK_PARKING_AVAILABILITY:
+			return MessageType.PARKING_AVAILABILITY_RESPONSE;
+		case RESERVE_PARKING:
+			return MessageType.RESERVATION_RESPONSE;
+		case REQUEST_LOST_CODE:
+			return MessageType.LOST_CODE_RESPONSE;
+		case GET_PARKING_HISTORY:
+			return MessageType.PARKING_HISTORY_RESPONSE;
+		case GET_PARKING_HISTORY_CHANGES:
+			return MessageType.PARKING_HISTORY_CHANGES_RESPONSE;
+		case REQUEST_SUBSCRIBER_DATA:
+			return MessageType.SUBSCRIBER_DATA_RESPONSE;
+		default:
+			throw new IllegalArgumentException("Not an asynchronous request: " + type);
+		}
+	}
+
+	/**
+	 * Builds the reply content for a failed asynchronous request, of the type
+	 * the client's handler for the response expects.
+	 *
+	 * @param request the failed request
+	 * @return the failure reply content
+	 */
+	private static Serializable failureContent(Message request) {
+		switch (request.getType()) {
+		case CHECK_PARKING_AVAILABILITY:
+			return 0;
+		case RESERVE_PARKING:
+			return "Reservation failed: Server error";
+		case REQUEST_LOST_CODE:
+			return "Error sending parking code.";
+		case GET_PARKING_HISTORY:
+			return new ArrayList<ParkingOrder>();
+		case GET_PARKING_HISTORY_CHANGES:
+			return new HistoryChanges(new ArrayList<>(), historyVersion(request));
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the client's history version from a history changes request.
+	 *
+	 * @param request the request, with content "userName,version"
+	 * @return the version, 0 if missing or malformed
+	 */
+	private static long historyVersion(Message request) {
+		try {
+			String[] data = ((String) request.getContent()).split(",");
+			return data.length > 1 ? Long.parseLong(data[1].trim()) : 0;
+		} catch (RuntimeException e) {
+			return 0;
 		}
 	}
 
@@ -99,7 +339,7 @@ public class ParkingServer extends AbstractServer {
 	 * @param client  the client that sent the message.
 	 * @throws IOException if a communication error occurs.
 	 */
-	private synchronized void handleMessageObject(Message message, ConnectionToClient client) throws IOException {
+	private void handleMessageObject(Message message, ConnectionToClient client) throws IOException {
 		Message ret;
 
 		try {
@@ -128,11 +368,20 @@ public class ParkingServer extends AbstractServer {
 				handleActivateReservationKiosk(message, client);
 				break;
 
+			case GET_KIOSK_SNAPSHOT:
+				ret = new Message(MessageType.KIOSK_SNAPSHOT_RESPONSE, parkingController.getKioskSnapshot());
+				send(client, ret);
+				break;
+
+			case REPLAY_KIOSK_JOURNAL:
+				handleReplayKioskJournal(message, client);
+				break;
+
 			case SUBSCRIBER_LOGIN:
 				String[] loginParts = ((String) message.getContent()).split(",");
 				if (loginParts.length < 2) {
 					ret = new Message(MessageType.SUBSCRIBER_LOGIN_RESPONSE, "ERROR: Missing username or user code");
-					client.sendToClient(serialize(ret));
+					send(client, ret);
 					break;
 				}
 
@@ -147,13 +396,13 @@ public class ParkingServer extends AbstractServer {
 					ret = new Message(MessageType.SUBSCRIBER_LOGIN_RESPONSE, null);
 				}
 
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case CHECK_PARKING_AVAILABILITY:
 				int availableSpots = parkingController.getAvailableParkingSpots();
 				ret = new Message(MessageType.PARKING_AVAILABILITY_RESPONSE, availableSpots);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case RESERVE_PARKING:
@@ -162,7 +411,7 @@ public class ParkingServer extends AbstractServer {
 				String reservationDate = reservationData[1];
 				String reservationResult = parkingController.makeReservation(reservationUserName, reservationDate);
 				ret = new Message(MessageType.RESERVATION_RESPONSE, reservationResult);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case REGISTER_SUBSCRIBER:
@@ -184,47 +433,54 @@ public class ParkingServer extends AbstractServer {
 				} else {
 					ret = new Message(MessageType.REGISTRATION_RESPONSE, "ERROR: Invalid registration data format");
 				}
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case REQUEST_LOST_CODE:
 				String lostCodeUserName = (String) message.getContent(); // ← RENAMED
 				String lostCodeResult = parkingController.sendLostParkingCode(lostCodeUserName);
 				ret = new Message(MessageType.LOST_CODE_RESPONSE, lostCodeResult);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case GET_PARKING_HISTORY:
 				String historyUserName = (String) message.getContent(); // ← RENAMED
 				ArrayList<ParkingOrder> history = parkingController.getParkingHistory(historyUserName);
 				ret = new Message(MessageType.PARKING_HISTORY_RESPONSE, history);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case MANAGER_GET_REPORTS:
 				String reportType = (String) message.getContent();
 				ArrayList<ParkingReport> reports = reportController.getParkingReports(reportType);
 				ret = new Message(MessageType.MANAGER_SEND_REPORTS, reports);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case GET_ACTIVE_PARKINGS:
 				ArrayList<ParkingOrder> activeParkings = parkingController.getActiveParkings();
 				ret = new Message(MessageType.ACTIVE_PARKINGS_RESPONSE, activeParkings);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
+				break;
+
+			case GET_OCCUPANCY_HISTORY:
+				String range = (String) message.getContent();
+				ArrayList<OccupancyBucket> occupancy = OccupancyService.getInstance().getOccupancyHistory(range);
+				ret = new Message(MessageType.OCCUPANCY_HISTORY_RESPONSE, occupancy);
+				send(client, ret);
 				break;
 
 			case UPDATE_SUBSCRIBER_INFO:
 				String updateResult = parkingController.updateSubscriberInfo((String) message.getContent());
 				ret = new Message(MessageType.UPDATE_SUBSCRIBER_RESPONSE, updateResult);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case GENERATE_MONTHLY_REPORTS:
 				String monthYear = (String) message.getContent();
 				ArrayList<ParkingReport> monthlyReports = reportController.generateMonthlyReports(monthYear);
 				ret = new Message(MessageType.MONTHLY_REPORTS_RESPONSE, monthlyReports);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case CANCEL_RESERVATION:
@@ -253,20 +509,42 @@ public class ParkingServer extends AbstractServer {
 						ret = new Message(MessageType.CANCELLATION_RESPONSE, "ERROR: Invalid reservation code format");
 					}
 				}
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case GET_SUBSCRIBER_BY_NAME:
 				String subscriberName = (String) message.getContent();
 				subscriber = parkingController.getSubscriberByName(subscriberName);
 				ret = new Message(MessageType.SHOW_SUBSCRIBER_DETAILS, subscriber);
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case GET_ALL_SUBSCRIBERS:
 				List<ParkingSubscriber> allSubs = parkingController.getAllSubscribers();
 				Message response = new Message(MessageType.SHOW_ALL_SUBSCRIBERS, (Serializable) allSubs);
-				client.sendToClient(serialize(response));
+				send(client, response);
+				break;
+
+			case GET_SUBSCRIBER_PAGE:
+				try {
+					String[] window = ((String) message.getContent()).split(",");
+					SubscriberPage page = parkingController.getSubscriberPage(Integer.parseInt(window[0].trim()),
+							Integer.parseInt(window[1].trim()));
+					send(client, new Message(MessageType.SUBSCRIBER_PAGE_RESPONSE, page));
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					ServerLog.log(Level.WARN, "invalid_request", "type", message.getType(), "content", message.getContent());
+				}
+				break;
+
+			case SEARCH_SUBSCRIBERS:
+				try {
+					String[] search = ((String) message.getContent()).split(",", 2);
+					SubscriberPage results = parkingController.searchSubscribers(search[1],
+							Integer.parseInt(search[0].trim()));
+					send(client, new Message(MessageType.SEARCH_SUBSCRIBERS_RESPONSE, results));
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					ServerLog.log(Level.WARN, "invalid_request", "type", message.getType(), "content", message.getContent());
+				}
 				break;
 
 			case REQUEST_EXTENSION:
@@ -291,14 +569,14 @@ public class ParkingServer extends AbstractServer {
 				} catch (NumberFormatException e) {
 					ret = new Message(MessageType.EXTENSION_RESPONSE, "Invalid number format for extension hours.");
 				}
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			case REQUEST_SUBSCRIBER_DATA: {
 				String userName = (String) message.getContent();
 				ParkingSubscriber userInfo = parkingController.getUserInfo(userName); // use your DB instance
 				response = new Message(MessageType.SUBSCRIBER_DATA_RESPONSE, userInfo);
-				client.sendToClient(serialize(response));
+				send(client, response);
 				break;
 			}
 			case EXIT_PARKING:
@@ -313,25 +591,43 @@ public class ParkingServer extends AbstractServer {
 						// New format: parkingCode,userID (with validation)
 						String parkingCode = parts[0].trim();
 						int userID = Integer.parseInt(parts[1].trim());
-						String result = parkingController.exitParking(parkingCode, userID);
-						ret = new Message(MessageType.EXIT_PARKING_RESPONSE, result);
+						String result;
+						if (message.getSessionToken() != null) {
+							// From a kiosk: the user comes from the session
+							ParkingSubscriber kioskUser = kioskSessions.resolve(client, message.getSessionToken());
+							if (kioskUser == null) {
+								result = KIOSK_SESSION_EXPIRED;
+							} else if (kioskUser.getSubscriberID() != userID) {
+								result = "Access denied: This parking session does not belong to your account.";
+							} else {
+								result = operationLog.execute(message.getOperationID(), message.getType(),
+										() -> parkingController.exitParking(parkingCode, userID));
+							}
+						} else {
+							result = operationLog.execute(message.getOperationID(), message.getType(),
+									() -> parkingController.exitParking(parkingCode, userID));
+						}
+						replyToOperation(message, MessageType.EXIT_PARKING_RESPONSE, result, client);
+						break;
 					} else {
 						ret = new Message(MessageType.EXIT_PARKING_RESPONSE, "Invalid exit parking format.");
 					}
 				} catch (NumberFormatException e) {
 					ret = new Message(MessageType.EXIT_PARKING_RESPONSE, "Invalid number format for user ID.");
 				}
-				client.sendToClient(serialize(ret));
+				send(client, ret);
 				break;
 
 			default:
-				System.out.println("Unknown message type: " + message.getType());
+				ServerLog.log(Level.WARN, "unknown_request", "type", message.getType());
 				break;
 			}
 		} catch (Exception e) {
-			e.printStackTrace();
+			ServerLog.log(Level.ERROR, "request_failed", "type", message.getType(), "client", client, "error",
+					e.toString());
+			RequestMetrics.failed();
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, "Server error");
-			client.sendToClient(serialize(ret));
+			send(client, ret);
 		}
 	}
 
@@ -349,7 +645,7 @@ public class ParkingServer extends AbstractServer {
 
 		if (parts.length != 2) {
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, "");
-			client.sendToClient(serialize(ret));
+			send(client, ret);
 			return;
 		}
 
@@ -359,17 +655,19 @@ public class ParkingServer extends AbstractServer {
 			userID = Integer.parseInt(parts[1].trim());
 		} catch (NumberFormatException e) {
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, "");
-			client.sendToClient(serialize(ret));
+			send(client, ret);
 			return;
 		}
 
 		String name = parkingController.getNameByUsernameAndUserID(username, userID);
-		if (name != null) {
+		ParkingSubscriber subscriber = name != null ? parkingController.getSubscriberByID(userID) : null;
+		if (subscriber != null) {
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, name + "," + userID);
+			ret.setSessionToken(kioskSessions.open(client, subscriber));
 		} else {
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, "");
 		}
-		client.sendToClient(serialize(ret));
+		send(client, ret);
 	}
 
 	/**
@@ -381,33 +679,56 @@ public class ParkingServer extends AbstractServer {
 	 */
 	private void handleKioskRFLogin(Message message, ConnectionToClient client) throws IOException {
 		int rfUserID = (Integer) message.getContent();
-		String nameByID = parkingController.getNameByUserID(rfUserID);
+		ParkingSubscriber subscriber = parkingController.getSubscriberByID(rfUserID);
 		Message ret;
-		if (nameByID != null) {
-			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, nameByID + "," + rfUserID);
+		if (subscriber != null && subscriber.getFirstName() != null) {
+			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, subscriber.getFirstName() + "," + rfUserID);
+			ret.setSessionToken(kioskSessions.open(client, subscriber));
 		} else {
 			ret = new Message(MessageType.KIOSK_LOGIN_RESPONSE, "");
 		}
-		client.sendToClient(serialize(ret));
+		send(client, ret);
 	}
 
 	/**
-	 * Handles entrance of vehicle into the parking via kiosk.
+	 * Handles entrance of vehicle into the parking via kiosk. The user is taken
+	 * from the kiosk session; requests without a valid session are rejected.
 	 *
-	 * @param message the request message containing user ID.
+	 * @param message the request message containing user ID and session token.
 	 * @param client  the kiosk client.
 	 * @throws IOException if a communication error occurs.
 	 */
 	private void handleEnterParkingKiosk(Message message, ConnectionToClient client) throws IOException {
-		int enteringUserID = (Integer) message.getContent();
-		Message ret;
-		if (parkingController.isParkingFull()) {
-			ret = new Message(MessageType.ENTER_PARKING_KIOSK_RESPONSE, "FULL");
+		Integer enteringUserID = kioskUserID(message, client);
+		String entryResult;
+		if (enteringUserID == null) {
+			entryResult = KIOSK_SESSION_EXPIRED;
 		} else {
-			String entryResult = parkingController.enterParking(enteringUserID);
-			ret = new Message(MessageType.ENTER_PARKING_KIOSK_RESPONSE, entryResult);
+			entryResult = operationLog.execute(message.getOperationID(), message.getType(),
+					() -> parkingController.enterParking(enteringUserID));
 		}
-		client.sendToClient(serialize(ret));
+		replyToOperation(message, MessageType.ENTER_PARKING_KIOSK_RESPONSE, entryResult, client);
+	}
+
+	/**
+	 * Sends the result of a request that may carry an operation ID. The ID is
+	 * returned with the result. Nothing is sent for a retry whose original
+	 * request is still running, since that request will answer.
+	 *
+	 * @param message the request.
+	 * @param type    the response type.
+	 * @param result  the result, or null if no reply must be sent.
+	 * @param client  the client to answer.
+	 * @throws IOException if a communication error occurs.
+	 */
+	private void replyToOperation(Message message, MessageType type, String result, ConnectionToClient client)
+			throws IOException {
+		if (result == null) {
+			return;
+		}
+		Message ret = new Message(type, result);
+		ret.setOperationID(message.getOperationID());
+		send(client, ret);
 	}
 
 	/**
@@ -421,35 +742,104 @@ public class ParkingServer extends AbstractServer {
 		int parkingCode = (Integer) message.getContent();
 		String retrievalResult = parkingController.retrieveCarByCode(parkingCode);
 		Message ret = new Message(MessageType.RETRIEVE_CAR_KIOSK_RESPONSE, retrievalResult);
-		client.sendToClient(serialize(ret));
+		send(client, ret);
 	}
 
 	/**
-	 * Handles forgotten parking code request from kiosk.
+	 * Handles forgotten parking code request from kiosk. The user is taken from
+	 * the kiosk session; requests without a valid session are rejected.
 	 *
-	 * @param message the request containing the user ID.
+	 * @param message the request containing the user ID and session token.
 	 * @param client  the kiosk client.
 	 * @throws IOException if a communication error occurs.
 	 */
 	private void handleForgotCodeKiosk(Message message, ConnectionToClient client) throws IOException {
-		int forgotUserID = (Integer) message.getContent();
-		String code = parkingController.sendLostParkingCode(forgotUserID);
+		Integer forgotUserID = kioskUserID(message, client);
+		String code = forgotUserID != null ? parkingController.sendLostParkingCode(forgotUserID) : KIOSK_SESSION_EXPIRED;
 		Message ret = new Message(MessageType.FORGOT_CODE_KIOSK_RESPONSE, code);
-		client.sendToClient(serialize(ret));
+		send(client, ret);
 	}
 
 	/**
-	 * Handles parking reservation activation request from kiosk.
+	 * Resolves the user of a kiosk request from its session token. The user ID
+	 * in the message content, if any, must match the session.
 	 *
-	 * @param message the request containing reservation ID.
+	 * @param message the kiosk request.
+	 * @param client  the kiosk client.
+	 * @return the user ID of the session, or null if the session is missing,
+	 *         expired or does not match the content.
+	 */
+	private Integer kioskUserID(Message message, ConnectionToClient client) {
+		ParkingSubscriber subscriber = kioskSessions.resolve(client, message.getSessionToken());
+		if (subscriber == null) {
+			return null;
+		}
+		if (message.getContent() instanceof Integer contentUserID
+				&& contentUserID.intValue() != subscriber.getSubscriberID()) {
+			return null;
+		}
+		return subscriber.getSubscriberID();
+	}
+
+	/**
+	 * Handles parking reservation activation request from kiosk. Requests without
+	 * a valid kiosk session are rejected.
+	 *
+	 * @param message the request containing reservation ID and session token.
 	 * @param client  the kiosk client.
 	 * @throws IOException if a communication error occurs.
 	 */
 	private void handleActivateReservationKiosk(Message message, ConnectionToClient client) throws IOException {
-		int parkingInfoID = (Integer) message.getContent();
-		String activateResult = parkingController.enterParkingWithReservation(parkingInfoID);
-		Message ret = new Message(MessageType.ACTIVATE_RESERVATION_KIOSK_RESPONSE, activateResult);
-		client.sendToClient(serialize(ret));
+		String activateResult;
+		if (kioskSessions.resolve(client, message.getSessionToken()) == null) {
+			activateResult = KIOSK_SESSION_EXPIRED;
+		} else {
+			int parkingInfoID = (Integer) message.getContent();
+			activateResult = operationLog.execute(message.getOperationID(), message.getType(),
+					() -> parkingController.enterParkingWithReservation(parkingInfoID));
+		}
+		replyToOperation(message, MessageType.ACTIVATE_RESERVATION_KIOSK_RESPONSE, activateResult, client);
+	}
+
+	/**
+	 * Handles the replay of operations a kiosk recorded while offline. The
+	 * operations are applied in order; at the first one that fails, the rest are
+	 * returned without an outcome, so that an exit is never applied before the
+	 * entry it ends.
+	 *
+	 * @param message the request containing the list of operations.
+	 * @param client  the kiosk client.
+	 * @throws IOException if a communication error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	private void handleReplayKioskJournal(Message message, ConnectionToClient client) throws IOException {
+		ArrayList<KioskOperation> operations = (ArrayList<KioskOperation>) message.getContent();
+		for (KioskOperation operation : operations) {
+			// Outcome and text are remembered as "OUTCOME:text" once the operation committed
+			String result = operationLog.execute(operation.getOperationID(), message.getType(), () -> {
+				parkingController.replayKioskOperation(operation);
+				return operation.getOutcome() + ":" + operation.getResult();
+			});
+			if (result == null) {
+				operation.setResult(KioskOperation.Outcome.FAILED, "Still being processed");
+			} else {
+				int separator = result.indexOf(':');
+				try {
+					operation.setResult(KioskOperation.Outcome.valueOf(result.substring(0, separator)),
+							result.substring(separator + 1));
+				} catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+					// The ID was used by an online request first
+					operation.setResult(KioskOperation.Outcome.DUPLICATE, result);
+				}
+			}
+			ServerLog.log(Level.INFO, "kiosk_operation_replayed", "operation", operation.getOperationID(), "outcome",
+					operation.getOutcome(), "result", operation.getResult());
+			if (operation.getOutcome() == KioskOperation.Outcome.FAILED) {
+				break;
+			}
+		}
+		Message ret = new Message(MessageType.KIOSK_JOURNAL_REPLAY_RESPONSE, operations);
+		send(client, ret);
 	}
 
 	/**
@@ -467,20 +857,42 @@ public class ParkingServer extends AbstractServer {
 				disconnect(client);
 				break;
 
+			case "LoggedOut":
+				kioskSessions.close(client);
+				break;
+
 			default:
-				System.out.println("Unknown string command: " + arr[0]);
+				ServerLog.log(Level.WARN, "unknown_command", "command", arr[0]);
 				break;
 			}
 		} catch (Exception e) {
-			e.printStackTrace();
+			ServerLog.log(Level.ERROR, "command_failed", "command", message, "client", client, "error", e.toString());
 			try {
-				client.sendToClient("error " + e.getMessage());
+				synchronized (client) {
+					client.sendToClient("error " + e.getMessage());
+				}
 			} catch (IOException ioException) {
-				ioException.printStackTrace();
+				ServerLog.log(Level.WARN, "reply_failed", "client", client, "error", ioException.getMessage());
 			}
 		}
 	}
 
+	/**
+	 * Sends a message to a client. Replies from worker threads and the heartbeat
+	 * answered on the connection's reader thread may overlap, so writes to one
+	 * client are serialized on its connection.
+	 *
+	 * @param client the client
+	 * @param msg    the message
+	 * @throws IOException if the message could not be sent
+	 */
+	private void send(ConnectionToClient client, Message msg) throws IOException {
+		byte[] data = serialize(msg);
+		synchronized (client) {
+			client.sendToClient(data);
+		}
+	}
+
 	/**
 	 * Serializes a Message object to a byte array.
 	 *
@@ -488,6 +900,7 @@ public class ParkingServer extends AbstractServer {
 	 * @return the byte array representation of the message.
 	 */
 	private byte[] serialize(Message msg) {
+		long started = System.nanoTime();
 		try {
 			ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
 			ObjectOutputStream out = new ObjectOutputStream(byteStream);
@@ -495,7 +908,9 @@ public class ParkingServer extends AbstractServer {
 			out.flush();
 			return byteStream.toByteArray();
 		} catch (Exception ex) {
-			ex.printStackTrace();
+			ServerLog.log(Level.ERROR, "encode_failed", "type", msg.getType(), "error", ex.toString());
+		} finally {
+			RequestMetrics.addEncodeNanos(System.nanoTime() - started);
 		}
 		return null;
 	}
@@ -513,7 +928,7 @@ public class ParkingServer extends AbstractServer {
 			ObjectInputStream objectStream = new ObjectInputStream(byteStream);
 			return objectStream.readObject();
 		} catch (Exception ex) {
-			ex.printStackTrace();
+			ServerLog.log(Level.WARN, "decode_failed", "error", ex.toString());
 		}
 		return null;
 	}
@@ -525,6 +940,10 @@ public class ParkingServer extends AbstractServer {
 	protected void serverStarted() {
 		System.out.println("ParkB Server listening for connections on port " + getPort());
 		parkingController.initializeParkingSpots();
+		asyncParkingController = new AsyncParkingController(parkingController);
+		OccupancyService.getInstance().startService();
+		DailySketchService.getInstance().startService();
+		RequestMetrics.start(() -> scheduler.getSloReport() + DBController.getInstance().getStatistics());
 	}
 
 	/**
@@ -533,6 +952,8 @@ public class ParkingServer extends AbstractServer {
 	 */
 	protected void serverStopped() {
 		System.out.println("ParkB Server has stopped listening for connections.");
+		System.out.print(scheduler.getSloReport());
+		ServerLog.flush();
 		if (parkingController != null) {
 			parkingController.shutdown();
 			System.out.println("Auto-cancellation service shut down successfully");
@@ -547,6 +968,7 @@ public class ParkingServer extends AbstractServer {
 	@Override
 	protected synchronized void clientConnected(ConnectionToClient client) {
 		String clientIP = client.getInetAddress().getHostAddress();
+		client.setInfo(CLIENT_IP, clientIP);
 		clientsMap.put(clientIP, "ClientIP: " + client.getInetAddress().getHostAddress() + " status: connected");
 
 		System.out.println("Client connected: " + clientIP);
@@ -557,15 +979,47 @@ public class ParkingServer extends AbstractServer {
 	}
 
 	/**
-	 * Handles disconnection of a client.
+	 * Triggered when the connection to a client is closed.
+	 *
+	 * @param client the disconnected client.
+	 */
+	@Override
+	protected synchronized void clientDisconnected(ConnectionToClient client) {
+		disconnect(client);
+	}
+
+	/**
+	 * Triggered when the connection to a client fails, e.g. because the client
+	 * crashed or its socket was dropped.
+	 *
+	 * @param client    the client.
+	 * @param exception the exception raised.
+	 */
+	@Override
+	protected synchronized void clientException(ConnectionToClient client, Throwable exception) {
+		disconnect(client);
+	}
+
+	/**
+	 * Handles disconnection of a client: closes its kiosk session and drops its
+	 * queued requests. Called for the ClientDisconnect command and when the
+	 * connection closes or fails, so it may run more than once per client.
 	 *
 	 * @param client the disconnected client.
 	 */
 	protected synchronized void disconnect(ConnectionToClient client) {
-		String clientIP = client.getInetAddress().getHostAddress();
-		clientsMap.put(clientIP, "disconnected");
-		clientsMap.put(clientIP, "ClientIP: " + client.getInetAddress().getHostAddress() + " status: disconnected");
+		kioskSessions.close(client);
+		int dropped = scheduler.discard(client);
+		String clientIP = (String) client.getInfo(CLIENT_IP);
+		if (clientIP == null) {
+			return;
+		}
+		client.setInfo(CLIENT_IP, null);
+		clientsMap.put(clientIP, "ClientIP: " + clientIP + " status: disconnected");
 		System.out.println("Client disconnected: " + clientIP);
+		if (dropped > 0) {
+			ServerLog.log(Level.INFO, "queued_requests_dropped", "client", clientIP, "count", dropped);
+		}
 
 		if (spf != null) {
 			spf.printConnection(clientsMap);
@@ -576,6 +1030,10 @@ public class ParkingServer extends AbstractServer {
 	 * Gracefully shuts down the server and any internal services.
 	 */
 	public synchronized void shutdown() {
+		scheduler.shutdown();
+		if (asyncParkingController != null) {
+			asyncParkingController.shutdown();
+		}
 		if (parkingController != null) {
 			parkingController.shutdown();
 		}
@@ -0,0 +1,471 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import common.Message.MessageType;
+import services.LatencyHistogram;
+
+/**
+ * ||in SERVER||
+ *
+ * Request counts, error counts and latency histograms per {@link MessageType}.
+ * The latency of a request is split into the time to decode it, the time it
+ * waited in the {@link RequestScheduler} queue, the time it spent on database
+ * connections (including the wait for a free one) and the time to encode its
+ * replies; {@link Phase#TOTAL} runs from the arrival of the request to the end
+ * of its handler. Recording never takes a lock, so it can stay on in
+ * production.
+ *
+ * A request is followed by a {@link Trace}. While a worker runs the request,
+ * the trace is bound to the thread, so {@link DBController} and the encoder
+ * can add their time without knowing the request. Asynchronous handlers keep
+ * it on their I/O threads through {@link #propagating(Executor)}.
+ *
+ * {@link #getReport()} lists the request types by their total time, which
+ * shows the operations that dominate latency. The report is printed every
+ * {@code bpark.metrics.dumpSeconds} (default 60, 0 turns it off) and shown in
+ * the server window.
+ */
+public class RequestMetrics {
+
+	/**
+	 * Parts of the latency of a request.
+	 */
+	public enum Phase {
+		/** Deserializing the request */
+		DECODE,
+		/** Waiting in the scheduler queue */
+		QUEUE,
+		/** Waiting for and using database connections */
+		DB,
+		/** Serializing replies */
+		ENCODE,
+		/** From arrival to the end of the handler */
+		TOTAL
+	}
+
+	/** Interval between printed reports in seconds, 0 = never */
+	private static final int DUMP_INTERVAL_SECONDS = Integer.getInteger("bpark.metrics.dumpSeconds", 60);
+
+	/** Request types shown in a report */
+	private static final int REPORT_ROWS = 15;
+
+	/**
+	 * Counters and histograms of one request type.
+	 */
+	private static class TypeMetrics {
+		/** Requests handled or rejected */
+		final LongAdder requests = new LongAdder();
+		/** Requests whose handler failed */
+		final LongAdder errors = new LongAdder();
+		/** Requests rejected because the server was busy */
+		final LongAdder rejected = new LongAdder();
+		/** Latency histograms by phase */
+		final EnumMap<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+
+		/**
+		 * Creates empty metrics.
+		 */
+		TypeMetrics() {
+			for (Phase phase : Phase.values()) {
+				phases.put(phase, new LatencyHistogram());
+			}
+		}
+	}
+
+	/**
+	 * Measurements of one request, from its arrival to the end of its handler.
+	 */
+	public static class Trace {
+		/** Request ID, unique while the server runs */
+		private final long id = nextId.incrementAndGet();
+		/** Metrics of the request type */
+		private final TypeMetrics metrics;
+		/** {@link System#nanoTime()} at arrival */
+		private final long receivedAt;
+		/** {@link System#nanoTime()} at which it was queued */
+		private final long queuedAt;
+		/** Time on database connections */
+		private final AtomicLong dbNanos = new AtomicLong();
+		/** Time encoding replies */
+		private final AtomicLong encodeNanos = new AtomicLong();
+		/** Set when the handler failed */
+		private volatile boolean failed = false;
+		/** Set once the measurements are recorded */
+		private final AtomicBoolean finished = new AtomicBoolean(false);
+
+		/**
+		 * Creates a trace.
+		 *
+		 * @param metrics    metrics of the request type
+		 * @param receivedAt {@link System#nanoTime()} at arrival
+		 * @param queuedAt   {@link System#nanoTime()} after decoding
+		 */
+		private Trace(TypeMetrics metrics, long receivedAt, long queuedAt) {
+			this.metrics = metrics;
+			this.receivedAt = receivedAt;
+			this.queuedAt = queuedAt;
+		}
+
+		/**
+		 * Returns the request ID, which log events of the request carry.
+		 *
+		 * @return the request ID
+		 */
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * Notes that a worker starts the request, and binds the trace to the
+		 * current thread.
+		 */
+		public void start() {
+			metrics.phases.get(Phase.QUEUE).recordNanos(System.nanoTime() - queuedAt);
+			current.set(this);
+		}
+
+		/**
+		 * Unbinds the trace from the current thread without finishing it, after
+		 * an asynchronous handler was started.
+		 */
+		public void detach() {
+			if (current.get() == this) {
+				current.remove();
+			}
+		}
+
+		/**
+		 * Marks the request as failed.
+		 */
+		public void fail() {
+			failed = true;
+		}
+
+		/**
+		 * Records the measurements and unbinds the trace. Only the first call has
+		 * an effect.
+		 */
+		public void finish() {
+			detach();
+			if (!finished.compareAndSet(false, true)) {
+				return;
+			}
+			metrics.phases.get(Phase.DB).recordNanos(dbNanos.get());
+			metrics.phases.get(Phase.ENCODE).recordNanos(encodeNanos.get());
+			metrics.phases.get(Phase.TOTAL).recordNanos(System.nanoTime() - receivedAt);
+			if (failed) {
+				metrics.errors.increment();
+			}
+		}
+
+		/**
+		 * Notes that the request was rejected because the server was busy.
+		 */
+		public void reject() {
+			finished.set(true);
+			metrics.rejected.increment();
+		}
+	}
+
+	/**
+	 * Counters and histogram snapshots of one request type.
+	 */
+	public static class TypeSnapshot {
+		/** The request type */
+		private final MessageType type;
+		/** Requests handled or rejected */
+		private final long requests;
+		/** Requests whose handler failed */
+		private final long errors;
+		/** Requests rejected because the server was busy */
+		private final long rejected;
+		/** Histogram snapshots by phase */
+		private final EnumMap<Phase, LatencyHistogram.Snapshot> phases = new EnumMap<>(Phase.class);
+
+		/**
+		 * Copies the metrics of a request type.
+		 *
+		 * @param type    the request type
+		 * @param metrics its metrics
+		 */
+		private TypeSnapshot(MessageType type, TypeMetrics metrics) {
+			this.type = type;
+			this.requests = metrics.requests.sum();
+			this.errors = metrics.errors.sum();
+			this.rejected = metrics.rejected.sum();
+			for (Phase phase : Phase.values()) {
+				phases.put(phase, metrics.phases.get(phase).snapshot());
+			}
+		}
+
+		/**
+		 * Returns the request type.
+		 *
+		 * @return the type
+		 */
+		public MessageType getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the number of requests handled or rejected.
+		 *
+		 * @return request count
+		 */
+		public long getRequests() {
+			return requests;
+		}
+
+		/**
+		 * Returns the number of requests whose handler failed.
+		 *
+		 * @return error count
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * Returns the number of requests rejected because the server was busy.
+		 *
+		 * @return rejected count
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+
+		/**
+		 * Returns the latency histogram of a phase.
+		 *
+		 * @param phase the phase
+		 * @return histogram snapshot in microseconds
+		 */
+		public LatencyHistogram.Snapshot getLatency(Phase phase) {
+			return phases.get(phase);
+		}
+	}
+
+	/** Metrics by request type ordinal, created on first use */
+	private static final AtomicReferenceArray<TypeMetrics> byType = new AtomicReferenceArray<>(
+			MessageType.values().length);
+
+	/** Last request ID handed out */
+	private static final AtomicLong nextId = new AtomicLong();
+
+	/** Trace of the request the current thread works on */
+	private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+
+	/** Further report text, e.g. scheduler and pool statistics, or null */
+	private static volatile Supplier<String> extraReport;
+
+	/** Prints the report periodically, null until started */
+	private static ScheduledExecutorService dumper;
+
+	/**
+	 * Not instantiable.
+	 */
+	private RequestMetrics() {
+	}
+
+	/**
+	 * Starts following a decoded request.
+	 *
+	 * @param type       the request type
+	 * @param receivedAt {@link System#nanoTime()} at which the raw request
+	 *                   arrived
+	 * @return the trace of the request
+	 */
+	public static Trace received(MessageType type, long receivedAt) {
+		long now = System.nanoTime();
+		TypeMetrics metrics = metricsOf(type);
+		metrics.requests.increment();
+		metrics.phases.get(Phase.DECODE).recordNanos(now - receivedAt);
+		return new Trace(metrics, receivedAt, now);
+	}
+
+	/**
+	 * Returns the ID of the request the current thread works on.
+	 *
+	 * @return the request ID, or 0 outside a request
+	 */
+	public static long currentRequestId() {
+		Trace trace = current.get();
+		return trace == null ? 0 : trace.id;
+	}
+
+	/**
+	 * Adds database time to the request of the current thread, if any.
+	 *
+	 * @param nanos time waiting for or holding a connection
+	 */
+	public static void addDbNanos(long nanos) {
+		Trace trace = current.get();
+		if (trace != null) {
+			trace.dbNanos.addAndGet(nanos);
+		}
+	}
+
+	/**
+	 * Adds encoding time to the request of the current thread, if any.
+	 *
+	 * @param nanos time serializing a reply
+	 */
+	public static void addEncodeNanos(long nanos) {
+		Trace trace = current.get();
+		if (trace != null) {
+			trace.encodeNanos.addAndGet(nanos);
+		}
+	}
+
+	/**
+	 * Marks the request of the current thread as failed, if any.
+	 */
+	public static void failed() {
+		Trace trace = current.get();
+		if (trace != null) {
+			trace.fail();
+		}
+	}
+
+	/**
+	 * Wraps an executor so that its tasks run with the trace of the thread that
+	 * submitted them.
+	 *
+	 * @param executor the executor
+	 * @return the wrapping executor
+	 */
+	public static Executor propagating(Executor executor) {
+		return task -> {
+			Trace trace = current.get();
+			if (trace == null) {
+				executor.execute(task);
+				return;
+			}
+			executor.execute(() -> {
+				Trace previous = current.get();
+				current.set(trace);
+				try {
+					task.run();
+				} finally {
+					current.set(previous);
+				}
+			});
+		};
+	}
+
+	/**
+	 * Copies the metrics of all request types seen so far.
+	 *
+	 * @return one snapshot per request type
+	 */
+	public static List<TypeSnapshot> snapshot() {
+		List<TypeSnapshot> result = new ArrayList<>();
+		MessageType[] types = MessageType.values();
+		for (int i = 0; i < types.length; i++) {
+			TypeMetrics metrics = byType.get(i);
+			if (metrics != null) {
+				result.add(new TypeSnapshot(types[i], metrics));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a report of the request types with the most total time, followed
+	 * by the extra report text.
+	 *
+	 * @return multi-line report text
+	 */
+	public static String getReport() {
+		List<TypeSnapshot> snapshots = snapshot();
+		snapshots.sort(Comparator.comparingLong(
+				(TypeSnapshot s) -> s.getLatency(Phase.TOTAL).getSumMicros()).reversed());
+
+		StringBuilder sb = new StringBuilder("Requests by total time (ms; phases are means):\n");
+		sb.append(String.format("  %-28s %-11s %7s %5s %5s | %7s %7s %7s %7s | %6s %6s %6s %6s%n", "type",
+				"class", "n", "err", "rej", "p50", "p95", "p99", "max", "decode", "queue", "db", "encode"));
+		for (int i = 0; i < snapshots.size() && i < REPORT_ROWS; i++) {
+			TypeSnapshot s = snapshots.get(i);
+			LatencyHistogram.Snapshot total = s.getLatency(Phase.TOTAL);
+			sb.append(String.format(
+					"  %-28s %-11s %7d %5d %5d | %7.1f %7.1f %7.1f %7.1f | %6.1f %6.1f %6.1f %6.1f%n",
+					s.getType(), RequestScheduler.classify(s.getType()), s.getRequests(), s.getErrors(),
+					s.getRejected(), millis(total.getValueAtQuantile(0.5)), millis(total.getValueAtQuantile(0.95)),
+					millis(total.getValueAtQuantile(0.99)), millis(total.getMaxMicros()),
+					s.getLatency(Phase.DECODE).getMeanMicros() / 1000, s.getLatency(Phase.QUEUE).getMeanMicros() / 1000,
+					s.getLatency(Phase.DB).getMeanMicros() / 1000, s.getLatency(Phase.ENCODE).getMeanMicros() / 1000));
+		}
+		if (snapshots.size() > REPORT_ROWS) {
+			sb.append("  ... ").append(snapshots.size() - REPORT_ROWS).append(" more types\n");
+		}
+		Supplier<String> extra = extraReport;
+		if (extra != null) {
+			sb.append(extra.get());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sets the extra report text and starts printing the report every
+	 * {@link #DUMP_INTERVAL_SECONDS}.
+	 *
+	 * @param extra supplies text appended to the report
+	 */
+	public static synchronized void start(Supplier<String> extra) {
+		extraReport = extra;
+		if (dumper != null || DUMP_INTERVAL_SECONDS <= 0) {
+			return;
+		}
+		dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics-dump");
+			t.setDaemon(true);
+			return t;
+		});
+		dumper.scheduleAtFixedRate(() -> {
+			try {
+				System.out.print(getReport());
+			} catch (Exception e) {
+				System.out.println("Error printing request metrics: " + e.getMessage());
+			}
+		}, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Returns the metrics of a request type, creating them on first use.
+	 *
+	 * @param type the request type
+	 * @return its metrics
+	 */
+	private static TypeMetrics metricsOf(MessageType type) {
+		int index = type.ordinal();
+		TypeMetrics metrics = byType.get(index);
+		if (metrics == null) {
+			byType.compareAndSet(index, null, new TypeMetrics());
+			metrics = byType.get(index);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Converts microseconds to milliseconds.
+	 *
+	 * @param micros duration in microseconds
+	 * @return duration in milliseconds
+	 */
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+}
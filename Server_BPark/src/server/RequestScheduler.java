@@ -0,0 +1,492 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import common.Message.MessageType;
+import server.ServerLog.Level;
+import services.DurationSketch;
+
+/**
+ * ||in SERVER||
+ *
+ * Runs client requests on a small pool of worker threads, ordered by priority
+ * class instead of arrival order, so a car waiting at the gate is not held up
+ * by a manager generating reports.
+ *
+ * Every request type belongs to one {@link Priority}. Each class has its own
+ * bounded queue; a request that does not fit is rejected instead of growing
+ * the backlog. Workers always take the highest class that has a runnable
+ * request, with two exceptions:
+ * <ul>
+ * <li>Back-office and analytics requests together never occupy all workers,
+ * and at most one analytics request runs at a time, so a worker is always
+ * left for gate and subscriber requests.</li>
+ * <li>A request that has waited longer than its class's aging limit is served
+ * before higher classes (starvation protection).</li>
+ * </ul>
+ * Within a class, clients are served in round-robin order, so one busy client
+ * cannot starve the others. A client never has more than one request running,
+ * which keeps its requests in order and its connection written by one thread
+ * at a time.
+ *
+ * Handlers that complete asynchronously (see
+ * {@link #submitAsync(Object, MessageType, Supplier)}) only hold a worker
+ * while they are started; the request still counts until its future completes.
+ *
+ * Queue wait and total latency are recorded per class and compared with the
+ * class's latency objective in {@link #getSloReport()}.
+ */
+public class RequestScheduler {
+
+	/**
+	 * Priority classes, highest first.
+	 */
+	public enum Priority {
+		/** Kiosk operations of a car at the gate */
+		GATE(200, 0, 200),
+		/** Subscriber and attendant screens waiting for an answer */
+		INTERACTIVE(200, 2_000, 500),
+		/** Registration, subscriber lists and other back-office work */
+		BACK_OFFICE(100, 5_000, 2_000),
+		/** Reports and history charts */
+		ANALYTICS(20, 15_000, 10_000);
+
+		/** Maximum number of queued requests */
+		final int capacity;
+		/** Wait after which a request is served before higher classes, 0 = never */
+		final long agingMillis;
+		/** Latency objective for the 95th percentile */
+		final long sloMillis;
+
+		/**
+		 * Creates a priority class.
+		 *
+		 * @param capacity    maximum number of queued requests
+		 * @param agingMillis wait after which a request is promoted, 0 = never
+		 * @param sloMillis   latency objective for the 95th percentile
+		 */
+		Priority(int capacity, long agingMillis, long sloMillis) {
+			this.capacity = capacity;
+			this.agingMillis = agingMillis;
+			this.sloMillis = sloMillis;
+		}
+	}
+
+	/**
+	 * A queued request.
+	 */
+	private static class Task {
+		/** The client that sent the request */
+		final Object client;
+		/** The request type (for logging) */
+		final MessageType type;
+		/** The handler to run */
+		final Runnable work;
+		/** The handler to start, for requests that complete asynchronously */
+		final Supplier<CompletableFuture<?>> asyncWork;
+		/** Time the request was queued */
+		final long enqueuedAt = System.nanoTime();
+
+		/**
+		 * Creates a task.
+		 *
+		 * @param client the client that sent the request
+		 * @param type   the request type
+		 * @param work      the handler to run, or null
+		 * @param asyncWork the asynchronous handler to start, or null
+		 */
+		Task(Object client, MessageType type, Runnable work, Supplier<CompletableFuture<?>> asyncWork) {
+			this.client = client;
+			this.type = type;
+			this.work = work;
+			this.asyncWork = asyncWork;
+		}
+	}
+
+	/**
+	 * Queue and statistics of one priority class.
+	 */
+	private static class ClassQueue {
+		/** Pending requests per client */
+		final Map<Object, ArrayDeque<Task>> perClient = new HashMap<>();
+		/** Clients with pending requests, in round-robin order */
+		final ArrayDeque<Object> rotation = new ArrayDeque<>();
+		/** Number of pending requests */
+		int size;
+		/** Number of running requests */
+		int running;
+		/** Time from queuing to start, in milliseconds */
+		final DurationSketch waitMillis = new DurationSketch();
+		/** Time from queuing to completion, in milliseconds */
+		final DurationSketch latencyMillis = new DurationSketch();
+		/** Number of requests rejected because the queue was full */
+		long rejected;
+		/** Number of requests that took longer than the objective */
+		long sloMisses;
+		/** Number of requests served early because of their age */
+		long promoted;
+	}
+
+	/** Number of worker threads */
+	private static final int WORKERS = Math.max(2, Integer.getInteger("bpark.scheduler.workers", 4));
+
+	/** Queues by class */
+	private final EnumMap<Priority, ClassQueue> queues = new EnumMap<>(Priority.class);
+
+	/** Clients that have a request running */
+	private final Set<Object> busyClients = new HashSet<>();
+
+	/** Worker threads */
+	private final List<Thread> workers = new ArrayList<>();
+
+	/** Set when the scheduler is shut down */
+	private boolean stopped = false;
+
+	/**
+	 * Creates the scheduler and starts its worker threads.
+	 */
+	public RequestScheduler() {
+		for (Priority priority : Priority.values()) {
+			queues.put(priority, new ClassQueue());
+		}
+		for (int i = 0; i < WORKERS; i++) {
+			Thread worker = new Thread(this::workerLoop, "RequestWorker-" + (i + 1));
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+		System.out.println("Request scheduler started (" + WORKERS + " workers)");
+	}
+
+	/**
+	 * Returns the priority class of a request type.
+	 *
+	 * @param type the request type
+	 * @return its priority class
+	 */
+	public static Priority classify(MessageType type) {
+		switch (type) {
+		case KIOSK_ID_LOGIN:
+		case KIOSK_RF_LOGIN:
+		case ENTER_PARKING_KIOSK:
+		case RETRIEVE_CAR_KIOSK:
+		case FORGOT_CODE_KIOSK:
+		case ACTIVATE_RESERVATION_KIOSK:
+		case EXIT_PARKING:
+			return Priority.GATE;
+
+		case REGISTER_SUBSCRIBER:
+		case GET_ALL_SUBSCRIBERS:
+		case GET_SUBSCRIBER_BY_NAME:
+		case GET_SUBSCRIBER_PAGE:
+		case GET_KIOSK_SNAPSHOT:
+		case REPLAY_KIOSK_JOURNAL:
+			return Priority.BACK_OFFICE;
+
+		case MANAGER_GET_REPORTS:
+		case GENERATE_MONTHLY_REPORTS:
+		case GET_OCCUPANCY_HISTORY:
+			return Priority.ANALYTICS;
+
+		default:
+			return Priority.INTERACTIVE;
+		}
+	}
+
+	/**
+	 * Queues a request.
+	 *
+	 * @param client the client that sent the request (used for fairness and
+	 *               ordering)
+	 * @param type   the request type
+	 * @param work   the handler to run
+	 * @return true if the request was queued, false if its class's queue is full
+	 *         or the scheduler was shut down
+	 */
+	public boolean submit(Object client, MessageType type, Runnable work) {
+		return enqueue(new Task(client, type, work, null));
+	}
+
+	/**
+	 * Queues a request whose handler completes asynchronously. A worker only
+	 * starts the handler and is then free for other requests; the request counts
+	 * as running, and the client as busy, until the returned future completes.
+	 *
+	 * @param client the client that sent the request (used for fairness and
+	 *               ordering)
+	 * @param type   the request type
+	 * @param work   starts the handler and returns a future that completes when
+	 *               the reply was sent
+	 * @return true if the request was queued, false if its class's queue is full
+	 *         or the scheduler was shut down
+	 */
+	public boolean submitAsync(Object client, MessageType type, Supplier<CompletableFuture<?>> work) {
+		return enqueue(new Task(client, type, null, work));
+	}
+
+	/**
+	 * Adds a task to the queue of its class.
+	 *
+	 * @param task the task
+	 * @return true if queued, false if the queue is full or the scheduler was
+	 *         shut down
+	 */
+	private synchronized boolean enqueue(Task task) {
+		Object client = task.client;
+		MessageType type = task.type;
+		ClassQueue queue = queues.get(classify(type));
+		if (stopped || queue.size >= classify(type).capacity) {
+			queue.rejected++;
+			return false;
+		}
+		ArrayDeque<Task> pending = queue.perClient.get(client);
+		if (pending == null) {
+			pending = new ArrayDeque<>();
+			queue.perClient.put(client, pending);
+			queue.rotation.addLast(client);
+		}
+		pending.addLast(task);
+		queue.size++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Drops the queued requests of a client that disconnected. A request that is
+	 * already running finishes normally.
+	 *
+	 * @param client the client
+	 * @return number of dropped requests
+	 */
+	public synchronized int discard(Object client) {
+		int dropped = 0;
+		for (ClassQueue queue : queues.values()) {
+			ArrayDeque<Task> pending = queue.perClient.remove(client);
+			if (pending != null) {
+				queue.rotation.remove(client);
+				queue.size -= pending.size();
+				dropped += pending.size();
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Stops the workers. Queued requests are dropped.
+	 */
+	public void shutdown() {
+		synchronized (this) {
+			stopped = true;
+			notifyAll();
+		}
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * Returns a report of queue wait, latency and objective misses per class.
+	 *
+	 * @return multi-line report text
+	 */
+	public synchronized String getSloReport() {
+		StringBuilder sb = new StringBuilder("Request latency by priority (ms):\n");
+		for (Priority priority : Priority.values()) {
+			ClassQueue queue = queues.get(priority);
+			long count = queue.latencyMillis.getTotalCount();
+			long p95 = queue.latencyMillis.getValueAtQuantile(0.95);
+			sb.append(String.format(
+					"  %-11s n=%d wait p50=%d p95=%d | latency p50=%d p95=%d p99=%d max=%d | SLO p95<=%d %s, %d misses, %d promoted, %d rejected, %d queued%n",
+					priority, count, queue.waitMillis.getValueAtQuantile(0.5),
+					queue.waitMillis.getValueAtQuantile(0.95), queue.latencyMillis.getValueAtQuantile(0.5), p95,
+					queue.latencyMillis.getValueAtQuantile(0.99), count == 0 ? 0 : queue.latencyMillis.getMax(),
+					priority.sloMillis, count == 0 ? "-" : p95 <= priority.sloMillis ? "met" : "MISSED",
+					queue.sloMisses, queue.promoted, queue.rejected, queue.size));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Takes requests and runs them until the scheduler is shut down.
+	 */
+	private void workerLoop() {
+		while (true) {
+			Task task;
+			Priority priority;
+			synchronized (this) {
+				Map.Entry<Priority, Task> next;
+				while ((next = takeNext()) == null) {
+					if (stopped) {
+						return;
+					}
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						if (stopped) {
+							return;
+						}
+					}
+				}
+				priority = next.getKey();
+				task = next.getValue();
+			}
+
+			long started = System.nanoTime();
+			if (task.asyncWork != null) {
+				CompletableFuture<?> future;
+				try {
+					future = task.asyncWork.get();
+				} catch (Exception e) {
+					ServerLog.log(Level.WARN, "request_failed", "type", task.type, "error", e.getMessage());
+					future = CompletableFuture.completedFuture(null);
+				}
+				future.whenComplete((result, e) -> {
+					if (e != null) {
+						ServerLog.log(Level.WARN, "request_failed", "type", task.type, "error", e.getMessage());
+					}
+					finished(task, priority, started);
+				});
+				continue;
+			}
+			try {
+				task.work.run();
+			} catch (Exception e) {
+				ServerLog.log(Level.WARN, "request_failed", "type", task.type, "error", e.getMessage());
+			}
+			finished(task, priority, started);
+		}
+	}
+
+	/**
+	 * Records a finished request and frees its client.
+	 *
+	 * @param task     the request
+	 * @param priority its class
+	 * @param started  {@link System#nanoTime()} at which it was started
+	 */
+	private synchronized void finished(Task task, Priority priority, long started) {
+		long finished = System.nanoTime();
+		ClassQueue queue = queues.get(priority);
+		queue.running--;
+		busyClients.remove(task.client);
+		long latency = (finished - task.enqueuedAt) / 1_000_000;
+		queue.waitMillis.record((started - task.enqueuedAt) / 1_000_000);
+		queue.latencyMillis.record(latency);
+		if (latency > priority.sloMillis) {
+			queue.sloMisses++;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Removes the next request to run, if any. Must be called while holding the
+	 * lock.
+	 *
+	 * @return the request and its class, or null if no request can run now
+	 */
+	private Map.Entry<Priority, Task> takeNext() {
+		if (stopped) {
+			return null;
+		}
+		long now = System.nanoTime();
+
+		// Starvation protection: an over-age request goes first
+		for (Priority priority : Priority.values()) {
+			if (priority.agingMillis > 0 && canRun(priority)
+					&& oldestWaitMillis(queues.get(priority), now) > priority.agingMillis) {
+				Task task = poll(priority);
+				if (task != null) {
+					queues.get(priority).promoted++;
+					return Map.entry(priority, task);
+				}
+			}
+		}
+
+		for (Priority priority : Priority.values()) {
+			if (canRun(priority)) {
+				Task task = poll(priority);
+				if (task != null) {
+					return Map.entry(priority, task);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks the concurrency limits of a class.
+	 *
+	 * @param priority the class
+	 * @return true if another request of this class may start
+	 */
+	private boolean canRun(Priority priority) {
+		int background = queues.get(Priority.BACK_OFFICE).running + queues.get(Priority.ANALYTICS).running;
+		switch (priority) {
+		case ANALYTICS:
+			return queues.get(Priority.ANALYTICS).running < 1 && background < WORKERS - 1;
+		case BACK_OFFICE:
+			return background < WORKERS - 1;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Returns how long the oldest request of an idle client in a class has
+	 * waited.
+	 *
+	 * @param queue the class's queue
+	 * @param now   current {@link System#nanoTime()}
+	 * @return wait in milliseconds, or 0 if nothing can run
+	 */
+	private long oldestWaitMillis(ClassQueue queue, long now) {
+		long oldest = 0;
+		for (Map.Entry<Object, ArrayDeque<Task>> entry : queue.perClient.entrySet()) {
+			if (!busyClients.contains(entry.getKey())) {
+				oldest = Math.max(oldest, (now - entry.getValue().peekFirst().enqueuedAt) / 1_000_000);
+			}
+		}
+		return oldest;
+	}
+
+	/**
+	 * Removes the next request of a class, taking clients in round-robin order
+	 * and skipping clients that already have a request running.
+	 *
+	 * @param priority the class
+	 * @return the request, or null if no client of this class can run now
+	 */
+	private Task poll(Priority priority) {
+		ClassQueue queue = queues.get(priority);
+		Iterator<Object> it = queue.rotation.iterator();
+		while (it.hasNext()) {
+			Object client = it.next();
+			if (busyClients.contains(client)) {
+				continue;
+			}
+			it.remove();
+			ArrayDeque<Task> pending = queue.perClient.get(client);
+			Task task = pending.pollFirst();
+			if (pending.isEmpty()) {
+				queue.perClient.remove(client);
+			} else {
+				queue.rotation.addLast(client);
+			}
+			queue.size--;
+			queue.running++;
+			busyClients.add(client);
+			return task;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,352 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * Applies versioned schema changes to the database on server startup. Every
+ * migration has a version number; the versions already applied are stored in
+ * the schema_version table, so each migration runs exactly once per database.
+ * Migrations run in version order and the runner stops at the first failure,
+ * so a later migration never runs on top of a missing earlier one.
+ *
+ * New schema changes are added at the end of {@link #migrations()} with the
+ * next version number. Released migrations must not be edited.
+ */
+public class SchemaMigrator {
+
+	/**
+	 * A single schema change.
+	 */
+	@FunctionalInterface
+	private interface Step {
+		/**
+		 * Applies the change.
+		 *
+		 * @param conn the connection to use
+		 * @throws SQLException if the change fails
+		 */
+		void apply(Connection conn) throws SQLException;
+	}
+
+	/**
+	 * A versioned migration: a version number, a description and the change.
+	 */
+	private static class Migration {
+		/** Version number, unique and increasing */
+		final int version;
+		/** Short description stored in schema_version */
+		final String description;
+		/** The change to apply */
+		final Step step;
+
+		/**
+		 * Creates a migration.
+		 *
+		 * @param version     version number
+		 * @param description short description
+		 * @param step        the change to apply
+		 */
+		Migration(int version, String description, Step step) {
+			this.version = version;
+			this.description = description;
+			this.step = step;
+		}
+	}
+
+	/**
+	 * Private constructor; the class only has static methods.
+	 */
+	private SchemaMigrator() {
+	}
+
+	/**
+	 * Returns all migrations in version order.
+	 *
+	 * @return list of migrations
+	 */
+	private static List<Migration> migrations() {
+		List<Migration> list = new ArrayList<>();
+
+		list.add(new Migration(1, "Create daily_sketches table", conn -> execute(conn, """
+				CREATE TABLE IF NOT EXISTS daily_sketches (
+				    Stat_Date DATE NOT NULL,
+				    Metric VARCHAR(32) NOT NULL,
+				    Sketch BLOB NOT NULL,
+				    Rebuilt_At DATETIME NULL,
+				    PRIMARY KEY (Stat_Date, Metric)
+				)
+				""")));
+
+		list.add(new Migration(2, "Unique key on users.UserName",
+				conn -> addIndex(conn, "users", "uk_users_username", "UserName", true)));
+
+		list.add(new Migration(3, "Indexes for parkinginfo status and time range queries", conn -> {
+			// Late preorders, reports by month and reservation windows
+			addIndex(conn, "parkinginfo", "idx_parkinginfo_status_start", "statusEnum, Estimated_start_time", false);
+			// Late pickups
+			addIndex(conn, "parkinginfo", "idx_parkinginfo_status_end", "statusEnum, Estimated_end_time", false);
+			// Active session per user, history, ownership checks
+			addIndex(conn, "parkinginfo", "idx_parkinginfo_user_status", "User_ID, statusEnum", false);
+			// Free spot search (NOT EXISTS per spot)
+			addIndex(conn, "parkinginfo", "idx_parkinginfo_spot_status_start",
+					"ParkingSpot_ID, statusEnum, Estimated_start_time", false);
+		}));
+
+		list.add(new Migration(4, "Last-modified time on parkinginfo for incremental history sync", conn -> {
+			// Maintained by MySQL on every insert and update, so no write path has to set it
+			addColumn(conn, "parkinginfo", "Last_Modified",
+					"TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)");
+			addIndex(conn, "parkinginfo", "idx_parkinginfo_user_modified", "User_ID, Last_Modified", false);
+		}));
+
+		list.add(new Migration(5, "Create processed_operations table for request deduplication",
+				conn -> execute(conn, """
+						CREATE TABLE IF NOT EXISTS processed_operations (
+						    Operation_ID VARCHAR(64) NOT NULL,
+						    Message_Type VARCHAR(48) NOT NULL,
+						    Result TEXT NULL,
+						    Created_At DATETIME NOT NULL,
+						    PRIMARY KEY (Operation_ID),
+						    INDEX idx_processed_operations_created (Created_At)
+						)
+						""")));
+
+		list.add(new Migration(6, "Create reservation_lock row serializing the 40% rule check", conn -> {
+			// Locked by every reservation while it checks the rule and stores the preorder
+			execute(conn, "CREATE TABLE IF NOT EXISTS reservation_lock (Lock_ID INT NOT NULL PRIMARY KEY)");
+			execute(conn, "INSERT IGNORE INTO reservation_lock (Lock_ID) VALUES (1)");
+		}));
+
+		return list;
+	}
+
+	/**
+	 * Applies all migrations that were not applied to this database yet.
+	 *
+	 * @return true if the schema is up to date, false if a migration failed
+	 */
+	public static boolean migrate() {
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try {
+			execute(conn, """
+					CREATE TABLE IF NOT EXISTS schema_version (
+					    Version INT NOT NULL PRIMARY KEY,
+					    Description VARCHAR(255) NOT NULL,
+					    Applied_At DATETIME NOT NULL
+					)
+					""");
+
+			int current = 0;
+			try (PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(MAX(Version), 0) FROM schema_version");
+					ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					current = rs.getInt(1);
+				}
+			}
+
+			for (Migration migration : migrations()) {
+				if (migration.version <= current) {
+					continue;
+				}
+				migration.step.apply(conn);
+				try (PreparedStatement stmt = conn.prepareStatement(
+						"INSERT INTO schema_version (Version, Description, Applied_At) VALUES (?, ?, NOW())")) {
+					stmt.setInt(1, migration.version);
+					stmt.setString(2, migration.description);
+					stmt.executeUpdate();
+				}
+				current = migration.version;
+				System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+			}
+
+			System.out.println("Database schema is at version " + current);
+			return true;
+		} catch (SQLException e) {
+			System.out.println("Error applying schema migrations: " + e.getMessage());
+			return false;
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Debug utility that logs the execution plan and run time of the hot
+	 * parkinginfo queries at DEBUG level. Helps verify that the indexes added by
+	 * the migrations are used (the "key" column) and how many rows each query
+	 * examines. The previous month report is also run in its MONTH()/YEAR() form
+	 * from before the range rewrite, so the two can be compared on the same
+	 * data.
+	 *
+	 * Runs at startup when the server is started with
+	 * -Dbpark.debugQueryPlans=true and -Dbpark.log.level=DEBUG. Each query runs
+	 * once to warm up and then bpark.debugQueryPlans.runs times (default 20);
+	 * the median and the slowest run are logged.
+	 */
+	public static void debugQueryPlans() {
+		if (!ServerLog.isEnabled(Level.DEBUG)) {
+			return;
+		}
+		int runs = Math.max(1, Integer.getInteger("bpark.debugQueryPlans.runs", 20));
+		Map<String, String> queries = new LinkedHashMap<>();
+		queries.put("Late preorders", """
+				SELECT ParkingInfo_ID FROM parkinginfo
+				WHERE statusEnum = 'preorder'
+				AND Estimated_start_time >= CURDATE()
+				AND Estimated_start_time <= NOW() - INTERVAL 15 MINUTE
+				""");
+		queries.put("Late pickups", """
+				SELECT ParkingInfo_ID FROM parkinginfo
+				WHERE statusEnum = 'active' AND Actual_end_time IS NULL
+				AND Estimated_end_time <= NOW() - INTERVAL 15 MINUTE
+				""");
+		queries.put("Previous month report", """
+				SELECT COUNT(*) FROM parkinginfo
+				WHERE Estimated_start_time >= LAST_DAY(CURDATE() - INTERVAL 2 MONTH) + INTERVAL 1 DAY
+				AND Estimated_start_time < LAST_DAY(CURDATE() - INTERVAL 1 MONTH) + INTERVAL 1 DAY
+				AND statusEnum IN ('active', 'finished')
+				""");
+		// The same report in its form before the range rewrite, for comparison
+		queries.put("Previous month report (MONTH/YEAR form)", """
+				SELECT COUNT(*) FROM parkinginfo
+				WHERE MONTH(Estimated_start_time) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				AND YEAR(Estimated_start_time) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))
+				AND statusEnum IN ('active', 'finished')
+				""");
+		queries.put("Active session of user", """
+				SELECT COUNT(*) FROM parkinginfo WHERE User_ID = 1 AND statusEnum = 'active'
+				""");
+		queries.put("Free spot search", """
+				SELECT ps.ParkingSpot_ID FROM ParkingSpot ps
+				WHERE ps.isOccupied = false
+				AND NOT EXISTS (
+				    SELECT 1 FROM parkinginfo pi
+				    WHERE pi.ParkingSpot_ID = ps.ParkingSpot_ID
+				    AND pi.statusEnum IN ('preorder', 'active')
+				    AND pi.Estimated_start_time <= NOW() AND pi.Estimated_end_time >= NOW()
+				)
+				LIMIT 1
+				""");
+
+		Connection conn = DBController.getInstance().getConnection(DBController.Pool.BACKGROUND);
+		try {
+			for (Map.Entry<String, String> entry : queries.entrySet()) {
+				try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + entry.getValue());
+						ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						ServerLog.log(Level.DEBUG, "query_plan", "query", entry.getKey(), "plan",
+								"table=" + rs.getString("table") + " type=" + rs.getString("type") + " key="
+										+ rs.getString("key") + " rows=" + rs.getLong("rows") + " extra="
+										+ rs.getString("Extra"));
+					}
+				}
+
+				long[] times = new long[runs];
+				for (int i = -1; i < runs; i++) {
+					long start = System.nanoTime();
+					try (PreparedStatement stmt = conn.prepareStatement(entry.getValue());
+							ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							// Read all rows
+						}
+					}
+					if (i >= 0) {
+						// Run -1 only warms up the caches
+						times[i] = System.nanoTime() - start;
+					}
+				}
+				Arrays.sort(times);
+				ServerLog.log(Level.DEBUG, "query_time", "query", entry.getKey(), "medianMs",
+						String.format("%.2f", times[runs / 2] / 1_000_000.0), "maxMs",
+						String.format("%.2f", times[runs - 1] / 1_000_000.0));
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.WARN, "query_plan_debug_failed", "error", e.getMessage());
+		} finally {
+			DBController.getInstance().releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * Executes a single DDL or DML statement.
+	 *
+	 * @param conn the connection to use
+	 * @param sql  the statement
+	 * @throws SQLException if the statement fails
+	 */
+	private static void execute(Connection conn, String sql) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * Adds a column unless a column with the same name already exists.
+	 *
+	 * @param conn       the connection to use
+	 * @param table      the table name
+	 * @param column     the column name
+	 * @param definition the column type and attributes
+	 * @throws SQLException if the column cannot be added
+	 */
+	private static void addColumn(Connection conn, String table, String column, String definition)
+			throws SQLException {
+		String checkQry = """
+				SELECT COUNT(*)
+				FROM information_schema.columns
+				WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?
+				""";
+		try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+			stmt.setString(1, table);
+			stmt.setString(2, column);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next() && rs.getInt(1) > 0) {
+					return;
+				}
+			}
+		}
+		execute(conn, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+	}
+
+	/**
+	 * Adds an index unless an index with the same name already exists, so the
+	 * migration also succeeds on databases where the index was created by hand.
+	 *
+	 * @param conn      the connection to use
+	 * @param table     the table name
+	 * @param indexName the index name
+	 * @param columns   comma-separated column list
+	 * @param unique    whether to create a unique key
+	 * @throws SQLException if the index cannot be created
+	 */
+	private static void addIndex(Connection conn, String table, String indexName, String columns, boolean unique)
+			throws SQLException {
+		String checkQry = """
+				SELECT COUNT(*)
+				FROM information_schema.statistics
+				WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?
+				""";
+		try (PreparedStatement stmt = conn.prepareStatement(checkQry)) {
+			stmt.setString(1, table);
+			stmt.setString(2, indexName);
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next() && rs.getInt(1) > 0) {
+					return;
+				}
+			}
+		}
+		execute(conn, "ALTER TABLE " + table + " ADD " + (unique ? "UNIQUE KEY " : "INDEX ") + indexName + " ("
+				+ columns + ")");
+	}
+}
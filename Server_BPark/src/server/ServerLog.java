@@ -0,0 +1,375 @@
+package server;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ||in SERVER||
+ *
+ * Asynchronous structured log for the request path. An event is a name plus
+ * up to three key/value pairs, e.g.
+ * {@code ServerLog.log(Level.INFO, "request_rejected", "type", type)}. The
+ * calling thread only copies the references into a preallocated slot of a
+ * ring buffer; a background thread formats the events and writes them to
+ * standard output in batches, so request threads never wait for the console.
+ * If the buffer is full, the event is dropped and counted instead of blocking.
+ *
+ * Each event carries the ID of the request the thread works on (see
+ * {@link RequestMetrics}), so all events of one request can be found together.
+ *
+ * The level is checked before anything else, and the call itself allocates
+ * nothing. Primitive values are boxed by the caller, so a disabled DEBUG event
+ * with numbers should be guarded with {@link #isEnabled(Level)}. The level is
+ * set with {@code -Dbpark.log.level} (default INFO).
+ */
+public class ServerLog {
+
+	/**
+	 * Severity of an event.
+	 */
+	public enum Level {
+		/** Details for tracing a single request */
+		DEBUG,
+		/** Normal operation */
+		INFO,
+		/** Something went wrong but the request was handled */
+		WARN,
+		/** A request or service failed */
+		ERROR
+	}
+
+	/** Number of slots in the ring buffer, a power of two */
+	private static final int CAPACITY = Integer.highestOneBit(
+			Math.max(64, Integer.getInteger("bpark.log.bufferSize", 8192)));
+
+	/** Events written to the console at once */
+	private static final int BATCH_SIZE = 256;
+
+	/** Pause of the writer thread when the buffer is empty */
+	private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+	/** Time format of the events */
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	/**
+	 * One event in the ring buffer. The slot is reused; {@link #sequence} tells
+	 * which event it currently holds.
+	 */
+	private static class Slot {
+		/** Sequence number of the published event, -1 before the first */
+		volatile long sequence = -1;
+		/** Severity */
+		Level level;
+		/** Event name */
+		String event;
+		/** Wall clock time in milliseconds */
+		long time;
+		/** Name of the logging thread */
+		String thread;
+		/** Request ID, 0 outside a request */
+		long requestId;
+		/** First key, or null */
+		String key1;
+		/** First value */
+		Object value1;
+		/** Second key, or null */
+		String key2;
+		/** Second value */
+		Object value2;
+		/** Third key, or null */
+		String key3;
+		/** Third value */
+		Object value3;
+	}
+
+	/** The ring buffer */
+	private static final Slot[] slots = new Slot[CAPACITY];
+
+	static {
+		for (int i = 0; i < CAPACITY; i++) {
+			slots[i] = new Slot();
+		}
+	}
+
+	/** Lowest level that is logged */
+	private static volatile Level threshold = parseLevel(System.getProperty("bpark.log.level", "INFO"));
+
+	/** Next sequence number to claim */
+	private static final AtomicLong head = new AtomicLong();
+
+	/** Sequence number of the next event to write; slots below it are free */
+	private static volatile long consumed = 0;
+
+	/** Events dropped because the buffer was full */
+	private static final LongAdder dropped = new LongAdder();
+
+	/** Dropped events already reported */
+	private static long droppedReported = 0;
+
+	/** Serializes writing between the writer thread and {@link #flush()} */
+	private static final Object writeLock = new Object();
+
+	/** Reused buffer for formatting a batch */
+	private static final StringBuilder out = new StringBuilder(16 * 1024);
+
+	static {
+		Thread writer = new Thread(ServerLog::writerLoop, "log-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(ServerLog::flush, "log-flush"));
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private ServerLog() {
+	}
+
+	/**
+	 * Returns whether events of a level are logged.
+	 *
+	 * @param level the level
+	 * @return true if enabled
+	 */
+	public static boolean isEnabled(Level level) {
+		return level.compareTo(threshold) >= 0;
+	}
+
+	/**
+	 * Changes the lowest level that is logged.
+	 *
+	 * @param level the new level
+	 */
+	public static void setLevel(Level level) {
+		threshold = level;
+	}
+
+	/**
+	 * Logs an event without values.
+	 *
+	 * @param level the level
+	 * @param event the event name
+	 */
+	public static void log(Level level, String event) {
+		if (isEnabled(level)) {
+			publish(level, event, null, null, null, null, null, null);
+		}
+	}
+
+	/**
+	 * Logs an event with one value.
+	 *
+	 * @param level  the level
+	 * @param event  the event name
+	 * @param key1   the key
+	 * @param value1 the value
+	 */
+	public static void log(Level level, String event, String key1, Object value1) {
+		if (isEnabled(level)) {
+			publish(level, event, key1, value1, null, null, null, null);
+		}
+	}
+
+	/**
+	 * Logs an event with two values.
+	 *
+	 * @param level  the level
+	 * @param event  the event name
+	 * @param key1   the first key
+	 * @param value1 the first value
+	 * @param key2   the second key
+	 * @param value2 the second value
+	 */
+	public static void log(Level level, String event, String key1, Object value1, String key2, Object value2) {
+		if (isEnabled(level)) {
+			publish(level, event, key1, value1, key2, value2, null, null);
+		}
+	}
+
+	/**
+	 * Logs an event with three values.
+	 *
+	 * @param level  the level
+	 * @param event  the event name
+	 * @param key1   the first key
+	 * @param value1 the first value
+	 * @param key2   the second key
+	 * @param value2 the second value
+	 * @param key3   the third key
+	 * @param value3 the third value
+	 */
+	public static void log(Level level, String event, String key1, Object value1, String key2, Object value2,
+			String key3, Object value3) {
+		if (isEnabled(level)) {
+			publish(level, event, key1, value1, key2, value2, key3, value3);
+		}
+	}
+
+	/**
+	 * Returns the number of events dropped because the buffer was full.
+	 *
+	 * @return dropped event count
+	 */
+	public static long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Writes all published events now. Called on shutdown.
+	 */
+	public static void flush() {
+		while (drain() > 0) {
+			// Keep writing until the buffer is empty
+		}
+	}
+
+	/**
+	 * Copies an event into the next free slot, or drops it if there is none.
+	 *
+	 * @param level  the level
+	 * @param event  the event name
+	 * @param key1   the first key, or null
+	 * @param value1 the first value
+	 * @param key2   the second key, or null
+	 * @param value2 the second value
+	 * @param key3   the third key, or null
+	 * @param value3 the third value
+	 */
+	private static void publish(Level level, String event, String key1, Object value1, String key2, Object value2,
+			String key3, Object value3) {
+		long sequence;
+		do {
+			sequence = head.get();
+			if (sequence - consumed >= CAPACITY) {
+				dropped.increment();
+				return;
+			}
+		} while (!head.compareAndSet(sequence, sequence + 1));
+
+		Slot slot = slots[(int) (sequence & (CAPACITY - 1))];
+		slot.level = level;
+		slot.event = event;
+		slot.time = System.currentTimeMillis();
+		slot.thread = Thread.currentThread().getName();
+		slot.requestId = RequestMetrics.currentRequestId();
+		slot.key1 = key1;
+		slot.value1 = value1;
+		slot.key2 = key2;
+		slot.value2 = value2;
+		slot.key3 = key3;
+		slot.value3 = value3;
+		slot.sequence = sequence;
+	}
+
+	/**
+	 * Writes events until the log is no longer used.
+	 */
+	private static void writerLoop() {
+		while (true) {
+			try {
+				if (drain() == 0) {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+			} catch (Exception e) {
+				System.out.println("Error writing log: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Formats and writes up to {@link #BATCH_SIZE} published events.
+	 *
+	 * @return number of events written
+	 */
+	private static int drain() {
+		synchronized (writeLock) {
+			int count = 0;
+			long sequence = consumed;
+			while (count < BATCH_SIZE) {
+				Slot slot = slots[(int) (sequence & (CAPACITY - 1))];
+				if (slot.sequence != sequence) {
+					break;
+				}
+				format(slot);
+				slot.value1 = null;
+				slot.value2 = null;
+				slot.value3 = null;
+				sequence++;
+				consumed = sequence;
+				count++;
+			}
+			long droppedNow = dropped.sum();
+			if (droppedNow != droppedReported) {
+				out.append(TIME_FORMAT.format(LocalDateTime.now())).append(" WARN  [").append(Thread.currentThread().getName())
+						.append("] log_events_dropped count=").append(droppedNow - droppedReported).append('\n');
+				droppedReported = droppedNow;
+			}
+			if (out.length() > 0) {
+				System.out.print(out);
+				out.setLength(0);
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Appends one event as a line of {@code key=value} pairs.
+	 *
+	 * @param slot the event
+	 */
+	private static void format(Slot slot) {
+		out.append(TIME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(slot.time), ZoneId.systemDefault())))
+				.append(' ').append(slot.level);
+		for (int i = slot.level.name().length(); i < 5; i++) {
+			out.append(' ');
+		}
+		out.append(" [").append(slot.thread).append(']');
+		if (slot.requestId != 0) {
+			out.append(" req=").append(slot.requestId);
+		}
+		out.append(' ').append(slot.event);
+		appendPair(slot.key1, slot.value1);
+		appendPair(slot.key2, slot.value2);
+		appendPair(slot.key3, slot.value3);
+		out.append('\n');
+	}
+
+	/**
+	 * Appends {@code key=value}, quoting values with spaces.
+	 *
+	 * @param key   the key, or null to append nothing
+	 * @param value the value
+	 */
+	private static void appendPair(String key, Object value) {
+		if (key == null) {
+			return;
+		}
+		String text = String.valueOf(value);
+		out.append(' ').append(key).append('=');
+		if (text.isEmpty() || text.indexOf(' ') >= 0 || text.indexOf('"') >= 0) {
+			out.append('"').append(text.replace("\"", "\\\"")).append('"');
+		} else {
+			out.append(text);
+		}
+	}
+
+	/**
+	 * Parses a level name.
+	 *
+	 * @param name the name
+	 * @return the level, INFO if the name is unknown
+	 */
+	private static Level parseLevel(String name) {
+		try {
+			return Level.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Unknown log level " + name + ", using INFO");
+			return Level.INFO;
+		}
+	}
+}
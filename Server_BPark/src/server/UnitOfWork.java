@@ -0,0 +1,217 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.ServerLog.Level;
+
+/**
+ * ||in SERVER||
+ *
+ * A single database transaction on a single pooled connection. All statements
+ * of one operation (e.g. a parking entry) run on the same connection, so the
+ * operation never needs a second connection from the pool while holding the
+ * first one, and either all of its changes are saved or none.
+ *
+ * Usage:
+ *
+ * <pre>
+ * try (UnitOfWork uow = UnitOfWork.begin()) {
+ * 	try (PreparedStatement stmt = uow.prepare("UPDATE ...")) {
+ * 		...
+ * 	}
+ * 	uow.afterCommit(() -&gt; ...);
+ * 	uow.commit();
+ * }
+ * </pre>
+ *
+ * If {@link #commit()} is not reached, {@link #close()} rolls the transaction
+ * back. Actions registered with {@link #afterCommit(Runnable)} (notifications,
+ * emails, statistics) run only after a successful commit, outside the
+ * transaction.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+	/** The connection borrowed for this transaction */
+	private final Connection conn;
+
+	/** Actions to run after a successful commit */
+	private final List<Runnable> afterCommit = new ArrayList<>();
+
+	/** Whether the transaction was committed */
+	private boolean committed = false;
+
+	/** Result of the request this transaction carries out, or null */
+	private String result;
+
+	/** Read-only flag of the connection before this transaction, restored on close */
+	private final boolean wasReadOnly;
+
+	/**
+	 * Creates a unit of work on an already borrowed connection.
+	 *
+	 * @param conn the connection, with auto-commit already disabled
+	 */
+	private UnitOfWork(Connection conn) throws SQLException {
+		this.conn = conn;
+		this.wasReadOnly = conn.isReadOnly();
+	}
+
+	/**
+	 * Borrows a connection from the operational pool of {@link DBController} and
+	 * starts a transaction.
+	 *
+	 * @return the new unit of work
+	 * @throws SQLException if the transaction could not be started
+	 */
+	public static UnitOfWork begin() throws SQLException {
+		return begin(DBController.Pool.OPERATIONAL);
+	}
+
+	/**
+	 * Borrows a connection from the given pool and starts a transaction.
+	 *
+	 * @param pool the pool matching the caller's workload
+	 * @return the new unit of work
+	 * @throws SQLException if the transaction could not be started
+	 */
+	public static UnitOfWork begin(DBController.Pool pool) throws SQLException {
+		return start(DBController.getInstance().getConnection(pool), false);
+	}
+
+	/**
+	 * Starts a read-only transaction, on the read replica if it can be used and
+	 * otherwise on the given primary pool. All queries see one consistent
+	 * snapshot, and the database rejects any write in it.
+	 *
+	 * @param fallback the primary pool to use when the replica cannot be used
+	 * @return the new unit of work
+	 * @throws SQLException if the transaction could not be started
+	 */
+	public static UnitOfWork beginReadOnly(DBController.Pool fallback) throws SQLException {
+		return start(DBController.getInstance().getReadConnection(fallback), true);
+	}
+
+	/**
+	 * Starts a transaction on a borrowed connection.
+	 *
+	 * @param conn     the borrowed connection
+	 * @param readOnly whether the transaction is read-only
+	 * @return the new unit of work
+	 * @throws SQLException if the transaction could not be started (the
+	 *                      connection is released)
+	 */
+	private static UnitOfWork start(Connection conn, boolean readOnly) throws SQLException {
+		try {
+			UnitOfWork uow = new UnitOfWork(conn);
+			if (readOnly) {
+				conn.setReadOnly(true);
+			}
+			conn.setAutoCommit(false);
+			return uow;
+		} catch (SQLException e) {
+			DBController.getInstance().releaseConnection(conn);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the connection of this transaction.
+	 *
+	 * @return the connection
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * Prepares a statement on this transaction's connection.
+	 *
+	 * @param sql the SQL statement
+	 * @return the prepared statement
+	 * @throws SQLException if preparing fails
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		return conn.prepareStatement(sql);
+	}
+
+	/**
+	 * Prepares a statement on this transaction's connection.
+	 *
+	 * @param sql               the SQL statement
+	 * @param autoGeneratedKeys e.g. {@link PreparedStatement#RETURN_GENERATED_KEYS}
+	 * @return the prepared statement
+	 * @throws SQLException if preparing fails
+	 */
+	public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		return conn.prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	/**
+	 * Registers an action to run once the transaction has been committed. Actions
+	 * run in registration order and are dropped if the transaction rolls back.
+	 *
+	 * @param action the action to run
+	 */
+	public void afterCommit(Runnable action) {
+		afterCommit.add(action);
+	}
+
+	/**
+	 * Sets the result the request replies with once this transaction is
+	 * committed. If the request carries an operation ID, the result is saved in
+	 * this transaction (see {@link OperationLog}).
+	 *
+	 * @param result the result
+	 */
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	/**
+	 * Commits the transaction and runs the registered after-commit actions.
+	 *
+	 * @throws SQLException if the commit fails, or the request's operation ID
+	 *                      was already processed
+	 */
+	public void commit() throws SQLException {
+		OperationLog.beforeCommit(this, result);
+		conn.commit();
+		committed = true;
+		for (Runnable action : afterCommit) {
+			try {
+				action.run();
+			} catch (Exception e) {
+				ServerLog.log(Level.ERROR, "after_commit_failed", "error", e.toString());
+			}
+		}
+		afterCommit.clear();
+	}
+
+	/**
+	 * Rolls back the transaction if it was not committed and returns the
+	 * connection to the pool.
+	 */
+	@Override
+	public void close() {
+		try {
+			if (!committed) {
+				conn.rollback();
+			}
+		} catch (SQLException e) {
+			ServerLog.log(Level.ERROR, "rollback_failed", "error", e.getMessage());
+		} finally {
+			try {
+				conn.setAutoCommit(true);
+				conn.setReadOnly(wasReadOnly);
+			} catch (SQLException e) {
+				ServerLog.log(Level.ERROR, "connection_reset_failed", "error", e.getMessage());
+			} finally {
+				DBController.getInstance().releaseConnection(conn);
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * ||in SERVER||
+ *
+ * Mergeable quantile sketch for minute-valued durations (parking time, late
+ * exit minutes). Uses a fixed log-linear bucket layout in the spirit of an HDR
+ * histogram: values below 32 are counted exactly, larger values fall into one
+ * of 16 sub-buckets per power of two, so every estimate is within ~3% of the
+ * true value.
+ *
+ * Because all sketches share the same layout, two sketches are merged by
+ * adding their bucket counts. This lets the server keep one sketch per day and
+ * answer percentile queries over any date range without rescanning the
+ * parkinginfo table.
+ */
+public class DurationSketch {
+
+	/** Number of exact buckets (values 0..31) */
+	private static final int EXACT_BUCKETS = 32;
+
+	/** Sub-buckets per power of two above the exact range */
+	private static final int SUB_BUCKETS = 16;
+
+	/** Largest tracked value in minutes (~2 years); larger values are clamped */
+	private static final long MAX_VALUE = (1L << 20) - 1;
+
+	/** Total number of buckets in the layout */
+	private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+	/** Format version written at the start of {@link #toBytes()} */
+	private static final byte FORMAT_VERSION = 1;
+
+	/** Count of recorded values per bucket */
+	private final long[] counts = new long[BUCKET_COUNT];
+
+	/** Number of recorded values */
+	private long totalCount;
+
+	/** Sum of all recorded values (for the exact mean) */
+	private long sum;
+
+	/** Smallest recorded value */
+	private long min = Long.MAX_VALUE;
+
+	/** Largest recorded value */
+	private long max = Long.MIN_VALUE;
+
+	/**
+	 * Creates an empty sketch.
+	 */
+	public DurationSketch() {
+	}
+
+	/**
+	 * Records a single duration. Negative values are treated as 0.
+	 *
+	 * @param minutes duration in minutes
+	 */
+	public synchronized void record(long minutes) {
+		long value = Math.min(Math.max(minutes, 0), MAX_VALUE);
+		counts[indexOf(value)]++;
+		totalCount++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds all values of another sketch into this one.
+	 *
+	 * @param other the sketch to merge (unchanged)
+	 */
+	public synchronized void merge(DurationSketch other) {
+		if (other == null || other == this) {
+			return;
+		}
+		synchronized (other) {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				counts[i] += other.counts[i];
+			}
+			totalCount += other.totalCount;
+			sum += other.sum;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+	}
+
+	/**
+	 * Estimates the value at the given quantile.
+	 *
+	 * @param quantile a value between 0 and 1 (e.g. 0.9 for p90)
+	 * @return estimated value in minutes, or 0 if the sketch is empty
+	 */
+	public synchronized long getValueAtQuantile(double quantile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		double q = Math.min(Math.max(quantile, 0.0), 1.0);
+		long rank = Math.max(1, (long) Math.ceil(q * totalCount));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				// Clamp to the observed range so p0/p100 stay exact
+				return Math.min(Math.max(midpointOf(i), min), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Counts the recorded values that fall in [fromMinutes, toMinutes).
+	 *
+	 * @param fromMinutes inclusive lower bound
+	 * @param toMinutes   exclusive upper bound
+	 * @return approximate number of values in the range
+	 */
+	public synchronized long countBetween(long fromMinutes, long toMinutes) {
+		long result = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long mid = midpointOf(i);
+			if (counts[i] > 0 && mid >= fromMinutes && mid < toMinutes) {
+				result += counts[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return total count
+	 */
+	public synchronized long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Returns the exact mean of the recorded values.
+	 *
+	 * @return mean in minutes, or 0 if empty
+	 */
+	public synchronized double getMean() {
+		return totalCount == 0 ? 0 : (double) sum / totalCount;
+	}
+
+	/**
+	 * Returns the smallest recorded value.
+	 *
+	 * @return minimum in minutes, or 0 if empty
+	 */
+	public synchronized long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return maximum in minutes, or 0 if empty
+	 */
+	public synchronized long getMax() {
+		return totalCount == 0 ? 0 : max;
+	}
+
+	/**
+	 * Serializes the sketch into a compact byte array (only non-empty buckets are
+	 * written) for storage in the daily_sketches table.
+	 *
+	 * @return serialized form
+	 */
+	public synchronized byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeLong(totalCount);
+			out.writeLong(sum);
+			out.writeLong(getMin());
+			out.writeLong(getMax());
+			int nonEmpty = 0;
+			for (long c : counts) {
+				if (c > 0) {
+					nonEmpty++;
+				}
+			}
+			out.writeShort(nonEmpty);
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				if (counts[i] > 0) {
+					out.writeShort(i);
+					out.writeLong(counts[i]);
+				}
+			}
+		} catch (IOException e) {
+			// Cannot happen with an in-memory stream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Restores a sketch produced by {@link #toBytes()}.
+	 *
+	 * @param data serialized sketch, may be null
+	 * @return the restored sketch (empty if data is null or unreadable)
+	 */
+	public static DurationSketch fromBytes(byte[] data) {
+		DurationSketch sketch = new DurationSketch();
+		if (data == null || data.length == 0) {
+			return sketch;
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (in.readByte() != FORMAT_VERSION) {
+				System.out.println("Unsupported duration sketch format, ignoring stored data");
+				return sketch;
+			}
+			sketch.totalCount = in.readLong();
+			sketch.sum = in.readLong();
+			long storedMin = in.readLong();
+			long storedMax = in.readLong();
+			if (sketch.totalCount > 0) {
+				sketch.min = storedMin;
+				sketch.max = storedMax;
+			}
+			int nonEmpty = in.readShort();
+			for (int n = 0; n < nonEmpty; n++) {
+				int index = in.readShort();
+				long count = in.readLong();
+				if (index >= 0 && index < BUCKET_COUNT) {
+					sketch.counts[index] = count;
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Error reading duration sketch: " + e.getMessage());
+			return new DurationSketch();
+		}
+		return sketch;
+	}
+
+	/**
+	 * Maps a value to its bucket index. The layout is shared with
+	 * {@link LatencyHistogram}.
+	 *
+	 * @param value non-negative value
+	 * @return bucket index
+	 */
+	static int indexOf(long value) {
+		if (value < EXACT_BUCKETS) {
+			return (int) value;
+		}
+		// Keep the top five significant bits: (value >> shift) is in [16, 31]
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+		return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * Returns the representative (midpoint) value of a bucket.
+	 *
+	 * @param index bucket index
+	 * @return midpoint of the bucket's value range
+	 */
+	static long midpointOf(int index) {
+		if (index < EXACT_BUCKETS) {
+			return index;
+		}
+		int offset = index - EXACT_BUCKETS;
+		int shift = offset / SUB_BUCKETS + 1;
+		long lower = (long) (offset % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		long upper = ((long) (offset % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+		return (lower + upper) / 2;
+	}
+}
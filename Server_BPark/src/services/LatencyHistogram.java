@@ -0,0 +1,161 @@
+package services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ||in SERVER||
+ *
+ * Latency histogram in microseconds that many threads record into without
+ * locking. It uses the bucket layout of {@link DurationSketch}: values below
+ * 32 are counted exactly, larger values fall into one of 16 sub-buckets per
+ * power of two, so quantile estimates are within ~3% of the true value.
+ * Recording a value is one atomic increment of its bucket plus atomic updates
+ * of the sum and maximum.
+ *
+ * Quantiles are read from a {@link Snapshot}, which copies the bucket counts
+ * once.
+ */
+public class LatencyHistogram {
+
+	/** Largest tracked value in microseconds (~71 minutes); larger values are clamped */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+
+	/** Total number of buckets in the layout */
+	private static final int BUCKET_COUNT = DurationSketch.indexOf(MAX_VALUE) + 1;
+
+	/** Count of recorded values per bucket */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/** Sum of all recorded values */
+	private final AtomicLong sum = new AtomicLong();
+
+	/** Largest recorded value */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Creates an empty histogram.
+	 */
+	public LatencyHistogram() {
+	}
+
+	/**
+	 * Records a duration. Negative values are treated as 0.
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void recordNanos(long nanos) {
+		long value = Math.min(Math.max(nanos / 1_000, 0), MAX_VALUE);
+		counts.incrementAndGet(DurationSketch.indexOf(value));
+		sum.addAndGet(value);
+		if (value > max.get()) {
+			max.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	/**
+	 * Copies the current state for reading.
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+		return new Snapshot(copy, total, sum.get(), max.get());
+	}
+
+	/**
+	 * Immutable copy of a histogram.
+	 */
+	public static class Snapshot {
+
+		/** Count per bucket */
+		private final long[] counts;
+
+		/** Number of values */
+		private final long totalCount;
+
+		/** Sum of the values in microseconds */
+		private final long sum;
+
+		/** Largest value in microseconds */
+		private final long max;
+
+		/**
+		 * Creates a snapshot.
+		 *
+		 * @param counts     count per bucket
+		 * @param totalCount number of values
+		 * @param sum        sum of the values
+		 * @param max        largest value
+		 */
+		Snapshot(long[] counts, long totalCount, long sum, long max) {
+			this.counts = counts;
+			this.totalCount = totalCount;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the number of recorded values.
+		 *
+		 * @return total count
+		 */
+		public long getTotalCount() {
+			return totalCount;
+		}
+
+		/**
+		 * Returns the sum of the recorded values.
+		 *
+		 * @return sum in microseconds
+		 */
+		public long getSumMicros() {
+			return sum;
+		}
+
+		/**
+		 * Returns the mean of the recorded values.
+		 *
+		 * @return mean in microseconds, or 0 if empty
+		 */
+		public double getMeanMicros() {
+			return totalCount == 0 ? 0 : (double) sum / totalCount;
+		}
+
+		/**
+		 * Returns the largest recorded value.
+		 *
+		 * @return maximum in microseconds
+		 */
+		public long getMaxMicros() {
+			return max;
+		}
+
+		/**
+		 * Estimates the value at the given quantile.
+		 *
+		 * @param quantile a value between 0 and 1 (e.g. 0.95 for p95)
+		 * @return estimated value in microseconds, or 0 if empty
+		 */
+		public long getValueAtQuantile(double quantile) {
+			if (totalCount == 0) {
+				return 0;
+			}
+			double q = Math.min(Math.max(quantile, 0.0), 1.0);
+			long rank = Math.max(1, (long) Math.ceil(q * totalCount));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(DurationSketch.midpointOf(i), max);
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,444 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ||in SERVER||
+ *
+ * Minute-resolution time series of parking occupancy (number of occupied
+ * spots).
+ *
+ * Samples are kept in two places:
+ * <ul>
+ * <li>An in-memory ring buffer of per-minute min/max/sum/count aggregates for
+ * the last {@link #RING_DAYS} days, used to answer dashboard queries
+ * instantly.</li>
+ * <li>Append-only segment files, one per day, where every sample is written as
+ * a varint of the seconds since the previous sample followed by a zig-zag
+ * varint of the change in value. A typical sample takes 2-3 bytes.</li>
+ * </ul>
+ * On startup the ring buffer is refilled from the segment files, so history
+ * survives server restarts. Ranges older than the ring are read from disk.
+ */
+public class OccupancyTimeSeries {
+
+	/** Number of days held in the in-memory ring buffer */
+	public static final int RING_DAYS = 31;
+
+	/** Ring buffer capacity in minutes */
+	private static final int RING_MINUTES = RING_DAYS * 24 * 60;
+
+	/** Time zone used for file names and bucket boundaries */
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+
+	/** Directory holding the segment files */
+	private final File directory;
+
+	/** Epoch minute stored in each ring slot (-1 when empty) */
+	private final long[] slotMinute = new long[RING_MINUTES];
+
+	/** Minimum sample per slot */
+	private final int[] slotMin = new int[RING_MINUTES];
+
+	/** Maximum sample per slot */
+	private final int[] slotMax = new int[RING_MINUTES];
+
+	/** Sum of samples per slot */
+	private final long[] slotSum = new long[RING_MINUTES];
+
+	/** Number of samples per slot */
+	private final int[] slotCount = new int[RING_MINUTES];
+
+	/** Day of the currently open segment */
+	private LocalDate segmentDay;
+
+	/** Output stream of the currently open segment */
+	private DataOutputStream segmentOut;
+
+	/** Epoch second of the last sample written to the open segment */
+	private long lastSecond;
+
+	/** Value of the last sample written to the open segment */
+	private int lastValue;
+
+	/**
+	 * Creates a time series stored in the given directory and loads the last
+	 * {@link #RING_DAYS} days of history into memory.
+	 *
+	 * @param directory directory for the segment files (created if missing)
+	 */
+	public OccupancyTimeSeries(File directory) {
+		this.directory = directory;
+		if (!directory.exists() && !directory.mkdirs()) {
+			System.out.println("Could not create occupancy directory: " + directory.getAbsolutePath());
+		}
+		java.util.Arrays.fill(slotMinute, -1);
+		loadRecentHistory();
+	}
+
+	/**
+	 * Records an occupancy sample at the given time. Samples must be recorded in
+	 * time order.
+	 *
+	 * @param time     sample time
+	 * @param occupied number of occupied spots
+	 */
+	public synchronized void record(LocalDateTime time, int occupied) {
+		long second = time.atZone(ZONE).toEpochSecond();
+		if (segmentOut != null && second < lastSecond) {
+			second = lastSecond; // keep the segment monotonic if the clock steps back
+		}
+		addToRing(second / 60, occupied);
+		appendToSegment(time.toLocalDate(), second, occupied);
+	}
+
+	/**
+	 * Returns the occupancy in [from, to) downsampled to buckets of the given
+	 * size. Buckets without samples are left out.
+	 *
+	 * @param from          range start (inclusive)
+	 * @param to            range end (exclusive)
+	 * @param bucketMinutes bucket size in minutes
+	 * @return buckets in time order
+	 */
+	public synchronized List<Bucket> query(LocalDateTime from, LocalDateTime to, int bucketMinutes) {
+		long fromMinute = from.atZone(ZONE).toEpochSecond() / 60;
+		long toMinute = to.atZone(ZONE).toEpochSecond() / 60;
+		int size = Math.max(1, bucketMinutes);
+		int bucketCount = (int) Math.max(0, (toMinute - fromMinute + size - 1) / size);
+
+		int[] min = new int[bucketCount];
+		int[] max = new int[bucketCount];
+		long[] sum = new long[bucketCount];
+		long[] count = new long[bucketCount];
+
+		// Minutes older than the ring are read from the segment files
+		long ringStart = oldestRingMinute();
+		if (fromMinute < ringStart) {
+			LocalDate day = from.toLocalDate();
+			LocalDate lastDiskDay = Instant.ofEpochSecond(Math.min(toMinute, ringStart) * 60).atZone(ZONE)
+					.toLocalDate();
+			for (; !day.isAfter(lastDiskDay); day = day.plusDays(1)) {
+				readSegment(day, (second, value) -> {
+					long minute = second / 60;
+					if (minute >= fromMinute && minute < toMinute && minute < ringStart) {
+						addToBucket((int) ((minute - fromMinute) / size), value, value, value, 1, min, max, sum,
+								count);
+					}
+				});
+			}
+		}
+
+		for (long minute = Math.max(fromMinute, ringStart); minute < toMinute; minute++) {
+			int slot = (int) Math.floorMod(minute, (long) RING_MINUTES);
+			if (slotMinute[slot] == minute && slotCount[slot] > 0) {
+				addToBucket((int) ((minute - fromMinute) / size), slotMin[slot], slotMax[slot], slotSum[slot],
+						slotCount[slot], min, max, sum, count);
+			}
+		}
+
+		List<Bucket> result = new ArrayList<>();
+		for (int i = 0; i < bucketCount; i++) {
+			if (count[i] > 0) {
+				LocalDateTime start = from.plusMinutes((long) i * size);
+				result.add(new Bucket(start, min[i], max[i], (double) sum[i] / count[i]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Flushes and closes the open segment file.
+	 */
+	public synchronized void close() {
+		closeSegment();
+	}
+
+	/**
+	 * One downsampled bucket of the series.
+	 */
+	public static class Bucket {
+		/** Start time of the bucket */
+		public final LocalDateTime start;
+		/** Lowest occupancy seen in the bucket */
+		public final int min;
+		/** Highest occupancy seen in the bucket */
+		public final int max;
+		/** Average of the samples in the bucket */
+		public final double avg;
+
+		/**
+		 * Creates a bucket.
+		 *
+		 * @param start start time
+		 * @param min   lowest sample
+		 * @param max   highest sample
+		 * @param avg   average sample
+		 */
+		public Bucket(LocalDateTime start, int min, int max, double avg) {
+			this.start = start;
+			this.min = min;
+			this.max = max;
+			this.avg = avg;
+		}
+	}
+
+	/**
+	 * Receives the samples decoded from a segment file.
+	 */
+	private interface SampleVisitor {
+		/**
+		 * Called for each sample.
+		 *
+		 * @param epochSecond sample time in epoch seconds
+		 * @param value       occupancy value
+		 */
+		void visit(long epochSecond, int value);
+	}
+
+	/**
+	 * Merges aggregates into a query bucket.
+	 *
+	 * @param bucket index of the target bucket (ignored if out of range)
+	 * @param bMin   minimum to merge
+	 * @param bMax   maximum to merge
+	 * @param bSum   sum to merge
+	 * @param bCount sample count to merge
+	 * @param min    bucket minimums
+	 * @param max    bucket maximums
+	 * @param sum    bucket sums
+	 * @param count  bucket sample counts
+	 */
+	private static void addToBucket(int bucket, int bMin, int bMax, long bSum, long bCount, int[] min, int[] max,
+			long[] sum, long[] count) {
+		if (bucket < 0 || bucket >= count.length) {
+			return;
+		}
+		if (count[bucket] == 0) {
+			min[bucket] = bMin;
+			max[bucket] = bMax;
+		} else {
+			min[bucket] = Math.min(min[bucket], bMin);
+			max[bucket] = Math.max(max[bucket], bMax);
+		}
+		sum[bucket] += bSum;
+		count[bucket] += bCount;
+	}
+
+	/**
+	 * Adds a sample to the ring slot of its minute, replacing data that is
+	 * {@link #RING_DAYS} days old.
+	 *
+	 * @param minute epoch minute
+	 * @param value  occupancy value
+	 */
+	private void addToRing(long minute, int value) {
+		int slot = (int) Math.floorMod(minute, (long) RING_MINUTES);
+		if (slotMinute[slot] != minute) {
+			slotMinute[slot] = minute;
+			slotMin[slot] = value;
+			slotMax[slot] = value;
+			slotSum[slot] = 0;
+			slotCount[slot] = 0;
+		}
+		slotMin[slot] = Math.min(slotMin[slot], value);
+		slotMax[slot] = Math.max(slotMax[slot], value);
+		slotSum[slot] += value;
+		slotCount[slot]++;
+	}
+
+	/**
+	 * Returns the oldest epoch minute the ring buffer can hold right now.
+	 *
+	 * @return oldest minute covered by the ring
+	 */
+	private long oldestRingMinute() {
+		long nowMinute = System.currentTimeMillis() / 60000;
+		return nowMinute - RING_MINUTES + 1;
+	}
+
+	/**
+	 * Appends a sample to the segment of the given day, rolling over to a new
+	 * file at midnight.
+	 *
+	 * @param day    day of the sample
+	 * @param second sample time in epoch seconds
+	 * @param value  occupancy value
+	 */
+	private void appendToSegment(LocalDate day, long second, int value) {
+		try {
+			if (segmentOut == null || !day.equals(segmentDay)) {
+				openSegment(day);
+			}
+			writeVarLong(segmentOut, second - lastSecond);
+			writeVarLong(segmentOut, zigZag(value - lastValue));
+			segmentOut.flush();
+			lastSecond = second;
+			lastValue = value;
+		} catch (IOException e) {
+			System.out.println("Error writing occupancy sample: " + e.getMessage());
+			closeSegment();
+		}
+	}
+
+	/**
+	 * Opens the segment of a day for appending. If the file already has samples
+	 * (server restarted the same day) it is scanned to continue the delta chain.
+	 *
+	 * @param day the day to open
+	 * @throws IOException if the file cannot be opened
+	 */
+	private void openSegment(LocalDate day) throws IOException {
+		closeSegment();
+		lastSecond = day.atStartOfDay(ZONE).toEpochSecond();
+		lastValue = 0;
+		readSegment(day, (second, value) -> {
+			lastSecond = second;
+			lastValue = value;
+		});
+		segmentDay = day;
+		segmentOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(day), true)));
+	}
+
+	/**
+	 * Closes the open segment, if any.
+	 */
+	private void closeSegment() {
+		if (segmentOut != null) {
+			try {
+				segmentOut.close();
+			} catch (IOException e) {
+				System.out.println("Error closing occupancy segment: " + e.getMessage());
+			}
+			segmentOut = null;
+			segmentDay = null;
+		}
+	}
+
+	/**
+	 * Decodes all samples of a day's segment file. A truncated last record (e.g.
+	 * after a crash) is ignored.
+	 *
+	 * @param day     the day to read
+	 * @param visitor receives each decoded sample
+	 */
+	private void readSegment(LocalDate day, SampleVisitor visitor) {
+		File file = segmentFile(day);
+		if (!file.exists()) {
+			return;
+		}
+		long second = day.atStartOfDay(ZONE).toEpochSecond();
+		int value = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				long deltaSeconds = readVarLong(in);
+				long deltaValue = unZigZag(readVarLong(in));
+				second += deltaSeconds;
+				value += (int) deltaValue;
+				visitor.visit(second, value);
+			}
+		} catch (EOFException e) {
+			// End of segment
+		} catch (IOException e) {
+			System.out.println("Error reading occupancy segment " + file.getName() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Fills the ring buffer from the segment files of the last
+	 * {@link #RING_DAYS} days.
+	 */
+	private void loadRecentHistory() {
+		long ringStart = oldestRingMinute();
+		LocalDate today = LocalDate.now(ZONE);
+		for (LocalDate day = today.minusDays(RING_DAYS); !day.isAfter(today); day = day.plusDays(1)) {
+			readSegment(day, (second, value) -> {
+				if (second / 60 >= ringStart) {
+					addToRing(second / 60, value);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns the segment file of a day.
+	 *
+	 * @param day the day
+	 * @return the segment file
+	 */
+	private File segmentFile(LocalDate day) {
+		return new File(directory, "occupancy-" + day + ".seg");
+	}
+
+	/**
+	 * Writes an unsigned variable-length long (7 bits per byte).
+	 *
+	 * @param out   target stream
+	 * @param value value to write
+	 * @throws IOException on write failure
+	 */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads an unsigned variable-length long written by writeVarLong.
+	 *
+	 * @param in source stream
+	 * @return the decoded value
+	 * @throws IOException on read failure or end of stream
+	 */
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long result = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+			shift += 7;
+			if (shift > 63) {
+				throw new IOException("Malformed varint");
+			}
+		}
+	}
+
+	/**
+	 * Maps signed values to unsigned so small negative deltas stay short.
+	 *
+	 * @param value signed value
+	 * @return zig-zag encoded value
+	 */
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Reverses {@link #zigZag(long)}.
+	 *
+	 * @param value zig-zag encoded value
+	 * @return signed value
+	 */
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}